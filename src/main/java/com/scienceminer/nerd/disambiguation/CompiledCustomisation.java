@@ -0,0 +1,138 @@
+package com.scienceminer.nerd.disambiguation;
+
+import com.scienceminer.nerd.exceptions.CustomisationException;
+import com.scienceminer.nerd.kb.LowerKnowledgeBase;
+import com.scienceminer.nerd.kb.LowerKnowledgeBase.Direction;
+import com.scienceminer.nerd.kb.UpperKnowledgeBase;
+import com.scienceminer.nerd.kb.model.Article;
+import com.scienceminer.nerd.kb.model.Page;
+import com.scienceminer.nerd.kb.model.hadoop.DbPage;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.apache.commons.lang3.StringUtils.trim;
+
+/**
+ * A customisation parsed, validated and resolved once: the pages of its Wikipedia articles
+ * and their link lists are kept in memory, so that applying the customisation to a query
+ * does not access the KB. Instances are immutable and shared by the requests, each request
+ * getting its own {@link NerdCustomisation} context, as the contexts are modified during
+ * the disambiguation (article weights, acronyms).
+ */
+public final class CompiledCustomisation {
+
+    private final String name;
+    private final long version;
+    private final String lang;
+    private final int[] ids;
+    private final DbPage[] pages;
+    private final Int2ObjectMap<int[]> linksIn;
+    private final Int2ObjectMap<int[]> linksOut;
+
+    private CompiledCustomisation(String name, long version, String lang, int[] ids, DbPage[] pages,
+                                  Int2ObjectMap<int[]> linksIn, Int2ObjectMap<int[]> linksOut) {
+        this.name = name;
+        this.version = version;
+        this.lang = lang;
+        this.ids = ids;
+        this.pages = pages;
+        this.linksIn = linksIn;
+        this.linksOut = linksOut;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the version of the stored customisation this one was compiled from
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public String getLang() {
+        return lang;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Compile the JSON definition of a customisation.
+     *
+     * @throws CustomisationException if the definition is not valid
+     */
+    public static CompiledCustomisation compile(String name, long version, String customisationJsonData)
+            throws CustomisationException {
+        JsonNode root = NerdCustomisation.parseAndValidate(customisationJsonData);
+        String lang = root.findPath("lang").textValue().trim();
+        LowerKnowledgeBase wikipedia = UpperKnowledgeBase.getInstance().getWikipediaConf(lang);
+        boolean useLinkOut = wikipedia.getConfig().getUseLinkOut();
+
+        List<Integer> idList = new ArrayList<>();
+        Iterator<JsonNode> ite = root.findPath("wikipedia").elements();
+        while (ite.hasNext()) {
+            JsonNode idNode = ite.next();
+            if ((idNode != null) && (!idNode.isMissingNode()))
+                idList.add(Integer.parseInt(trim(idNode.asText())));
+        }
+
+        int[] ids = new int[idList.size()];
+        DbPage[] pages = new DbPage[ids.length];
+        Int2ObjectOpenHashMap<int[]> linksIn = new Int2ObjectOpenHashMap<>(ids.length);
+        Int2ObjectOpenHashMap<int[]> linksOut = new Int2ObjectOpenHashMap<>(useLinkOut ? ids.length : 0);
+        for (int i = 0; i < ids.length; i++) {
+            int id = idList.get(i);
+            ids[i] = id;
+            pages[i] = wikipedia.getEnvironment().getDbPage().retrieve(id);
+            if (pages[i] == null)
+                throw new CustomisationException("Invalid wikipedia article identifier ID: " + id + " - article does not exist for language: " + lang);
+            int[] in = wikipedia.getLinks(id, Direction.In);
+            if (in != null)
+                linksIn.put(id, in);
+            if (useLinkOut) {
+                int[] out = wikipedia.getLinks(id, Direction.Out);
+                if (out != null)
+                    linksOut.put(id, out);
+            }
+        }
+        return new CompiledCustomisation(name, version, lang, ids, pages,
+            Int2ObjectMaps.unmodifiable(linksIn), useLinkOut ? Int2ObjectMaps.unmodifiable(linksOut) : null);
+    }
+
+    /**
+     * @return a new context for one request, with the articles of the customisation
+     */
+    public NerdCustomisation newContext() {
+        NerdCustomisation customisation = new NerdCustomisation();
+        customisation.setName(name);
+        customisation.lang = lang;
+        LowerKnowledgeBase wikipedia = UpperKnowledgeBase.getInstance().getWikipediaConf(lang);
+        if (ids.length > 0) {
+            customisation.contextArticles = new ArrayList<>(ids.length);
+            customisation.contextArticlesIds = new ArrayList<>(ids.length);
+        }
+        for (int i = 0; i < ids.length; i++) {
+            Page page = Page.createPage(wikipedia.getEnvironment(), ids[i], pages[i]);
+            if (!(page instanceof Article))
+                continue;
+            Article article = (Article) page;
+            // default weight of the article in the context to 1, as in createNerdCustomisation()
+            article.setWeight(1.0);
+            customisation.contextArticles.add(article);
+            customisation.contextArticlesIds.add(ids[i]);
+        }
+        customisation.addPreloadedLinks(linksIn, linksOut);
+        return customisation;
+    }
+}
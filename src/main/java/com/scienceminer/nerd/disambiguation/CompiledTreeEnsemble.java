@@ -0,0 +1,343 @@
+package com.scienceminer.nerd.disambiguation;
+
+import smile.data.Attribute;
+import smile.regression.GradientTreeBoost;
+import smile.regression.RandomForest;
+import smile.regression.Regression;
+import smile.regression.RegressionTree;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A Smile regression tree ensemble (RandomForest or GradientTreeBoost) compiled into
+ * contiguous primitive arrays, for fast loading and allocation-free evaluation.
+ *
+ * The nodes of all the trees are stored in pre-order, so the true child of a split
+ * node is always the next node and only the index of the false child is stored. For
+ * each node we keep the split feature (-1 for a leaf), whether the split is nominal
+ * (equality test) or numeric (less or equal test), and the split value or, for a leaf,
+ * the output value. Predictions are computed in the same order of operations as Smile
+ * so that the scores are numerically identical.
+ *
+ * The Smile trees do not expose their nodes, they are read by reflection on the same
+ * fields as the ones used for the XStream serialization of the models.
+ */
+public class CompiledTreeEnsemble implements Regression<double[]> {
+	private static final Logger LOGGER = LoggerFactory.getLogger(CompiledTreeEnsemble.class);
+
+	private static final int MAGIC = 0x4e455244; // "NERD"
+	private static final int VERSION = 1;
+
+	public static final String FILE_EXTENSION = ".bin";
+
+	private static final int RANDOM_FOREST = 0;
+	private static final int GRADIENT_TREE_BOOST = 1;
+
+	// RANDOM_FOREST: average of the trees, GRADIENT_TREE_BOOST: b + sum of shrinkage * tree
+	private final int ensembleType;
+	private final double b;
+	private final double shrinkage;
+
+	// index of the root node of each tree
+	private final int[] roots;
+
+	// per node arrays
+	private final int[] features;
+	private final boolean[] nominals;
+	private final double[] values;
+	private final int[] falseChildren;
+
+	private CompiledTreeEnsemble(int ensembleType, double b, double shrinkage,
+								int[] roots, int[] features, boolean[] nominals,
+								double[] values, int[] falseChildren) {
+		this.ensembleType = ensembleType;
+		this.b = b;
+		this.shrinkage = shrinkage;
+		this.roots = roots;
+		this.features = features;
+		this.nominals = nominals;
+		this.values = values;
+		this.falseChildren = falseChildren;
+	}
+
+	public int getNumTrees() {
+		return roots.length;
+	}
+
+	public int getNumNodes() {
+		return features.length;
+	}
+
+	@Override
+	public double predict(double[] x) {
+		if (ensembleType == GRADIENT_TREE_BOOST) {
+			double y = b;
+			for (int t = 0; t < roots.length; t++) {
+				y += shrinkage * predictTree(roots[t], x);
+			}
+			return y;
+		} else {
+			double y = 0;
+			for (int t = 0; t < roots.length; t++) {
+				y += predictTree(roots[t], x);
+			}
+			return y / roots.length;
+		}
+	}
+
+	/**
+	 * Score a batch of rows, traversing the ensemble tree by tree so that the nodes
+	 * of a tree stay in cache for all the rows.
+	 */
+	public double[] predict(double[][] x) {
+		double[] y = new double[x.length];
+		if (ensembleType == GRADIENT_TREE_BOOST) {
+			for (int i = 0; i < x.length; i++)
+				y[i] = b;
+			for (int t = 0; t < roots.length; t++) {
+				for (int i = 0; i < x.length; i++)
+					y[i] += shrinkage * predictTree(roots[t], x[i]);
+			}
+		} else {
+			for (int t = 0; t < roots.length; t++) {
+				for (int i = 0; i < x.length; i++)
+					y[i] += predictTree(roots[t], x[i]);
+			}
+			for (int i = 0; i < x.length; i++)
+				y[i] = y[i] / roots.length;
+		}
+		return y;
+	}
+
+	private double predictTree(int node, double[] x) {
+		int feature = features[node];
+		while (feature >= 0) {
+			double value = x[feature];
+			boolean goTrue = nominals[node] ? (value == values[node]) : (value <= values[node]);
+			node = goTrue ? node + 1 : falseChildren[node];
+			feature = features[node];
+		}
+		return values[node];
+	}
+
+	/**
+	 * Compile a Smile RandomForest or GradientTreeBoost regression model.
+	 */
+	public static CompiledTreeEnsemble compile(Regression<double[]> model) throws Exception {
+		int ensembleType;
+		double b = 0.0;
+		double shrinkage = 1.0;
+		List<RegressionTree> trees = new ArrayList<>();
+		if (model instanceof GradientTreeBoost) {
+			ensembleType = GRADIENT_TREE_BOOST;
+			b = (Double)getField(model, "b");
+			shrinkage = (Double)getField(model, "shrinkage");
+			addTrees(getField(model, "trees"), trees);
+			Integer ntrees = (Integer)getField(model, "ntrees");
+			// a trimmed model only uses its first ntrees trees
+			while (trees.size() > ntrees)
+				trees.remove(trees.size()-1);
+		} else if (model instanceof RandomForest) {
+			ensembleType = RANDOM_FOREST;
+			addTrees(getField(model, "trees"), trees);
+		} else {
+			throw new IllegalArgumentException("Unsupported model for compilation: " + model.getClass().getName());
+		}
+
+		NodeArrays nodes = new NodeArrays();
+		int[] roots = new int[trees.size()];
+		for (int t = 0; t < trees.size(); t++) {
+			RegressionTree tree = trees.get(t);
+			Attribute[] attributes = (Attribute[])getField(tree, "attributes");
+			roots[t] = nodes.size;
+			addNode(getField(tree, "root"), attributes, nodes);
+		}
+
+		return new CompiledTreeEnsemble(ensembleType, b, shrinkage, roots,
+			nodes.trimFeatures(), nodes.trimNominals(), nodes.trimValues(), nodes.trimFalseChildren());
+	}
+
+	private static void addTrees(Object treesField, List<RegressionTree> trees) {
+		if (treesField instanceof Collection) {
+			for (Object tree : (Collection<?>)treesField)
+				trees.add((RegressionTree)tree);
+		} else {
+			for (int i = 0; i < Array.getLength(treesField); i++)
+				trees.add((RegressionTree)Array.get(treesField, i));
+		}
+	}
+
+	// add a node and its descendants in pre-order
+	private static void addNode(Object node, Attribute[] attributes, NodeArrays nodes) throws Exception {
+		Object trueChild = getField(node, "trueChild");
+		Object falseChild = getField(node, "falseChild");
+		int index = nodes.add();
+		if (trueChild == null && falseChild == null) {
+			nodes.features[index] = -1;
+			nodes.values[index] = (Double)getField(node, "output");
+			return;
+		}
+
+		int splitFeature = (Integer)getField(node, "splitFeature");
+		Attribute.Type type = attributes[splitFeature].getType();
+		if (type != Attribute.Type.NOMINAL && type != Attribute.Type.NUMERIC)
+			throw new IllegalStateException("Unsupported attribute type: " + type);
+		nodes.features[index] = splitFeature;
+		nodes.nominals[index] = (type == Attribute.Type.NOMINAL);
+		nodes.values[index] = (Double)getField(node, "splitValue");
+		addNode(trueChild, attributes, nodes);
+		nodes.falseChildren[index] = nodes.size;
+		addNode(falseChild, attributes, nodes);
+	}
+
+	private static Object getField(Object object, String name) throws Exception {
+		Class<?> clazz = object.getClass();
+		while (clazz != null) {
+			try {
+				Field field = clazz.getDeclaredField(name);
+				field.setAccessible(true);
+				return field.get(object);
+			} catch (NoSuchFieldException e) {
+				clazz = clazz.getSuperclass();
+			}
+		}
+		throw new NoSuchFieldException(object.getClass().getName() + "." + name);
+	}
+
+	/**
+	 * Growable node arrays used during the compilation.
+	 */
+	private static class NodeArrays {
+		int size = 0;
+		int[] features = new int[1024];
+		boolean[] nominals = new boolean[1024];
+		double[] values = new double[1024];
+		int[] falseChildren = new int[1024];
+
+		int add() {
+			if (size == features.length) {
+				int newLength = features.length * 2;
+				features = Arrays.copyOf(features, newLength);
+				nominals = Arrays.copyOf(nominals, newLength);
+				values = Arrays.copyOf(values, newLength);
+				falseChildren = Arrays.copyOf(falseChildren, newLength);
+			}
+			falseChildren[size] = -1;
+			return size++;
+		}
+
+		int[] trimFeatures() {
+			return Arrays.copyOf(features, size);
+		}
+
+		boolean[] trimNominals() {
+			return Arrays.copyOf(nominals, size);
+		}
+
+		double[] trimValues() {
+			return Arrays.copyOf(values, size);
+		}
+
+		int[] trimFalseChildren() {
+			return Arrays.copyOf(falseChildren, size);
+		}
+	}
+
+	/**
+	 * Save the compiled model in a compact binary file.
+	 */
+	public void save(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(ensembleType);
+			out.writeDouble(b);
+			out.writeDouble(shrinkage);
+			out.writeInt(roots.length);
+			for (int root : roots)
+				out.writeInt(root);
+			out.writeInt(features.length);
+			for (int i = 0; i < features.length; i++) {
+				out.writeInt(features[i]);
+				out.writeBoolean(nominals[i]);
+				out.writeDouble(values[i]);
+				out.writeInt(falseChildren[i]);
+			}
+		}
+	}
+
+	/**
+	 * Load a compiled model saved with save().
+	 */
+	public static CompiledTreeEnsemble load(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a compiled tree ensemble: " + file.getPath());
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IOException("Unsupported compiled tree ensemble version " + version + ": " + file.getPath());
+			int ensembleType = in.readInt();
+			double b = in.readDouble();
+			double shrinkage = in.readDouble();
+			int[] roots = new int[in.readInt()];
+			for (int i = 0; i < roots.length; i++)
+				roots[i] = in.readInt();
+			int nbNodes = in.readInt();
+			int[] features = new int[nbNodes];
+			boolean[] nominals = new boolean[nbNodes];
+			double[] values = new double[nbNodes];
+			int[] falseChildren = new int[nbNodes];
+			for (int i = 0; i < nbNodes; i++) {
+				features[i] = in.readInt();
+				nominals[i] = in.readBoolean();
+				values[i] = in.readDouble();
+				falseChildren[i] = in.readInt();
+			}
+			return new CompiledTreeEnsemble(ensembleType, b, shrinkage, roots, features, nominals, values, falseChildren);
+		}
+	}
+
+	/**
+	 * Return the compiled version of an XML model file, loading it from the binary file next
+	 * to the XML model if up to date, or returning null if not available.
+	 */
+	public static CompiledTreeEnsemble loadIfUpToDate(File modelFile) {
+		File compiledFile = new File(modelFile.getPath() + FILE_EXTENSION);
+		if (!compiledFile.exists() || compiledFile.lastModified() < modelFile.lastModified())
+			return null;
+		try {
+			return load(compiledFile);
+		} catch (IOException e) {
+			LOGGER.warn("Cannot load the compiled model " + compiledFile.getPath(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Compile a model and save it in the binary file next to its XML model file, returning
+	 * the compiled model or null if the model cannot be compiled.
+	 */
+	public static CompiledTreeEnsemble compileAndSave(Regression<double[]> model, File modelFile) {
+		try {
+			CompiledTreeEnsemble compiled = compile(model);
+			try {
+				compiled.save(new File(modelFile.getPath() + FILE_EXTENSION));
+			} catch (IOException e) {
+				LOGGER.warn("Cannot save the compiled model next to " + modelFile.getPath(), e);
+			}
+			return compiled;
+		} catch (Exception e) {
+			LOGGER.warn("Cannot compile the model " + modelFile.getPath(), e);
+			return null;
+		}
+	}
+}
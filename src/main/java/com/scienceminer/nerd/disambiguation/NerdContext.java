@@ -4,9 +4,13 @@ import com.scienceminer.nerd.kb.LowerKnowledgeBase;
 import com.scienceminer.nerd.kb.UpperKnowledgeBase;
 import com.scienceminer.nerd.kb.model.Article;
 import com.scienceminer.nerd.kb.model.Label;
+import com.scienceminer.nerd.kb.model.Page;
 import com.scienceminer.nerd.mention.Mention;
 import com.scienceminer.nerd.utilities.NerdConfig;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -35,6 +39,17 @@ public class NerdContext {
 
 	protected double totalWeight = 0.0;
 	protected Relatedness relatedness = Relatedness.getInstance();
+
+	// articles of the candidates to be compared with the context, and their relatedness
+	// scores with the context articles, computed at first use
+	protected List<Article> candidateArticles = null;
+	protected RelatednessMatrix relatednessMatrix = null;
+
+	// link lists of some context articles already in memory, e.g. the articles of a compiled
+	// customisation, null if none
+	protected Int2ObjectMap<int[]> preloadedLinksIn = null;
+	protected Int2ObjectMap<int[]> preloadedLinksOut = null;
+
 	protected String lang = null;
 	private Map<String, LowerKnowledgeBase> wikipediaConfs;
 
@@ -144,6 +159,38 @@ public class NerdContext {
 	public List<Article> getArticles() {
 		return contextArticles;
 	}
+
+	/**
+	 * Register candidates to be compared with the context, so that their relatedness with the
+	 * context articles is computed with the other candidates in one pass.
+	 */
+	public void addCandidates(List<NerdCandidate> candidates) {
+		if (candidates == null)
+			return;
+		if (candidateArticles == null)
+			candidateArticles = new ArrayList<>();
+		for (NerdCandidate candidate : candidates) {
+			Label.Sense sense = candidate.getWikiSense();
+			if ((sense != null) && (sense.getType() == Page.PageType.article))
+				candidateArticles.add(sense);
+		}
+		relatednessMatrix = null;
+	}
+
+	/**
+	 * @return the relatedness scores of the candidates and the context articles with the
+	 * context articles, built at first use and rebuilt if the context articles have changed,
+	 * or null if the context is empty
+	 */
+	public RelatednessMatrix getRelatednessMatrix() {
+		if ((contextArticles == null) || (contextArticles.size() == 0))
+			return null;
+		if ((relatednessMatrix == null) || !relatednessMatrix.hasColumns(contextArticles)) {
+			relatednessMatrix = RelatednessMatrix.build(contextArticles, candidateArticles, lang,
+				relatedness, wikipediaConfs.get(lang), preloadedLinksIn, preloadedLinksOut);
+		}
+		return relatednessMatrix;
+	}
 	
 	public int getSenseNumber() {
 		if (contextArticles == null)
@@ -159,15 +206,13 @@ public class NerdContext {
 		if (totalWeight != 0.0)
 			return totalWeight;
 //System.out.println("size of context: " + contextArticles.size());
+		RelatednessMatrix matrix = getRelatednessMatrix();
 		for (Article art : contextArticles) {
 			double avgRelatedness = 0.0;
-			for (Article art2 : contextArticles) {
-				if (art.getId() != art2.getId()) {
-					try {
-						avgRelatedness += relatedness.getRelatedness(art, art2, lang);
-					} catch(Exception e) {
-						e.printStackTrace();
-					}
+			int row = matrix.getRow(art.getId());
+			for (int j = 0; j < contextArticles.size(); j++) {
+				if (art.getId() != contextArticles.get(j).getId()) {
+					avgRelatedness += matrix.get(row, j);
 				}
 			}
 			
@@ -187,9 +232,12 @@ public class NerdContext {
 		if ((contextArticles == null) || (contextArticles.size() == 0) || (totalWeight == 0.0))
 			return 0.0;
 
+		RelatednessMatrix matrix = getRelatednessMatrix();
+		int row = matrix.getRow(art.getId());
 		double relatednessScore = 0.0;
-		for (Article contextArt: contextArticles) { 
-			double r = relatedness.getRelatedness(art, contextArt, lang);
+		for (int j = 0; j < contextArticles.size(); j++) {
+			Article contextArt = contextArticles.get(j);
+			double r = (row != -1) ? matrix.get(row, j) : relatedness.getRelatedness(art, contextArt, lang);
 			r = r * contextArt.getWeight();
 			relatednessScore = relatednessScore + r;
 		}
@@ -251,6 +299,33 @@ public class NerdContext {
 				context.addArticle(article);
 			}
 		}
+		context.addPreloadedLinks(preloadedLinksIn, preloadedLinksOut);
+	}
+	
+	/**
+	 * Register link lists of context articles already in memory, used instead of the KB when
+	 * computing the relatedness with the context.
+	 */
+	protected void addPreloadedLinks(Int2ObjectMap<int[]> linksIn, Int2ObjectMap<int[]> linksOut) {
+		if (linksIn != null) {
+			if (preloadedLinksIn == null)
+				preloadedLinksIn = linksIn;
+			else {
+				Int2ObjectMap<int[]> merged = new Int2ObjectOpenHashMap<>(preloadedLinksIn);
+				merged.putAll(linksIn);
+				preloadedLinksIn = merged;
+			}
+		}
+		if (linksOut != null) {
+			if (preloadedLinksOut == null)
+				preloadedLinksOut = linksOut;
+			else {
+				Int2ObjectMap<int[]> merged = new Int2ObjectOpenHashMap<>(preloadedLinksOut);
+				merged.putAll(linksOut);
+				preloadedLinksOut = merged;
+			}
+		}
+		relatednessMatrix = null;
 	}
 	
 	/**
@@ -1,9 +1,17 @@
 package com.scienceminer.nerd.disambiguation;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 import com.scienceminer.nerd.utilities.NerdConfig;
 import com.scienceminer.nerd.utilities.StringProcessor;
+import com.scienceminer.nerd.utilities.TermOccurrenceIndex;
 import org.apache.commons.collections4.CollectionUtils;
 import org.grobid.core.lang.Language;
 import org.grobid.core.utilities.LanguageUtilities;
@@ -16,13 +24,13 @@ import org.grobid.core.lexicon.NERLexicon;
 import org.grobid.core.lexicon.NERLexicon.NER_Type;
 
 import com.scienceminer.nerd.kb.*;
+import com.scienceminer.nerd.kb.db.PageFlags;
 import com.scienceminer.nerd.kb.db.WikipediaDomainMap;
 import com.scienceminer.nerd.exceptions.*;
 import com.scienceminer.nerd.mention.*;
 import com.scienceminer.nerd.service.NerdQuery;
 import com.scienceminer.nerd.embeddings.SimilarityScorer;
 import com.scienceminer.nerd.features.GenericRankerFeatureVector;
-import com.scienceminer.nerd.utilities.Utilities;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,6 +70,12 @@ public class NerdEngine {
 	static public int maxLabelLength = 50;
 	public static int MAX_SENSES = 4; // maximum level of ambiguity for an entity
 
+	// marker of a mention without entry in the generated candidates
+	private static final List<NerdCandidate> NO_CANDIDATES = Collections.unmodifiableList(new ArrayList<NerdCandidate>());
+
+	// per language pools for the parallel candidate generation
+	private final ConcurrentMap<String, ForkJoinPool> candidateGenerationPools = new ConcurrentHashMap<>();
+
 	public static NerdEngine getInstance() {
 	    if (instance == null) {
 			getNewInstance();
@@ -293,23 +307,26 @@ public class NerdEngine {
 			} else {
 				for(NerdCandidate candidate : cands) {
 					NerdEntity nerdEntity = new NerdEntity(entity);
-					nerdEntity.populateFromCandidate(candidate, lang);
+					nerdEntity.populateFromCandidate(candidate, lang, nerdQuery);
 					//nerdEntity.setWikipediaMultilingualRef(
 					//	candidate.getWikiSense().getTranslations(), targetLanguages, wikipedias);
 
 					// note: for the moment we use English categories via translingual information
-					if (lang.equals(Language.EN)) {
-						if (wikipediaDomainMap == null)
-							LOGGER.warn("wikipediaDomainMap is null for en");
-						else
-							nerdEntity.setDomains(wikipediaDomainMap.getDomains(nerdEntity.getWikipediaExternalRef()));
-					} else {
-						// we get the English page id if available via the translations and then calculate the domain
-						Map<String,String> translations = candidate.getWikiSense().getTranslations();
-						String translationEN = translations.get(Language.EN);
-						Article article = wikipedias.get(Language.EN).getArticleByTitle(translationEN);
-						if (article != null) {
-							nerdEntity.setDomains(wikipediaDomainMap.getDomains(article.getId()));
+					// domains are looked up only when part of the requested output
+					if (nerdQuery.isFieldRequested(NerdQuery.FIELD_DOMAINS)) {
+						if (lang.equals(Language.EN)) {
+							if (wikipediaDomainMap == null)
+								LOGGER.warn("wikipediaDomainMap is null for en");
+							else
+								nerdEntity.setDomains(wikipediaDomainMap.getDomains(nerdEntity.getWikipediaExternalRef()));
+						} else {
+							// we get the English page id if available via the translations and then calculate the domain
+							Map<String,String> translations = candidate.getWikiSense().getTranslations();
+							String translationEN = translations.get(Language.EN);
+							Article article = wikipedias.get(Language.EN).getArticleByTitle(translationEN);
+							if (article != null) {
+								nerdEntity.setDomains(wikipediaDomainMap.getDomains(article.getId()));
+							}
 						}
 					}
 					result.add(nerdEntity);
@@ -360,185 +377,262 @@ public class NerdEngine {
 
 		NerdConfig conf = wikipedia.getConfig();
 
+		// candidates are generated independently for each mention, possibly in parallel, and 
+		// merged in the order of the mentions so that the result is the same as with a 
+		// sequential generation
+		List<NerdEntity> entityList = new ArrayList<>(entities);
+		List<List<NerdCandidate>> candidatesPerEntity = generateCandidatesPerEntity(entityList, lang, wikipedia, conf);
+		for(int i=0; i<entityList.size(); i++) {
+			List<NerdCandidate> candidates = candidatesPerEntity.get(i);
+			if (candidates != NO_CANDIDATES)
+				result.put(entityList.get(i), candidates);
+		}
+
+		//result = expendCoReference(entities, result);
+
+		return result;
+	}
+
+	/**
+	 * Generate the candidates of each mention, in parallel if a candidate generation pool 
+	 * is configured for the language. The list of candidates at index i corresponds to 
+	 * the i-th mention.
+	 */
+	private List<List<NerdCandidate>> generateCandidatesPerEntity(List<NerdEntity> entities, String lang,
+			LowerKnowledgeBase wikipedia, NerdConfig conf) {
+		return generateCandidatesPerEntity(entities, getCandidateGenerationPool(lang, conf),
+			entity -> generateCandidatesSimple(entity, lang, wikipedia, conf));
+	}
+
+	/**
+	 * Apply a candidate generator to each mention, in the given pool if not null, 
+	 * sequentially otherwise. The list of candidates at index i corresponds to the i-th 
+	 * mention in both cases.
+	 */
+	static List<List<NerdCandidate>> generateCandidatesPerEntity(List<NerdEntity> entities, ForkJoinPool pool,
+			Function<NerdEntity, List<NerdCandidate>> generator) {
+		List<List<NerdCandidate>> results = new ArrayList<>(entities.size());
+		if (pool == null || entities.size() < 2) {
+			for(NerdEntity entity : entities) {
+				results.add(generator.apply(entity));
+			}
+			return results;
+		}
+
+		List<Callable<List<NerdCandidate>>> tasks = new ArrayList<>(entities.size());
 		for(NerdEntity entity : entities) {
-			// if the entity is already input in the query (i.e. by the "user"), we do not generate candidates
-			// for it if they are disambiguated
+			tasks.add(() -> generator.apply(entity));
+		}
+		try {
+			for(Future<List<NerdCandidate>> future : pool.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NerdException("Interrupted while generating the candidates", e);
+		} catch(ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+			throw new NerdException("Error while generating the candidates", e.getCause());
+		}
+		return results;
+	}
 
-			if (entity.getSource() == ProcessText.MentionMethod.user
-					&& entity.getNer_conf() == 1.0) {
+	/**
+	 * Returns the bounded pool used to generate the candidates of a language in parallel, 
+	 * or null if the candidates are generated sequentially (the default).
+	 */
+	private ForkJoinPool getCandidateGenerationPool(String lang, NerdConfig conf) {
+		int nbThreads = conf.getCandidateGenerationThreads();
+		if (nbThreads <= 1)
+			return null;
+		return candidateGenerationPools.computeIfAbsent(lang, l -> new ForkJoinPool(nbThreads));
+	}
 
-				// do we have disambiguated entity information for the entity?
-				// the assumption is that the validation has been already done upstream or we will have to maintain the
-				// same logic everywhere.
+	/**
+	 * Generate the candidates of a single mention. Returns null for a mention input by the 
+	 * user which is not to be disambiguated, and NO_CANDIDATES for a mention to be ignored.
+	 */
+	private List<NerdCandidate> generateCandidatesSimple(NerdEntity entity, String lang, 
+			LowerKnowledgeBase wikipedia, NerdConfig conf) {
+		PageFlags pageFlags = wikipedia.getEnvironment().getPageFlags();
 
-				//Maybe a validation flag on the entity?
+		// if the entity is already input in the query (i.e. by the "user"), we do not generate candidates
+		// for it if they are disambiguated
 
-				//if (entity.getWikipediaExternalRef() != -1) {
-				result.put(entity, null);
-				continue;
-				//}
-			}
+		if (entity.getSource() == ProcessText.MentionMethod.user
+				&& entity.getNer_conf() == 1.0) {
 
-			List<NerdCandidate> candidates = new ArrayList<>();
+			// do we have disambiguated entity information for the entity?
+			// the assumption is that the validation has been already done upstream or we will have to maintain the
+			// same logic everywhere.
 
-			// if the mention is originally recognized as NE class MEASURE, we don't try to disambiguate it
-			if (isNERClassExcludedFromDisambiguation(entity)) {
-				result.put(entity, candidates);
-				continue;
-			}
+			//Maybe a validation flag on the entity?
 
-			String normalisedString = entity.getNormalisedName();
-			if (entity.getSource() == ProcessText.MentionMethod.species) {
-				normalisedString = entity.getRawName();
-			}
+			//if (entity.getWikipediaExternalRef() != -1) {
+			return null;
+			//}
+		}
 
-			if (isEmpty(normalisedString))
-				continue;
+		List<NerdCandidate> candidates = new ArrayList<>();
 
-			Label bestLabel = this.bestLabel(normalisedString, wikipedia);
-			if (bestLabel !=null && !bestLabel.exists()) {
-				//if (entity.getIsAcronym())
-				//System.out.println("No concepts found for '" + normalisedString + "' " + " / " + entity.getRawName() );
-				if (entity.getType() != null) {
-					result.put(entity, candidates);
-					continue;
-				}
+		// if the mention is originally recognized as NE class MEASURE, we don't try to disambiguate it
+		if (isNERClassExcludedFromDisambiguation(entity)) {
+			return candidates;
+		}
+
+		String normalisedString = entity.getNormalisedName();
+		if (entity.getSource() == ProcessText.MentionMethod.species) {
+			normalisedString = entity.getRawName();
+		}
+
+		if (isEmpty(normalisedString))
+			return NO_CANDIDATES;
+
+		Label bestLabel = this.bestLabel(normalisedString, wikipedia);
+		if (bestLabel !=null && !bestLabel.exists()) {
+			//if (entity.getIsAcronym())
+			//System.out.println("No concepts found for '" + normalisedString + "' " + " / " + entity.getRawName() );
+			if (entity.getType() != null) {
+				return candidates;
 			}
-			else {
+		}
+		else {
 //if (entity.getIsAcronym())
 //System.out.println("Concept(s) found for '" + normalisedString + "' " + " / " + entity.getRawName() +
 //" - " + bestLabel.getSenses().length + " senses");
-				entity.setLinkProbability(bestLabel.getLinkProbability());
-				boolean bestCaseContext = true;
-				Label localBestLabel = new Label(wikipedia.getEnvironment(), normalisedString);
-				if (!localBestLabel.exists()) {
-					bestCaseContext = false;
-				}
+			entity.setLinkProbability(bestLabel.getLinkProbability());
+			boolean bestCaseContext = true;
+			Label localBestLabel = new Label(wikipedia.getEnvironment(), normalisedString);
+			if (!localBestLabel.exists()) {
+				bestCaseContext = false;
+			}
 //System.out.println("LinkProbability for the string '" + normalisedString + "': " + entity.getLinkProbability());
-				Label.Sense[] senses = bestLabel.getSenses();
-				if ((senses != null) && (senses.length > 0)) {
-					int s = 0;
-					for(int i=0; i<senses.length; i++) {
-						Label.Sense sense = senses[i];
-
-						PageType pageType = sense.getType();
-						if (pageType != PageType.article)
-							continue;
+			Label.Sense[] senses = bestLabel.getSenses();
+			if ((senses != null) && (senses.length > 0)) {
+				int s = 0;
+				for(int i=0; i<senses.length; i++) {
+					Label.Sense sense = senses[i];
 
-						if (sense.getPriorProbability() < conf.getMinSenseProbability()
-								&& sense.getPriorProbability() != 0.0 ) {
-							// senses are sorted by prior prob.
-							//continue;
-							break;
-						}
+					PageType pageType = sense.getType();
+					if (pageType != PageType.article)
+						continue;
 
-						// not a valid sense if title is a list of ...
-						String title = sense.getTitle();
-						if ((title == null) || title.startsWith("List of") || title.startsWith("Liste des"))
-							continue;
+					if (sense.getPriorProbability() < conf.getMinSenseProbability()
+							&& sense.getPriorProbability() != 0.0 ) {
+						// senses are sorted by prior prob.
+						//continue;
+						break;
+					}
+
+					// not a valid sense if title is a list of ...
+					String title = sense.getTitle();
+					if ((title == null) || title.startsWith("List of") || title.startsWith("Liste des"))
+						continue;
 
-						NerdCandidate candidate = new NerdCandidate(entity);
+					// disambiguation pages are skipped without loading their categories if 
+					// the page flags have been precomputed
+					if (pageFlags != null && pageFlags.isDisambiguation(sense.getId()))
+						continue;
+
+					NerdCandidate candidate = new NerdCandidate(entity);
 
-						boolean invalid = false;
+					boolean invalid = false;
 //System.out.println("check categories for " + sense.getId());							
-						com.scienceminer.nerd.kb.model.Category[] parentCategories = sense.getParentCategories();
-						if ( (parentCategories != null) && (parentCategories.length > 0) ) {
-							for(com.scienceminer.nerd.kb.model.Category theCategory : parentCategories) {
-								// not a valid sense if a category of the sense contains "disambiguation" -> this is then a disambiguation page
-								if (theCategory == null) {
-									LOGGER.warn("Invalid category page for sense: " + title);
-									continue;
-								}
-								if (theCategory.getTitle() == null) {
-									LOGGER.warn("Invalid category content for sense: " + title);
-									continue;
-								}
+					com.scienceminer.nerd.kb.model.Category[] parentCategories = sense.getParentCategories();
+					if ( (parentCategories != null) && (parentCategories.length > 0) ) {
+						for(com.scienceminer.nerd.kb.model.Category theCategory : parentCategories) {
+							// not a valid sense if a category of the sense contains "disambiguation" -> this is then a disambiguation page
+							if (theCategory == null) {
+								LOGGER.warn("Invalid category page for sense: " + title);
+								continue;
+							}
+							if (theCategory.getTitle() == null) {
+								LOGGER.warn("Invalid category content for sense: " + title);
+								continue;
+							}
 
-								if (!NerdCategories.categoryToBefiltered(theCategory.getTitle()))
-									candidate.addWikipediaCategories(new com.scienceminer.nerd.kb.Category(theCategory));
-								if (theCategory.getTitle().toLowerCase().contains("disambiguation")) {
-									invalid = true;
-									break;
-								}
+							if (!NerdCategories.categoryToBefiltered(theCategory.getTitle()))
+								candidate.addWikipediaCategories(new com.scienceminer.nerd.kb.Category(theCategory));
+							if (theCategory.getTitle().toLowerCase().contains("disambiguation")) {
+								invalid = true;
+								break;
 							}
 						}
-						if (invalid)
-							continue;
+					}
+					if (invalid)
+						continue;
 
-						candidate.setWikiSense(sense);
-						candidate.setWikipediaExternalRef(sense.getId());
-						if (sense.getPriorProbability() == 0.0)
-							candidate.setProb_c(1.0);
-						else
-							candidate.setProb_c(sense.getPriorProbability());
-						candidate.setPreferredTerm(sense.getTitle());
-						candidate.setLang(lang);
-						candidate.setLabel(bestLabel);
-						candidate.setWikidataId(sense.getWikidataId());
-						candidate.setBestCaseContext(bestCaseContext);
-						candidates.add(candidate);
-						//System.out.println(candidate.toString());
-						s++;
-						if (s == MAX_SENSES) {
-							// max. sense alternative has been reach
-							break;
-						}
+					candidate.setWikiSense(sense);
+					candidate.setWikipediaExternalRef(sense.getId());
+					if (sense.getPriorProbability() == 0.0)
+						candidate.setProb_c(1.0);
+					else
+						candidate.setProb_c(sense.getPriorProbability());
+					candidate.setPreferredTerm(sense.getTitle());
+					candidate.setLang(lang);
+					candidate.setLabel(bestLabel);
+					candidate.setWikidataId(sense.getWikidataId());
+					candidate.setBestCaseContext(bestCaseContext);
+					candidates.add(candidate);
+					//System.out.println(candidate.toString());
+					s++;
+					if (s == MAX_SENSES) {
+						// max. sense alternative has been reach
+						break;
 					}
 				}
+			}
 
-				if (candidates.size() > 0) {
-					List<Label> bestLabels = this.bestLabels(normalisedString, wikipedia, lang);
-					// check in alternative labels if we get for the same entity sense better statistical
-					// information
-					//System.out.println((bestLabels.size()-1) + " alternative labels...");
-					for(int p=0; p<bestLabels.size(); p++) {
-						Label altBestLabel = bestLabels.get(p);
-						if (altBestLabel.getText().equals(bestLabel.getText()))
-							continue;
-						long countOcc = altBestLabel.getOccCount();
-						long countLinkOcc = altBestLabel.getLinkOccCount();
-						Label.Sense[] altSenses = altBestLabel.getSenses();
-						if ((altSenses != null) && (altSenses.length > 0)) {
-							for(int i=0; i<altSenses.length; i++) {
-								Label.Sense sense = altSenses[i];
-								long senseCountOcc = sense.getLinkOccCount();
-								for(NerdCandidate candid : candidates) {
-									if (sense.getId() == candid.getWikipediaExternalRef()) {
-										// check statistics
-										long candCountOcc = candid.getLabel().getOccCount();
-										long candLinkCountOcc = candid.getLabel().getLinkOccCount();
-										long candSenseCountOcc = candid.getWikiSense().getLinkOccCount();
-
-										if (countOcc > candCountOcc) {
-											//System.out.println("better label for same sense is: " + altBestLabel.getText() +
-											//	", " + countOcc + " countOcc vs " + candCountOcc + " candCountOcc");
-
-											// update candidate sense
-											candid.setWikiSense(sense);
-											candid.setLabel(altBestLabel);
-
-											// update entity
-											entity.setLinkProbability(altBestLabel.getLinkProbability());
-										}
+			if (candidates.size() > 0) {
+				List<Label> bestLabels = this.bestLabels(normalisedString, wikipedia, lang);
+				// check in alternative labels if we get for the same entity sense better statistical
+				// information
+				//System.out.println((bestLabels.size()-1) + " alternative labels...");
+				for(int p=0; p<bestLabels.size(); p++) {
+					Label altBestLabel = bestLabels.get(p);
+					if (altBestLabel.getText().equals(bestLabel.getText()))
+						continue;
+					long countOcc = altBestLabel.getOccCount();
+					long countLinkOcc = altBestLabel.getLinkOccCount();
+					Label.Sense[] altSenses = altBestLabel.getSenses();
+					if ((altSenses != null) && (altSenses.length > 0)) {
+						for(int i=0; i<altSenses.length; i++) {
+							Label.Sense sense = altSenses[i];
+							long senseCountOcc = sense.getLinkOccCount();
+							for(NerdCandidate candid : candidates) {
+								if (sense.getId() == candid.getWikipediaExternalRef()) {
+									// check statistics
+									long candCountOcc = candid.getLabel().getOccCount();
+									long candLinkCountOcc = candid.getLabel().getLinkOccCount();
+									long candSenseCountOcc = candid.getWikiSense().getLinkOccCount();
+
+									if (countOcc > candCountOcc) {
+										//System.out.println("better label for same sense is: " + altBestLabel.getText() +
+										//	", " + countOcc + " countOcc vs " + candCountOcc + " candCountOcc");
+
+										// update candidate sense
+										candid.setWikiSense(sense);
+										candid.setLabel(altBestLabel);
+
+										// update entity
+										entity.setLinkProbability(altBestLabel.getLinkProbability());
 									}
 								}
 							}
 						}
 					}
 				}
-
-				if ( (candidates.size() > 0) || (entity.getType() != null) ) {
-					Collections.sort(candidates);
-					result.put(entity, candidates);
-				} /*else
-					System.out.println("No concepts found for '" + normalisedString + "' " + " / " + entity.getRawName() );*/
 			}
 
+			if ( (candidates.size() > 0) || (entity.getType() != null) ) {
+				Collections.sort(candidates);
+				return candidates;
+			} /*else
+				System.out.println("No concepts found for '" + normalisedString + "' " + " / " + entity.getRawName() );*/
 		}
 
-		//result = expendCoReference(entities, result);
-
-		return result;
+		return NO_CANDIDATES;
 	}
 
 	public Map<NerdEntity, List<NerdCandidate>> generateCandidatesMultiple(List<NerdEntity> entities, String lang) {
@@ -551,6 +645,7 @@ public class NerdEngine {
 			return result;
 
 		NerdConfig conf = wikipedia.getConfig();
+		PageFlags pageFlags = wikipedia.getEnvironment().getPageFlags();
 
 		for(NerdEntity entity : entities) {
 			// if the entity is already inputted in the query (i.e. by the "user"), we do not generate candidates
@@ -614,6 +709,9 @@ public class NerdEngine {
 							if ((title == null) || title.startsWith("List of") || title.startsWith("Liste des"))
 								continue;
 
+							if (pageFlags != null && pageFlags.isDisambiguation(sense.getId()))
+								continue;
+
 							NerdCandidate candidate = new NerdCandidate(entity);
 
 							boolean invalid = false;
@@ -939,7 +1037,14 @@ public class NerdEngine {
 			}
 		}
 
-		// second pass for producing the ranking score
+		// second pass for producing the ranking features, all the candidates of the document 
+		// being then scored in one batch
+		List<NerdCandidate> scoredCandidates = new ArrayList<>();
+		List<double[]> featureRows = new ArrayList<>();
+		// word normalisation and vectors are shared by all the mentions of the document
+		SimilarityScorer.ScorerSession scorerSession = null;
+		if (feature.Add_embeddings_centroid_similarity)
+			scorerSession = SimilarityScorer.getInstance().createSession(lang);
 		for (Map.Entry<NerdEntity, List<NerdCandidate>> entry : candidates.entrySet()) {
 			List<NerdCandidate> cands = entry.getValue();
 			NerdEntity entity = entry.getKey();
@@ -951,10 +1056,17 @@ public class NerdEngine {
 			List<LayoutToken> subTokens = com.scienceminer.nerd.utilities.Utilities.getWindow(entity, tokens,
 				NerdRanker.EMBEDDINGS_WINDOW_SIZE, lang);
 
+			// embeddings similarity of all the candidates of the mention, computed only if needed
+			float[] embeddingsSimilarities = null;
+			if (scorerSession != null) {
+				embeddingsSimilarities = scorerSession.getCentroidScores(cands, subTokens);
+			}
+
 //			LOGGER.debug("Mention: " + entry.toString());
-			for(NerdCandidate candidate : cands) {
+			for(int candidateIndex = 0; candidateIndex < cands.size(); candidateIndex++) {
+				NerdCandidate candidate = cands.get(candidateIndex);
 //			    LOGGER.debug("Candidate: " +  candidate.toString());
-				double score = 0.0;
+				candidate.setNerdScore(0.0);
 				try {
 					double commonness = candidate.getProb_c();
 
@@ -971,9 +1083,8 @@ public class NerdEngine {
 					}*/
 
 					float embeddingsSimilarity = 0.0F;
-					// computed only if needed
-					if (feature.Add_embeddings_centroid_similarity) {
-						embeddingsSimilarity = SimilarityScorer.getInstance().getCentroidScore(candidate, subTokens, lang);
+					if (embeddingsSimilarities != null) {
+						embeddingsSimilarity = embeddingsSimilarities[candidateIndex];
 					}
 
 					if (ranker == null) {
@@ -989,8 +1100,9 @@ public class NerdEngine {
 					//if (candidate.getWikidataP31Id() != null)
 					//	wikidataP31Id = candidate.getWikidataP31Id();
 
-					score = ranker.getProbability(commonness, related, quality,
-						bestCaseContext, embeddingsSimilarity, wikidataId, wikidataP31Id);
+					featureRows.add(ranker.getFeatureVector(commonness, related, quality,
+						bestCaseContext, embeddingsSimilarity, wikidataId, wikidataP31Id));
+					scoredCandidates.add(candidate);
 
 					/*System.out.println("RANKER - " + candidate.getWikidataId() + " = " + entity.getRawName() + " -> commonness: " + commonness + 
 						", related: " + related + ", quality: " + quality + 
@@ -1000,12 +1112,26 @@ public class NerdEngine {
 					//System.out.println("\t\t" + "commonness: " + commonness + ", relatedness: " + related + ", embeddingsSimilarity: " + embeddingsSimilarity);
 				}
 				catch(Exception e) {
-					LOGGER.debug("Fail to compute ranker score.", e);
+					LOGGER.debug("Fail to compute ranker features.", e);
 				}
+			}
+		}
 
-				candidate.setNerdScore(score);
+		if (featureRows.size() > 0) {
+			try {
+				double[] scores = ranker.getProbabilities(featureRows.toArray(new double[featureRows.size()][]));
+				for (int i = 0; i < scores.length; i++) {
+					scoredCandidates.get(i).setNerdScore(scores[i]);
+				}
 			}
-			Collections.sort(cands);
+			catch(Exception e) {
+				LOGGER.debug("Fail to compute ranker score.", e);
+			}
+		}
+
+		for (List<NerdCandidate> cands : candidates.values()) {
+			if (cands != null)
+				Collections.sort(cands);
 		}
 
 		//System.out.println("relatedness - Comparisons requested: " + relatedness.getComparisonsRequested());
@@ -1056,6 +1182,7 @@ public class NerdEngine {
 			// build the corresponding contexts
 			for(String localContextString : localContextStrings) {
                 NerdContext contextObject = relatedness.getContextFromText(localContextString, userEntities, lang);
+                contextObject.addCandidates(candidates);
                 if (localContexts == null)
                     localContexts = new ArrayList<NerdContext>();
                 localContexts.add(contextObject);
@@ -1072,9 +1199,27 @@ public class NerdEngine {
 			// calculated if needed
 			quality = context.getQuality();
 		}
-		// second pass for producing the ranking score
-		for(NerdCandidate candidate : candidates) {
-			double score = 0.0;
+		// second pass for producing the ranking features, one row per candidate and per context 
+		// (global context followed by the local contexts), all scored in one batch
+		// the textual context is the same for all the candidates
+		float[] embeddingsSimilarities = null;
+		if (feature.Add_embeddings_centroid_similarity) {
+			embeddingsSimilarities = SimilarityScorer.getInstance().createSession(lang)
+				.getCentroidScores(candidates, tokens);
+		}
+
+		int nbContexts = (localContexts == null) ? 1 : localContexts.size() + 1;
+		double[] localQualities = new double[nbContexts - 1];
+		if (feature.Add_context_quality) {
+			// the quality of the local contexts does not depend on the candidate
+			for (int j = 0; j < localQualities.length; j++)
+				localQualities[j] = localContexts.get(j).getQuality();
+		}
+		List<NerdCandidate> scoredCandidates = new ArrayList<>();
+		List<double[]> featureRows = new ArrayList<>();
+		for(int candidateIndex = 0; candidateIndex < candidates.size(); candidateIndex++) {
+			NerdCandidate candidate = candidates.get(candidateIndex);
+			candidate.setNerdScore(0.0);
 			try {
 				double commonness = candidate.getProb_c();
 
@@ -1087,10 +1232,9 @@ public class NerdEngine {
 
 				float embeddingsSimilarity = 0.0F;
 				// computed only of needed
-
-				if (feature.Add_embeddings_centroid_similarity) {
+				if (embeddingsSimilarities != null) {
 					//embeddingsSimilarity = SimilarityScorer.getInstance().getLRScore(candidate, tokens, lang);
-					embeddingsSimilarity = SimilarityScorer.getInstance().getCentroidScore(candidate, tokens, lang);
+					embeddingsSimilarity = embeddingsSimilarities[candidateIndex];
 				}
 
 				// for the candidate
@@ -1107,30 +1251,20 @@ public class NerdEngine {
 				if (candidate.getWikidataP31Id() != null)
 					wikidataP31Id = candidate.getWikidataP31Id();
 
-
-				if (localContexts == null) {
-					score = disambiguator.getProbability(commonness, related, quality,
-						bestCaseContext, embeddingsSimilarity, wikidataId, wikidataP31Id);
-				}
-				else {
+				List<double[]> candidateRows = new ArrayList<>(nbContexts);
+				candidateRows.add(disambiguator.getFeatureVector(commonness, related, quality,
+					bestCaseContext, embeddingsSimilarity, wikidataId, wikidataP31Id));
+				if (localContexts != null) {
 					// we disambiguate for each local context
-					score = disambiguator.getProbability(commonness, related, quality,
-						bestCaseContext, embeddingsSimilarity, wikidataId, wikidataP31Id);
-					for(NerdContext localContext : localContexts) {
+					for (int j = 0; j < localContexts.size(); j++) {
 						if (feature.Add_relatedness)
-							related = relatedness.getRelatednessTo(candidate, localContext, lang);
-						double localQuality = 0.0;
-						if (feature.Add_context_quality) {
-							localQuality = localContext.getQuality();
-						}
-						score += disambiguator.getProbability(commonness, related, localQuality,
-							bestCaseContext, embeddingsSimilarity, wikidataId, wikidataP31Id);
-						//double localScore = disambiguator.getProbability(commonness, related, localContext);
-						//if (localScore > score)
-						//	score = localScore;
+							related = relatedness.getRelatednessTo(candidate, localContexts.get(j), lang);
+						candidateRows.add(disambiguator.getFeatureVector(commonness, related, localQualities[j],
+							bestCaseContext, embeddingsSimilarity, wikidataId, wikidataP31Id));
 					}
-					score = score / (localContexts.size() + 1);
 				}
+				featureRows.addAll(candidateRows);
+				scoredCandidates.add(candidate);
 
 				//System.out.println(candidate.getWikiSense().getTitle() + " " + candidate.getNerdScore() +  " " + entity.toString());
 				//System.out.println("\t\t" + "commonness: " + commonness + ", relatedness: " + related);
@@ -1138,7 +1272,22 @@ public class NerdEngine {
 			catch(Exception e) {
 				e.printStackTrace();
 			}
-			candidate.setNerdScore(score);
+		}
+
+		if (featureRows.size() > 0) {
+			try {
+				double[] scores = disambiguator.getProbabilities(featureRows.toArray(new double[featureRows.size()][]));
+				// the score of a candidate is the average over the global and local contexts
+				for (int i = 0; i < scoredCandidates.size(); i++) {
+					double score = 0.0;
+					for (int j = 0; j < nbContexts; j++)
+						score += scores[(i * nbContexts) + j];
+					scoredCandidates.get(i).setNerdScore(score / nbContexts);
+				}
+			}
+			catch(Exception e) {
+				e.printStackTrace();
+			}
 		}
 		Collections.sort(candidates);
 	}
@@ -1620,6 +1769,12 @@ System.out.println("Merging...");
 		List<NerdEntity> toRemove = new ArrayList<>();
 		GrobidAnalyzer analyzer = GrobidAnalyzer.getInstance();
 
+		// first pass for producing the selection features, all the candidates of the document 
+		// being then scored in one batch
+		List<NerdCandidate> scoredCandidates = new ArrayList<>();
+		List<double[]> featureRows = new ArrayList<>();
+		// term frequencies of the candidate labels in the document, indexed once
+		TermOccurrenceIndex occurrences = new TermOccurrenceIndex(text);
 		for (Map.Entry<NerdEntity, List<NerdCandidate>> entry : cands.entrySet()) {
 			List<NerdCandidate> candidates = entry.getValue();
 			if ( (candidates == null) || (candidates.size() == 0) )
@@ -1640,9 +1795,9 @@ System.out.println("Merging...");
 				//if (candidate.getMethod() == NerdCandidate.NERD)
 				//{
 				try {
-					double tf = Utilities.getOccCount(candidate.getLabel().getText(), text);
+					double tf = occurrences.getOccCount(candidate.getLabel().getText());
 					double idf = ((double)wikipedia.getArticleCount()) / candidate.getLabel().getDocCount();
-					double prob = selector.getProbability(candidate.getNerdScore(),
+					featureRows.add(selector.getFeatureVector(candidate.getNerdScore(),
 						candidate.getLabel().getLinkProbability(),
 						candidate.getWikiSense().getPriorProbability(),
 						words.size(),
@@ -1650,21 +1805,44 @@ System.out.println("Merging...");
 						context.contains(candidate),
 						isNe,
 						tf*idf,
-						dice);
+						dice));
+					scoredCandidates.add(candidate);
 
 					/*System.out.println("SELECTOR - " + candidate.getWikidataId() + " = " + entity.getRawName() + " -> nerdScore: " + candidate.getNerdScore() + 
 						", linkProbability: " + candidate.getLabel().getLinkProbability() + 
 						", priorProbability(): " + candidate.getWikiSense().getPriorProbability() + 
 						", size: " + words.size() + ", relatedness: " + candidate.getRelatednessScore() + 
 						", context: " + context.contains(candidate) + 
-						", isNe: " + isNe + ", tf*idf: " + tf*idf + ", dice: " + dice + " = " + prob);*/
-
-					candidate.setSelectionScore(prob);
+						", isNe: " + isNe + ", tf*idf: " + tf*idf + ", dice: " + dice);*/
 				} catch(Exception e) {
 					e.printStackTrace();
 				}
 				//}
 			}
+		}
+
+		if (featureRows.size() > 0) {
+			try {
+				double[] scores = selector.getProbabilities(featureRows.toArray(new double[featureRows.size()][]));
+				for (int i = 0; i < scores.length; i++) {
+					scoredCandidates.get(i).setSelectionScore(scores[i]);
+				}
+			} catch(Exception e) {
+				e.printStackTrace();
+			}
+		}
+
+		// second pass for the pruning
+		for (Map.Entry<NerdEntity, List<NerdCandidate>> entry : cands.entrySet()) {
+			List<NerdCandidate> candidates = entry.getValue();
+			if ( (candidates == null) || (candidates.size() == 0) )
+				continue;
+			NerdEntity entity = entry.getKey();
+
+			if (entity.getSource() == ProcessText.MentionMethod.species) {
+				// don't prune anything
+				continue;
+			}
 
 /*System.out.println("Surface: " + entity.getRawName());	
 for(NerdCandidate cand : candidates) {
@@ -1790,6 +1968,8 @@ System.out.println("--");*/
 		NerdContext stableContext = relatedness.getContext(terms, userEntities, lang);
 
 		List<List<NerdCandidate>> candidates = generateCandidatesTerms(terms, lang);
+		for (List<NerdCandidate> candidateList : candidates)
+			stableContext.addCandidates(candidateList);
 		int n = 0;
 		for(WeightedTerm term : terms) {
 			if (term.getNerdEntities() == null) {
@@ -1811,9 +1991,11 @@ System.out.println("--");*/
 
 						NerdEntity nerdEntity = new NerdEntity();
 						nerdEntity.setRawName(term.getTerm());
-						nerdEntity.populateFromCandidate(candidate, lang);
+						nerdEntity.populateFromCandidate(candidate, lang, nerdQuery);
+						// only the languages already loaded, a translation does not load its language
 						nerdEntity.setWikipediaMultilingualRef(
-							candidate.getWikiSense().getTranslations(), targetLanguages, wikipedias);
+							candidate.getWikiSense().getTranslations(), targetLanguages,
+							UpperKnowledgeBase.getInstance().getLoadedWikipediaConfs());
 						result.add(nerdEntity);
 						if (!nerdQuery.getNbest())
 							break;
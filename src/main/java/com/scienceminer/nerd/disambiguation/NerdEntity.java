@@ -1,12 +1,14 @@
 package com.scienceminer.nerd.disambiguation;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.io.JsonStringEncoder;
 import com.scienceminer.nerd.kb.*;
 import com.scienceminer.nerd.kb.model.Article;
 import com.scienceminer.nerd.kb.model.Page;
 import com.scienceminer.nerd.mention.Mention;
 import com.scienceminer.nerd.mention.ProcessText;
+import com.scienceminer.nerd.service.NerdQuery;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -21,6 +23,7 @@ import org.grobid.core.utilities.TextUtilities;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 
@@ -128,6 +131,11 @@ public class NerdEntity implements Comparable<NerdEntity> {
 
 	private List<Statement> statements = null;
 
+	// the definition and the statements are only fetched from the KB when accessed,
+	// typically when the entity is serialised
+	private boolean pendingDefinition = false;
+	private boolean pendingStatements = false;
+
 	private BiblioItem biblio = null;
 
 	public NerdEntity() {
@@ -308,10 +316,15 @@ public class NerdEntity implements Comparable<NerdEntity> {
 	}
 
 	public List<Statement> getStatements() {
+		if (pendingStatements) {
+			pendingStatements = false;
+			statements = UpperKnowledgeBase.getInstance().getStatements(wikidataId);
+		}
 		return this.statements;
 	}
 
 	public void setStatements(List<Statement> statements) {
+		pendingStatements = false;
 		this.statements = statements;
 	}
 
@@ -447,10 +460,15 @@ public class NerdEntity implements Comparable<NerdEntity> {
     }
 
 	public List<Definition> getDefinitions() {
+		if (pendingDefinition) {
+			pendingDefinition = false;
+			addDefinition(fetchDefinition());
+		}
 		return definitions;
 	}
 
 	public void setDefinitions(List<Definition> desc) {
+		pendingDefinition = false;
 		definitions = desc;
 	}
 
@@ -630,13 +648,43 @@ public class NerdEntity implements Comparable<NerdEntity> {
      *  Copy the result of a disambiguation corresponding to a candidate in the current NERD entity
 	 */
 	public void populateFromCandidate(NerdCandidate candidate, String lang) {
+		populateFromCandidate(candidate, lang, null);
+	}
+
+	/**
+	 *  Copy the result of a disambiguation corresponding to a candidate in the current NERD entity,
+	 *  keeping only the optional KB fields requested by the query (all of them if the query is null).
+	 *  The definition and the statements are not fetched here but when first accessed.
+	 */
+	public void populateFromCandidate(NerdCandidate candidate, String lang, NerdQuery query) {
 		wikipediaExternalRef = candidate.getWikipediaExternalRef();
 		wikidataId = candidate.getWikidataId();
+		this.lang = lang;
+
+		if ((query == null) || query.isFieldRequested(NerdQuery.FIELD_DEFINITIONS))
+			pendingDefinition = true;
 
+		if ((query == null) || query.isFieldRequested(NerdQuery.FIELD_DOMAINS))
+			domains = candidate.getDomains();
+
+		prob_c = candidate.getProb_c();
+		nerdScore = candidate.getNerdScore();
+		selectionScore = candidate.getSelectionScore();
+		//freeBaseExternalRef = candidate.getFreeBaseExternalRef();
+		if ((query == null) || query.isFieldRequested(NerdQuery.FIELD_CATEGORIES))
+			categories = candidate.getWikipediaCategories();
+
+		if ((query == null) || query.isFieldRequested(NerdQuery.FIELD_STATEMENTS))
+			pendingStatements = true;
+
+		preferredTerm = candidate.getPreferredTerm();
+	}
+
+	private Definition fetchDefinition() {
 		LowerKnowledgeBase wikipedia = UpperKnowledgeBase.getInstance().getWikipediaConf(lang);
-		Page page = wikipedia.getPageById(wikipediaExternalRef);
 		Definition definition = new Definition();
 		try {
+			Page page = wikipedia.getPageById(wikipediaExternalRef);
 			definition.setDefinition(page.getFirstParagraphWikiText());
 		} catch(Exception e) {
 			LOGGER.debug("Error when getFirstParagraphWikiText for page id: "+ wikipediaExternalRef);
@@ -644,19 +692,7 @@ public class NerdEntity implements Comparable<NerdEntity> {
 		}
 		definition.setSource("wikipedia-" + lang);
 		definition.setLang(lang);
-		addDefinition(definition);
-
-		domains = candidate.getDomains();
-
-		prob_c = candidate.getProb_c();
-		nerdScore = candidate.getNerdScore();
-		selectionScore = candidate.getSelectionScore();
-		//freeBaseExternalRef = candidate.getFreeBaseExternalRef();
-		categories = candidate.getWikipediaCategories();
-		statements = UpperKnowledgeBase.getInstance().getStatements(wikidataId);
-
-		preferredTerm = candidate.getPreferredTerm();
-		this.lang = lang;
+		return definition;
 	}
 
 	@Override
@@ -816,7 +852,7 @@ public class NerdEntity implements Comparable<NerdEntity> {
 		/*if (freeBaseExternalRef != null)
 			buffer.append(", \"freeBaseExternalRef\" : \"" + freeBaseExternalRef + "\"" );*/
 
-		if (CollectionUtils.isNotEmpty(definitions)) {
+		if (CollectionUtils.isNotEmpty(getDefinitions())) {
 			buffer.append(", \"definitions\" : [ ");
 			for(Definition definition : definitions) {
 				if (isBlank(definition.getDefinition()) )
@@ -888,7 +924,7 @@ public class NerdEntity implements Comparable<NerdEntity> {
 		}
 
 		// statements
-		if (CollectionUtils.isNotEmpty(statements)) {
+		if (CollectionUtils.isNotEmpty(getStatements())) {
 			buffer.append(", \"statements\": [");
 			boolean start = true;
 			for(Statement statement : statements) {
@@ -1012,6 +1048,143 @@ public class NerdEntity implements Comparable<NerdEntity> {
 		return buffer.toString();
 	}
 
+	/**
+	 * Streaming version of toJsonFull(), writing the same JSON object directly with
+	 * the given generator.
+	 */
+	public void writeJsonFull(JsonGenerator generator) throws IOException {
+		generator.writeStartObject();
+		writeJsonCommonFields(generator, true);
+
+		if (CollectionUtils.isNotEmpty(getDefinitions())) {
+			generator.writeArrayFieldStart("definitions");
+			for(Definition definition : definitions) {
+				if (isBlank(definition.getDefinition()))
+					continue;
+				generator.writeStartObject();
+				generator.writeStringField("definition", definition.getDefinition());
+				generator.writeStringField("source", definition.getSource());
+				generator.writeStringField("lang", definition.getLang());
+				generator.writeEndObject();
+			}
+			generator.writeEndArray();
+		}
+
+		if (CollectionUtils.isNotEmpty(domains)) {
+			generator.writeArrayFieldStart("domains");
+			for(String domain : domains)
+				generator.writeString(domain);
+			generator.writeEndArray();
+		}
+
+		if (CollectionUtils.isNotEmpty(categories)) {
+			generator.writeArrayFieldStart("categories");
+			for(com.scienceminer.nerd.kb.Category category : categories) {
+				generator.writeStartObject();
+				generator.writeStringField("source", "wikipedia-" + lang);
+				generator.writeStringField("category", category.getName());
+				generator.writeNumberField("page_id", category.getWikiPageID());
+				generator.writeEndObject();
+			}
+			generator.writeEndArray();
+		}
+
+		if (MapUtils.isNotEmpty(wikipediaMultilingualRef)) {
+			generator.writeArrayFieldStart("multilingual");
+			for(Map.Entry<String,String> entry : wikipediaMultilingualRef.entrySet()) {
+				String l = entry.getKey();
+				generator.writeStartObject();
+				generator.writeStringField("lang", l);
+				generator.writeStringField("term", entry.getValue());
+				if (wikipediaMultilingualArticle.get(l) != null)
+					generator.writeNumberField("page_id", wikipediaMultilingualArticle.get(l));
+				generator.writeEndObject();
+			}
+			generator.writeEndArray();
+		}
+
+		if (CollectionUtils.isNotEmpty(getStatements())) {
+			generator.writeArrayFieldStart("statements");
+			for(Statement statement : statements)
+				generator.writeRawValue(statement.toJson());
+			generator.writeEndArray();
+		}
+
+		generator.writeEndObject();
+	}
+
+	/**
+	 * Streaming version of toJsonCompact(), writing the same JSON object directly with
+	 * the given generator.
+	 */
+	public void writeJsonCompact(JsonGenerator generator) throws IOException {
+		generator.writeStartObject();
+		writeJsonCommonFields(generator, false);
+
+		if (domains != null) {
+			generator.writeArrayFieldStart("domains");
+			for(String domain : domains)
+				generator.writeString(domain);
+			generator.writeEndArray();
+		}
+
+		generator.writeEndObject();
+	}
+
+	/**
+	 * Fields shared by the full and the compact JSON representations, from the raw name
+	 * to the Wikidata identifier.
+	 */
+	private void writeJsonCommonFields(JsonGenerator generator, boolean full) throws IOException {
+		generator.writeStringField("rawName", isNotBlank(normalisedRawName) ? normalisedRawName : "");
+		if (full && isNotBlank(preferredTerm))
+			generator.writeStringField("preferredTerm", preferredTerm);
+		if (type != null)
+			generator.writeStringField("type", type.getName());
+
+		if (CollectionUtils.isNotEmpty(subTypes)) {
+			generator.writeArrayFieldStart("subtype");
+			for(String subtype : subTypes)
+				generator.writeString(subtype);
+			generator.writeEndArray();
+		}
+
+		if (getOffsetStart() != -1)
+			generator.writeNumberField("offsetStart", getOffsetStart());
+		if (getOffsetEnd() != -1)
+			generator.writeNumberField("offsetEnd", getOffsetEnd());
+
+		if (CollectionUtils.isNotEmpty(boundingBoxes)) {
+			generator.writeArrayFieldStart("pos");
+			for(BoundingBox box : boundingBoxes)
+				generator.writeRawValue("{" + box.toJson() + "}");
+			generator.writeEndArray();
+		}
+
+		generator.writeFieldName("nerd_score");
+		generator.writeNumber(TextUtilities.formatFourDecimals(nerdScore));
+		generator.writeFieldName("nerd_selection_score");
+		generator.writeNumber(TextUtilities.formatFourDecimals(selectionScore));
+
+		sense = correctSense(sense);
+		if (sense != null) {
+			generator.writeObjectFieldStart("sense");
+			if (sense.getFineSense() != null)
+				generator.writeStringField("fineSense", sense.getFineSense());
+			if (sense.getCoarseSense() != null) {
+				if ( (sense.getFineSense() == null) || !sense.getCoarseSense().equals(sense.getFineSense()) )
+					generator.writeStringField("coarseSense", sense.getCoarseSense());
+			}
+			generator.writeEndObject();
+		}
+
+		if (wikipediaExternalRef != -1)
+			generator.writeNumberField("wikipediaExternalRef", wikipediaExternalRef);
+
+		if (wikidataId != null)
+			generator.writeStringField("wikidataId", wikidataId);
+	}
+
 	private Sense correctSense(Sense theSense) {
 		if (theSense == null)
 			return null;
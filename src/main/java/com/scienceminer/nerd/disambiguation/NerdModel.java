@@ -104,6 +104,23 @@ public class NerdModel {
 		System.out.println("Training data loaded from file " + file.getPath());
 	}
 	
+	/**
+	 * Score a batch of instances with the loaded model, one feature vector per row of 
+	 * the matrix. 
+	 */
+	protected double[] predict(double[][] features) {
+		if (forest instanceof CompiledTreeEnsemble) {
+			// the compiled trees are traversed once for the whole batch
+			return ((CompiledTreeEnsemble)forest).predict(features);
+		}
+		double[] scores = new double[features.length];
+		smile.math.Math.setSeed(7);
+		for (int i = 0; i < features.length; i++) {
+			scores[i] = forest.predict(features[i]);
+		}
+		return scores;
+	}
+
 	public void clearTrainingData() {
 		//dataset = null;
 		arffDataset = null;
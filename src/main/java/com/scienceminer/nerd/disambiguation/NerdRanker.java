@@ -113,48 +113,46 @@ public class NerdRanker extends NerdModel {
 								 float embeddingsSimilarity,
 								 String wikidataId,
 								 String wikidataP31Id) throws Exception {
+		double[] features = getFeatureVector(commonness, relatedness, quality, bestCaseContext, 
+			embeddingsSimilarity, wikidataId, wikidataP31Id);
+		double score = getProbabilities(new double[][]{features})[0];
+
+		/*logger.debug("[Ranker] score: "+ score +
+							", commonness: " + commonness +
+							", relatedness: " + relatedness + 
+							", context_quality: " + quality + 
+							", context_quality: " + bestCaseContext + 
+							", embeddingsSimilarity: " + embeddingsSimilarity);*/
+
+		return score;
+	}
+
+	/**
+	 * Build the feature vector of one candidate, to be scored in a batch with 
+	 * getProbabilities(). 
+	 */
+	public double[] getFeatureVector(double commonness, 
+								 double relatedness, 
+								 double quality, 
+								 boolean bestCaseContext,
+								 float embeddingsSimilarity,
+								 String wikidataId,
+								 String wikidataP31Id) throws Exception {
 		// special cases with only one feature
 		if (featureType == FeatureType.BASELINE) {
 			// special case of baseline, we just need the prior conditional prob
-			return commonness;
+			return new double[]{commonness};
 		}
 		if (featureType == FeatureType.EMBEDDINGS) {
 			// special case of embeddings only, we just need the embeddings similarity score
-			return embeddingsSimilarity;
+			return new double[]{embeddingsSimilarity};
 		}
 		if (featureType == FeatureType.MILNE_WITTEN_RELATEDNESS) {
 			// special case of embeddings only, we just need the embeddings similarity score
-			return relatedness;
+			return new double[]{relatedness};
 		}
 
-		if (forest == null) {
-			// load model
-			File modelFile = new File(MODEL_PATH_LONG+"-"+wikipedia.getConfig().getLangCode()+".model"); 
-			if (!modelFile.exists()) {
-                logger.debug("Invalid model file for nerd ranker.");
-			}
-			InputStream xml = new FileInputStream(modelFile);
-
-			if (model == MLModel.RANDOM_FOREST)
-				forest = (RandomForest)xstream.fromXML(xml);
-			else
-				forest = (GradientTreeBoost)xstream.fromXML(xml);
-			if (attributeDataset != null) 
-				attributes = attributeDataset.attributes();
-			else {
-				StringBuilder arffBuilder = new StringBuilder();
-				GenericRankerFeatureVector feature = getNewFeature();
-
-				arffBuilder.append(feature.getArffHeader()).append("\n");
-				arffBuilder.append(feature.printVector());
-				String arff = arffBuilder.toString();
-				attributeDataset = arffParser.parse(IOUtils.toInputStream(arff, StandardCharsets.UTF_8));
-				attributes = attributeDataset.attributes();
-				attributeDataset = null;
-			}
-			logger.info("Model for nerd ranker loaded: " + 
-				MODEL_PATH_LONG+"-"+wikipedia.getConfig().getLangCode()+".model");
-		}
+		loadModelIfNeeded();
 
 		GenericRankerFeatureVector feature = getNewFeature();
 
@@ -166,18 +164,67 @@ public class NerdRanker extends NerdModel {
 		feature.embeddings_centroid_similarity = embeddingsSimilarity;
 		feature.wikidata_id = wikidataId;
 		feature.wikidata_P31_entity_id = wikidataP31Id;
-		double[] features = feature.toVector(attributes);
-		smile.math.Math.setSeed(7);
-		double score = forest.predict(features);
+		return feature.toVector(attributes);
+	}
 
-		/*logger.debug("[Ranker] score: "+ score +
-							", commonness: " + commonness +
-							", relatedness: " + relatedness + 
-							", context_quality: " + quality + 
-							", context_quality: " + bestCaseContext + 
-							", embeddingsSimilarity: " + embeddingsSimilarity);*/
+	/**
+	 * Score a batch of candidates given as a dense matrix, one feature vector (as produced 
+	 * by getFeatureVector()) per row, typically all the candidates of a document. 
+	 */
+	public double[] getProbabilities(double[][] features) throws Exception {
+		if ( (featureType == FeatureType.BASELINE) || 
+			 (featureType == FeatureType.EMBEDDINGS) || 
+			 (featureType == FeatureType.MILNE_WITTEN_RELATEDNESS) ) {
+			// the single feature is the score
+			double[] scores = new double[features.length];
+			for (int i = 0; i < features.length; i++)
+				scores[i] = features[i][0];
+			return scores;
+		}
 
-		return score;
+		loadModelIfNeeded();
+		return predict(features);
+	}
+
+	private synchronized void loadModelIfNeeded() throws Exception {
+		if (forest != null) 
+			return;
+
+		// load model
+		File modelFile = new File(MODEL_PATH_LONG+"-"+wikipedia.getConfig().getLangCode()+".model"); 
+		if (!modelFile.exists()) {
+            logger.debug("Invalid model file for nerd ranker.");
+		}
+		// the compiled version of the model is used when available and up to date
+		Regression<double[]> loadedForest = CompiledTreeEnsemble.loadIfUpToDate(modelFile);
+		if (loadedForest == null) {
+			InputStream xml = new FileInputStream(modelFile);
+			if (model == MLModel.RANDOM_FOREST)
+				loadedForest = (RandomForest)xstream.fromXML(xml);
+			else
+				loadedForest = (GradientTreeBoost)xstream.fromXML(xml);
+			xml.close();
+			CompiledTreeEnsemble compiled = CompiledTreeEnsemble.compileAndSave(loadedForest, modelFile);
+			if (compiled != null)
+				loadedForest = compiled;
+		}
+		if (attributeDataset != null) 
+			attributes = attributeDataset.attributes();
+		else {
+			StringBuilder arffBuilder = new StringBuilder();
+			GenericRankerFeatureVector feature = getNewFeature();
+
+			arffBuilder.append(feature.getArffHeader()).append("\n");
+			arffBuilder.append(feature.printVector());
+			String arff = arffBuilder.toString();
+			attributeDataset = arffParser.parse(IOUtils.toInputStream(arff, StandardCharsets.UTF_8));
+			attributes = attributeDataset.attributes();
+			attributeDataset = null;
+		}
+		// the model is published once the attributes are ready
+		forest = loadedForest;
+		logger.info("Model for nerd ranker loaded: " + 
+			MODEL_PATH_LONG+"-"+wikipedia.getConfig().getLangCode()+".model");
 	}
 
 	public void saveModel() throws Exception {
@@ -190,6 +237,8 @@ public class NerdRanker extends NerdModel {
 		}
 		FileUtils.writeStringToFile(modelFile, xml, StandardCharsets.UTF_8);
 		System.out.println("Model saved under " + modelFile.getPath());
+		// compiled version of the model used at runtime, saved next to the XML model
+		CompiledTreeEnsemble.compileAndSave(forest, modelFile);
 	}
 
 	public void loadModel() throws IOException, Exception {
@@ -8,6 +8,7 @@ import java.util.regex.*;
 import com.scienceminer.nerd.kb.*;
 import com.scienceminer.nerd.disambiguation.NerdCandidate;
 import com.scienceminer.nerd.utilities.NerdConfig;
+import com.scienceminer.nerd.utilities.TermOccurrenceIndex;
 import com.scienceminer.nerd.embeddings.SimilarityScorer;
 
 import org.grobid.core.utilities.OffsetPosition;
@@ -35,7 +36,6 @@ import com.scienceminer.nerd.features.*;
 import com.scienceminer.nerd.training.*;
 import com.scienceminer.nerd.mention.*;
 import com.scienceminer.nerd.utilities.mediaWiki.MediaWikiParser;
-import com.scienceminer.nerd.utilities.Utilities;
 import com.scienceminer.nerd.evaluation.*;
 
 import smile.validation.ConfusionMatrix;
@@ -101,47 +101,9 @@ public class NerdSelector extends NerdModel {
 								boolean isNe,
 								double tf_idf, 
 								double dice) throws Exception {
-		if (forest == null) {
-			// load model
-			File modelFile = new File(MODEL_PATH_LONG+"-"+wikipedia.getConfig().getLangCode()+".model"); 
-			if (!modelFile.exists()) {
-                logger.debug("Invalid model file for nerd selector.");
-			}
-			InputStream xml = new FileInputStream(modelFile);
-			if (model == MLModel.RANDOM_FOREST)
-				forest = (RandomForest)xstream.fromXML(xml);
-			else
-				forest = (GradientTreeBoost)xstream.fromXML(xml);
-			if (attributeDataset != null) 
-				attributes = attributeDataset.attributes();
-			else {
-				StringBuilder arffBuilder = new StringBuilder();
-				GenericSelectionFeatureVector feat = getNewFeature();
-				arffBuilder.append(feat.getArffHeader()).append("\n");
-				arffBuilder.append(feat.printVector());
-				String arff = arffBuilder.toString();
-				attributeDataset = arffParser.parse(IOUtils.toInputStream(arff, "UTF-8"));
-				attributes = attributeDataset.attributes();
-				attributeDataset = null;
-			}
-			logger.info("Model for nerd selector loaded: " + 
-				MODEL_PATH_LONG+"-"+wikipedia.getConfig().getLangCode()+".model");
-		}
-
-		GenericSelectionFeatureVector feature = getNewFeature();
-		feature.nerd_score = nerd_score;
-		feature.prob_anchor_string = prob_anchor_string;
-		feature.prob_c = prob_c;
-		feature.nb_tokens = nb_tokens;
-		feature.relatedness = relatedness;
-		feature.inContext = inContext;
-		feature.isNe = isNe;
-		feature.tf_idf = tf_idf;
-		feature.dice = dice;
-		double[] features = feature.toVector(attributes);
-		
-		smile.math.Math.setSeed(7);
-		final double score = forest.predict(features);
+		double[] features = getFeatureVector(nerd_score, prob_anchor_string, prob_c, nb_tokens, 
+			relatedness, inContext, isNe, tf_idf, dice);
+		final double score = getProbabilities(new double[][]{features})[0];
 
 		/*logger.debug("selector: " +
 				"score: " + score + ", " +
@@ -159,6 +121,83 @@ public class NerdSelector extends NerdModel {
 		return score;
 	}
 
+	/**
+	 * Build the feature vector of one candidate, to be scored in a batch with 
+	 * getProbabilities(). 
+	 */
+	public double[] getFeatureVector(double nerd_score, 
+								double prob_anchor_string, 
+								double prob_c,
+								int nb_tokens, 
+								double relatedness,
+								boolean inContext,
+								boolean isNe,
+								double tf_idf, 
+								double dice) throws Exception {
+		loadModelIfNeeded();
+
+		GenericSelectionFeatureVector feature = getNewFeature();
+		feature.nerd_score = nerd_score;
+		feature.prob_anchor_string = prob_anchor_string;
+		feature.prob_c = prob_c;
+		feature.nb_tokens = nb_tokens;
+		feature.relatedness = relatedness;
+		feature.inContext = inContext;
+		feature.isNe = isNe;
+		feature.tf_idf = tf_idf;
+		feature.dice = dice;
+		return feature.toVector(attributes);
+	}
+
+	/**
+	 * Score a batch of candidates given as a dense matrix, one feature vector (as produced 
+	 * by getFeatureVector()) per row, typically all the candidates of a document. 
+	 */
+	public double[] getProbabilities(double[][] features) throws Exception {
+		loadModelIfNeeded();
+		return predict(features);
+	}
+
+	private synchronized void loadModelIfNeeded() throws Exception {
+		if (forest != null) 
+			return;
+
+		// load model
+		File modelFile = new File(MODEL_PATH_LONG+"-"+wikipedia.getConfig().getLangCode()+".model"); 
+		if (!modelFile.exists()) {
+            logger.debug("Invalid model file for nerd selector.");
+		}
+		// the compiled version of the model is used when available and up to date
+		Regression<double[]> loadedForest = CompiledTreeEnsemble.loadIfUpToDate(modelFile);
+		if (loadedForest == null) {
+			InputStream xml = new FileInputStream(modelFile);
+			if (model == MLModel.RANDOM_FOREST)
+				loadedForest = (RandomForest)xstream.fromXML(xml);
+			else
+				loadedForest = (GradientTreeBoost)xstream.fromXML(xml);
+			xml.close();
+			CompiledTreeEnsemble compiled = CompiledTreeEnsemble.compileAndSave(loadedForest, modelFile);
+			if (compiled != null)
+				loadedForest = compiled;
+		}
+		if (attributeDataset != null) 
+			attributes = attributeDataset.attributes();
+		else {
+			StringBuilder arffBuilder = new StringBuilder();
+			GenericSelectionFeatureVector feat = getNewFeature();
+			arffBuilder.append(feat.getArffHeader()).append("\n");
+			arffBuilder.append(feat.printVector());
+			String arff = arffBuilder.toString();
+			attributeDataset = arffParser.parse(IOUtils.toInputStream(arff, "UTF-8"));
+			attributes = attributeDataset.attributes();
+			attributeDataset = null;
+		}
+		// the model is published once the attributes are ready
+		forest = loadedForest;
+		logger.info("Model for nerd selector loaded: " + 
+			MODEL_PATH_LONG+"-"+wikipedia.getConfig().getLangCode()+".model");
+	}
+
 	public void saveModel() throws Exception {
 		logger.info("saving model");
 		// save the model with XStream
@@ -169,6 +208,8 @@ public class NerdSelector extends NerdModel {
 		}
 		FileUtils.writeStringToFile(modelFile, xml, "UTF-8");
 		System.out.println("Model saved under " + modelFile.getPath());
+		// compiled version of the model used at runtime, saved next to the XML model
+		CompiledTreeEnsemble.compileAndSave(forest, modelFile);
 	}
 
 	public void loadModel() throws Exception {
@@ -299,6 +340,7 @@ public class NerdSelector extends NerdModel {
 
 //System.out.println("Cleaned content: " + contentString);
 		List<LayoutToken> tokens = GrobidAnalyzer.getInstance().tokenizeWithLayoutToken(contentString, new Language(lang, 1.0));
+		TermOccurrenceIndex occurrences = new TermOccurrenceIndex(contentString);
 
 		// get candidates for this content
 		NerdEngine nerdEngine = NerdEngine.getInstance();
@@ -441,7 +483,7 @@ public class NerdSelector extends NerdModel {
 					feature.isNe = isNe;
 					feature.dice = dice;
 
-					double tf = Utilities.getOccCount(candidate.getLabel().getText(), contentString);
+					double tf = occurrences.getOccCount(candidate.getLabel().getText());
 					double idf = ((double)wikipedia.getArticleCount()) / candidate.getLabel().getDocCount();
 					feature.tf_idf = tf * idf;
 
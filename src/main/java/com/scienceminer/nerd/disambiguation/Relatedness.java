@@ -7,7 +7,10 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.scienceminer.nerd.utilities.NerdConfig;
+import com.scienceminer.nerd.utilities.LinkRelatedness;
+import com.scienceminer.nerd.utilities.SortedIntArrays;
 import com.scienceminer.nerd.kb.*;
+import com.scienceminer.nerd.kb.db.RelatednessNeighbourDatabase;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.grobid.core.utilities.TextUtilities;
@@ -34,10 +37,7 @@ public class Relatedness {
 		
 	// all the maps use the language code as a key
 	private Map<String, LowerKnowledgeBase> wikipedias = null;
-	private Map<String, ConcurrentMap<Long,Double>> caches = null;
-
-	private long comparisonsRequested = 0;
-	private long comparisonsCalculated = 0;
+	private ConcurrentMap<String, RelatednessCache> caches = null;
 
 	public static Relatedness getInstance() {
 	    if (instance == null) {
@@ -59,7 +59,7 @@ public class Relatedness {
 	 */
 	private Relatedness() {
 		wikipedias = UpperKnowledgeBase.getInstance().getWikipediaConfs();
-		caches = new HashMap<>();
+		caches = new ConcurrentHashMap<>();
 	}
 
 	/**
@@ -88,11 +88,19 @@ public class Relatedness {
 			return 0.1;
 		} 
 
-		for (Article contextArticle : contextArticles) {
+		// precomputed scores of the document candidates, if available
+		RelatednessMatrix matrix = context.getRelatednessMatrix();
+		int row = (matrix == null) ? -1 : matrix.getRow(article.getId());
+
+		for (int i = 0; i < contextArticles.size(); i++) {
+			Article contextArticle = contextArticles.get(i);
 			//if (article.getId() != contextArticle.getId()){
 			currentRelatedness = 0.0;
 			try {
-				currentRelatedness = getRelatedness(article, contextArticle, lang);
+				if (row != -1)
+					currentRelatedness = matrix.get(row, i);
+				else
+					currentRelatedness = getRelatedness(article, contextArticle, lang);
 			}
 			catch (Exception e) {
 				LOGGER.error("Error computing semantic relatedness for "
@@ -112,31 +120,63 @@ public class Relatedness {
 	 * Calculate the relatedness between two articles
 	 */
 	public double getRelatedness(Article art1, Article art2, String lang) {
-		comparisonsRequested++;
-		
 		//generate unique key for the pair of articles
 		int min = Math.min(art1.getId(), art2.getId());
 		int max = Math.max(art1.getId(), art2.getId());
-		//long key = min + (max << 30);
-//System.out.println(min + " / " + max);
 		long key = (((long)min) << 32) | (max & 0xffffffffL);
-//System.out.println(key);
-		double relatedness = 0.0;
-		ConcurrentMap<Long,Double> cache = caches.get(lang);
-		if (cache == null) {
-			cache = new ConcurrentHashMap<>();
-			caches.put(lang, cache);
-		}
-		if (!cache.containsKey(key)) {
-			relatedness = getRelatednessWithoutCache(art1, art2, lang);		
-			cache.put(key, relatedness);
-			
-			comparisonsCalculated++;
-		} else {
-			relatedness = cache.get(key);
-		}
-//System.out.println("obtained relatedness: " + relatedness);
-		return relatedness;
+
+		return getCache(lang).get(key, k -> {
+			// precomputed scores for the most linked articles, if available
+			double score = getPrecomputedRelatedness(art1.getId(), art2.getId(), lang);
+			if (!Double.isNaN(score))
+				return score;
+			return getRelatednessWithoutCache(art1, art2, lang);
+		});
+	}
+
+	/**
+	 * Calculate the relatedness between two articles given their links, as getRelatedness(Article,
+	 * Article, String) but without fetching the links. The links out are ignored (and can be empty)
+	 * if they are not used by the configuration.
+	 */
+	public double getRelatedness(int id1, int[] linksIn1, int[] linksOut1,
+								int id2, int[] linksIn2, int[] linksOut2, String lang) {
+		int min = Math.min(id1, id2);
+		int max = Math.max(id1, id2);
+		long key = (((long)min) << 32) | (max & 0xffffffffL);
+
+		return getCache(lang).get(key, k -> {
+			if (id1 == id2)
+				return 1.0;
+			double score = getPrecomputedRelatedness(id1, id2, lang);
+			if (!Double.isNaN(score))
+				return score;
+			LowerKnowledgeBase wikipedia = wikipedias.get(lang);
+			return LinkRelatedness.relatedness(id1, linksIn1, linksOut1, id2, linksIn2, linksOut2,
+				wikipedia.getArticleCount(), wikipedia.getConfig().getUseLinkOut());
+		});
+	}
+
+	/**
+	 * Returns the relatedness between two articles from the precomputed relatedness
+	 * neighbours, or NaN if the pair is not in the neighbour index or if the neighbours
+	 * are not enabled, in which case no lookup is done.
+	 */
+	private double getPrecomputedRelatedness(int id1, int id2, String lang) {
+		if (id1 == id2)
+			return Double.NaN;
+		RelatednessNeighbourDatabase neighbours = wikipedias.get(lang).getEnvironment().getDbRelatednessNeighbours();
+		if (neighbours == null || !neighbours.isLoaded())
+			return Double.NaN;
+		float score = neighbours.retrieveScore(id1, id2);
+		if (Float.isNaN(score))
+			score = neighbours.retrieveScore(id2, id1);
+		return score;
+	}
+
+	private RelatednessCache getCache(String lang) {
+		return caches.computeIfAbsent(lang, 
+			l -> new RelatednessCache(wikipedias.get(l).getConfig().getRelatednessCacheSize()));
 	}
 
 	public double getRelatednessWithoutCache(Article artA, Article artB, String lang) {
@@ -195,88 +235,21 @@ public class Relatedness {
 			return epr;
 		}
 
-		List<Integer> linksA = wikipedia.getLinks(epr.getArticleA().getId(), dir);
-		List<Integer> linksB = wikipedia.getLinks(epr.getArticleB().getId(), dir);
+		int[] linksA = wikipedia.getLinks(epr.getArticleA().getId(), dir);
+		int[] linksB = wikipedia.getLinks(epr.getArticleB().getId(), dir);
 
 		//we can't do anything if there are no links
-		if (linksA.isEmpty() || linksB.isEmpty()) 
+		if (linksA.length == 0 || linksB.length == 0) 
 			return epr;
-		
-		NerdConfig conf = wikipedia.getConfig();
-//System.out.println("#linksA: " + linksA.size() + " / " + "#linksB: " + linksB.size());
 
-		int intersection = 0;
-		//int sentenceIntersection = 0;
-		int union = 0;
+		// common links, plus the direct links between the two articles (mutual links) 
+		int common = SortedIntArrays.intersectionSize(linksA, linksB);
+		int intersection = common + LinkRelatedness.mutualLinks(epr.getArticleA().getId(), linksA, 
+			epr.getArticleB().getId(), linksB);
+		int union = linksA.length + linksB.length - common;
 
-		int indexA = 0;
-		int indexB = 0;
-
-		List<Double> vectA = new ArrayList<>();
-		List<Double> vectB = new ArrayList<>();
-		
-		while (indexA < linksA.size() || indexB < linksB.size()) {
-			//identify which links to use (A, B, or both)
-			boolean useA = false;
-			boolean useB = false;
-			boolean mutual = false;
-
-			Integer linkA = null;
-			Integer linkB = null;
-
-			if (indexA < linksA.size())
-				linkA = linksA.get(indexA);
-
-			if (indexB < linksB.size())
-				linkB = linksB.get(indexB);
-
-			if ( (linkA != null) && (linkB != null) && (linkA.equals(linkB)) ) {
-				useA = true;
-				useB = true;
-				intersection ++;
-			} else {
-				if (linkA != null && (linkB == null || linkA < linkB)) {
-					useA = true;
-					if (linkA.equals(epr.getArticleB().getId())) {
-						intersection++;
-						mutual = true;
-					}
-
-				} else {
-					useB = true;
-					if (linkB.equals(epr.getArticleA().getId())) {
-						intersection++;
-						mutual = true;
-					}
-				}
-			}
-			union++;
-
-			if (useA)
-				indexA++;
-			if (useB)
-				indexB++;
-		}
-
-		// this is the famous Milne & Witten relatedness measure
-		double milneWittenMeasure = 1.0;
-		if (intersection == 0) {
-			milneWittenMeasure = 1.0;
-		} else {
-			double a = Math.log(linksA.size());
-			double b = Math.log(linksB.size());
-			double ab = Math.log(intersection);
-
-			double m = Math.log(wikipedia.getArticleCount());
-
-			milneWittenMeasure = (Math.max(a, b) - ab) / (m - Math.min(a, b));
-		}
-		
-		// normalization
-		if (milneWittenMeasure >= 1)
-				milneWittenMeasure = 0.0;
-		else 	
-			milneWittenMeasure = 1 - milneWittenMeasure;
+		double milneWittenMeasure = LinkRelatedness.milneWittenMeasure(linksA.length, linksB.length, 
+			intersection, wikipedia.getArticleCount());
 
 		double intersectionProportion;
 		if (union == 0)
@@ -436,6 +409,10 @@ public class Relatedness {
 		}
 
 		NerdContext resultContext = new NerdContext(unambig, certainPages, lang);
+
+		// the candidates of the document are compared with the context when ranking
+		for (List<NerdCandidate> cands : candidates.values())
+			resultContext.addCandidates(cands);
 		
 		return resultContext;
 	}
@@ -593,25 +570,43 @@ public class Relatedness {
 	}
 	
 	public long getComparisonsCalculated() {
-		return comparisonsCalculated;
+		long calculated = 0;
+		for (RelatednessCache cache : caches.values())
+			calculated += cache.getMisses();
+		return calculated;
 	}
 	
 	public long getComparisonsRequested() {
-		return comparisonsRequested;
+		long requested = 0;
+		for (RelatednessCache cache : caches.values())
+			requested += cache.getHits() + cache.getMisses();
+		return requested;
 	}
 	
+	/**
+	 * @return the proportion of relatedness comparisons served by the caches, all languages included
+	 */
 	public double getCachedProportion() {
-		double p = (double)comparisonsCalculated/comparisonsRequested;
+		long requested = getComparisonsRequested();
+		if (requested == 0)
+			return 0.0;
+		double p = (double)getComparisonsCalculated()/requested;
 		return 1-p;
 	}
 
+	/**
+	 * @return the relatedness caches by language code, for monitoring purposes
+	 */
+	public Map<String, RelatednessCache> getCaches() {
+		return Collections.unmodifiableMap(caches);
+	}
+
 	public void resetCache(String lang) {
-		ConcurrentMap<Long,Double> cache = caches.get(lang);
+		RelatednessCache cache = caches.get(lang);
 		if (cache != null) {
 			cache.clear();
+			cache.resetStatistics();
 		}
-		comparisonsCalculated = 0;
-		comparisonsRequested = 0;
 	}
 
 	public void close() {
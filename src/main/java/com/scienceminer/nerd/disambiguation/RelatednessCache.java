@@ -0,0 +1,252 @@
+package com.scienceminer.nerd.disambiguation;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * A bounded cache of relatedness scores for pairs of articles of one language, keyed
+ * by the pair of article ids encoded as a long.
+ *
+ * Scores are stored as float in primitive open-addressing tables (linear probing),
+ * split into independently locked segments. When a segment is full, an entry is
+ * evicted following a CLOCK policy with a small saturating use counter per entry,
+ * which approximates a segmented LRU: entries hit several times survive more sweeps
+ * of the clock hand than entries used once.
+ *
+ * A score missing in the cache is computed only once, concurrent requests for the
+ * same pair waiting for the result of the first computation.
+ */
+public class RelatednessCache {
+
+	private static final int NB_SEGMENTS = 64;
+	private static final int MAX_USE = 3;
+	// maximum occupancy of a segment table before eviction
+	private static final float LOAD_FACTOR = 0.75f;
+
+	private final Segment[] segments;
+	private final long capacity;
+
+	private final ConcurrentMap<Long, FutureTask<Double>> inFlight = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param capacity the maximum number of scores kept in the cache
+	 */
+	public RelatednessCache(long capacity) {
+		int segmentCapacity = (int)Math.max(16, capacity / NB_SEGMENTS);
+		this.capacity = (long)segmentCapacity * NB_SEGMENTS;
+		segments = new Segment[NB_SEGMENTS];
+		for (int i = 0; i < NB_SEGMENTS; i++)
+			segments[i] = new Segment(segmentCapacity);
+	}
+
+	/**
+	 * Returns the cached score for the key, computing it with the loader if absent.
+	 */
+	public double get(long key, LongToDoubleFunction loader) {
+		Segment segment = segmentFor(key);
+		float value = segment.get(key);
+		if (!Float.isNaN(value)) {
+			hits.increment();
+			return value;
+		}
+
+		FutureTask<Double> task = new FutureTask<>(() -> loader.applyAsDouble(key));
+		FutureTask<Double> existing = inFlight.putIfAbsent(key, task);
+		if (existing != null) {
+			// another thread is computing this score
+			hits.increment();
+			return waitFor(existing);
+		}
+
+		misses.increment();
+		try {
+			task.run();
+			float result = (float)waitFor(task);
+			segment.put(key, result);
+			return result;
+		} finally {
+			inFlight.remove(key);
+		}
+	}
+
+	private static double waitFor(FutureTask<Double> task) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while computing relatedness", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+			throw new IllegalStateException("Relatedness computation failed", e.getCause());
+		}
+	}
+
+	private Segment segmentFor(long key) {
+		return segments[(int)(mix(key) >>> 58)];
+	}
+
+	// 64 bits finalizer of MurmurHash3
+	private static long mix(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return key;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	public long getCapacity() {
+		return capacity;
+	}
+
+	public long size() {
+		long size = 0;
+		for (Segment segment : segments)
+			size += segment.size();
+		return size;
+	}
+
+	public double getHitRatio() {
+		long requests = getHits() + getMisses();
+		if (requests == 0)
+			return 0.0;
+		return (double)getHits() / requests;
+	}
+
+	public void clear() {
+		for (Segment segment : segments)
+			segment.clear();
+	}
+
+	public void resetStatistics() {
+		hits.reset();
+		misses.reset();
+		evictions.reset();
+	}
+
+	/**
+	 * A fixed size open-addressing table with CLOCK eviction.
+	 */
+	private class Segment {
+		private final long[] keys;
+		private final float[] values;
+		private final byte[] uses;
+		private final boolean[] used;
+		private final int mask;
+		private final int maxSize;
+		private int size = 0;
+		private int hand = 0;
+
+		Segment(int capacity) {
+			int tableSize = Integer.highestOneBit((int)(capacity / LOAD_FACTOR)) << 1;
+			keys = new long[tableSize];
+			values = new float[tableSize];
+			uses = new byte[tableSize];
+			used = new boolean[tableSize];
+			mask = tableSize - 1;
+			maxSize = capacity;
+		}
+
+		synchronized float get(long key) {
+			int slot = find(key);
+			if (slot < 0)
+				return Float.NaN;
+			if (uses[slot] < MAX_USE)
+				uses[slot]++;
+			return values[slot];
+		}
+
+		synchronized void put(long key, float value) {
+			int slot = find(key);
+			if (slot >= 0) {
+				values[slot] = value;
+				return;
+			}
+			if (size >= maxSize)
+				evict();
+			slot = (int)mix(key) & mask;
+			while (used[slot])
+				slot = (slot + 1) & mask;
+			used[slot] = true;
+			keys[slot] = key;
+			values[slot] = value;
+			uses[slot] = 0;
+			size++;
+		}
+
+		synchronized int size() {
+			return size;
+		}
+
+		synchronized void clear() {
+			Arrays.fill(used, false);
+			size = 0;
+			hand = 0;
+		}
+
+		private int find(long key) {
+			int slot = (int)mix(key) & mask;
+			while (used[slot]) {
+				if (keys[slot] == key)
+					return slot;
+				slot = (slot + 1) & mask;
+			}
+			return -1;
+		}
+
+		private void evict() {
+			while (true) {
+				if (used[hand]) {
+					if (uses[hand] == 0) {
+						remove(hand);
+						evictions.increment();
+						return;
+					}
+					uses[hand]--;
+				}
+				hand = (hand + 1) & mask;
+			}
+		}
+
+		// backward shift deletion, keeping the probe sequences valid without tombstones
+		private void remove(int slot) {
+			int gap = slot;
+			int current = (gap + 1) & mask;
+			while (used[current]) {
+				int ideal = (int)mix(keys[current]) & mask;
+				// move the entry to the gap if its ideal slot is not between the gap and its position
+				if (((current - ideal) & mask) >= ((current - gap) & mask)) {
+					keys[gap] = keys[current];
+					values[gap] = values[current];
+					uses[gap] = uses[current];
+					gap = current;
+				}
+				current = (current + 1) & mask;
+			}
+			used[gap] = false;
+			size--;
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package com.scienceminer.nerd.disambiguation;
+
+import com.scienceminer.nerd.kb.LowerKnowledgeBase;
+import com.scienceminer.nerd.kb.LowerKnowledgeBase.Direction;
+import com.scienceminer.nerd.kb.model.Article;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Relatedness scores between the articles involved in the disambiguation of a document
+ * (the candidate articles and the context articles) and the articles of a context.
+ *
+ * The link lists of every involved article are fetched once and kept as primitive arrays,
+ * then the articles x context score matrix is filled in one parallel pass. The context
+ * articles are also rows of the matrix, so the context x context block, used for the
+ * context quality, is symmetric and each of its pairs is computed only once. The scores
+ * go through the relatedness cache and are identical to Relatedness.getRelatedness().
+ */
+public class RelatednessMatrix {
+
+	private final int[] columnIds;
+
+	// article id -> row index
+	private final Int2IntOpenHashMap rows;
+
+	// row-major, rows x columns
+	private final float[] scores;
+
+	private RelatednessMatrix(int[] columnIds, Int2IntOpenHashMap rows, float[] scores) {
+		this.columnIds = columnIds;
+		this.rows = rows;
+		this.scores = scores;
+	}
+
+	/**
+	 * Build the matrix for the given context articles (the columns) and the other articles
+	 * to be compared with the context, typically the candidates of the document. The context
+	 * articles are always the first rows.
+	 */
+	public static RelatednessMatrix build(List<Article> contextArticles, List<Article> otherArticles,
+										  String lang, Relatedness relatedness, LowerKnowledgeBase wikipedia) {
+		return build(contextArticles, otherArticles, lang, relatedness, wikipedia, null, null);
+	}
+
+	/**
+	 * Build the matrix, the link lists of the articles present in the given maps (typically
+	 * the articles of a compiled customisation) being taken from these maps instead of the KB.
+	 */
+	public static RelatednessMatrix build(List<Article> contextArticles, List<Article> otherArticles,
+										  String lang, Relatedness relatedness, LowerKnowledgeBase wikipedia,
+										  Int2ObjectMap<int[]> preloadedLinksIn, Int2ObjectMap<int[]> preloadedLinksOut) {
+		int nbColumns = contextArticles.size();
+		int[] columnIds = new int[nbColumns];
+
+		Int2IntOpenHashMap rows = new Int2IntOpenHashMap();
+		rows.defaultReturnValue(-1);
+		int[] rowIds = new int[nbColumns + ((otherArticles == null) ? 0 : otherArticles.size())];
+		int nbRows = 0;
+		for (int j = 0; j < nbColumns; j++) {
+			int id = contextArticles.get(j).getId();
+			columnIds[j] = id;
+			if (rows.get(id) == -1) {
+				rows.put(id, nbRows);
+				rowIds[nbRows++] = id;
+			}
+		}
+		if (otherArticles != null) {
+			for (Article article : otherArticles) {
+				int id = article.getId();
+				if (rows.get(id) == -1) {
+					rows.put(id, nbRows);
+					rowIds[nbRows++] = id;
+				}
+			}
+		}
+
+		// link lists of all the involved articles, fetched once
+		final int[] ids = rowIds;
+		final boolean useLinkOut = wikipedia.getConfig().getUseLinkOut();
+		final int[][] linksIn = new int[nbRows][];
+		final int[][] linksOut = new int[nbRows][];
+		IntStream.range(0, nbRows).parallel().forEach(i -> {
+			linksIn[i] = (preloadedLinksIn != null) ? preloadedLinksIn.get(ids[i]) : null;
+			if (linksIn[i] == null)
+				linksIn[i] = wikipedia.getLinks(ids[i], Direction.In);
+			if (useLinkOut) {
+				linksOut[i] = (preloadedLinksOut != null) ? preloadedLinksOut.get(ids[i]) : null;
+				if (linksOut[i] == null)
+					linksOut[i] = wikipedia.getLinks(ids[i], Direction.Out);
+			} else
+				linksOut[i] = new int[0];
+		});
+
+		// the columns are identified by their row index for the link lists
+		final int[] columnRows = new int[nbColumns];
+		for (int j = 0; j < nbColumns; j++)
+			columnRows[j] = rows.get(columnIds[j]);
+
+		final float[] scores = computeScores(nbRows, columnRows, (i, c) ->
+			(float)relatedness.getRelatedness(ids[i], linksIn[i], linksOut[i], ids[c], linksIn[c], linksOut[c], lang));
+
+		return new RelatednessMatrix(columnIds, rows, scores);
+	}
+
+	/**
+	 * Score of the articles of two rows of the matrix
+	 */
+	interface RowScorer {
+		float score(int row1, int row2);
+	}
+
+	/**
+	 * Fill the rows x columns scores, each column being given by its row index. The same
+	 * article can be several times in the context, so the context rows (the first ones,
+	 * one per distinct context article) are fewer than the columns when there are
+	 * duplicates: the symmetric block is the context rows x context rows one, and a lower
+	 * half score is mirrored through a column of the upper half row.
+	 */
+	static float[] computeScores(int nbRows, int[] columnRows, RowScorer scorer) {
+		final int nbColumns = columnRows.length;
+
+		// number of context rows, and a column of each context row
+		int nbContextRows = 0;
+		for (int c : columnRows)
+			nbContextRows = Math.max(nbContextRows, c + 1);
+		final int[] rowColumns = new int[nbContextRows];
+		for (int j = nbColumns - 1; j >= 0; j--)
+			rowColumns[columnRows[j]] = j;
+		final int nbSymmetricRows = nbContextRows;
+
+		final float[] scores = new float[nbRows * nbColumns];
+		IntStream.range(0, nbRows).parallel().forEach(i -> {
+			for (int j = 0; j < nbColumns; j++) {
+				int c = columnRows[j];
+				// context x context block: the lower half is mirrored from the upper half
+				if (i < nbSymmetricRows && c < i)
+					continue;
+				scores[(i * nbColumns) + j] = scorer.score(i, c);
+			}
+		});
+		for (int i = 0; i < nbSymmetricRows; i++) {
+			for (int j = 0; j < nbColumns; j++) {
+				int c = columnRows[j];
+				if (c < i)
+					scores[(i * nbColumns) + j] = scores[(c * nbColumns) + rowColumns[i]];
+			}
+		}
+		return scores;
+	}
+
+	/**
+	 * @return the row index of an article, or -1 if the article is not in the matrix
+	 */
+	public int getRow(int articleId) {
+		return rows.get(articleId);
+	}
+
+	public double get(int row, int column) {
+		return scores[(row * columnIds.length) + column];
+	}
+
+	public int getNbColumns() {
+		return columnIds.length;
+	}
+
+	/**
+	 * @return true if the columns of the matrix correspond to the given context articles
+	 */
+	public boolean hasColumns(List<Article> contextArticles) {
+		if (contextArticles.size() != columnIds.length)
+			return false;
+		for (int j = 0; j < columnIds.length; j++) {
+			if (contextArticles.get(j).getId() != columnIds[j])
+				return false;
+		}
+		return true;
+	}
+}
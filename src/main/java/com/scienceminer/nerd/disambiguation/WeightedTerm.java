@@ -6,9 +6,11 @@ import org.grobid.core.data.Entity;
 import org.grobid.core.data.Sense;
 import com.scienceminer.nerd.kb.*;
 
+import java.io.IOException;
 import java.util.List;    
 import java.util.ArrayList;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.io.*;
 
 /**
@@ -69,5 +71,21 @@ public class WeightedTerm {
 		 
 		return buffer.toString();
 	}
+
+	/**
+	 * Streaming version of toJson(), writing the same JSON object directly with the given generator.
+	 */
+	public void writeJson(JsonGenerator generator) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("term", term);
+		generator.writeNumberField("score", score);
+		if ( (nerdEntities != null) && (nerdEntities.size() > 0) ) {
+			generator.writeArrayFieldStart("entities");
+			for(NerdEntity entity : nerdEntities)
+				entity.writeJsonFull(generator);
+			generator.writeEndArray();
+		}
+		generator.writeEndObject();
+	}
 	
 }
\ No newline at end of file
@@ -45,6 +45,17 @@ public class CentroidEntityScorer extends EntityScorer {
 //System.out.println("centroid scorer: " + word_counts.length + " words context / " + score);
             return score;
         }
+
+        @Override
+        public float score(MappedEmbeddingStore store, long index) {
+            if (word_counts.length == 0) {
+                return DEFAULT_SCORE;
+            }
+            if (index < 0)
+                return 0.0f;
+            // dot product directly on the mapped vector
+            return store.dot(index, centroid_vec) / norm;
+        }
     }
 
     @Override
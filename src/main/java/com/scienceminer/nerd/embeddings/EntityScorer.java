@@ -8,6 +8,7 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import com.google.common.collect.Multiset;
 import com.google.common.collect.TreeMultiset;
@@ -16,6 +17,9 @@ import com.google.common.collect.TreeMultiset;
 public abstract class EntityScorer {
 
     public static float DEFAULT_SCORE = -Float.MAX_VALUE;
+
+    // marker of a missing vector in the vector caches
+    public static final short[] NO_VECTOR = new short[0];
     protected LowerKnowledgeBase kb = null;
 
     public EntityScorer(LowerKnowledgeBase kb) {
@@ -26,6 +30,7 @@ public abstract class EntityScorer {
         protected float[] word_vecs;
         protected int[] word_counts;
         protected float[] entity_vec;
+        private float[] entity_vec_buffer;
 
         public ScorerContext(float[] word_vecs, int[] word_counts) {
             this.word_vecs = word_vecs;
@@ -36,7 +41,40 @@ public abstract class EntityScorer {
             if (entity_id == null || word_counts.length == 0) {
                 return DEFAULT_SCORE;
             }
-            short[] entity_vec_tmp = kb.getEntityEmbeddings(entity_id);
+            MappedEmbeddingStore store = kb.getEntityEmbeddingStore();
+            if (store != null)
+                return score(store, store.indexOf(entity_id));
+            return score(kb.getEntityEmbeddings(entity_id));
+        }
+
+        /**
+         * Score an entity given the index of its vector in a mapped embedding store, -1 if 
+         * the entity has no vector. The vector is copied in a buffer reused between the 
+         * entities scored with this context.
+         */
+        public float score(MappedEmbeddingStore store, long index) {
+            if (word_counts.length == 0) {
+                return DEFAULT_SCORE;
+            }
+            this.entity_vec = null;
+            if (index >= 0) {
+                if (entity_vec_buffer == null)
+                    entity_vec_buffer = new float[store.getDimension()];
+                store.copyTo(index, entity_vec_buffer, 0);
+                this.entity_vec = entity_vec_buffer;
+            }
+            return compute_score();
+        }
+
+        /**
+         * Score an entity given its (quantized) vector, null if the entity has no vector
+         */
+        public float score(short[] entity_vec_tmp) {
+            if (word_counts.length == 0) {
+                return DEFAULT_SCORE;
+            }
+            // the context can be used for several entities
+            this.entity_vec = null;
             if(entity_vec_tmp != null) {
                 entity_vec = new float[entity_vec_tmp.length];
                 for (int i = 0; i < entity_vec_tmp.length; i++) {
@@ -56,6 +94,14 @@ public abstract class EntityScorer {
     public abstract ScorerContext create_context(float[] word_vecs, int[] word_counts);
 
     public ScorerContext context(List<String> words) {
+        return context(words, null);
+    }
+
+    /**
+     * Build the scoring context of a list of words, the word vectors being looked up first 
+     * in the given cache (typically shared by the contexts of a request) if not null.
+     */
+    public ScorerContext context(List<String> words, Map<String, short[]> wordVectorCache) {
         Multiset<String> counter = TreeMultiset.create();
         counter.addAll(words);
 
@@ -65,8 +111,19 @@ public abstract class EntityScorer {
         IntArrayList word_counts = new IntArrayList();
         int n_words = 0;
 
+        MappedEmbeddingStore store = kb.getWordEmbeddingStore();
         for(Multiset.Entry<String> entry : counter.entrySet()) {
-            short[] vector = kb.getWordEmbeddings(entry.getElement());
+            if (store != null) {
+                // copy directly from the mapped vectors, no cache needed
+                long index = store.indexOf(entry.getElement());
+                if (index >= 0) {
+                    word_counts.add(entry.getCount());
+                    store.copyTo(index, word_vecs, n_words * word_dim);
+                    n_words += 1;
+                }
+                continue;
+            }
+            short[] vector = getWordEmbeddings(entry.getElement(), wordVectorCache);
             if (vector != null) {
                 word_counts.add(entry.getCount());
                 for (int i=0; i<kb.getEmbeddingsSize(); i++) {
@@ -80,6 +137,19 @@ public abstract class EntityScorer {
         return create_context(word_vecs, word_counts.elements());
     }
 
+    private short[] getWordEmbeddings(String word, Map<String, short[]> wordVectorCache) {
+        if (wordVectorCache == null)
+            return kb.getWordEmbeddings(word);
+        short[] vector = wordVectorCache.get(word);
+        if (vector == null) {
+            vector = kb.getWordEmbeddings(word);
+            if (vector == null)
+                vector = NO_VECTOR;
+            wordVectorCache.put(word, vector);
+        }
+        return (vector == NO_VECTOR) ? null : vector;
+    }
+
     public float[] score(List<String> entities, List<String> words) {
         float[] scores = new float[entities.size()];
         ScorerContext ctx = context(words);
@@ -0,0 +1,308 @@
+package com.scienceminer.nerd.embeddings;
+
+import it.unimi.dsi.bits.TransformationStrategies;
+import it.unimi.dsi.fastutil.io.BinIO;
+import it.unimi.dsi.io.FileLinesCollection;
+import it.unimi.dsi.sux4j.mph.MinimalPerfectHashFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Read-only store of quantized embeddings (word or entity vectors), memory-mapped from a
+ * file of fixed-stride int16 vectors and indexed by a signed minimal perfect hash function
+ * on the keys. Retrieving or scoring a vector does not open any LMDB transaction and does
+ * not allocate: the dot product with a float vector is computed directly on the mapped
+ * data, in the same order of operations as Utilities.inner() so that the similarity
+ * scores are identical to the ones computed from the LMDB embedding databases.
+ *
+ * The store is built from the quantized embeddings file produced by the Quantizer (the
+ * same file as the one loaded in the LMDB embedding databases), see build().
+ *
+ * Example command for building a store outside of the KB building:
+ *
+ * mvn exec:java -Dexec.mainClass=com.scienceminer.nerd.embeddings.MappedEmbeddingStore
+ * -Dexec.args="/mnt/data/wikipedia/embeddings/entity.embeddings.quantized.gz data/db/db-en/entityEmbeddings"
+ */
+public class MappedEmbeddingStore implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedEmbeddingStore.class);
+
+    private static final int MAGIC = 0x454d4244; // "EMBD"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+
+    public static final String VECTORS_EXTENSION = ".vectors";
+    public static final String HASH_EXTENSION = ".mph";
+
+    // vectors are mapped by chunks of at most 1GB, a mapped buffer being limited to 2GB
+    private static final int CHUNK_SIZE = 1 << 30;
+
+    private final MinimalPerfectHashFunction<CharSequence> hash;
+    private final FileChannel channel;
+    private final ShortBuffer[] chunks;
+    private final int dimension;
+    private final long size;
+    private final int vectorsPerChunk;
+
+    private MappedEmbeddingStore(MinimalPerfectHashFunction<CharSequence> hash, FileChannel channel,
+                                ShortBuffer[] chunks, int dimension, long size) {
+        this.hash = hash;
+        this.channel = channel;
+        this.chunks = chunks;
+        this.dimension = dimension;
+        this.size = size;
+        this.vectorsPerChunk = vectorsPerChunk(dimension);
+    }
+
+    private static int vectorsPerChunk(int dimension) {
+        return CHUNK_SIZE / (2 * dimension);
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return the index of the vector of a key, or -1 if the key has no vector
+     */
+    public long indexOf(CharSequence key) {
+        if (key == null)
+            return -1;
+        long index = hash.getLong(key);
+        if (index < 0 || index >= size)
+            return -1;
+        return index;
+    }
+
+    /**
+     * @return a copy of the vector of a key, or null if the key has no vector
+     */
+    public short[] get(CharSequence key) {
+        long index = indexOf(key);
+        if (index < 0)
+            return null;
+        short[] vector = new short[dimension];
+        ShortBuffer chunk = chunks[(int)(index / vectorsPerChunk)];
+        int base = (int)(index % vectorsPerChunk) * dimension;
+        for (int i = 0; i < dimension; i++)
+            vector[i] = chunk.get(base + i);
+        return vector;
+    }
+
+    /**
+     * Copy the vector at the given index as floats in the destination array.
+     */
+    public void copyTo(long index, float[] destination, int offset) {
+        ShortBuffer chunk = chunks[(int)(index / vectorsPerChunk)];
+        int base = (int)(index % vectorsPerChunk) * dimension;
+        for (int i = 0; i < dimension; i++)
+            destination[offset + i] = chunk.get(base + i);
+    }
+
+    /**
+     * Inner product of the vector at the given index with a float vector of the same
+     * dimension.
+     */
+    public float dot(long index, float[] vector) {
+        if (dimension % 4 != 0) {
+            throw new IllegalArgumentException("Vector size must be a multiple of 4");
+        }
+        ShortBuffer chunk = chunks[(int)(index / vectorsPerChunk)];
+        int base = (int)(index % vectorsPerChunk) * dimension;
+
+        float x0 = 0, x1 = 0, x2 = 0, x3 = 0;
+        // manually unrolled as Utilities.inner(), giving the same accumulation order
+        for (int i = 0; i < dimension; i += 4) {
+            x0 += chunk.get(base + i + 0) * vector[i + 0];
+            x1 += chunk.get(base + i + 1) * vector[i + 1];
+            x2 += chunk.get(base + i + 2) * vector[i + 2];
+            x3 += chunk.get(base + i + 3) * vector[i + 3];
+        }
+
+        return x0 + x1 + x2 + x3;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @return true if the files of a store with the given base path exist
+     */
+    public static boolean exists(File basePath) {
+        return new File(basePath.getPath() + VECTORS_EXTENSION).exists()
+            && new File(basePath.getPath() + HASH_EXTENSION).exists();
+    }
+
+    /**
+     * Open the store with the given base path, the vectors and the hash function being in
+     * the files with the extensions .vectors and .mph.
+     */
+    @SuppressWarnings("unchecked")
+    public static MappedEmbeddingStore open(File basePath) throws IOException {
+        MinimalPerfectHashFunction<CharSequence> hash;
+        try {
+            hash = (MinimalPerfectHashFunction<CharSequence>)BinIO.loadObject(basePath.getPath() + HASH_EXTENSION);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Cannot load the hash function of " + basePath.getPath(), e);
+        }
+
+        File vectorsFile = new File(basePath.getPath() + VECTORS_EXTENSION);
+        FileChannel channel = new RandomAccessFile(vectorsFile, "r").getChannel();
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0)
+                    throw new IOException("Truncated embedding store: " + vectorsFile.getPath());
+            }
+            header.flip();
+            if (header.getInt() != MAGIC)
+                throw new IOException("Not an embedding store: " + vectorsFile.getPath());
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported embedding store version " + version + ": " + vectorsFile.getPath());
+            int dimension = header.getInt();
+            header.getInt();
+            long size = header.getLong();
+            if (size != hash.size64())
+                throw new IOException("Embedding store and hash function do not match: " + basePath.getPath());
+
+            ShortBuffer[] chunks = map(channel, FileChannel.MapMode.READ_ONLY, dimension, size);
+            return new MappedEmbeddingStore(hash, channel, chunks, dimension, size);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static ShortBuffer[] map(FileChannel channel, FileChannel.MapMode mode, int dimension, long size)
+            throws IOException {
+        int vectorsPerChunk = vectorsPerChunk(dimension);
+        int nbChunks = (int)((size + vectorsPerChunk - 1) / vectorsPerChunk);
+        ShortBuffer[] chunks = new ShortBuffer[nbChunks];
+        long stride = 2L * dimension;
+        for (int i = 0; i < nbChunks; i++) {
+            long first = (long)i * vectorsPerChunk;
+            long nbVectors = Math.min(vectorsPerChunk, size - first);
+            MappedByteBuffer buffer = channel.map(mode, HEADER_SIZE + (first * stride), nbVectors * stride);
+            chunks[i] = buffer.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+        }
+        return chunks;
+    }
+
+    /**
+     * Build a store from a gzipped quantized embeddings file (one key per line followed by
+     * the values of its vector, separated by spaces, with an optional word2vec header line).
+     * The keys are first written in a temporary file to build the minimal perfect hash
+     * function, then each vector is written at the position given by the hash of its key.
+     */
+    public static void build(File embeddingsFile, File basePath) throws IOException {
+        System.out.println("Building mapped embedding store " + basePath.getPath());
+        File keysFile = File.createTempFile("embedding-keys", ".txt", basePath.getAbsoluteFile().getParentFile());
+        try {
+            // first pass: keys and dimension
+            int dimension = -1;
+            long nbKeys = 0;
+            try (BufferedReader input = openEmbeddings(embeddingsFile);
+                Writer keys = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(keysFile), StandardCharsets.UTF_8))) {
+                String line = null;
+                while ((line = input.readLine()) != null) {
+                    String[] pieces = line.split(" ");
+                    if (pieces.length <= 2) {
+                        // this is a header
+                        continue;
+                    }
+                    if (dimension == -1)
+                        dimension = pieces.length - 1;
+                    else if (pieces.length - 1 != dimension) {
+                        LOGGER.warn("Embeddings: ignoring vector of size " + (pieces.length - 1) + " for " + pieces[0]);
+                        continue;
+                    }
+                    keys.write(pieces[0]);
+                    keys.write('\n');
+                    nbKeys++;
+                }
+            }
+            if (nbKeys == 0)
+                throw new IOException("No embeddings in " + embeddingsFile.getPath());
+
+            MinimalPerfectHashFunction<CharSequence> hash = new MinimalPerfectHashFunction.Builder<CharSequence>()
+                .keys(new FileLinesCollection(keysFile.getPath(), "UTF-8"))
+                .transform(TransformationStrategies.utf16())
+                .signed(64)
+                .build();
+            if (hash.size64() != nbKeys)
+                throw new IOException("Duplicated keys in " + embeddingsFile.getPath());
+            BinIO.storeObject(hash, basePath.getPath() + HASH_EXTENSION);
+
+            // second pass: vectors
+            File vectorsFile = new File(basePath.getPath() + VECTORS_EXTENSION);
+            try (RandomAccessFile file = new RandomAccessFile(vectorsFile, "rw");
+                FileChannel channel = file.getChannel();
+                BufferedReader input = openEmbeddings(embeddingsFile)) {
+                file.setLength(HEADER_SIZE + (2L * dimension * nbKeys));
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(0).putLong(nbKeys);
+                header.flip();
+                channel.write(header, 0);
+
+                ShortBuffer[] chunks = map(channel, FileChannel.MapMode.READ_WRITE, dimension, nbKeys);
+                int vectorsPerChunk = vectorsPerChunk(dimension);
+                String line = null;
+                long nbDone = 0;
+                while ((line = input.readLine()) != null) {
+                    String[] pieces = line.split(" ");
+                    if (pieces.length - 1 != dimension)
+                        continue;
+                    long index = hash.getLong(pieces[0]);
+                    ShortBuffer chunk = chunks[(int)(index / vectorsPerChunk)];
+                    int base = (int)(index % vectorsPerChunk) * dimension;
+                    for (int i = 1; i < pieces.length; i++) {
+                        short value = 0;
+                        try {
+                            value = Short.parseShort(pieces[i]);
+                        } catch(Exception e) {
+                            LOGGER.warn("Embeddings: Cannot parse short value: " + pieces[i]);
+                        }
+                        chunk.put(base + i - 1, value);
+                    }
+                    nbDone++;
+                    if (nbDone % 1000000 == 0)
+                        System.out.println(nbDone + " / " + nbKeys + " vectors written");
+                }
+            }
+            System.out.println("Mapped embedding store built - " + nbKeys + " vectors of dimension " + dimension);
+        } finally {
+            keysFile.delete();
+        }
+    }
+
+    private static BufferedReader openEmbeddings(File embeddingsFile) throws IOException {
+        InputStream in = new FileInputStream(embeddingsFile);
+        if (embeddingsFile.getName().endsWith(".gz"))
+            in = new GZIPInputStream(in);
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("usage: MappedEmbeddingStore <quantized embeddings file> <store base path>");
+            System.exit(1);
+        }
+        build(new File(args[0]), new File(args[1]));
+    }
+}
@@ -1,6 +1,7 @@
 package com.scienceminer.nerd.embeddings;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.io.*;
 
 import com.scienceminer.nerd.kb.LowerKnowledgeBase;
@@ -37,8 +38,6 @@ public class SimilarityScorer {
 	private Map<String, LREntityScorer> lrscorers = null;
     private Map<String, CentroidEntityScorer> centroidScorers = null;
 
-	// note: we could add some caches :)
-
 	public static SimilarityScorer getInstance() {
 	    if (instance == null) {
 			getNewInstance();
@@ -55,33 +54,66 @@ public class SimilarityScorer {
 	}
 
 	/**
-	 * Hidden constructor
+	 * Hidden constructor, the scorers of a language being created at its first use
 	 */
 	private SimilarityScorer() {
 		//entityEmbeddings = new HashMap<>();
 		//wordEmbeddings = new HashMap<>();
 
-		lrscorers = new HashMap<>();
-		centroidScorers = new HashMap<>();
+		lrscorers = new ConcurrentHashMap<>();
+		centroidScorers = new ConcurrentHashMap<>();
 
 		UpperKnowledgeBase knowledgeBase = UpperKnowledgeBase.getInstance();
 
-		for(String lang : UpperKnowledgeBase.TARGET_LANGUAGES) {
-			try {
-				LowerKnowledgeBase lowerKnowledgeBase = knowledgeBase.getWikipediaConf(lang);
-				lrscorers.put(lang, new LREntityScorer(lowerKnowledgeBase));
-				centroidScorers.put(lang, new CentroidEntityScorer(lowerKnowledgeBase));
-			} catch(Exception e) {
-				throw new NerdException("Fails to initialize embeddings for " + lang, e);
-			}
+		for(String lang : knowledgeBase.getLoadedWikipediaConfs().keySet()) {
+			getLRScorer(lang);
+			getCentroidScorer(lang);
 		}
 	}
 
+	private LREntityScorer getLRScorer(String lang) {
+		if (lang == null)
+			return null;
+		LREntityScorer scorer = lrscorers.get(lang);
+		if (scorer == null && UpperKnowledgeBase.TARGET_LANGUAGES.contains(lang)) {
+			scorer = lrscorers.computeIfAbsent(lang, l -> {
+				LowerKnowledgeBase lowerKnowledgeBase = UpperKnowledgeBase.getInstance().getWikipediaConf(l);
+				if (lowerKnowledgeBase == null)
+					return null;
+				try {
+					return new LREntityScorer(lowerKnowledgeBase);
+				} catch(Exception e) {
+					throw new NerdException("Fails to initialize embeddings for " + l, e);
+				}
+			});
+		}
+		return scorer;
+	}
+
+	private CentroidEntityScorer getCentroidScorer(String lang) {
+		if (lang == null)
+			return null;
+		CentroidEntityScorer scorer = centroidScorers.get(lang);
+		if (scorer == null && UpperKnowledgeBase.TARGET_LANGUAGES.contains(lang)) {
+			scorer = centroidScorers.computeIfAbsent(lang, l -> {
+				LowerKnowledgeBase lowerKnowledgeBase = UpperKnowledgeBase.getInstance().getWikipediaConf(l);
+				if (lowerKnowledgeBase == null)
+					return null;
+				try {
+					return new CentroidEntityScorer(lowerKnowledgeBase);
+				} catch(Exception e) {
+					throw new NerdException("Fails to initialize embeddings for " + l, e);
+				}
+			});
+		}
+		return scorer;
+	}
+
 	public float getLRScore(NerdCandidate candidate, List<LayoutToken> tokens, String lang) {
 		if (candidate.getWikidataId() == null)
 			return 0.0F;
 		//System.out.println("LR score (" +lang+ "): " + candidate.getWikidataId() + tokens.toString());
-		LREntityScorer scorer = lrscorers.get(lang);
+		LREntityScorer scorer = getLRScorer(lang);
 		if (scorer != null) {
 			List<String> terms = toStringEmbeddings(tokens, lang);
 			return scorer.score(candidate.getWikidataId(), terms);
@@ -94,7 +126,7 @@ public class SimilarityScorer {
 	public float getCentroidScore(NerdCandidate candidate, List<LayoutToken> tokens, String lang) {
 		if (candidate.getWikidataId() == null)
 			return 0.0F;
-		CentroidEntityScorer scorer = centroidScorers.get(lang);
+		CentroidEntityScorer scorer = getCentroidScorer(lang);
 		if (scorer != null) {
 			List<String> terms = toStringEmbeddings(tokens, lang);
             //System.out.println("\n"+candidate.toString());
@@ -110,43 +142,157 @@ public class SimilarityScorer {
 		}
 	}
 
+	/**
+	 * Create a scoring session for one request (e.g. one document) in the given language.
+	 */
+	public ScorerSession createSession(String lang) {
+		return new ScorerSession(lang);
+	}
+
+	/**
+	 * Scoring state for a single request (typically one document): the normalised words, 
+	 * the word and entity vectors and the context of the last token window are reused 
+	 * between the candidates instead of being recomputed and fetched again from the KB for 
+	 * each of them. A session is not thread-safe and must not be shared between requests.
+	 */
+	public class ScorerSession {
+		private final String lang;
+		private final CentroidEntityScorer scorer;
+
+		// raw token text -> normalised word, empty string for tokens to be ignored
+		private final Map<String, String> normalisedWords = new HashMap<>();
+		private final Map<String, short[]> wordVectors = new HashMap<>();
+		private final Map<String, short[]> entityVectors = new HashMap<>();
+
+		// context of the last token window
+		private List<LayoutToken> lastTokens = null;
+		private EntityScorer.ScorerContext lastContext = null;
+
+		private ScorerSession(String lang) {
+			this.lang = lang;
+			this.scorer = getCentroidScorer(lang);
+			if (scorer == null)
+				LOGGER.warn(lang + " centroid scorer is null!");
+		}
+
+		/**
+		 * Centroid similarity of all the candidates of a mention with the same token window,
+		 * the context being built only once.
+		 */
+		public float[] getCentroidScores(List<NerdCandidate> candidates, List<LayoutToken> tokens) {
+			float[] scores = new float[candidates.size()];
+			if (scorer == null)
+				return scores;
+			EntityScorer.ScorerContext context = getContext(tokens);
+			for (int i = 0; i < candidates.size(); i++) {
+				scores[i] = score(context, candidates.get(i));
+			}
+			return scores;
+		}
+
+		public float getCentroidScore(NerdCandidate candidate, List<LayoutToken> tokens) {
+			if (scorer == null)
+				return 0.0F;
+			return score(getContext(tokens), candidate);
+		}
+
+		private float score(EntityScorer.ScorerContext context, NerdCandidate candidate) {
+			String entityId = candidate.getWikidataId();
+			if (entityId == null)
+				return 0.0F;
+			float score;
+			MappedEmbeddingStore store = scorer.kb.getEntityEmbeddingStore();
+			if (store != null) {
+				// scored directly on the mapped vector, nothing to cache
+				score = context.score(store, store.indexOf(entityId));
+			} else {
+				score = context.score(getEntityVector(entityId));
+			}
+			if (score < 0.0F)
+				score = 0.0F;
+			return score;
+		}
+
+		private short[] getEntityVector(String entityId) {
+			short[] vector = entityVectors.get(entityId);
+			if (vector == null) {
+				vector = scorer.kb.getEntityEmbeddings(entityId);
+				if (vector == null)
+					vector = EntityScorer.NO_VECTOR;
+				entityVectors.put(entityId, vector);
+			}
+			return (vector == EntityScorer.NO_VECTOR) ? null : vector;
+		}
+
+		private EntityScorer.ScorerContext getContext(List<LayoutToken> tokens) {
+			if (tokens != lastTokens) {
+				List<String> terms = new ArrayList<>();
+				for(LayoutToken token : tokens) {
+					String text = token.getText();
+					if (text == null)
+						continue;
+					String word = normalisedWords.get(text);
+					if (word == null) {
+						word = normaliseWord(text, lang);
+						if (word == null)
+							word = "";
+						normalisedWords.put(text, word);
+					}
+					if (word.length() > 0)
+						terms.add(word);
+				}
+				lastContext = scorer.context(terms, wordVectors);
+				lastTokens = tokens;
+			}
+			return lastContext;
+		}
+	}
+
 	/**
 	 * Normalise LayoutTokens sequence as an array of words correspond to word embeddings
 	 */
 	private List<String> toStringEmbeddings(List<LayoutToken> tokens, String lang) {
 		List<String> toks = new ArrayList<String>();
 		for(LayoutToken token : tokens) {
-			String word = token.getText();
+			String word = normaliseWord(token.getText(), lang);
+			if (word != null)
+				toks.add(word);
+		}
+		return toks;
+	}
 
-			if (word == null || word.trim().length() == 0)
-				continue;
-			if (ProcessText.delimiters.indexOf(word) != -1)
-				continue;
+	/**
+	 * Normalise a token as a word corresponding to word embeddings, or null if the 
+	 * token must be ignored (delimiter, punctuation, stopword).
+	 */
+	private String normaliseWord(String word, String lang) {
+		if (word == null || word.trim().length() == 0)
+			return null;
+		if (ProcessText.delimiters.indexOf(word) != -1)
+			return null;
 
-			// unicode normalization
-			word = UnicodeUtil.normaliseText(word);
+		// unicode normalization
+		word = UnicodeUtil.normaliseText(word);
 
-			// remove possible remaining punctuations
-			word = word.replaceAll("\\p{P}", "");
+		// remove possible remaining punctuations
+		word = word.replaceAll("\\p{P}", "");
 
-			// flatten numerical chars
-			word = word.replaceAll("\\d", "0");
+		// flatten numerical chars
+		word = word.replaceAll("\\d", "0");
 
-			// lower case everything (to be evaluated!)
-			word = word.toLowerCase();
-			word = word.replace("\t", "");
+		// lower case everything (to be evaluated!)
+		word = word.toLowerCase();
+		word = word.replace("\t", "");
 
-			if (word.trim().length() == 0)
-				continue;
+		if (word.trim().length() == 0)
+			return null;
 
-			try {
-				if (!Stopwords.getInstance().isStopword(word, lang))
-					toks.add(word);
-			} catch(Exception e) {
-				LOGGER.warn("Problem getting Stopwords instance", e);
-				toks.add(word);
-			}
+		try {
+			if (Stopwords.getInstance().isStopword(word, lang))
+				return null;
+		} catch(Exception e) {
+			LOGGER.warn("Problem getting Stopwords instance", e);
 		}
-		return toks;
+		return word;
 	}
-}
\ No newline at end of file
+}
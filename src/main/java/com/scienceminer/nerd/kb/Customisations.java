@@ -1,17 +1,24 @@
 package com.scienceminer.nerd.kb;
 
+import com.scienceminer.nerd.disambiguation.CompiledCustomisation;
 import com.scienceminer.nerd.exceptions.CustomisationException;
-import com.scienceminer.nerd.exceptions.NerdException;
-import org.apache.commons.io.FileUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -19,18 +26,42 @@ import static com.scienceminer.nerd.disambiguation.NerdCustomisation.parseAndVal
 
 /**
  * Class for managing the NERD customisation which are contexts for particular domains.
+ *
+ * The customisations are stored in an append-only log, one JSON record per line for each
+ * creation, update or deletion, so that a change only appends one line instead of
+ * rewriting all the customisations. The log is replayed and compacted when opened. Each
+ * change gives the customisation a new version, used to invalidate its compiled form
+ * (see getCompiledCustomisation()).
  */
 public final class Customisations {
 
     protected static final Logger LOGGER = LoggerFactory.getLogger(Customisations.class);
     private static volatile Customisations instance;
 
+    private static final String PUT = "put";
+    private static final String DELETE = "delete";
+
     private String databaseName = "customisations";
     private File customisationFile;
 
+    // the map saved with Java serialization by the previous versions, migrated to the log
+    private File legacyCustomisationFile;
+
     // map a customisation id to the json definition
     private ConcurrentMap<String, String> customisationDatabase = null;
 
+    // map a customisation id to the version of its current definition
+    private final ConcurrentMap<String, Long> versions = new ConcurrentHashMap<>();
+    private long lastVersion = 0;
+
+    // true if the replayed log has an invalid or incomplete record
+    private boolean damagedLog = false;
+
+    // compiled customisations, possibly of an older version
+    private final ConcurrentMap<String, CompiledCustomisation> compiledCustomisations = new ConcurrentHashMap<>();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
     public static Customisations getInstance() {
         if (instance == null) {
             getNewInstance();
@@ -44,56 +75,146 @@ public final class Customisations {
     }
 
     public Customisations() {
-        customisationFile = new File("data/maps/" + databaseName + ".obj");
+        customisationFile = new File("data/maps/" + databaseName + ".log");
+        legacyCustomisationFile = new File("data/maps/" + databaseName + ".obj");
     }
 
     /**
      * Open index for customisations
      */
-    public void open() {
-        ObjectInputStream in = null;
-        try {
-
-            if (customisationDatabase != null) {
-                return;
-            }
+    public synchronized void open() {
+        if (customisationDatabase != null) {
+            return;
+        }
 
+        try {
+            ConcurrentMap<String, String> database = new ConcurrentHashMap<>();
             if (customisationFile.exists() && Files.size(Paths.get(customisationFile.getAbsolutePath())) > 0) {
-                FileInputStream fileIn = new FileInputStream(customisationFile);
-                in = new ObjectInputStream(fileIn);
-                customisationDatabase = (ConcurrentMap<String, String>) in.readObject();
                 LOGGER.debug("Opening customisation database:  " + customisationFile.getAbsolutePath());
-            } else if (customisationDatabase == null) {
-                customisationDatabase = new ConcurrentHashMap<>();
+                int nbRecords = replay(database);
+                customisationDatabase = database;
+                // the log only grows with the updates, it is rewritten when mostly made of
+                // obsolete records, or without its invalid records so that the next record
+                // is not appended to an incomplete line
+                if (damagedLog || nbRecords > 2 * database.size())
+                    save();
+            } else if (legacyCustomisationFile != null && legacyCustomisationFile.exists()
+                    && Files.size(Paths.get(legacyCustomisationFile.getAbsolutePath())) > 0) {
+                LOGGER.info("Migrating customisation database " + legacyCustomisationFile.getAbsolutePath()
+                    + " to " + customisationFile.getAbsolutePath());
+                database.putAll(readLegacy());
+                for (String name : database.keySet())
+                    versions.put(name, ++lastVersion);
+                customisationDatabase = database;
+                save();
+            } else {
+                customisationDatabase = database;
                 LOGGER.debug("Cannot find customisation database, creating a new one:  " + customisationFile.getAbsolutePath());
             }
         } catch (Exception e) {
+            customisationDatabase = null;
             throw new CustomisationException("Error when opening the customization map.", e);
+        }
+    }
+
+    /**
+     * Replay the log in the given map, returning the number of records. An incomplete last
+     * record, written when the server was stopped during an update, is ignored and the log
+     * is marked as damaged, to be rewritten before any append.
+     */
+    private int replay(Map<String, String> database) throws IOException {
+        damagedLog = !endsWithNewLine(customisationFile);
+        int nbRecords = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(customisationFile), StandardCharsets.UTF_8))) {
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().length() == 0)
+                    continue;
+                JsonNode record = null;
+                try {
+                    record = mapper.readTree(line);
+                } catch (IOException e) {
+                    LOGGER.warn("Ignoring invalid customisation record: " + line);
+                    damagedLog = true;
+                    continue;
+                }
+                String name = record.path("name").asText();
+                long version = record.path("version").asLong();
+                lastVersion = Math.max(lastVersion, version);
+                if (PUT.equals(record.path("op").asText())) {
+                    database.put(name, record.path("content").asText());
+                    versions.put(name, version);
+                } else {
+                    database.remove(name);
+                    versions.remove(name);
+                }
+                nbRecords++;
+            }
+        }
+        return nbRecords;
+    }
+
+    private static boolean endsWithNewLine(File file) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            if (input.length() == 0)
+                return true;
+            input.seek(input.length() - 1);
+            return input.read() == '\n';
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, String> readLegacy() throws IOException, ClassNotFoundException {
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new FileInputStream(legacyCustomisationFile));
+            return (Map<String, String>) in.readObject();
         } finally {
             IOUtils.closeQuietly(in);
         }
     }
 
     /**
-     * Close and save index for customisations
+     * Rewrite the log with only the current customisations
      */
-    public void save() {
+    public synchronized void save() {
         if (customisationDatabase == null) {
             return;
         }
 
-        ObjectOutputStream out = null;
+        LOGGER.debug("Persisting customisation database on: " + customisationFile.getAbsolutePath());
+        File tmpFile = new File(customisationFile.getAbsolutePath() + ".tmp");
         try {
-            customisationFile = new File("data/maps/" + databaseName + ".obj");
-
-            LOGGER.debug("Persisting customisation database on: " + customisationFile.getAbsolutePath());
-            FileOutputStream fileOut = new FileOutputStream(customisationFile);
-            out = new ObjectOutputStream(fileOut);
-            out.writeObject(customisationDatabase);
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, String> entry : customisationDatabase.entrySet()) {
+                    writer.write(record(PUT, entry.getKey(), entry.getValue(), versions.get(entry.getKey())));
+                }
+            }
+            Files.move(tmpFile.toPath(), customisationFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            damagedLog = false;
         } catch (IOException e) {
             throw new CustomisationException("Error when saving the customization map.", e);
-        } finally {
-            IOUtils.closeQuietly(out);
+        }
+    }
+
+    private String record(String op, String name, String content, Long version) throws IOException {
+        ObjectNode record = mapper.createObjectNode();
+        record.put("op", op);
+        record.put("name", name);
+        record.put("version", (version == null) ? 0L : version);
+        if (content != null)
+            record.put("content", content);
+        return mapper.writeValueAsString(record) + "\n";
+    }
+
+    // append one record to the log, the file being synced before the change is acknowledged
+    private void append(String op, String name, String content, long version) {
+        try (FileOutputStream out = new FileOutputStream(customisationFile, true)) {
+            out.write(record(op, name, content, version).getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (IOException e) {
+            throw new CustomisationException("Error when saving the customisation " + name, e);
         }
     }
 
@@ -117,25 +238,57 @@ public final class Customisations {
         }
     }
 
-    public boolean createCustomisation(String name, String content) {
+    /**
+     * Return the customisation compiled for the disambiguation, compiling it at the first
+     * request after its creation or last update, or null if it does not exist.
+     *
+     * @throws CustomisationException if the customisation cannot be applied
+     */
+    public CompiledCustomisation getCompiledCustomisation(String name) {
+        open();
+        // the content and its version are read together, an update being synchronized
+        String content;
+        Long version;
+        synchronized (this) {
+            content = customisationDatabase.get(name);
+            version = versions.get(name);
+        }
+        if (content == null) {
+            compiledCustomisations.remove(name);
+            return null;
+        }
+
+        CompiledCustomisation compiled = compiledCustomisations.get(name);
+        if (compiled == null || compiled.getVersion() != version) {
+            compiled = CompiledCustomisation.compile(name, version, content);
+            // an older compilation must not replace a newer one
+            compiledCustomisations.merge(name, compiled,
+                (previous, current) -> (previous.getVersion() > current.getVersion()) ? previous : current);
+        }
+        return compiled;
+    }
+
+    public synchronized boolean createCustomisation(String name, String content) {
         parseAndValidate(content);
         open();
 
         if (customisationDatabase.get(name) == null) {
+            long version = lastVersion + 1;
+            append(PUT, name, content, version);
+            lastVersion = version;
+            versions.put(name, version);
             customisationDatabase.put(name, content);
         } else {
             throw new CustomisationException("The customisation " + name + " has been already created.");
         }
 
-        save();
-
         return true;
     }
 
     /**
      * Update the customisation only if it's already existing
      **/
-    public boolean updateCustomisation(String name, String content) {
+    public synchronized boolean updateCustomisation(String name, String content) {
         parseAndValidate(content);
         try {
             open();
@@ -143,12 +296,14 @@ public final class Customisations {
             if (customisationDatabase.get(name) == null) {
                 return false;
             }
+            long version = lastVersion + 1;
+            append(PUT, name, content, version);
+            lastVersion = version;
+            versions.put(name, version);
             customisationDatabase.put(name, content);
-
+            compiledCustomisations.remove(name);
         } catch (Exception e) {
             throw new CustomisationException("Cannot update customisation", e);
-        } finally {
-            save();
         }
         return true;
     }
@@ -156,15 +311,20 @@ public final class Customisations {
     /**
      * delete customisation, if it doesn't exists it's ignoring the request
      **/
-    public boolean deleteCustomisation(String name) {
+    public synchronized boolean deleteCustomisation(String name) {
         boolean ok = false;
         try {
             open();
-            ok = customisationDatabase.remove(name) != null;
+            if (customisationDatabase.containsKey(name)) {
+                long version = lastVersion + 1;
+                append(DELETE, name, null, version);
+                lastVersion = version;
+                versions.remove(name);
+                ok = customisationDatabase.remove(name) != null;
+            }
+            compiledCustomisations.remove(name);
         } catch (Exception e) {
             throw new CustomisationException("Cannot delete customisation", e);
-        } finally {
-            save();
         }
 
         return ok;
@@ -172,5 +332,6 @@ public final class Customisations {
 
     public void setCustomisationFile(File customisationFile) {
         this.customisationFile = customisationFile;
+        this.legacyCustomisationFile = null;
     }
-}
\ No newline at end of file
+}
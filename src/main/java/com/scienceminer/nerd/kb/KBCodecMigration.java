@@ -0,0 +1,46 @@
+package com.scienceminer.nerd.kb;
+
+import java.io.File;
+
+import com.scienceminer.nerd.kb.db.KBLowerEnvironment;
+import com.scienceminer.nerd.utilities.NerdConfig;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+/*
+ * Rewrites an existing LMDB lower environment so that the hot record types (pages, labels, 
+ * link lists, link counts and embeddings) are stored with the binary codecs instead of FST. 
+ * Databases already using their codec are left untouched, so the migration can be resumed. 
+ *
+ * Example: 
+ * mvn exec:java -Dexec.mainClass=com.scienceminer.nerd.kb.KBCodecMigration 
+ * -Dexec.args="data/config/wikipedia-en.yaml"
+ */
+public class KBCodecMigration {
+
+    public static void main(String args[]) throws Exception {
+        
+        if (args.length != 1) {
+            System.out.println("Please specify path to wikipedia configuration file") ;
+            System.exit(1);
+        }
+        
+        File confFile = new File(args[0]);
+        if (!confFile.canRead()) {
+            System.out.println("'" + args[0] + "' cannot be read");
+            System.exit(1);
+        }
+
+        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        NerdConfig conf = mapper.readValue(confFile, NerdConfig.class);
+
+        KBLowerEnvironment env = new KBLowerEnvironment(conf);
+        try {
+            env.migrateToCodecs();
+        } finally {
+            env.close();
+        }
+    }
+    
+}
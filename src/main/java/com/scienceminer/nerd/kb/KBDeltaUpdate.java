@@ -0,0 +1,84 @@
+package com.scienceminer.nerd.kb;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+import com.scienceminer.nerd.kb.db.KBDelta;
+import com.scienceminer.nerd.kb.db.KBEnvironment;
+import com.scienceminer.nerd.kb.db.KBLowerEnvironment;
+import com.scienceminer.nerd.kb.db.KBUpperEnvironment;
+import com.scienceminer.nerd.utilities.NerdConfig;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+/*
+ * Incremental update of existing LMDB environments with a delta file, instead of a full
+ * rebuild, and production of a delta file between two versions of a CSV data file or of 
+ * the uncompressed Wikidata JSON dump (latest-all.json).
+ *
+ * The configuration file kb.yaml designates the upper environment, the other ones the
+ * lower environment of their language.
+ *
+ * Examples:
+ * mvn exec:java -Dexec.mainClass=com.scienceminer.nerd.kb.KBDeltaUpdate
+ * -Dexec.args="diff data/wikipedia/en/label.csv /tmp/en-20180501/label.csv /tmp/en-20180501.delta"
+ *
+ * mvn exec:java -Dexec.mainClass=com.scienceminer.nerd.kb.KBDeltaUpdate
+ * -Dexec.args="apply data/config/wikipedia-en.yaml /tmp/en-20180501.delta 20180501"
+ */
+public class KBDeltaUpdate {
+
+    public static void main(String args[]) throws Exception {
+
+        if (args.length != 4 || !(args[0].equals("apply") || args[0].equals("diff"))) {
+            System.out.println("usage: apply <configuration file> <delta file> <version>");
+            System.out.println("       diff <current data file> <new data file> <delta file>");
+            System.exit(1);
+        }
+
+        if (args[0].equals("diff")) {
+            File oldFile = new File(args[1]);
+            File newFile = new File(args[2]);
+            if (!oldFile.canRead() || !newFile.canRead()) {
+                System.out.println("'" + args[1] + "' or '" + args[2] + "' cannot be read");
+                System.exit(1);
+            }
+            try (PrintWriter output = new PrintWriter(new OutputStreamWriter(
+                    new FileOutputStream(args[3]), StandardCharsets.UTF_8))) {
+                long nbOperations = KBDelta.diff(oldFile, newFile, newFile.getName(), output);
+                System.out.println(nbOperations + " delta operations written to " + args[3]);
+            }
+            return;
+        }
+
+        File confFile = new File(args[1]);
+        if (!confFile.canRead()) {
+            System.out.println("'" + args[1] + "' cannot be read");
+            System.exit(1);
+        }
+        File deltaFile = new File(args[2]);
+        if (!deltaFile.canRead()) {
+            System.out.println("'" + args[2] + "' cannot be read");
+            System.exit(1);
+        }
+
+        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        NerdConfig conf = mapper.readValue(confFile, NerdConfig.class);
+
+        KBEnvironment env = null;
+        if (confFile.getName().equals("kb.yaml"))
+            env = new KBUpperEnvironment(conf);
+        else
+            env = new KBLowerEnvironment(conf);
+        try {
+            env.applyDelta(deltaFile, args[3]);
+        } finally {
+            env.close();
+        }
+    }
+
+}
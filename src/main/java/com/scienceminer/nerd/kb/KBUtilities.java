@@ -2,7 +2,8 @@ package com.scienceminer.nerd.kb;
 
 import java.io.*;
 import java.util.*;
-import org.apache.commons.collections4.CollectionUtils;
+
+import com.scienceminer.nerd.kb.TaxonAncestors.Kingdom;
 
 /**
  *  Various static methods for accessing efficiently bits of knowledge.
@@ -11,64 +12,48 @@ public class KBUtilities {
 
 	/** Taxon classification information are provided as present in Wikidata.
 	 *  Various classification schemes exist and are still a matter of debate.
+	 *  The kingdoms of a taxon are precomputed with the closure of the taxon hierarchy,
+	 *  so each test is a single lookup.
 	 */
 
 	/** Return true if the entity is part of the animal kingdom/regnum (Animalia) */
 	public static boolean isAnimal(String wikidataId) {
-//System.out.println(wikidataId);
-		List<String> parents = UpperKnowledgeBase.getInstance().getFullParentTaxons(wikidataId);
-//System.out.println(parents);
-		if (CollectionUtils.isEmpty(parents))
-			return false;
-		return parents.contains("Q729");
+		return isInKingdom(wikidataId, Kingdom.ANIMALIA);
 	}
 
 	/** Return true if the entity is part of the plant kingdom/regnum (Plantae) */
 	public static boolean isPlant(String wikidataId) {
-		List<String> parents = UpperKnowledgeBase.getInstance().getFullParentTaxons(wikidataId);
-		if (CollectionUtils.isEmpty(parents))
-			return false;
-		return parents.contains("Q756");
+		return isInKingdom(wikidataId, Kingdom.PLANTAE);
 	}
 
 	/** Return true if the entity is part of the bacteria kingdom/regnum (Bacteria) */
 	public static boolean isBacteria(String wikidataId) {
-		List<String> parents = UpperKnowledgeBase.getInstance().getFullParentTaxons(wikidataId);
-		if (CollectionUtils.isEmpty(parents))
-			return false;
-		return parents.contains("Q10876");
+		return isInKingdom(wikidataId, Kingdom.BACTERIA);
 	}
 
 	/** Return true if the entity is part of the single-celled microorganisms kingdom/regnum (Archaea) */
 	public static boolean isArchaea(String wikidataId) {
-		List<String> parents = UpperKnowledgeBase.getInstance().getFullParentTaxons(wikidataId);
-		if (CollectionUtils.isEmpty(parents))
-			return false;
-		return parents.contains("Q10872");
+		return isInKingdom(wikidataId, Kingdom.ARCHAEA);
 	}
 
 	/** Return true if the entity is part of the protozoa kingdom/regnum (Protozoa) */
 	public static boolean isProtozoa(String wikidataId) {
-		List<String> parents = UpperKnowledgeBase.getInstance().getFullParentTaxons(wikidataId);
-		if (CollectionUtils.isEmpty(parents))
-			return false;
-		return parents.contains("Q101274");
+		return isInKingdom(wikidataId, Kingdom.PROTOZOA);
 	}
 
 	/** Return true if the entity is part of the Fungus kingdom/regnum (Fungus) */
 	public static boolean isFungus(String wikidataId) {
-		List<String> parents = UpperKnowledgeBase.getInstance().getFullParentTaxons(wikidataId);
-		if (CollectionUtils.isEmpty(parents))
-			return false;
-		return parents.contains("Q764");
+		return isInKingdom(wikidataId, Kingdom.FUNGI);
 	}
 
 	/** Return true if the entity is part of the Chromista kingdom/regnum (Chromista) */
 	public static boolean isChromista(String wikidataId) {
-		List<String> parents = UpperKnowledgeBase.getInstance().getFullParentTaxons(wikidataId);
-		if (CollectionUtils.isEmpty(parents))
-			return false;
-		return parents.contains("Q862296");
+		return isInKingdom(wikidataId, Kingdom.CHROMISTA);
+	}
+
+	/** Return true if the entity is part of the given kingdom/regnum */
+	public static boolean isInKingdom(String wikidataId, Kingdom kingdom) {
+		return (UpperKnowledgeBase.getInstance().getTaxonKingdoms(wikidataId) & kingdom.getMask()) != 0;
 	}
 
-}
\ No newline at end of file
+}
@@ -1,16 +1,19 @@
 package com.scienceminer.nerd.kb;
 
+import com.scienceminer.nerd.embeddings.MappedEmbeddingStore;
 import com.scienceminer.nerd.kb.db.KBEnvironment.StatisticName;
 import com.scienceminer.nerd.kb.db.KBLowerEnvironment;
 import com.scienceminer.nerd.kb.db.LabelIterator;
 import com.scienceminer.nerd.kb.db.PageIterator;
 import com.scienceminer.nerd.kb.model.*;
 import com.scienceminer.nerd.kb.model.Page.PageType;
-import com.scienceminer.nerd.kb.model.hadoop.DbIntList;
+import com.scienceminer.nerd.mention.DiceCoefficients;
+import com.scienceminer.nerd.mention.LabelMatcher;
 import com.scienceminer.nerd.utilities.NerdConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,6 +29,9 @@ public class LowerKnowledgeBase {
 	private KBLowerEnvironment env = null;
 	private int wikipediaArticleCount = -1;
 
+	// memoized DICE coefficients of the terms, created at first use if enabled
+	private volatile DiceCoefficients diceCoefficients = null;
+
 	public enum Direction {
 		In, 
 		Out
@@ -72,6 +78,38 @@ public class LowerKnowledgeBase {
 		} 
 	}
 
+	/**
+	 * Returns the label matcher used to spot the mentions matching a label of this 
+	 * Wikipedia, or null if not enabled. The matcher is loaded (or built and saved the 
+	 * first time) with the environment.
+	 */
+	public LabelMatcher getLabelMatcher() {
+		return env.getLabelMatcher();
+	}
+
+	/**
+	 * Returns the memoized DICE coefficients of the terms of this Wikipedia, or null if not 
+	 * enabled. The precomputed coefficients saved with the databases, if any, are loaded 
+	 * at the first call.
+	 */
+	public DiceCoefficients getDiceCoefficients() {
+		NerdConfig conf = getConfig();
+		if (conf.getDiceCacheSize() <= 0)
+			return null;
+		DiceCoefficients coefficients = diceCoefficients;
+		if (coefficients == null) {
+			synchronized(this) {
+				coefficients = diceCoefficients;
+				if (coefficients == null) {
+					File file = new File(conf.getDbDirectory() + File.separator + DiceCoefficients.FILE_NAME);
+					coefficients = new DiceCoefficients(conf.getDiceCacheSize(), DiceCoefficients.loadTable(file));
+					diceCoefficients = coefficients;
+				}
+			}
+		}
+		return coefficients;
+	}
+
 	/**
 	 * Returns the configuration of this wikipedia dump
 	 */
@@ -229,20 +267,14 @@ public class LowerKnowledgeBase {
 	}
 
 	/**
-	 * Returns the list of links in relation to artId with the specified direction (in or out).
+	 * Returns the sorted ids of the links in relation to artId with the specified direction (in or out).
 	 * 
 	 */
-	public List<Integer> getLinks(int artId, Direction dir) {
-		DbIntList ids = null;
+	public int[] getLinks(int artId, Direction dir) {
 		if (dir == Direction.In)
-			ids = env.getDbPageLinkInNoSentences().retrieve(artId);
+			return env.getDbPageLinkInNoSentences().retrieveIntArray(artId);
 		else
-			ids = env.getDbPageLinkOutNoSentences().retrieve(artId);
-
-		if (ids == null || ids.getValues() == null) 
-			return new ArrayList<Integer>();
-
-		return ids.getValues();
+			return env.getDbPageLinkOutNoSentences().retrieveIntArray(artId);
 	}
 
 	/**
@@ -251,6 +283,9 @@ public class LowerKnowledgeBase {
      * @return word vector or null if not found
      */
     public short[] getWordEmbeddings(String word) {
+        MappedEmbeddingStore store = env.getWordEmbeddingStore();
+        if (store != null)
+            return store.get(word);
         return env.getDbWordEmbeddings().retrieve(word);
     }
 
@@ -260,9 +295,28 @@ public class LowerKnowledgeBase {
      * @return entity vector or null if not found
      */
     public short[] getEntityEmbeddings(String entityId) {
+        MappedEmbeddingStore store = env.getEntityEmbeddingStore();
+        if (store != null)
+            return store.get(entityId);
         return env.getDbEntityEmbeddings().retrieve(entityId);
     }
 
+    /**
+     * @return the memory-mapped word embeddings, or null if the embeddings are only 
+     * available in the LMDB database
+     */
+    public MappedEmbeddingStore getWordEmbeddingStore() {
+        return env.getWordEmbeddingStore();
+    }
+
+    /**
+     * @return the memory-mapped entity embeddings, or null if the embeddings are only 
+     * available in the LMDB database
+     */
+    public MappedEmbeddingStore getEntityEmbeddingStore() {
+        return env.getEntityEmbeddingStore();
+    }
+
     /**
      * @return number of dimensions of the vectors for both word and entity embeddings
      */
@@ -0,0 +1,60 @@
+package com.scienceminer.nerd.kb;
+
+import java.io.File;
+
+import com.scienceminer.nerd.kb.db.KBLowerEnvironment;
+import com.scienceminer.nerd.kb.db.MarkupCodec;
+import com.scienceminer.nerd.kb.db.MarkupDatabase;
+import com.scienceminer.nerd.utilities.NerdConfig;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+/*
+ * Converts the markup database of an existing LMDB lower environment to the compressed 
+ * format: a Deflate preset dictionary is trained on a sample of the markup and all the 
+ * values are rewritten with it. With the optional "full" argument, the full markup 
+ * database is converted too. Databases already compressed are left untouched. 
+ *
+ * The service must not use the environment during the conversion. If the conversion is 
+ * interrupted (crash, kill), simply run it again with the same configuration: the 
+ * dictionary already saved in the database directory (markup.dict) is reused and only the 
+ * values not yet compressed are rewritten. Do not delete markup.dict before the conversion 
+ * has completed, i.e. before the "codec" marker file is present in the database directory. 
+ *
+ * Example: 
+ * mvn exec:java -Dexec.mainClass=com.scienceminer.nerd.kb.MarkupCompression 
+ * -Dexec.args="data/config/wikipedia-en.yaml full"
+ */
+public class MarkupCompression {
+
+    public static void main(String args[]) throws Exception {
+        
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Please specify path to wikipedia configuration file, optionally followed by \"full\"") ;
+            System.exit(1);
+        }
+        
+        File confFile = new File(args[0]);
+        if (!confFile.canRead()) {
+            System.out.println("'" + args[0] + "' cannot be read");
+            System.exit(1);
+        }
+        boolean full = (args.length == 2) && args[1].equals("full");
+
+        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        NerdConfig conf = mapper.readValue(confFile, NerdConfig.class);
+
+        KBLowerEnvironment env = new KBLowerEnvironment(conf);
+        try {
+            env.getDbMarkup().compress(MarkupDatabase.DEFAULT_DICTIONARY_SAMPLE_SIZE, MarkupCodec.MAX_DICTIONARY_SIZE);
+            if (full) {
+                env.buildFullMarkup(false);
+                env.getDbMarkupFull().compress(MarkupDatabase.DEFAULT_DICTIONARY_SAMPLE_SIZE, MarkupCodec.MAX_DICTIONARY_SIZE);
+            }
+        } finally {
+            env.close();
+        }
+    }
+    
+}
@@ -0,0 +1,133 @@
+package com.scienceminer.nerd.kb;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.scienceminer.nerd.kb.db.KBEnvironment;
+import com.scienceminer.nerd.kb.db.KBIterator;
+import com.scienceminer.nerd.kb.db.KBLowerEnvironment;
+import com.scienceminer.nerd.kb.db.MarkupCodec;
+import com.scienceminer.nerd.kb.db.MarkupDatabase;
+import com.scienceminer.nerd.utilities.NerdConfig;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import org.fusesource.lmdbjni.DirectBuffer;
+import org.fusesource.lmdbjni.Entry;
+
+/*
+ * Compares the FST and the compressed formats of the markup database on a sample of 
+ * its entries: total size of the values, and decoding latency of the values. The latency 
+ * of MarkupDatabase.retrieve() on the sampled pages is also given for the format currently 
+ * used by the database. The environment is only read.
+ *
+ * Example: 
+ * mvn exec:java -Dexec.mainClass=com.scienceminer.nerd.kb.MarkupCompressionBenchmark 
+ * -Dexec.args="data/config/wikipedia-en.yaml 50000"
+ */
+public class MarkupCompressionBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String args[]) throws Exception {
+        
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Please specify path to wikipedia configuration file, optionally followed by the sample size") ;
+            System.exit(1);
+        }
+        
+        File confFile = new File(args[0]);
+        if (!confFile.canRead()) {
+            System.out.println("'" + args[0] + "' cannot be read");
+            System.exit(1);
+        }
+        int sampleSize = (args.length == 2) ? Integer.parseInt(args[1]) : 50000;
+
+        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        NerdConfig conf = mapper.readValue(confFile, NerdConfig.class);
+
+        KBLowerEnvironment env = new KBLowerEnvironment(conf);
+        try {
+            run(env.getDbMarkup(), sampleSize);
+        } finally {
+            env.close();
+        }
+    }
+
+    private static void run(MarkupDatabase dbMarkup, int sampleSize) {
+        List<Integer> keys = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        KBIterator iterator = new KBIterator(dbMarkup);
+        try {
+            while (iterator.hasNext() && keys.size() < sampleSize) {
+                Entry entry = iterator.next();
+                keys.add((Integer)KBEnvironment.deserialize(entry.getKey()));
+                values.add(dbMarkup.deserializeValue(entry.getValue()));
+            }
+        } finally {
+            iterator.close();
+        }
+        System.out.println(keys.size() + " markup entries sampled");
+
+        // the dictionary of the database if already compressed, otherwise a new one
+        MarkupCodec codec = dbMarkup.isCodecActive() ? (MarkupCodec)dbMarkup.getCodec() : 
+            new MarkupCodec(MarkupCodec.trainDictionary(values, MarkupCodec.MAX_DICTIONARY_SIZE));
+        MarkupCodec codecWithoutDictionary = new MarkupCodec(new byte[0]);
+
+        List<byte[]> fstValues = new ArrayList<>();
+        List<byte[]> compressedValues = new ArrayList<>();
+        long textSize = 0;
+        long fstSize = 0;
+        long compressedSize = 0;
+        long deflateSize = 0;
+        for (String value : values) {
+            textSize += value.length();
+            byte[] fst = KBEnvironment.serialize(value);
+            fstValues.add(fst);
+            fstSize += fst.length;
+            byte[] compressed = codec.encode(value);
+            compressedValues.add(compressed);
+            compressedSize += compressed.length;
+            byte[] deflate = codecWithoutDictionary.encode(value);
+            deflateSize += deflate.length;
+        }
+        System.out.println("text (chars): " + textSize);
+        System.out.println("FST: " + fstSize + " bytes");
+        System.out.println("Deflate without dictionary: " + deflateSize + " bytes (" + 
+            String.format("%.1f", (100.0 * deflateSize) / fstSize) + "% of FST)");
+        System.out.println("Deflate with dictionary: " + compressedSize + " bytes (" + 
+            String.format("%.1f", (100.0 * compressedSize) / fstSize) + "% of FST, dictionary of " + 
+            codec.getDictionary().length + " bytes)");
+
+        for (int round = 0; round < ROUNDS; round++) {
+            // the first rounds are warm-up
+            long start = System.nanoTime();
+            long check = 0;
+            for (byte[] fst : fstValues)
+                check += ((String)KBEnvironment.deserialize(fst)).length();
+            long fstTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (byte[] compressed : compressedValues)
+                check += codec.decode(new DirectBuffer(compressed)).length();
+            long compressedTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (Integer key : keys) {
+                String value = dbMarkup.retrieve(key);
+                if (value != null)
+                    check += value.length();
+            }
+            long retrieveTime = System.nanoTime() - start;
+
+            System.out.println("round " + round + " - decoding: FST " + 
+                String.format("%.2f", fstTime / (1000.0 * keys.size())) + " us/entry, compressed " + 
+                String.format("%.2f", compressedTime / (1000.0 * keys.size())) + " us/entry; retrieve (" + 
+                (dbMarkup.isCodecActive() ? "compressed" : "FST") + " database): " + 
+                String.format("%.2f", retrieveTime / (1000.0 * keys.size())) + " us/entry [" + check + "]");
+        }
+    }
+    
+}
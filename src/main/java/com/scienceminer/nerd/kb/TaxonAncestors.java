@@ -0,0 +1,85 @@
+package com.scienceminer.nerd.kb;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The full list of parent taxons (P171) of a taxon along the taxon hierarchy, with the set
+ * of kingdoms/regna it belongs to as a bitmask, as precomputed in the taxon closure database.
+ */
+public class TaxonAncestors implements Serializable {
+
+    /**
+     * The kingdoms/regna of the taxon classification as present in Wikidata, various
+     * classification schemes exist and are still a matter of debate.
+     */
+    public enum Kingdom {
+        ANIMALIA("Q729"),
+        PLANTAE("Q756"),
+        BACTERIA("Q10876"),
+        ARCHAEA("Q10872"),
+        PROTOZOA("Q101274"),
+        FUNGI("Q764"),
+        CHROMISTA("Q862296");
+
+        private final String wikidataId;
+
+        Kingdom(String wikidataId) {
+            this.wikidataId = wikidataId;
+        }
+
+        public String getWikidataId() {
+            return wikidataId;
+        }
+
+        public int getMask() {
+            return 1 << ordinal();
+        }
+
+        /**
+         * @return the mask of the kingdom identified by the given taxon, 0 if the taxon is
+         * not a kingdom
+         */
+        public static int maskOf(String wikidataId) {
+            for (Kingdom kingdom : values()) {
+                if (kingdom.wikidataId.equals(wikidataId))
+                    return kingdom.getMask();
+            }
+            return 0;
+        }
+
+        /**
+         * @return the mask of the kingdoms present in the given list of taxons
+         */
+        public static int maskOf(List<String> wikidataIds) {
+            int mask = 0;
+            if (wikidataIds != null) {
+                for (String wikidataId : wikidataIds)
+                    mask |= maskOf(wikidataId);
+            }
+            return mask;
+        }
+    }
+
+    // parent taxons, the immediate parents first, each one followed by its own ancestors
+    private String[] ancestors;
+    private int kingdoms;
+
+    public TaxonAncestors(String[] ancestors, int kingdoms) {
+        this.ancestors = ancestors;
+        this.kingdoms = kingdoms;
+    }
+
+    public List<String> getAncestors() {
+        return Arrays.asList(ancestors);
+    }
+
+    public int getKingdoms() {
+        return kingdoms;
+    }
+
+    public boolean isIn(Kingdom kingdom) {
+        return (kingdoms & kingdom.getMask()) != 0;
+    }
+}
@@ -3,6 +3,12 @@ package com.scienceminer.nerd.kb;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 import org.apache.commons.collections4.CollectionUtils;
 
@@ -31,16 +37,42 @@ public class UpperKnowledgeBase {
 	protected static final Logger LOGGER = LoggerFactory.getLogger(UpperKnowledgeBase.class);
     private static volatile UpperKnowledgeBase instance;
 
-	private KBUpperEnvironment env = null;
+	// the instance being initialised, visible before the initialisation is complete for 
+	// reporting its state
+	private static volatile UpperKnowledgeBase starting = null;
+	private static final AtomicBoolean backgroundStart = new AtomicBoolean(false);
 
-	private Map<String, LowerKnowledgeBase> wikipedias = null;
-    private Map<String, WikipediaDomainMap> wikipediaDomainMaps = null;
+	private volatile KBUpperEnvironment env = null;
+
+	// the lower knowledge bases initialised so far
+	private final Map<String, LowerKnowledgeBase> wikipedias = new ConcurrentHashMap<>();
+	private final Map<String, LanguageState> languageStates = new ConcurrentHashMap<>();
+	private final Map<String, Object> languageLocks = new HashMap<>();
+	private volatile List<String> activeLanguages = TARGET_LANGUAGES;
+
+	// views of the lower knowledge bases and domain maps by language, initialising a 
+	// language at its first use
+	private final Map<String, LowerKnowledgeBase> wikipediaConfs = 
+		new LanguageMap<>(this::getWikipediaConf, wikipedias.keySet());
+	private final Map<String, WikipediaDomainMap> wikipediaDomainMaps = 
+		new LanguageMap<>(this::getWikipediaDomainMap, wikipedias.keySet());
+
+	// the domain map is built from the English Wikipedia and shared by all the languages
+	private volatile WikipediaDomainMap domainMap = null;
+	private volatile LanguageState domainMapState = LanguageState.NOT_LOADED;
 
 	private long conceptCount = -1;
 
 	// this is the list of supported languages 
   	public static final List<String> TARGET_LANGUAGES = Arrays.asList(
   			Language.EN, Language.FR, Language.DE, Language.IT, Language.ES);
+
+	/**
+	 * Initialisation state of a language, or of the domain map
+	 */
+	public enum LanguageState {
+		NOT_LOADED, LOADING, READY, FAILED
+	}
  
 	 public static UpperKnowledgeBase getInstance() {
         if (instance == null) {
@@ -53,15 +85,47 @@ public class UpperKnowledgeBase {
      * Creates a new instance.
      */
 	private static synchronized void getNewInstance() {
+		if (instance != null)
+			return;
 		LOGGER.debug("Get new instance of UpperKnowledgeBase");
 		instance = new UpperKnowledgeBase();
+		starting = null;
+	}
+
+	/**
+	 * Return the instance without waiting for its initialisation: the instance if 
+	 * initialised, the instance being initialised otherwise, or null if the initialisation 
+	 * has not started.
+	 */
+	public static UpperKnowledgeBase peekInstance() {
+		UpperKnowledgeBase knowledgeBase = instance;
+		return (knowledgeBase != null) ? knowledgeBase : starting;
+	}
+
+	/**
+	 * Start the initialisation of the instance in the background, if not started yet.
+	 */
+	public static void startInstance() {
+		if (peekInstance() == null && backgroundStart.compareAndSet(false, true)) {
+			Thread init = new Thread(UpperKnowledgeBase::getInstance, "kb-init");
+			init.setDaemon(true);
+			init.start();
+		}
 	}
 
     /**
      * Hidden constructor
-     * Initialises a newly created Upper-level knowledge base
+     * Initialises a newly created Upper-level knowledge base. The active languages (all the 
+     * target languages by default, see activeLanguages in kb.yaml) are initialised here, 
+     * possibly in parallel, the other ones at their first use.
      */
     private UpperKnowledgeBase() {
+		for (String lang : TARGET_LANGUAGES) {
+			languageStates.put(lang, LanguageState.NOT_LOADED);
+			languageLocks.put(lang, new Object());
+		}
+		// the states are reported during the initialisation
+		starting = this;
     	try {
     		LOGGER.info("Init Lexicon");
     		Lexicon.getInstance();
@@ -70,45 +134,37 @@ public class UpperKnowledgeBase {
 
             LOGGER.info("\nInit Upper Knowledge-base layer");
             NerdConfig conf = mapper.readValue(new File("data/config/kb.yaml"), NerdConfig.class);
-			this.env = new KBUpperEnvironment(conf);
-			this.env.buildEnvironment(conf, false);
-
-			wikipedias = new HashMap<>();
-            wikipediaDomainMaps = new HashMap<>();
-
-            LOGGER.info("Init English lower Knowledge-base layer");
-            conf = mapper.readValue(new File("data/config/wikipedia-en.yaml"), NerdConfig.class);
-			LowerKnowledgeBase wikipedia_en = new LowerKnowledgeBase(conf);
-
-			wikipedias.put(Language.EN, wikipedia_en);
-            WikipediaDomainMap wikipediaDomainMaps_en = new WikipediaDomainMap(Language.EN, conf.getDbDirectory());
-            wikipediaDomainMaps_en.setWikipedia(wikipedia_en);
-            wikipediaDomainMaps_en.createAllMappings();
-            wikipediaDomainMaps.put(Language.EN, wikipediaDomainMaps_en);
-			
-			LOGGER.info("Init German lower Knowledge-base layer");
-            conf = mapper.readValue(new File("data/config/wikipedia-de.yaml"), NerdConfig.class);;
-			LowerKnowledgeBase wikipedia_de = new LowerKnowledgeBase(conf);
-			wikipedias.put(Language.DE, wikipedia_de);
-            wikipediaDomainMaps.put(Language.DE, wikipediaDomainMaps_en);
-
-            LOGGER.info("Init French lower Knowledge-base layer");
-            conf = mapper.readValue(new File("data/config/wikipedia-fr.yaml"), NerdConfig.class);;
-			LowerKnowledgeBase wikipedia_fr = new LowerKnowledgeBase(conf);
-			wikipedias.put(Language.FR, wikipedia_fr);
-            wikipediaDomainMaps.put(Language.FR, wikipediaDomainMaps_en);
-
-            LOGGER.info("Init Spanish lower Knowledge-base layer");
-            conf = mapper.readValue(new File("data/config/wikipedia-es.yaml"), NerdConfig.class);;
-			LowerKnowledgeBase wikipedia_es = new LowerKnowledgeBase(conf);
-			wikipedias.put(Language.ES, wikipedia_es);
-            wikipediaDomainMaps.put(Language.ES, wikipediaDomainMaps_en);
-
-            LOGGER.info("Init Italian lower Knowledge-base layer");
-            conf = mapper.readValue(new File("data/config/wikipedia-it.yaml"), NerdConfig.class);;
-			LowerKnowledgeBase wikipedia_it = new LowerKnowledgeBase(conf);
-			wikipedias.put(Language.IT, wikipedia_it);
-            wikipediaDomainMaps.put(Language.IT, wikipediaDomainMaps_en);
+			if (conf.getActiveLanguages() != null) {
+				activeLanguages = new ArrayList<>();
+				for (String lang : conf.getActiveLanguages()) {
+					if (TARGET_LANGUAGES.contains(lang))
+						activeLanguages.add(lang);
+					else
+						LOGGER.warn("Ignoring active language " + lang + ", not a supported language");
+				}
+			}
+
+			KBUpperEnvironment upperEnv = new KBUpperEnvironment(conf);
+			upperEnv.buildEnvironment(conf, false);
+			this.env = upperEnv;
+
+			LOGGER.info("Init lower Knowledge-base layers " + activeLanguages);
+			int nbThreads = Math.min(conf.getKbStartupThreads(), activeLanguages.size());
+			if (nbThreads > 1) {
+				ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+				try {
+					List<Future<LowerKnowledgeBase>> initialisations = new ArrayList<>();
+					for (String lang : activeLanguages)
+						initialisations.add(executor.submit(() -> getWikipediaConf(lang)));
+					for (Future<LowerKnowledgeBase> initialisation : initialisations)
+						initialisation.get();
+				} finally {
+					executor.shutdown();
+				}
+			} else {
+				for (String lang : activeLanguages)
+					getWikipediaConf(lang);
+			}
 
 			LOGGER.info("End of Initialization of Wikipedia environments");
 
@@ -119,18 +175,140 @@ public class UpperKnowledgeBase {
 		} 
 	}
 
+	public KBUpperEnvironment getEnvironment() {
+		return env;
+	}
+
+	/**
+	 * Return the lower knowledge base of the given language, initialising it if not done 
+	 * yet, or null if the language is not supported or cannot be initialised.
+	 */
 	public LowerKnowledgeBase getWikipediaConf(String lang) {
-		return wikipedias.get(lang);
+		LowerKnowledgeBase wikipedia = (lang == null) ? null : wikipedias.get(lang);
+		if (wikipedia != null || !languageLocks.containsKey(lang))
+			return wikipedia;
+		synchronized (languageLocks.get(lang)) {
+			wikipedia = wikipedias.get(lang);
+			if (wikipedia == null && languageStates.get(lang) != LanguageState.FAILED)
+				wikipedia = initLanguage(lang);
+		}
+		return wikipedia;
+	}
+
+	private LowerKnowledgeBase initLanguage(String lang) {
+		languageStates.put(lang, LanguageState.LOADING);
+		long start = System.currentTimeMillis();
+		LOGGER.info("Init " + lang + " lower Knowledge-base layer");
+		try {
+			ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+			NerdConfig conf = mapper.readValue(new File("data/config/wikipedia-" + lang + ".yaml"), NerdConfig.class);
+			LowerKnowledgeBase wikipedia = new LowerKnowledgeBase(conf);
+			if (Language.EN.equals(lang))
+				initDomainMap(wikipedia, conf);
+			wikipedias.put(lang, wikipedia);
+			languageStates.put(lang, LanguageState.READY);
+			LOGGER.info(lang + " lower Knowledge-base layer initialized in " + 
+				(System.currentTimeMillis() - start) + " ms");
+			return wikipedia;
+		} catch(Exception e) {
+			LOGGER.error("Cannot initialize the " + lang + " lower Knowledge-base layer", e);
+			languageStates.put(lang, LanguageState.FAILED);
+			return null;
+		}
 	}
-	
+
+	/**
+	 * Open the domain map, the mapping of the articles to their domains being created in the 
+	 * background if not done yet or if its creation has been interrupted. The domains are 
+	 * only returned once it is complete and the knowledge base is not ready before.
+	 */
+	private void initDomainMap(LowerKnowledgeBase wikipedia_en, NerdConfig conf) {
+		WikipediaDomainMap map = new WikipediaDomainMap(Language.EN, conf.getDbDirectory());
+		map.setWikipedia(wikipedia_en);
+		if (map.isLoaded()) {
+			domainMapState = LanguageState.READY;
+		} else {
+			domainMapState = LanguageState.LOADING;
+			Thread mapping = new Thread(() -> {
+				try {
+					map.createAllMappings();
+					domainMapState = LanguageState.READY;
+				} catch(Exception e) {
+					LOGGER.error("Cannot create the domain mapping", e);
+					domainMapState = LanguageState.FAILED;
+				}
+			}, "domain-mapping");
+			mapping.setDaemon(true);
+			mapping.start();
+		}
+		domainMap = map;
+	}
+
+	/**
+	 * Return the lower knowledge bases by language. A language is initialised at its first 
+	 * access with get(), the iteration only covers the languages already initialised.
+	 */
 	public Map<String, LowerKnowledgeBase> getWikipediaConfs() {
-		return wikipedias;
+		return wikipediaConfs;
+	}
+
+	/**
+	 * Return the lower knowledge bases initialised so far, without initialising any other.
+	 */
+	public Map<String, LowerKnowledgeBase> getLoadedWikipediaConfs() {
+		return Collections.unmodifiableMap(wikipedias);
 	}
 
     public Map<String, WikipediaDomainMap> getWikipediaDomainMaps () {
         return wikipediaDomainMaps;
     }
 
+	/**
+	 * Return the domain map for a language, which is the one of English for all the 
+	 * languages (so English is initialised if not done yet).
+	 */
+	private WikipediaDomainMap getWikipediaDomainMap(String lang) {
+		if (lang == null || !languageLocks.containsKey(lang))
+			return null;
+		if (domainMap == null)
+			getWikipediaConf(Language.EN);
+		return domainMap;
+	}
+
+	public List<String> getActiveLanguages() {
+		return activeLanguages;
+	}
+
+	/**
+	 * Return the initialisation state of each target language.
+	 */
+	public Map<String, LanguageState> getLanguageStates() {
+		Map<String, LanguageState> states = new LinkedHashMap<>();
+		for (String lang : TARGET_LANGUAGES)
+			states.put(lang, languageStates.get(lang));
+		return states;
+	}
+
+	public LanguageState getDomainMapState() {
+		return domainMapState;
+	}
+
+	/**
+	 * Return true if the upper knowledge base and all the active languages are initialised, 
+	 * and the domain mapping is not being created.
+	 */
+	public boolean isReady() {
+		if (env == null || instance != this)
+			return false;
+		if (domainMapState == LanguageState.LOADING)
+			return false;
+		for (String lang : activeLanguages) {
+			if (languageStates.get(lang) != LanguageState.READY)
+				return false;
+		}
+		return true;
+	}
+
 	public long getEntityCount() {
 		if (conceptCount == -1)
 			conceptCount = env.getDbConcepts().getDatabaseSize();
@@ -220,27 +398,49 @@ public class UpperKnowledgeBase {
 	 * Return the full list of parent taxons (P171) for a given taxon along the taxon hierarchy, null for empty list and non-taxon
 	 */
 	public List<String> getFullParentTaxons(String wikidataId) {
-		List<String> taxons = env.getDbTaxonParent().retrieve(wikidataId);
-		if (CollectionUtils.isEmpty(taxons)) {
-			return null;
+		TaxonClosureDatabase closureDb = env.getDbTaxonClosure();
+		if (closureDb != null && closureDb.isLoaded()) {
+			TaxonAncestors ancestors = closureDb.retrieve(wikidataId);
+			if (ancestors == null || CollectionUtils.isEmpty(ancestors.getAncestors()))
+				return null;
+			return new ArrayList<String>(ancestors.getAncestors());
 		}
-		List<String> result = new ArrayList<String>();
+
+		// no precomputed closure, walk the hierarchy
+		Set<String> result = new LinkedHashSet<String>();
+		addParentTaxons(wikidataId, result);
+		result.remove(wikidataId);
+		if (result.isEmpty())
+			return null;
+		return new ArrayList<String>(result);
+	}
+
+	private void addParentTaxons(String wikidataId, Set<String> result) {
+		List<String> taxons = env.getDbTaxonParent().retrieve(wikidataId);
+		if (CollectionUtils.isEmpty(taxons))
+			return;
 		for(String taxonId : taxons) {
-			if (!result.contains(taxonId))
-				result.add(taxonId);
-			List<String> parents = getFullParentTaxons(taxonId);
-			if (!CollectionUtils.isEmpty(parents)) {
-				for(String parentId : parents) {
-					if (!result.contains(parentId))
-						result.add(parentId);
-				}
-			}
+			// the parents of a taxon already present have already been added
+			if (result.add(taxonId))
+				addParentTaxons(taxonId, result);
 		}
-		return result;
+	}
+
+	/**
+	 * Return the mask of the kingdoms/regna a given taxon belongs to, 0 for a non-taxon (see 
+	 * {@link TaxonAncestors.Kingdom})
+	 */
+	public int getTaxonKingdoms(String wikidataId) {
+		TaxonClosureDatabase closureDb = env.getDbTaxonClosure();
+		if (closureDb != null && closureDb.isLoaded()) {
+			TaxonAncestors ancestors = closureDb.retrieve(wikidataId);
+			return (ancestors == null) ? 0 : ancestors.getKingdoms();
+		}
+		return TaxonAncestors.Kingdom.maskOf(getFullParentTaxons(wikidataId));
 	}
 
 	public void close() {
-		// close wikipedia instances
+		// close the initialised wikipedia instances
 		for (Map.Entry<String, LowerKnowledgeBase> entry : wikipedias.entrySet()) {
 			LowerKnowledgeBase wikipedia = entry.getValue();
 			wikipedia.close();
@@ -248,4 +448,41 @@ public class UpperKnowledgeBase {
 		env.close();
 		this.env = null;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Map view by language, the values being obtained with a function which initialises them 
+	 * if needed, and the iteration covering the given set of initialised languages.
+	 */
+	private static class LanguageMap<V> extends AbstractMap<String, V> {
+		private final Function<String, V> getter;
+		private final Set<String> loadedLanguages;
+
+		LanguageMap(Function<String, V> getter, Set<String> loadedLanguages) {
+			this.getter = getter;
+			this.loadedLanguages = loadedLanguages;
+		}
+
+		@Override
+		public V get(Object lang) {
+			return (lang instanceof String) ? getter.apply((String) lang) : null;
+		}
+
+		@Override
+		public boolean containsKey(Object lang) {
+			return TARGET_LANGUAGES.contains(lang);
+		}
+
+		@Override
+		public Set<Map.Entry<String, V>> entrySet() {
+			Set<Map.Entry<String, V>> entries = new LinkedHashSet<>();
+			for (String lang : TARGET_LANGUAGES) {
+				if (loadedLanguages.contains(lang)) {
+					V value = getter.apply(lang);
+					if (value != null)
+						entries.add(new AbstractMap.SimpleImmutableEntry<>(lang, value));
+				}
+			}
+			return entries;
+		}
+	}
+}
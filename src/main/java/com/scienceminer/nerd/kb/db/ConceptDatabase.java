@@ -27,6 +27,49 @@ public class ConceptDatabase extends StringRecordDatabase<Map<String,Integer>> {
 		return super.retrieve(key);
 	}*/
 
+	/**
+	 * Parses a line of the concept file: the Wikidata id followed by the page id for each 
+	 * language.
+	 */
+	private KBEntry<String,Map<String,Integer>> parseConceptLine(String line) {
+		String[] pieces = line.split(",");
+		if (pieces.length <= 1) 
+			return null;
+
+		int pos = 0;
+		String keyVal = pieces[pos];
+		if ( (keyVal == null) || (keyVal.trim().length() == 0) || (!keyVal.startsWith("Q")) )
+			return null;
+		pos++;
+		Map<String,Integer> conceptMap = new HashMap<String,Integer>();
+		while(pos < pieces.length) {
+			if (pieces[pos].equals("m{}")) {
+				pos++;
+				continue;
+			}
+			String lang = pieces[pos].replace("m{'", "").replace("'","");
+			pos++;
+			if (pos == pieces.length)
+				break;
+			String pageidString = pieces[pos].replace("'","").replace("}","");;
+			pos++;
+			Integer pageid = null;
+			try {
+				pageid = Integer.parseInt(pageidString);
+			} catch(Exception e) {
+				e.printStackTrace();
+			}
+			if ( (lang.trim().length() > 0) && (pageid != null) )
+				conceptMap.put(lang, pageid);
+		}
+		return new KBEntry<String,Map<String,Integer>>(keyVal, conceptMap);
+	}
+
+	@Override
+	protected KBEntry<String,Map<String,Integer>> parseDeltaRecord(String record) {
+		return parseConceptLine(record);
+	}
+
 	public void loadFromFile(File dataFile, boolean overwrite) throws Exception  {
 //System.out.println("input file: " + dataFile.getPath());
 //System.out.println("isLoaded: " + isLoaded);
@@ -50,37 +93,7 @@ public class ConceptDatabase extends StringRecordDatabase<Map<String,Integer>> {
 				tx = environment.createWriteTransaction();
 			}
 
-			String[] pieces = line.split(",");
-			if (pieces.length <= 1) 
-				continue;
-
-			int pos = 0;
-			String keyVal = pieces[pos];
-			if ( (keyVal == null) || (keyVal.trim().length() == 0) || (!keyVal.startsWith("Q")) )
-				continue;
-			pos++;
-			Map<String,Integer> conceptMap = new HashMap<String,Integer>();
-			while(pos < pieces.length) {
-				if (pieces[pos].equals("m{}")) {
-					pos++;
-					continue;
-				}
-				String lang = pieces[pos].replace("m{'", "").replace("'","");
-				pos++;
-				if (pos == pieces.length)
-					break;
-				String pageidString = pieces[pos].replace("'","").replace("}","");;
-				pos++;
-				Integer pageid = null;
-				try {
-					pageid = Integer.parseInt(pageidString);
-				} catch(Exception e) {
-					e.printStackTrace();
-				}
-				if ( (lang.trim().length() > 0) && (pageid != null) )
-					conceptMap.put(lang, pageid);
-			}
-			KBEntry<String,Map<String,Integer>> entry = new KBEntry<String,Map<String,Integer>>(keyVal, conceptMap);
+			KBEntry<String,Map<String,Integer>> entry = parseConceptLine(line);
 			if (entry != null) {
 				try {
 					db.put(tx, KBEnvironment.serialize(entry.getKey()), KBEnvironment.serialize(entry.getValue()));
@@ -0,0 +1,64 @@
+package com.scienceminer.nerd.kb.db;
+
+import com.scienceminer.nerd.kb.model.hadoop.DbIntList;
+
+import org.fusesource.lmdbjni.BufferCursor;
+import org.fusesource.lmdbjni.Transaction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * A {@link KBDatabase} associating integer ids to lists of integer ids (links, parents,
+ * children, redirects), which can be retrieved as primitive arrays.
+ */
+public abstract class IntListDatabase extends IntRecordDatabase<DbIntList> {
+	private static final Logger LOGGER = LoggerFactory.getLogger(IntListDatabase.class);
+
+	public static final int[] EMPTY = new int[0];
+
+	public IntListDatabase(KBEnvironment envi, DatabaseType type) {
+		super(envi, type);
+		setCodec(KBCodecs.INT_LIST);
+	}
+
+	/**
+	 * Retrieve the list of ids associated with a given key as a primitive array,
+	 * in the order of storage. With the binary codec, the array is decoded directly
+	 * from the LMDB buffer without intermediary boxed list.
+	 *
+	 * @param key the key to retrieve
+	 * @return the associated ids or an empty array if not exists
+	 */
+	public int[] retrieveIntArray(Integer key) {
+		if (!codecActive) {
+			DbIntList list = retrieve(key);
+			if (list == null || list.getValues() == null)
+				return EMPTY;
+			return toIntArray(list.getValues());
+		}
+
+		int[] result = EMPTY;
+		try (Transaction tx = environment.createReadTransaction();
+			BufferCursor cursor = db.bufferCursor(tx)) {
+			cursor.keyWriteBytes(KBEnvironment.serialize(key));
+			if (cursor.seekKey()) {
+				result = KBCodecs.decodeIntArray(cursor.valDirectBuffer());
+			}
+		} catch(Exception e) {
+			LOGGER.error("Cannot retrieve key " + key, e);
+		}
+		return result;
+	}
+
+	private static int[] toIntArray(List<Integer> values) {
+		if (values.isEmpty())
+			return EMPTY;
+		int[] result = new int[values.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = values.get(i);
+		return result;
+	}
+}
@@ -66,35 +66,7 @@ public abstract class IntLongDatabase extends KBDatabase<Integer, Long> {
 
 		System.out.println("Loading " + name + " database");
 
-		BufferedReader input = new BufferedReader(new InputStreamReader(new FileInputStream(dataFile), "UTF-8"));
-		long bytesRead = 0;
-
-		String line = null;
-		int nbToAdd = 0;
-		Transaction tx = environment.createWriteTransaction();
-		while ((line=input.readLine()) != null) {
-			if (nbToAdd == 10000) {
-				tx.commit();
-				tx.close();
-				nbToAdd = 0;
-				tx = environment.createWriteTransaction();
-			}
-			bytesRead = bytesRead + line.length() + 1;
-
-			CsvRecordInput cri = new CsvRecordInput(new ByteArrayInputStream((line + "\n").getBytes("UTF-8")));
-			KBEntry<Integer,Long> entry = deserialiseCsvRecord(cri);
-			if (entry != null) {
-				try {
-					db.put(tx, KBEnvironment.serialize(entry.getKey()), KBEnvironment.serialize(entry.getValue()));
-					nbToAdd++;
-				} catch(Exception e) {
-					e.printStackTrace();
-				}
-			}
-		}
-		tx.commit();
-		tx.close();
-		input.close();
+		loadFromCsvFile(dataFile, this::deserialiseCsvRecord);
 		isLoaded = true;
 	}
 
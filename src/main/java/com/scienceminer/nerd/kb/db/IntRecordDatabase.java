@@ -27,6 +27,14 @@ public abstract class IntRecordDatabase<Record> extends KBDatabase<Integer, Reco
 	public Record retrieve(Integer key) {
 		byte[] cachedData = null;
 		Record record = null;
+		if (codecActive) {
+			try {
+				return retrieveWithCodec(KBEnvironment.serialize(key));
+			} catch(Exception e) {
+				logger.error("Cannot retrieve key " + key, e);
+				return null;
+			}
+		}
 		try (Transaction tx = environment.createReadTransaction()) {
 			cachedData = db.get(tx, KBEnvironment.serialize(key));
 			if (cachedData != null) {
@@ -63,39 +71,7 @@ public abstract class IntRecordDatabase<Record> extends KBDatabase<Integer, Reco
 			throw new NerdResourceException("Resource file not found");
 		System.out.println("Loading " + name + " database");
 
-		BufferedReader input = new BufferedReader(new InputStreamReader(new FileInputStream(dataFile), "UTF-8"));
-		long bytesRead = 0;
-
-		String line = null;
-		int nbToAdd = 0;
-		Transaction tx = environment.createWriteTransaction();
-		while ((line=input.readLine()) != null) {
-			if (nbToAdd == 10000) {
-				tx.commit();
-				tx.close();
-				nbToAdd = 0;
-				tx = environment.createWriteTransaction();
-			}
-			bytesRead = bytesRead + line.length() + 1;
-			CsvRecordInput cri = new CsvRecordInput(new ByteArrayInputStream((line + "\n").getBytes("UTF-8")));
-			try {
-				KBEntry<Integer,Record> entry = deserialiseCsvRecord(cri);
-				if (entry != null) {
-					try {
-						db.put(tx, KBEnvironment.serialize(entry.getKey()), KBEnvironment.serialize(entry.getValue()));
-						nbToAdd++;
-					} catch(Exception e) {
-						e.printStackTrace();
-					}
-				}
-			} catch(Exception e) {
-				System.out.println("Error deserialising: " + line);
-				e.printStackTrace();
-			}
-		}
-		tx.commit();
-		tx.close();
-		input.close();
+		loadFromCsvFile(dataFile, this::deserialiseCsvRecord);
 		isLoaded = true;
 	}
 
@@ -0,0 +1,31 @@
+package com.scienceminer.nerd.kb.db;
+
+import org.fusesource.lmdbjni.DirectBuffer;
+
+/**
+ * A binary codec for the values of a {@link KBDatabase}, used as a replacement of the
+ * generic FST serialization for the most frequently accessed record types.
+ *
+ * Decoding is realized directly from the LMDB memory-mapped value (zero copy mode),
+ * so the returned object must not keep any reference to the buffer, which is only
+ * valid during the read transaction.
+ *
+ * @param <V> the value type
+ */
+public interface KBCodec<V> {
+
+	/**
+	 * @return the name of the codec, as recorded in the database directory
+	 */
+	String getName();
+
+	/**
+	 * Encodes a value as a byte array to be stored in LMDB.
+	 */
+	byte[] encode(V value);
+
+	/**
+	 * Decodes a value from an LMDB value buffer.
+	 */
+	V decode(DirectBuffer buffer);
+}
@@ -0,0 +1,216 @@
+package com.scienceminer.nerd.kb.db;
+
+import com.scienceminer.nerd.kb.model.hadoop.DbIntList;
+import com.scienceminer.nerd.kb.model.hadoop.DbLabel;
+import com.scienceminer.nerd.kb.model.hadoop.DbPage;
+import com.scienceminer.nerd.kb.model.hadoop.DbPageLinkCounts;
+import com.scienceminer.nerd.kb.model.hadoop.DbSenseForLabel;
+
+import org.fusesource.lmdbjni.DirectBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written binary layouts for the hot record types of the lower KB, all integers
+ * being stored in big-endian order:
+ *
+ * - DbIntList: int count, followed by count int values
+ * - DbLabel: 4 long statistics (link occ, link doc, text occ, text doc), int number
+ *   of senses, then for each sense: int id, long link occ, long link doc, byte flags
+ *   (bit 0: from title, bit 1: from redirect)
+ * - DbPage: int type, int depth, int title length, UTF-8 title bytes
+ * - DbPageLinkCounts: 4 int counts (total in, distinct in, total out, distinct out)
+ * - short[]: the raw short values, the vector size being given by the value length
+ */
+public final class KBCodecs {
+
+	private static final ByteOrder ORDER = ByteOrder.BIG_ENDIAN;
+
+	public static final KBCodec<DbIntList> INT_LIST = new IntListCodec();
+	public static final KBCodec<DbLabel> LABEL = new LabelCodec();
+	public static final KBCodec<DbPage> PAGE = new PageCodec();
+	public static final KBCodec<DbPageLinkCounts> PAGE_LINK_COUNTS = new PageLinkCountsCodec();
+	public static final KBCodec<short[]> SHORT_VECTOR = new ShortVectorCodec();
+
+	private KBCodecs() {
+	}
+
+	/**
+	 * Decodes a list encoded with {@link #INT_LIST} directly as a primitive array.
+	 */
+	public static int[] decodeIntArray(DirectBuffer buffer) {
+		int[] values = new int[buffer.getInt(0, ORDER)];
+		int pos = 4;
+		for (int i = 0; i < values.length; i++) {
+			values[i] = buffer.getInt(pos, ORDER);
+			pos += 4;
+		}
+		return values;
+	}
+
+	private static class IntListCodec implements KBCodec<DbIntList> {
+		@Override
+		public String getName() {
+			return "intList";
+		}
+
+		@Override
+		public byte[] encode(DbIntList value) {
+			List<Integer> values = value.getValues();
+			int size = (values == null) ? 0 : values.size();
+			ByteBuffer buffer = ByteBuffer.allocate(4 + (4 * size)).order(ORDER);
+			buffer.putInt(size);
+			for (int i = 0; i < size; i++)
+				buffer.putInt(values.get(i));
+			return buffer.array();
+		}
+
+		@Override
+		public DbIntList decode(DirectBuffer buffer) {
+			int size = buffer.getInt(0, ORDER);
+			ArrayList<Integer> values = new ArrayList<>(size);
+			int pos = 4;
+			for (int i = 0; i < size; i++) {
+				values.add(buffer.getInt(pos, ORDER));
+				pos += 4;
+			}
+			return new DbIntList(values);
+		}
+	}
+
+	private static class LabelCodec implements KBCodec<DbLabel> {
+		private static final int SENSE_SIZE = 4 + 8 + 8 + 1;
+
+		@Override
+		public String getName() {
+			return "label";
+		}
+
+		@Override
+		public byte[] encode(DbLabel value) {
+			List<DbSenseForLabel> senses = value.getSenses();
+			int size = (senses == null) ? 0 : senses.size();
+			ByteBuffer buffer = ByteBuffer.allocate(32 + 4 + (SENSE_SIZE * size)).order(ORDER);
+			buffer.putLong(value.getLinkOccCount());
+			buffer.putLong(value.getLinkDocCount());
+			buffer.putLong(value.getTextOccCount());
+			buffer.putLong(value.getTextDocCount());
+			buffer.putInt(size);
+			for (int i = 0; i < size; i++) {
+				DbSenseForLabel sense = senses.get(i);
+				buffer.putInt(sense.getId());
+				buffer.putLong(sense.getLinkOccCount());
+				buffer.putLong(sense.getLinkDocCount());
+				byte flags = 0;
+				if (sense.getFromTitle())
+					flags |= 1;
+				if (sense.getFromRedirect())
+					flags |= 2;
+				buffer.put(flags);
+			}
+			return buffer.array();
+		}
+
+		@Override
+		public DbLabel decode(DirectBuffer buffer) {
+			DbLabel label = new DbLabel();
+			label.setLinkOccCount(buffer.getLong(0, ORDER));
+			label.setLinkDocCount(buffer.getLong(8, ORDER));
+			label.setTextOccCount(buffer.getLong(16, ORDER));
+			label.setTextDocCount(buffer.getLong(24, ORDER));
+			int size = buffer.getInt(32, ORDER);
+			ArrayList<DbSenseForLabel> senses = new ArrayList<>(size);
+			int pos = 36;
+			for (int i = 0; i < size; i++) {
+				byte flags = buffer.getByte(pos + 20);
+				senses.add(new DbSenseForLabel(buffer.getInt(pos, ORDER),
+					buffer.getLong(pos + 4, ORDER),
+					buffer.getLong(pos + 12, ORDER),
+					(flags & 1) != 0,
+					(flags & 2) != 0));
+				pos += SENSE_SIZE;
+			}
+			label.setSenses(senses);
+			return label;
+		}
+	}
+
+	private static class PageCodec implements KBCodec<DbPage> {
+		@Override
+		public String getName() {
+			return "page";
+		}
+
+		@Override
+		public byte[] encode(DbPage value) {
+			byte[] title = (value.getTitle() == null) ? new byte[0] : value.getTitle().getBytes(StandardCharsets.UTF_8);
+			ByteBuffer buffer = ByteBuffer.allocate(12 + title.length).order(ORDER);
+			buffer.putInt(value.getType());
+			buffer.putInt(value.getDepth());
+			buffer.putInt(title.length);
+			buffer.put(title);
+			return buffer.array();
+		}
+
+		@Override
+		public DbPage decode(DirectBuffer buffer) {
+			int type = buffer.getInt(0, ORDER);
+			int depth = buffer.getInt(4, ORDER);
+			byte[] title = new byte[buffer.getInt(8, ORDER)];
+			buffer.getBytes(12, title);
+			return new DbPage(new String(title, StandardCharsets.UTF_8), type, depth);
+		}
+	}
+
+	private static class PageLinkCountsCodec implements KBCodec<DbPageLinkCounts> {
+		@Override
+		public String getName() {
+			return "pageLinkCounts";
+		}
+
+		@Override
+		public byte[] encode(DbPageLinkCounts value) {
+			ByteBuffer buffer = ByteBuffer.allocate(16).order(ORDER);
+			buffer.putInt(value.getTotalLinksIn());
+			buffer.putInt(value.getDistinctLinksIn());
+			buffer.putInt(value.getTotalLinksOut());
+			buffer.putInt(value.getDistinctLinksOut());
+			return buffer.array();
+		}
+
+		@Override
+		public DbPageLinkCounts decode(DirectBuffer buffer) {
+			return new DbPageLinkCounts(buffer.getInt(0, ORDER),
+				buffer.getInt(4, ORDER),
+				buffer.getInt(8, ORDER),
+				buffer.getInt(12, ORDER));
+		}
+	}
+
+	private static class ShortVectorCodec implements KBCodec<short[]> {
+		@Override
+		public String getName() {
+			return "shortVector";
+		}
+
+		@Override
+		public byte[] encode(short[] value) {
+			ByteBuffer buffer = ByteBuffer.allocate(2 * value.length).order(ORDER);
+			for (short s : value)
+				buffer.putShort(s);
+			return buffer.array();
+		}
+
+		@Override
+		public short[] decode(DirectBuffer buffer) {
+			short[] vector = new short[buffer.capacity() / 2];
+			for (int i = 0; i < vector.length; i++)
+				vector[i] = buffer.getShort(2 * i, ORDER);
+			return vector;
+		}
+	}
+}
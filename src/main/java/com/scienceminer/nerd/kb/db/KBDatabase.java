@@ -4,8 +4,26 @@ import com.scienceminer.nerd.kb.model.hadoop.DbTranslations;
 import org.apache.hadoop.record.CsvRecordInput;
 import org.fusesource.lmdbjni.*;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * 
@@ -13,6 +31,13 @@ import java.io.IOException;
  * @param <V> the value type
  */
 public abstract class KBDatabase<K,V> {
+	private static final Logger LOGGER = LoggerFactory.getLogger(KBDatabase.class);
+
+	// name of the file recording the binary codec used for the values of the database
+	public static final String CODEC_MARKER = "codec";
+
+	// name of the file recording the last key rewritten by an ongoing codec migration
+	public static final String CODEC_PROGRESS = "codec.progress";
 
 	protected Env environment = null;
   	protected Database db = null;
@@ -22,6 +47,10 @@ public abstract class KBDatabase<K,V> {
 	protected DatabaseType type = null;
 	protected KBEnvironment env = null;
 
+	// optional binary codec for the values, used instead of FST when active
+	protected KBCodec<V> codec = null;
+	protected boolean codecActive = false;
+
 	/**
 	 * Creates or load an existing database whose name will match the given {@link KBDatabase.DatabaseType}
 	 * 
@@ -151,6 +180,410 @@ public abstract class KBDatabase<K,V> {
 		return isLoaded;
 	}
 
+	/**
+	 * Registers a binary codec for the values of this database. The codec is active if 
+	 * the database has been written with it (as recorded in the database directory), or 
+	 * if the database is new and the configuration enables binary codecs. Otherwise the 
+	 * existing FST values are still used until {@link #migrateToCodec()} is called.
+	 *
+	 * @param codec the codec to be used for the values
+	 */
+	public void setCodec(KBCodec<V> codec) {
+		this.codec = codec;
+		File marker = new File(envFilePath, CODEC_MARKER);
+		if (marker.exists()) {
+			try {
+				String codecName = new String(Files.readAllBytes(marker.toPath()), StandardCharsets.UTF_8).trim();
+				codecActive = codecName.equals(codec.getName());
+				if (!codecActive)
+					LOGGER.warn(name + ": unexpected codec " + codecName + ", expecting " + codec.getName());
+			} catch(IOException e) {
+				LOGGER.error("Cannot read codec marker for " + name, e);
+			}
+		} else if (!isLoaded && env.getConfiguration().getUseBinaryCodec()) {
+			codecActive = true;
+			writeCodecMarker();
+		}
+	}
+
+	public KBCodec<V> getCodec() {
+		return codec;
+	}
+
+	public boolean isCodecActive() {
+		return codecActive;
+	}
+
+	private void writeCodecMarker() {
+		try {
+			writeFile(new File(envFilePath, CODEC_MARKER), codec.getName().getBytes(StandardCharsets.UTF_8));
+		} catch(IOException e) {
+			LOGGER.error("Cannot write codec marker for " + name, e);
+		}
+	}
+
+	// written aside then renamed, a crash never leaves a partial file
+	private static void writeFile(File file, byte[] content) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		Files.write(tmp.toPath(), content);
+		if (!tmp.renameTo(file)) {
+			file.delete();
+			if (!tmp.renameTo(file))
+				throw new IOException("Cannot write " + file.getPath());
+		}
+	}
+
+	/**
+	 * Serializes a value to be stored in the database, with the binary codec if active 
+	 * and FST otherwise.
+	 */
+	protected byte[] serializeValue(V value) {
+		if (codecActive)
+			return codec.encode(value);
+		else 
+			return KBEnvironment.serialize(value);
+	}
+
+	/**
+	 * Deserializes a stored value (e.g. obtained with a {@link KBIterator}), with the binary 
+	 * codec if active and FST otherwise.
+	 */
+	public V deserializeValue(byte[] data) {
+		if (codecActive)
+			return codec.decode(new DirectBuffer(data));
+		else
+			return (V)KBEnvironment.deserialize(data);
+	}
+
+	/**
+	 * Retrieves a value with the binary codec, decoding it directly from the LMDB buffer 
+	 * (zero copy mode).
+	 *
+	 * @param key the serialized key to retrieve
+	 * @return the value associated with the given key or null if not exists
+	 */
+	protected V retrieveWithCodec(byte[] key) {
+		V record = null;
+		try (Transaction tx = environment.createReadTransaction();
+			BufferCursor cursor = db.bufferCursor(tx)) {
+			cursor.keyWriteBytes(key);
+			if (cursor.seekKey()) {
+				record = codec.decode(cursor.valDirectBuffer());
+			}
+		}
+		return record;
+	}
+
+	/**
+	 * Parser of a CSV record of a data file into a database entry, a null entry is skipped.
+	 */
+	protected interface CsvEntryParser<K,V> {
+		KBEntry<K,V> parse(CsvRecordInput record) throws Exception;
+	}
+
+	// number of lines parsed and written together, in one write transaction
+	private static final int LOAD_BATCH_SIZE = 10000;
+
+	/**
+	 * Loads the entries of a CSV data file, one record per line. The lines are parsed by 
+	 * batches, in parallel when the configuration sets several parser threads, and the 
+	 * batches are written in order by the calling thread, one write transaction per batch. 
+	 * When the database is empty and the serialized keys come in increasing order (pre-sorted 
+	 * input), the entries are appended (MDB_APPEND), otherwise they are put normally from the 
+	 * first key out of order.
+	 *
+	 * @param dataFile the CSV data file
+	 * @param parser the parser of the records
+	 * @return the number of entries written
+	 */
+	protected long loadFromCsvFile(File dataFile, CsvEntryParser<K,V> parser) throws Exception {
+		int nbThreads = env.getConfiguration().getKbBuildParserThreads();
+		ExecutorService executor = (nbThreads > 1) ? Executors.newFixedThreadPool(nbThreads) : null;
+		BatchWriter writer = new BatchWriter(getDatabaseSize() == 0);
+		try (BufferedReader input = new BufferedReader(new InputStreamReader(new FileInputStream(dataFile), "UTF-8"))) {
+			// parsed batches waiting to be written, in the order of the file
+			Deque<Future<List<byte[][]>>> pending = new ArrayDeque<>();
+			List<String> lines;
+			while (!(lines = readLines(input, LOAD_BATCH_SIZE)).isEmpty()) {
+				if (executor == null) {
+					writer.write(parseLines(lines, parser));
+					continue;
+				}
+				final List<String> batch = lines;
+				pending.add(executor.submit(() -> parseLines(batch, parser)));
+				// bounded look-ahead so that the parsed batches do not accumulate in memory
+				if (pending.size() >= nbThreads * 2)
+					writer.write(pending.poll().get());
+			}
+			while (!pending.isEmpty())
+				writer.write(pending.poll().get());
+		} finally {
+			if (executor != null)
+				executor.shutdownNow();
+		}
+		if (writer.appended > 0)
+			System.out.println(name + ": " + writer.appended + " entries appended to sorted input");
+		return writer.written;
+	}
+
+	private static List<String> readLines(BufferedReader input, int nbLines) throws IOException {
+		List<String> lines = new ArrayList<>(nbLines);
+		String line = null;
+		while (lines.size() < nbLines && (line = input.readLine()) != null)
+			lines.add(line);
+		return lines;
+	}
+
+	private List<byte[][]> parseLines(List<String> lines, CsvEntryParser<K,V> parser) {
+		List<byte[][]> entries = new ArrayList<>(lines.size());
+		for (String line : lines) {
+			try {
+				CsvRecordInput cri = new CsvRecordInput(new ByteArrayInputStream((line + "\n").getBytes(StandardCharsets.UTF_8)));
+				KBEntry<K,V> entry = parser.parse(cri);
+				if (entry != null)
+					entries.add(new byte[][] {KBEnvironment.serialize(entry.getKey()), serializeValue(entry.getValue())});
+			} catch(Exception e) {
+				System.out.println("Error deserialising: " + line);
+				e.printStackTrace();
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Single writer of batches of serialized entries, each batch in its own write 
+	 * transaction. Entries are appended as long as the database was empty and the keys 
+	 * are increasing.
+	 */
+	protected class BatchWriter {
+		private boolean append;
+		private byte[] lastKey = null;
+		private long written = 0;
+		private long appended = 0;
+
+		BatchWriter(boolean append) {
+			this.append = append;
+		}
+
+		void write(List<byte[][]> entries) {
+			if (entries.isEmpty())
+				return;
+			try (Transaction tx = environment.createWriteTransaction()) {
+				for (byte[][] entry : entries) {
+					try {
+						if (append && (lastKey == null || compareKeys(lastKey, entry[0]) < 0)) {
+							db.put(tx, entry[0], entry[1], Constants.APPEND);
+							appended++;
+						} else {
+							append = false;
+							db.put(tx, entry[0], entry[1]);
+						}
+						lastKey = entry[0];
+						written++;
+					} catch(Exception e) {
+						e.printStackTrace();
+					}
+				}
+				tx.commit();
+			}
+		}
+	}
+
+	/**
+	 * Compares two keys as LMDB does by default (lexicographic order of the unsigned bytes).
+	 */
+	static int compareKeys(byte[] a, byte[] b) {
+		int length = Math.min(a.length, b.length);
+		for (int i = 0; i < length; i++) {
+			int diff = (a[i] & 0xff) - (b[i] & 0xff);
+			if (diff != 0)
+				return diff;
+		}
+		return a.length - b.length;
+	}
+
+	/**
+	 * @return the manifest of the database, or null if the database has no manifest (built 
+	 * before manifests were introduced) or if it cannot be read
+	 */
+	public KBManifest getManifest() {
+		try {
+			return KBManifest.load(new File(envFilePath));
+		} catch(IOException e) {
+			LOGGER.error("Cannot read the manifest of " + name, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Records that the database has been built from the given snapshot version.
+	 */
+	public void writeManifest(String version) {
+		try {
+			KBManifest.build(version).save(new File(envFilePath));
+		} catch(IOException e) {
+			LOGGER.error("Cannot write the manifest of " + name, e);
+		}
+	}
+
+	/**
+	 * Parses a record of a delta file into the entry it adds, replaces or removes. By default 
+	 * the record has the CSV format of the data file the database is built from.
+	 *
+	 * @return the entry, or null if the record does not concern this database
+	 */
+	protected KBEntry<K,V> parseDeltaRecord(String record) throws Exception {
+		return deserialiseCsvRecord(new CsvRecordInput(new ByteArrayInputStream((record + "\n").getBytes(StandardCharsets.UTF_8))));
+	}
+
+	/**
+	 * Applies operations of a delta file in a single write transaction, readers keep seeing 
+	 * the previous state until it is committed. A record that cannot be applied is skipped 
+	 * and added to the invalid records, the other ones are applied.
+	 *
+	 * @param operations the (operation, record) pairs, the operation being 
+	 * {@link KBDelta#ADD} to add or replace the entry of the record and {@link KBDelta#REMOVE} 
+	 * to remove it
+	 * @param invalidRecords the list receiving the records that cannot be applied
+	 * @return the number of entries added, replaced or removed
+	 */
+	public int applyDelta(List<String[]> operations, List<String> invalidRecords) {
+		int nbChanged = 0;
+		try (Transaction tx = environment.createWriteTransaction()) {
+			for (String[] operation : operations) {
+				try {
+					KBEntry<K,V> entry = parseDeltaRecord(operation[1]);
+					if (entry == null || entry.getKey() == null)
+						continue;
+					byte[] key = KBEnvironment.serialize(entry.getKey());
+					if (operation[0].equals(KBDelta.REMOVE) || entry.getValue() == null)
+						db.delete(tx, key);
+					else
+						db.put(tx, key, serializeValue(entry.getValue()));
+					nbChanged++;
+				} catch(Exception e) {
+					LOGGER.error("Invalid delta record for " + name + ": " + operation[1], e);
+					invalidRecords.add(operation[1]);
+				}
+			}
+			tx.commit();
+		}
+		isLoaded = true;
+		return nbChanged;
+	}
+
+	/**
+	 * Records in the manifest that a delta of the given version has been applied.
+	 */
+	public void recordDelta(String deltaVersion) {
+		KBManifest manifest = getManifest();
+		if (manifest == null)
+			manifest = KBManifest.build(null);
+		manifest.addDelta(deltaVersion);
+		try {
+			manifest.save(new File(envFilePath));
+		} catch(IOException e) {
+			LOGGER.error("Cannot write the manifest of " + name, e);
+		}
+	}
+
+	/**
+	 * Rewrites all the FST values of an existing database with the registered binary 
+	 * codec. Entries are migrated by batches of 10000, each batch being read in a 
+	 * short read transaction and then written in its own write transaction. 
+	 *
+	 * The migration can be resumed after a crash: the last key of each committed batch 
+	 * is recorded in {@link #CODEC_PROGRESS} and the migration restarts after it, while 
+	 * the values already rewritten but not yet recorded (the batch committed just before 
+	 * the crash) are recognized by the codec and left untouched. The codec marker is only 
+	 * written once all the values have been rewritten, so until then the database must 
+	 * not be used and the migration must be rerun with the same codec. 
+	 */
+	public void migrateToCodec() {
+		if (codec == null || codecActive)
+			return;
+		System.out.println("Migrating " + name + " database to codec " + codec.getName());
+
+		File progress = new File(envFilePath, CODEC_PROGRESS);
+		byte[] lastKey = readCodecProgress(progress);
+		if (lastKey != null)
+			System.out.println(name + ": resuming interrupted migration");
+		long nbMigrated = 0;
+		while(true) {
+			List<byte[]> keys = new ArrayList<>();
+			List<byte[]> values = new ArrayList<>();
+			try (Transaction tx = environment.createReadTransaction()) {
+				EntryIterator iterator = (lastKey == null) ? db.iterate(tx) : db.seek(tx, lastKey);
+				while (iterator.hasNext() && keys.size() < 10000) {
+					Entry entry = iterator.next();
+					if (lastKey != null && Arrays.equals(lastKey, entry.getKey()))
+						continue;
+					keys.add(entry.getKey());
+					values.add(entry.getValue());
+				}
+				iterator.close();
+			}
+			if (keys.isEmpty())
+				break;
+
+			try (Transaction tx = environment.createWriteTransaction()) {
+				for (int i = 0; i < keys.size(); i++) {
+					byte[] encoded = encodeFstValue(values.get(i));
+					if (encoded != null)
+						db.put(tx, keys.get(i), encoded);
+				}
+				tx.commit();
+			}
+			nbMigrated += keys.size();
+			lastKey = keys.get(keys.size() - 1);
+			try {
+				writeFile(progress, (codec.getName() + "\n" + 
+					Base64.getEncoder().encodeToString(lastKey)).getBytes(StandardCharsets.UTF_8));
+			} catch(IOException e) {
+				LOGGER.warn("Cannot record the migration progress of " + name, e);
+			}
+		}
+		codecActive = true;
+		writeCodecMarker();
+		progress.delete();
+		System.out.println(name + ": " + nbMigrated + " entries migrated");
+	}
+
+	/**
+	 * @return the value stored with FST re-encoded with the codec, or null if the value 
+	 * is already encoded with the codec
+	 */
+	private byte[] encodeFstValue(byte[] data) {
+		try {
+			return codec.encode((V)KBEnvironment.deserialize(data));
+		} catch(RuntimeException e) {
+			try {
+				codec.decode(new DirectBuffer(data));
+				return null;
+			} catch(RuntimeException e2) {
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * @return the last key migrated by an interrupted migration to the current codec, or 
+	 * null if there is none
+	 */
+	private byte[] readCodecProgress(File progress) {
+		if (!progress.exists())
+			return null;
+		try {
+			String[] lines = new String(Files.readAllBytes(progress.toPath()), StandardCharsets.UTF_8).split("\n");
+			if (lines.length == 2 && lines[0].equals(codec.getName()))
+				return Base64.getDecoder().decode(lines[1].trim());
+			LOGGER.warn(name + ": ignoring the progress of a migration to another codec");
+		} catch(IOException | IllegalArgumentException e) {
+			LOGGER.warn("Cannot read the migration progress of " + name, e);
+		}
+		return null;
+	}
+
 	/**
 	 * Database types
 	 */
@@ -195,6 +628,12 @@ public abstract class KBDatabase<K,V> {
 		 */
 		pageLinkCounts,
 
+		/**
+		 * Associates integer ids of the most linked articles with their top-K most related articles 
+		 * and the corresponding relatedness scores
+		 */
+		relatednessNeighbours,
+
 		/**
 		 * Associates integer ids of categories with the ids of categories it belongs to
 		 */
@@ -282,6 +721,12 @@ public abstract class KBDatabase<K,V> {
 		 */
 		taxon,
 
+		/**
+		 * Associates a concept id string to the full list of its parent taxons and the mask of 
+		 * its kingdoms (transitive closure of the taxon hierarchy)
+		 */
+		taxonClosure,
+
 		/**
 		 * Associates a strind (word) to a vector
 		 */
@@ -30,7 +30,7 @@ public class KBDatabaseFactory {
 	}
 
 	public KBDatabase<Integer, DbPage> buildPageDatabase() {
-		return new IntRecordDatabase<DbPage>(env, DatabaseType.page) {
+		KBDatabase<Integer, DbPage> database = new IntRecordDatabase<DbPage>(env, DatabaseType.page) {
 			@Override
 			public KBEntry<Integer,DbPage> deserialiseCsvRecord(CsvRecordInput record) throws IOException {
 				Integer id = record.readInt(null);
@@ -56,9 +56,11 @@ public class KBDatabaseFactory {
 				return record;
 			}
 
-			// using standard LMDB copy mode
+			// using standard LMDB copy mode, or zero copy mode with the binary codec
 			@Override
 			public DbPage retrieve(Integer key) {
+				if (codecActive)
+					return super.retrieve(key);
 				byte[] cachedData = null;
 				DbPage record = null;
 				try (Transaction tx = environment.createReadTransaction()) {
@@ -71,6 +73,12 @@ public class KBDatabaseFactory {
 				return record;
 			}
 
+			@Override
+			protected KBEntry<Integer,DbPage> parseDeltaRecord(String record) throws Exception {
+				KBEntry<Integer,DbPage> entry = super.parseDeltaRecord(record);
+				return ((entry != null) && (filterEntry(entry) != null)) ? entry : null;
+			}
+
 			public DbPage filterEntry(KBEntry<Integer, DbPage> e) {
 				// we want to index only articles
 				PageType pageType = PageType.values()[e.getValue().getType()];
@@ -90,39 +98,15 @@ public class KBDatabaseFactory {
 				if (dataFile == null)
 					throw new NerdResourceException("Markup file not found");
 
-				BufferedReader input = new BufferedReader(new InputStreamReader(new FileInputStream(dataFile), "UTF-8"));
-				String line = null;
-				int nbToAdd = 0;
-				Transaction tx = environment.createWriteTransaction();
-				while ((line=input.readLine()) != null) {
-					if (nbToAdd == 10000) {
-						tx.commit();
-						tx.close();
-						nbToAdd = 0;
-						tx = environment.createWriteTransaction();
-					}
-					CsvRecordInput cri = new CsvRecordInput(new ByteArrayInputStream((line + "\n").getBytes("UTF-8")));
-					try {
-						KBEntry<Integer,DbPage> entry = deserialiseCsvRecord(cri);
-						if ( (entry != null) && (filterEntry(entry) != null) ) {
-							try {
-								db.put(tx, KBEnvironment.serialize(entry.getKey()), KBEnvironment.serialize(entry.getValue()));
-								nbToAdd++;
-							} catch(Exception e) {
-								e.printStackTrace();
-							}
-						}
-					} catch(Exception e) {
-						System.out.println("Error deserialising: " + line);
-						e.printStackTrace();
-					}
-				}
-				tx.commit();
-				tx.close();
-				input.close();
+				loadFromCsvFile(dataFile, record -> {
+					KBEntry<Integer,DbPage> entry = deserialiseCsvRecord(record);
+					return ((entry != null) && (filterEntry(entry) != null)) ? entry : null;
+				});
 				isLoaded = true;
 			}
 		};
+		database.setCodec(KBCodecs.PAGE);
+		return database;
 	}
 
 	public KBDatabase<String,Integer> buildTitleDatabase(DatabaseType type) {
@@ -156,11 +140,11 @@ public class KBDatabaseFactory {
 		return new LabelDatabase(env);
 	}
 
-	public KBDatabase<Integer, DbIntList> buildPageLinkNoSentencesDatabase(DatabaseType type) {
+	public IntListDatabase buildPageLinkNoSentencesDatabase(DatabaseType type) {
 		if (type != DatabaseType.pageLinksInNoSentences && type != DatabaseType.pageLinksOutNoSentences)
 			throw new IllegalArgumentException("type must be either DatabaseType.pageLinksInNoSentences or DatabaseType.pageLinksOutNoSentences");
 
-		return new IntRecordDatabase<DbIntList>(env, type) {
+		return new IntListDatabase(env, type) {
 			@Override
 			public KBEntry<Integer, DbIntList> deserialiseCsvRecord(CsvRecordInput record) throws IOException {
 				// this has to read from pagelinks file (with sentences)
@@ -178,7 +162,7 @@ public class KBDatabaseFactory {
 			}
 			
 			@Override
-			public void loadFromFile(File dataFile, boolean overwrite) throws IOException  {
+			public void loadFromFile(File dataFile, boolean overwrite) throws Exception  {
 				if (isLoaded && !overwrite)
 					return;
 				System.out.println("Loading " + getName());
@@ -186,34 +170,12 @@ public class KBDatabaseFactory {
 				if (dataFile == null)
 					throw new NerdResourceException("Markup file not found");
 
-				BufferedReader input = new BufferedReader(new InputStreamReader(new FileInputStream(dataFile), "UTF-8"));
-				String line = null;
-				int nbToAdd = 0;
-				Transaction tx = environment.createWriteTransaction();
-				while ((line=input.readLine()) != null) {
-					if (nbToAdd == 10000) {
-						tx.commit();
-						tx.close();
-						nbToAdd = 0;
-						tx = environment.createWriteTransaction();
-					}
-					CsvRecordInput cri = new CsvRecordInput(new ByteArrayInputStream((line + "\n").getBytes("UTF-8")));
-					KBEntry<Integer,DbIntList> entry = deserialiseCsvRecord(cri);
-					try {
-						db.put(tx, KBEnvironment.serialize(entry.getKey()), KBEnvironment.serialize(entry.getValue()));
-						nbToAdd++;
-					} catch(Exception e) {
-						e.printStackTrace();
-					}
-				}
-				tx.commit();
-				tx.close();
-				input.close();
+				loadFromCsvFile(dataFile, this::deserialiseCsvRecord);
 			}
 		};
 	}
 
-	public KBDatabase<Integer,DbIntList> buildIntIntListDatabase(final DatabaseType type) {
+	public IntListDatabase buildIntIntListDatabase(final DatabaseType type) {
 		switch (type) {
 			case categoryParents:
 			case articleParents:
@@ -225,7 +187,7 @@ public class KBDatabaseFactory {
 				throw new IllegalArgumentException(type.name() + " is not a valid DatabaseType for IntIntListDatabase");
 			}
 
-		return new IntRecordDatabase<DbIntList>(env, type) {
+		return new IntListDatabase(env, type) {
 			@Override
 			public KBEntry<Integer, DbIntList> deserialiseCsvRecord(CsvRecordInput record) throws IOException {
 				Integer k = record.readInt(null);
@@ -345,7 +307,7 @@ public class KBDatabaseFactory {
 					KBEntry<Integer,String> entry = new KBEntry<>(keyVal, pieces[1]);
 
 					try {
-						db.put(tx, KBEnvironment.serialize(entry.getKey()), KBEnvironment.serialize(entry.getValue()));
+						db.put(tx, KBEnvironment.serialize(entry.getKey()), serializeValue(entry.getValue()));
 						nbToAdd++;
 					} catch(Exception e) {
 						e.printStackTrace();
@@ -366,12 +328,20 @@ public class KBDatabaseFactory {
 	}
 
 	public KBDatabase<String, short[]> buildWordEmbeddingsDatabase() {
-		return new KBDatabase<String, short[]>(env, DatabaseType.wordEmbeddings) {
+		KBDatabase<String, short[]> database = new KBDatabase<String, short[]>(env, DatabaseType.wordEmbeddings) {
 
-			// using standard LMDB copy mode
+			// using standard LMDB copy mode, or zero copy mode with the binary codec
 			@Override
 			public short[] retrieve(String key) {
 				short[] record = null;
+				if (codecActive) {
+					try {
+						record = retrieveWithCodec(KBEnvironment.serialize(key));
+					} catch(Exception e) {
+						LOGGER.error("Word Embeddings Database: Cannot retrieve key " + key, e);
+					}
+					return record;
+				}
 				try (Transaction tx = environment.createReadTransaction()) {
 					byte[] cachedData = db.get(tx, KBEnvironment.serialize(key));
 					if (cachedData != null) {
@@ -423,7 +393,7 @@ public class KBDatabaseFactory {
 		                }
 		                KBEntry<String,short[]> entry = new KBEntry<>(keyVal, vector);
 
-							db.put(tx, KBEnvironment.serialize(entry.getKey()), KBEnvironment.serialize(entry.getValue()));
+							db.put(tx, KBEnvironment.serialize(entry.getKey()), serializeValue(entry.getValue()));
 							nbToAdd++;
 
 		            } catch(Exception e) {
@@ -442,15 +412,25 @@ public class KBDatabaseFactory {
 		        throw new UnsupportedOperationException();
 		    }
 		};
+		database.setCodec(KBCodecs.SHORT_VECTOR);
+		return database;
 	}
 
 	public KBDatabase<String, short[]> buildEntityEmbeddingsDatabase() {
-		return new KBDatabase<String, short[]>(env, DatabaseType.entityEmbeddings) {
+		KBDatabase<String, short[]> database = new KBDatabase<String, short[]>(env, DatabaseType.entityEmbeddings) {
 
-			// using standard LMDB copy mode
+			// using standard LMDB copy mode, or zero copy mode with the binary codec
 			@Override
 			public short[] retrieve(String key) {
 				short[] record = null;
+				if (codecActive) {
+					try {
+						record = retrieveWithCodec(KBEnvironment.serialize(key));
+					} catch(Exception e) {
+						LOGGER.error("Entity Embeddings Database: Cannot retrieve key " + key, e);
+					}
+					return record;
+				}
 				try (Transaction tx = environment.createReadTransaction()) {
 					byte[] cachedData = db.get(tx, KBEnvironment.serialize(key));
 					if (cachedData != null) {
@@ -500,7 +480,7 @@ public class KBDatabaseFactory {
 		                    }
 		                }
 		                KBEntry<String,short[]> entry = new KBEntry<>(keyVal, vector);
-						db.put(tx, KBEnvironment.serialize(entry.getKey()), KBEnvironment.serialize(entry.getValue()));
+						db.put(tx, KBEnvironment.serialize(entry.getKey()), serializeValue(entry.getValue()));
 						nbToAdd++;
 
 		            } catch(Exception e) {
@@ -519,5 +499,7 @@ public class KBDatabaseFactory {
 		        throw new UnsupportedOperationException();
 		    }
 		};
+		database.setCodec(KBCodecs.SHORT_VECTOR);
+		return database;
 	}
 }
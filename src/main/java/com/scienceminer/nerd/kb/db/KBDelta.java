@@ -0,0 +1,176 @@
+package com.scienceminer.nerd.kb.db;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.hash.Hashing;
+
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Delta files for updating existing KB environments without rebuilding them.
+ *
+ * A delta file is a UTF-8 text file with one operation per line:
+ *
+ *     &lt;operation&gt; TAB &lt;source&gt; TAB &lt;record&gt;
+ *
+ * where the operation is + (add or replace the entry of the record) or - (remove the
+ * entry of the record), the source is the name of the data file the record comes from
+ * (e.g. page.csv, label.csv, pageLinkIn.csv, latest-all.json) and the record has the
+ * format of this data file (a CSV line, or a Wikidata JSON entity for the dump). All the
+ * databases built from the source are updated. Lines starting with # are ignored.
+ *
+ * A delta between two versions of a CSV data file or of the uncompressed Wikidata JSON 
+ * dump can be produced with {@link #diff}.
+ */
+public class KBDelta {
+
+	public static final String ADD = "+";
+	public static final String REMOVE = "-";
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	/**
+	 * @return the (operation, source, record) of a delta line, or null for an empty or
+	 * comment line
+	 */
+	public static String[] parseLine(String line) throws IOException {
+		if (line.length() == 0 || line.startsWith("#"))
+			return null;
+		String[] pieces = line.split("\t", 3);
+		if (pieces.length != 3 || !(pieces[0].equals(ADD) || pieces[0].equals(REMOVE)))
+			throw new IOException("Invalid delta line: " + line);
+		return pieces;
+	}
+
+	// the key of a CSV record is its first field
+	private static String csvKey(String line) {
+		int ind = line.indexOf(',');
+		return (ind == -1) ? line : line.substring(0, ind);
+	}
+
+	// the key of a Wikidata entity is its id, the other top-level fields are skipped
+	private static String entityId(String record) throws IOException {
+		try (JsonParser parser = JSON_FACTORY.createParser(record)) {
+			if (parser.nextToken() == JsonToken.START_OBJECT) {
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String field = parser.getCurrentName();
+					parser.nextToken();
+					if (field.equals("id"))
+						return parser.getValueAsString();
+					parser.skipChildren();
+				}
+			}
+		}
+		throw new IOException("Wikidata entity without id: " + 
+			((record.length() > 100) ? record.substring(0, 100) + "..." : record));
+	}
+
+	/**
+	 * @return the record of a line of a data file, or null if the line has no record: in 
+	 * the JSON dump, the entities are the elements of an array, one per line, so the 
+	 * brackets are skipped and the trailing commas removed
+	 */
+	private static String record(String line, boolean json) {
+		if (!json)
+			return (line.length() == 0) ? null : line;
+		String record = line.trim();
+		if (record.endsWith(","))
+			record = record.substring(0, record.length() - 1);
+		if (record.length() == 0 || record.equals("[") || record.equals("]"))
+			return null;
+		return record;
+	}
+
+	private static String key(String record, boolean json) throws IOException {
+		return json ? entityId(record) : csvKey(record);
+	}
+
+	private static long hash(String line) {
+		return Hashing.murmur3_128().hashString(line, StandardCharsets.UTF_8).asLong();
+	}
+
+	/**
+	 * Writes the delta between two versions of a data file, whose records are identified by 
+	 * their first field for a CSV file (.csv) and by their id for the Wikidata JSON dump 
+	 * (.json, uncompressed). The records removed or changed are first removed (with their 
+	 * old content, so that the entries keyed by another field, like the titles, are removed 
+	 * too), then the records added or changed are added.
+	 *
+	 * @param oldFile the data file of the current KB
+	 * @param newFile the new data file
+	 * @param source the name of the data file, written in the delta lines
+	 * @param output the delta file being written
+	 * @return the number of operations written
+	 * @throws IOException if the data files are neither CSV nor JSON files
+	 */
+	public static long diff(File oldFile, File newFile, String source, PrintWriter output) throws IOException {
+		boolean json = source.endsWith(".json");
+		if (!json && !source.endsWith(".csv"))
+			throw new IOException("Unsupported data file " + source + 
+				", a delta can only be computed between CSV (.csv) or uncompressed Wikidata JSON (.json) files");
+
+		// first pass on the old records
+		Object2LongOpenHashMap<String> oldRecords = new Object2LongOpenHashMap<>();
+		try (BufferedReader reader = openReader(oldFile)) {
+			String line = null;
+			while ((line = reader.readLine()) != null) {
+				String record = record(line, json);
+				if (record != null)
+					oldRecords.put(key(record, json), hash(record));
+			}
+		}
+
+		// new records: the unchanged ones are forgotten, the remaining old records are
+		// therefore the changed and removed ones
+		Set<String> added = new HashSet<>();
+		try (BufferedReader reader = openReader(newFile)) {
+			String line = null;
+			while ((line = reader.readLine()) != null) {
+				String record = record(line, json);
+				if (record == null)
+					continue;
+				String key = key(record, json);
+				if (!oldRecords.containsKey(key))
+					added.add(key);
+				else if (oldRecords.getLong(key) == hash(record))
+					oldRecords.removeLong(key);
+			}
+		}
+
+		long nbOperations = 0;
+		try (BufferedReader reader = openReader(oldFile)) {
+			String line = null;
+			while ((line = reader.readLine()) != null) {
+				String record = record(line, json);
+				if (record != null && oldRecords.containsKey(key(record, json))) {
+					output.println(REMOVE + "\t" + source + "\t" + record);
+					nbOperations++;
+				}
+			}
+		}
+		try (BufferedReader reader = openReader(newFile)) {
+			String line = null;
+			while ((line = reader.readLine()) != null) {
+				String record = record(line, json);
+				if (record == null)
+					continue;
+				String key = key(record, json);
+				if (added.contains(key) || oldRecords.containsKey(key)) {
+					output.println(ADD + "\t" + source + "\t" + record);
+					nbOperations++;
+				}
+			}
+		}
+		return nbOperations;
+	}
+
+	private static BufferedReader openReader(File file) throws IOException {
+		return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+	}
+}
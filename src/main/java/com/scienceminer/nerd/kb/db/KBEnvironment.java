@@ -1,5 +1,6 @@
 package com.scienceminer.nerd.kb.db;
 
+import com.scienceminer.nerd.exceptions.NerdResourceException;
 import com.scienceminer.nerd.kb.Property;
 import com.scienceminer.nerd.kb.Statement;
 import com.scienceminer.nerd.kb.db.KBDatabase.DatabaseType;
@@ -11,9 +12,22 @@ import org.nustaq.serialization.FSTConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * A KB corresponding to a Wikipedia instance, which is concretely stored as a set of LMDB databases.
@@ -77,6 +91,173 @@ public abstract class KBEnvironment implements Closeable {
 		return databasesByType.get(dbType);
 	}
 	
+	/**
+	 * Rewrites the values of the existing databases having a registered binary codec 
+	 * which are still stored with FST.
+	 */
+	public void migrateToCodecs() {
+		for (KBDatabase db : this.databasesByType.values()) {
+			if (db.getCodec() != null && !db.isCodecActive())
+				db.migrateToCodec();
+		}
+	}
+
+	/**
+	 * A step of the build of an environment, typically the loading of one database.
+	 */
+	protected interface BuildTask {
+		void build() throws Exception;
+	}
+
+	/**
+	 * Runs independent build tasks. Each database having its own LMDB environment, the tasks 
+	 * are run concurrently when the configuration sets several build threads, otherwise they 
+	 * are run one after the other in the given order. All the tasks are completed before 
+	 * returning, the first failure is then rethrown.
+	 */
+	protected void runBuildTasks(List<BuildTask> tasks) throws Exception {
+		int nbThreads = Math.min(conf.getKbBuildThreads(), tasks.size());
+		if (nbThreads <= 1) {
+			for (BuildTask task : tasks)
+				task.build();
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+		try {
+			List<Future<Void>> futures = new ArrayList<>();
+			for (BuildTask task : tasks) {
+				futures.add(executor.submit(() -> {
+					task.build();
+					return null;
+				}));
+			}
+			Exception failure = null;
+			for (Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch(ExecutionException e) {
+					LOGGER.error("Build step failed", e.getCause());
+					if (failure == null)
+						failure = (e.getCause() instanceof Exception) ? (Exception)e.getCause() : e;
+				}
+			}
+			if (failure != null)
+				throw failure;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * @return the version of the snapshot the environment is built from: the configured 
+	 * KB version, or by default the name of the data directory
+	 */
+	public String getSnapshotVersion() {
+		if (conf.getKbVersion() != null)
+			return conf.getKbVersion();
+		return (conf.getDataDirectory() != null) ? new File(conf.getDataDirectory()).getName() : null;
+	}
+
+	/**
+	 * Writes the manifest of the loaded databases which do not have one yet, or of all the 
+	 * loaded databases if they have been rebuilt.
+	 */
+	protected void writeManifests(boolean overwrite) {
+		String version = getSnapshotVersion();
+		for (KBDatabase db : this.databasesByType.values()) {
+			if (db.isLoaded() && (overwrite || db.getManifest() == null))
+				db.writeManifest(version);
+		}
+	}
+
+	/**
+	 * @return the manifests of the databases, by database name
+	 */
+	public Map<String, KBManifest> getManifests() {
+		Map<String, KBManifest> manifests = new TreeMap<>();
+		for (KBDatabase db : this.databasesByType.values()) {
+			KBManifest manifest = db.getManifest();
+			if (manifest != null)
+				manifests.put(db.getName(), manifest);
+		}
+		return manifests;
+	}
+
+	/**
+	 * @return the types of the databases built from a data file, for applying the delta 
+	 * records coming from this data file
+	 */
+	protected abstract Map<String, List<DatabaseType>> getDatabaseTypesBySource();
+
+	/**
+	 * Called after applying a delta, for updating what is derived from the updated databases.
+	 */
+	protected void afterDelta(Set<DatabaseType> updated) throws Exception {
+	}
+
+	/**
+	 * Applies a delta file (see {@link KBDelta}) to the databases of the environment, which 
+	 * can be in use by other processes. Operations are applied by batches of 10000 per 
+	 * database, each batch in one write transaction, and the manifests of the updated 
+	 * databases record the delta version.
+	 *
+	 * If some records cannot be applied, the valid ones are still applied but the delta 
+	 * version is not recorded and an exception is thrown: the delta can be applied again 
+	 * once corrected, the operations being idempotent.
+	 *
+	 * @param deltaFile the delta file
+	 * @param deltaVersion the version of the KB after this delta
+	 */
+	public void applyDelta(File deltaFile, String deltaVersion) throws Exception {
+		Map<String, List<DatabaseType>> typesBySource = getDatabaseTypesBySource();
+		Map<DatabaseType, List<String[]>> pending = new HashMap<>();
+		Map<DatabaseType, Long> nbChanged = new TreeMap<>();
+		Map<DatabaseType, Long> nbInvalid = new TreeMap<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(deltaFile), StandardCharsets.UTF_8))) {
+			String line = null;
+			while ((line = reader.readLine()) != null) {
+				String[] operation = KBDelta.parseLine(line);
+				if (operation == null)
+					continue;
+				List<DatabaseType> types = typesBySource.get(operation[1]);
+				if (types == null)
+					throw new NerdResourceException("Unsupported delta source: " + operation[1] + 
+						", supported sources: " + typesBySource.keySet());
+				for (DatabaseType type : types) {
+					List<String[]> operations = pending.computeIfAbsent(type, t -> new ArrayList<>());
+					operations.add(new String[] {operation[0], operation[2]});
+					if (operations.size() == 10000) {
+						applyDelta(type, operations, nbChanged, nbInvalid);
+						operations.clear();
+					}
+				}
+			}
+		}
+		for (Map.Entry<DatabaseType, List<String[]>> entry : pending.entrySet()) {
+			if (!entry.getValue().isEmpty())
+				applyDelta(entry.getKey(), entry.getValue(), nbChanged, nbInvalid);
+		}
+
+		// the valid records have been applied, the derived data must follow in any case
+		afterDelta(nbChanged.keySet());
+		if (!nbInvalid.isEmpty())
+			throw new NerdResourceException("Invalid delta records " + nbInvalid + ", version " + 
+				deltaVersion + " not recorded");
+		for (Map.Entry<DatabaseType, Long> entry : nbChanged.entrySet()) {
+			getDatabase(entry.getKey()).recordDelta(deltaVersion);
+			System.out.println(entry.getKey().name() + ": " + entry.getValue() + " entries updated");
+		}
+	}
+
+	private void applyDelta(DatabaseType type, List<String[]> operations, Map<DatabaseType, Long> nbChanged, 
+			Map<DatabaseType, Long> nbInvalid) {
+		List<String> invalidRecords = new ArrayList<>();
+		nbChanged.merge(type, (long)getDatabase(type).applyDelta(operations, invalidRecords), Long::sum);
+		if (!invalidRecords.isEmpty())
+			nbInvalid.merge(type, (long)invalidRecords.size(), Long::sum);
+	}
+
 	public void close() {
 		for (KBDatabase db:this.databasesByType.values()) {
 			db.close();
@@ -3,8 +3,12 @@ package com.scienceminer.nerd.kb.db;
 import com.scienceminer.nerd.utilities.*;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Set;
 import java.util.concurrent.*;
 
 import org.nustaq.serialization.*;
@@ -16,6 +20,9 @@ import com.scienceminer.nerd.kb.db.KBDatabase.DatabaseType;
 import com.scienceminer.nerd.kb.model.hadoop.*; 
 import com.scienceminer.nerd.kb.LowerKnowledgeBase;
 import com.scienceminer.nerd.kb.*;
+import com.scienceminer.nerd.embeddings.MappedEmbeddingStore;
+import com.scienceminer.nerd.mention.DiceCoefficients;
+import com.scienceminer.nerd.mention.LabelMatcher;
 
 import org.apache.hadoop.record.*;
 
@@ -36,14 +43,15 @@ public class KBLowerEnvironment extends KBEnvironment {
 	private KBDatabase<String,Integer> dbCategoriesByTitle = null;
 	private KBDatabase<String,Integer> dbTemplatesByTitle = null;
 	private KBDatabase<Integer,Integer> dbRedirectTargetBySource = null;
-	private KBDatabase<Integer,DbIntList> dbRedirectSourcesByTarget = null;
-	private KBDatabase<Integer, DbIntList> dbPageLinkInNoSentences = null;
-	private KBDatabase<Integer, DbIntList> dbPageLinkOutNoSentences = null;
+	private IntListDatabase dbRedirectSourcesByTarget = null;
+	private IntListDatabase dbPageLinkInNoSentences = null;
+	private IntListDatabase dbPageLinkOutNoSentences = null;
 	private PageLinkCountDatabase dbPageLinkCounts = null;
-	private KBDatabase<Integer, DbIntList> dbCategoryParents = null;
-	private KBDatabase<Integer, DbIntList> dbArticleParents = null;
-	private KBDatabase<Integer, DbIntList> dbChildCategories = null;
-	private KBDatabase<Integer, DbIntList> dbChildArticles = null;
+	private RelatednessNeighbourDatabase dbRelatednessNeighbours = null;
+	private IntListDatabase dbCategoryParents = null;
+	private IntListDatabase dbArticleParents = null;
+	private IntListDatabase dbChildCategories = null;
+	private IntListDatabase dbChildArticles = null;
 	private MarkupDatabase dbMarkup = null;
 	private MarkupDatabase dbMarkupFull = null;
 	private KBDatabase<Integer, DbTranslations> dbTranslations = null;
@@ -52,6 +60,16 @@ public class KBLowerEnvironment extends KBEnvironment {
 	private KBDatabase<String, short[]> dbWordEmbeddings = null;
 	private KBDatabase<String, short[]> dbEntityEmbeddings = null;
 
+	// precomputed disambiguation and list page flags, null if not available
+	private PageFlags pageFlags = null;
+
+	// label matcher for mention spotting, null if not enabled
+	private volatile LabelMatcher labelMatcher = null;
+
+	// optional memory-mapped versions of the embeddings, null if not used
+	private MappedEmbeddingStore wordEmbeddingStore = null;
+	private MappedEmbeddingStore entityEmbeddingStore = null;
+
 	private int embeddingsSize = 300;
 
 	public KBLowerEnvironment(NerdConfig conf) {
@@ -85,15 +103,15 @@ public class KBLowerEnvironment extends KBEnvironment {
 		return dbRedirectTargetBySource;
 	}
 	
-	public KBDatabase<Integer, DbIntList> getDbRedirectSourcesByTarget() {
+	public IntListDatabase getDbRedirectSourcesByTarget() {
 		return dbRedirectSourcesByTarget;
 	}
 
-	public KBDatabase<Integer, DbIntList> getDbPageLinkInNoSentences() {
+	public IntListDatabase getDbPageLinkInNoSentences() {
 		return dbPageLinkInNoSentences;
 	}
 	
-	public KBDatabase<Integer, DbIntList> getDbPageLinkOutNoSentences() {
+	public IntListDatabase getDbPageLinkOutNoSentences() {
 		return dbPageLinkOutNoSentences;
 	}
 	
@@ -101,19 +119,26 @@ public class KBLowerEnvironment extends KBEnvironment {
 		return dbPageLinkCounts;
 	}
 	
-	public KBDatabase<Integer, DbIntList> getDbCategoryParents() {
+	/**
+	 * @return the precomputed relatedness neighbours, or null if not enabled
+	 */
+	public RelatednessNeighbourDatabase getDbRelatednessNeighbours() {
+		return dbRelatednessNeighbours;
+	}
+
+	public IntListDatabase getDbCategoryParents() {
 		return dbCategoryParents;
 	}
 
-	public KBDatabase<Integer, DbIntList> getDbArticleParents() {
+	public IntListDatabase getDbArticleParents() {
 		return dbArticleParents;
 	}
 
-	public KBDatabase<Integer, DbIntList> getDbChildCategories() {
+	public IntListDatabase getDbChildCategories() {
 		return dbChildCategories;
 	}
 
-	public KBDatabase<Integer, DbIntList> getDbChildArticles() {
+	public IntListDatabase getDbChildArticles() {
 		return dbChildArticles;
 	}
 
@@ -141,6 +166,28 @@ public class KBLowerEnvironment extends KBEnvironment {
 		return dbEntityEmbeddings;
 	}
 
+	/**
+	 * @return the precomputed disambiguation and list page flags, or null if not available
+	 */
+	public PageFlags getPageFlags() {
+		return pageFlags;
+	}
+
+	/**
+	 * @return the label matcher used to spot the mentions, or null if not enabled
+	 */
+	public LabelMatcher getLabelMatcher() {
+		return labelMatcher;
+	}
+
+	public MappedEmbeddingStore getWordEmbeddingStore() {
+		return wordEmbeddingStore;
+	}
+
+	public MappedEmbeddingStore getEntityEmbeddingStore() {
+		return entityEmbeddingStore;
+	}
+
 	@Override
 	protected void initDatabases() {
 		System.out.println("init Environment for language " + conf.getLangCode());
@@ -161,6 +208,21 @@ public class KBLowerEnvironment extends KBEnvironment {
 		
 		dbLabel = dbFactory.buildLabelDatabase();
 		databasesByType.put(DatabaseType.label, dbLabel);
+		dbLabel.setCacheSize(conf.getLabelCacheSize());
+		if (conf.getUseLabelFilter()) {
+			try {
+				dbLabel.loadFilter(getLabelFilterFile(), false);
+			} catch(IOException e) {
+				LOGGER.warn("Cannot load the label membership filter, labels will be looked up without it", e);
+			}
+		}
+		if (conf.getUseMappedLabels()) {
+			try {
+				dbLabel.loadMappedStore(getMappedLabelStorePath(), false);
+			} catch(IOException e) {
+				LOGGER.warn("Cannot open the mapped label store, labels will be read from the label database", e);
+			}
+		}
 
 		dbPageLinkInNoSentences = dbFactory.buildPageLinkNoSentencesDatabase(DatabaseType.pageLinksInNoSentences); 
 		databasesByType.put(DatabaseType.pageLinksInNoSentences, dbPageLinkInNoSentences);
@@ -170,6 +232,12 @@ public class KBLowerEnvironment extends KBEnvironment {
 		
 		dbPageLinkCounts = dbFactory.buildPageLinkCountDatabase();
 		databasesByType.put(DatabaseType.pageLinkCounts, dbPageLinkCounts);
+
+		// optional, only created when enabled so that it is built when enabled later
+		if (conf.getRelatednessNeighbourHeadSize() > 0) {
+			dbRelatednessNeighbours = new RelatednessNeighbourDatabase(this);
+			databasesByType.put(DatabaseType.relatednessNeighbours, dbRelatednessNeighbours);
+		}
 		
 		dbCategoryParents = dbFactory.buildIntIntListDatabase(DatabaseType.categoryParents);
 		databasesByType.put(DatabaseType.categoryParents, dbCategoryParents);
@@ -202,6 +270,90 @@ public class KBLowerEnvironment extends KBEnvironment {
 
 		dbEntityEmbeddings = dbFactory.buildEntityEmbeddingsDatabase();
 		databasesByType.put(DatabaseType.entityEmbeddings, dbEntityEmbeddings);
+
+		openEmbeddingStores();
+	}
+
+	private void loadPageFlags(File dbDirectory, boolean overwrite) {
+		File pageFlagsFile = new File(dbDirectory, PageFlags.FILE_NAME);
+		if (pageFlagsFile.exists() && !overwrite) {
+			try {
+				pageFlags = PageFlags.load(pageFlagsFile);
+				return;
+			} catch(IOException e) {
+				// e.g. saved in a previous format
+				LOGGER.warn("Cannot load the page flags, they will be rebuilt", e);
+			}
+		}
+		try {
+			if (dbPage.isLoaded() && dbArticleParents.isLoaded()) {
+				pageFlags = PageFlags.build(this);
+				pageFlags.save(pageFlagsFile);
+			}
+		} catch(IOException e) {
+			LOGGER.error("Cannot build the page flags, senses will be filtered with their categories", e);
+			pageFlags = null;
+		}
+	}
+
+	private void loadLabelMatcher(File dbDirectory, boolean overwrite) {
+		if (!dbLabel.isLoaded())
+			return;
+		File labelMatcherFile = new File(dbDirectory, LabelMatcher.FILE_NAME);
+		if (overwrite)
+			labelMatcherFile.delete();
+		labelMatcher = LabelMatcher.loadOrBuild(labelMatcherFile, dbLabel, conf.getLabelMatcherMinLinkProbability());
+	}
+
+	private File getLabelFilterFile() {
+		return new File(conf.getDbDirectory() + File.separator + LabelDatabase.FILTER_FILE_NAME);
+	}
+
+	private File getMappedLabelStorePath() {
+		return new File(conf.getDbDirectory() + File.separator + DatabaseType.label.name());
+	}
+
+	private File getEmbeddingStorePath(DatabaseType type) {
+		return new File(conf.getDbDirectory() + File.separator + type.name());
+	}
+
+	/**
+	 * Open the memory-mapped embedding stores if enabled and built, otherwise the LMDB 
+	 * embedding databases are used.
+	 */
+	private void openEmbeddingStores() {
+		if (!conf.getUseMappedEmbeddings())
+			return;
+		File wordStorePath = getEmbeddingStorePath(DatabaseType.wordEmbeddings);
+		File entityStorePath = getEmbeddingStorePath(DatabaseType.entityEmbeddings);
+		try {
+			if (wordEmbeddingStore == null && MappedEmbeddingStore.exists(wordStorePath))
+				wordEmbeddingStore = MappedEmbeddingStore.open(wordStorePath);
+			if (entityEmbeddingStore == null && MappedEmbeddingStore.exists(entityStorePath))
+				entityEmbeddingStore = MappedEmbeddingStore.open(entityStorePath);
+		} catch(IOException e) {
+			LOGGER.error("Cannot open the mapped embedding stores, using the embedding databases", e);
+			closeEmbeddingStores();
+		}
+	}
+
+	private void closeEmbeddingStores() {
+		try {
+			if (wordEmbeddingStore != null)
+				wordEmbeddingStore.close();
+			if (entityEmbeddingStore != null)
+				entityEmbeddingStore.close();
+		} catch(IOException e) {
+			LOGGER.warn("Error when closing the mapped embedding stores", e);
+		}
+		wordEmbeddingStore = null;
+		entityEmbeddingStore = null;
+	}
+
+	@Override
+	public void close() {
+		closeEmbeddingStores();
+		super.close();
 	}
 
 	public Long retrieveStatistic(StatisticName sn) {
@@ -236,72 +388,167 @@ public class KBLowerEnvironment extends KBEnvironment {
 		if (!dbDirectory.exists())
 			dbDirectory.mkdirs();
 
+		// the databases are in separate LMDB environments, those loaded from distinct data 
+		// files or only depending on them can be built concurrently
+		List<BuildTask> tasks = new ArrayList<>();
+
 		//System.out.println("Building statistics db");
-		dbStatistics.loadFromFile(statistics, overwrite);
+		tasks.add(() -> dbStatistics.loadFromFile(statistics, overwrite));
 
 		//System.out.println("Building Page db");
-		dbPage.loadFromFile(page, overwrite);
+		tasks.add(() -> dbPage.loadFromFile(page, overwrite));
 
 		//System.out.println("Building ArticlesByTitle db");
-		dbArticlesByTitle.loadFromFile(page, overwrite);
+		tasks.add(() -> dbArticlesByTitle.loadFromFile(page, overwrite));
 
 		//System.out.println("Building CategoriesByTitle db");
-		dbCategoriesByTitle.loadFromFile(page, overwrite);
+		tasks.add(() -> dbCategoriesByTitle.loadFromFile(page, overwrite));
 
 		//System.out.println("Building TemplatesByTitle db");
-		dbTemplatesByTitle.loadFromFile(page, overwrite);
+		tasks.add(() -> dbTemplatesByTitle.loadFromFile(page, overwrite));
 		
 		//System.out.println("Building RedirectTargetBySource db");
-		dbRedirectTargetBySource.loadFromFile(redirectTargetBySource, overwrite);
+		tasks.add(() -> dbRedirectTargetBySource.loadFromFile(redirectTargetBySource, overwrite));
 
 		//System.out.println("Building RedirectSourcesByTarget db");
-		dbRedirectSourcesByTarget.loadFromFile(redirectSourcesByTarget, overwrite);
+		tasks.add(() -> dbRedirectSourcesByTarget.loadFromFile(redirectSourcesByTarget, overwrite));
 		
 		//System.out.println("Building Label db");
-		dbLabel.loadFromFile(label, overwrite);
+		tasks.add(() -> {
+			dbLabel.invalidateLookupLayers();
+			dbLabel.loadFromFile(label, overwrite);
+			if (conf.getUseLabelFilter())
+				dbLabel.loadFilter(getLabelFilterFile(), overwrite);
+			if (conf.getUseMappedLabels())
+				dbLabel.loadMappedStore(getMappedLabelStorePath(), overwrite);
+		});
 
 		//System.out.println("Building PageLinkInNoSentences db");
-		dbPageLinkInNoSentences.loadFromFile(pageLinksIn, overwrite);
+		tasks.add(() -> dbPageLinkInNoSentences.loadFromFile(pageLinksIn, overwrite));
 
 		//System.out.println("Building PageLinkOutNoSentences db");
-		dbPageLinkOutNoSentences.loadFromFile(pageLinksOut, overwrite);
+		tasks.add(() -> dbPageLinkOutNoSentences.loadFromFile(pageLinksOut, overwrite));
 		
 		//System.out.println("Building PageLinkCounts db");
-		dbPageLinkCounts.loadFromFiles(pageLinksIn, pageLinksOut, overwrite);
+		tasks.add(() -> dbPageLinkCounts.loadFromFiles(pageLinksIn, pageLinksOut, overwrite));
 		
 		//System.out.println("Building CategoryParents db");
-		dbCategoryParents.loadFromFile(categoryParents, overwrite);
+		tasks.add(() -> dbCategoryParents.loadFromFile(categoryParents, overwrite));
 		
 		//System.out.println("Building ArticleParents db");
-		dbArticleParents.loadFromFile(articleParents, overwrite);
+		tasks.add(() -> dbArticleParents.loadFromFile(articleParents, overwrite));
 		
 		//System.out.println("Building ChildCategories db");
-		dbChildCategories.loadFromFile(childCategories, overwrite);
+		tasks.add(() -> dbChildCategories.loadFromFile(childCategories, overwrite));
 		
 		//System.out.println("Building ChildArticles db");
-		dbChildArticles.loadFromFile(childArticles, overwrite);
-		
+		tasks.add(() -> dbChildArticles.loadFromFile(childArticles, overwrite));
+
 		//System.out.println("Building Translations db");
-		dbTranslations.loadFromFile(translations, overwrite);
+		tasks.add(() -> dbTranslations.loadFromFile(translations, overwrite));
 		
 		//System.out.println("Building conceptbyPage db");
-		dbConceptByPageId.loadFromFile(wikidata, overwrite);
+		tasks.add(() -> dbConceptByPageId.loadFromFile(wikidata, overwrite));
 
 		//System.out.println("Building Markup db");
-		dbMarkup.loadFromXmlFile(markup, overwrite);
+		tasks.add(() -> {
+			dbMarkup.loadFromXmlFile(markup, overwrite);
+			if (conf.getUseCompressedMarkup())
+				dbMarkup.compress(MarkupDatabase.DEFAULT_DICTIONARY_SAMPLE_SIZE, MarkupCodec.MAX_DICTIONARY_SIZE);
+		});
 
 		//System.out.println("Building embeddings db");
-		dbWordEmbeddings.loadFromFile(wordEmbeddingsFile, overwrite);
+		tasks.add(() -> dbWordEmbeddings.loadFromFile(wordEmbeddingsFile, overwrite));
 
 		//System.out.println("Building embeddings db");
-		dbEntityEmbeddings.loadFromFile(entityEmbeddingsFile, overwrite);
+		tasks.add(() -> dbEntityEmbeddings.loadFromFile(entityEmbeddingsFile, overwrite));
+
+		runBuildTasks(tasks);
+
+		// second stage, depending on the databases loaded above
+		tasks = new ArrayList<>();
+
+		// disambiguation and list page flags, requires the page and article parents databases
+		tasks.add(() -> loadPageFlags(dbDirectory, overwrite));
+
+		// label matcher for the mention spotting, requires the label database
+		if (conf.getUseLabelMatcher())
+			tasks.add(() -> loadLabelMatcher(dbDirectory, overwrite));
+
+		// optional precomputed relatedness for the most linked articles, requires the link 
+		// databases and the statistics
+		if (conf.getRelatednessNeighbourHeadSize() > 0) {
+			//System.out.println("Building RelatednessNeighbours db");
+			tasks.add(() -> dbRelatednessNeighbours.buildFromLinks(this, conf.getRelatednessNeighbourHeadSize(), 
+				conf.getRelatednessNeighbourSize(), overwrite));
+		}
+
+		if (conf.getUseMappedEmbeddings()) {
+			tasks.add(() -> {
+				closeEmbeddingStores();
+				File wordStorePath = getEmbeddingStorePath(DatabaseType.wordEmbeddings);
+				if (wordEmbeddingsFile != null && (overwrite || !MappedEmbeddingStore.exists(wordStorePath)))
+					MappedEmbeddingStore.build(wordEmbeddingsFile, wordStorePath);
+				File entityStorePath = getEmbeddingStorePath(DatabaseType.entityEmbeddings);
+				if (entityEmbeddingsFile != null && (overwrite || !MappedEmbeddingStore.exists(entityStorePath)))
+					MappedEmbeddingStore.build(entityEmbeddingsFile, entityStorePath);
+				openEmbeddingStores();
+			});
+		}
+
+		runBuildTasks(tasks);
 
 		// we need to enrich the Label database with the article titles to ensure 
 		// better mention resolution
 		//dbLabel.enrich(dbArticlesByTitle);
 
+		writeManifests(overwrite);
+
 		System.out.println("Environment built - " + dbPage.getDatabaseSize() + " pages.");
 	}
+
+	@Override
+	protected Map<String, List<DatabaseType>> getDatabaseTypesBySource() {
+		// data files as loaded in buildEnvironment(), the derived databases (link counts, 
+		// relatedness neighbours) and the markup are not updated by deltas
+		Map<String, List<DatabaseType>> types = new HashMap<>();
+		types.put("stats.csv", Arrays.asList(DatabaseType.statistics));
+		types.put("page.csv", Arrays.asList(DatabaseType.page, DatabaseType.articlesByTitle, 
+			DatabaseType.categoriesByTitle, DatabaseType.templatesByTitle));
+		types.put("label.csv", Arrays.asList(DatabaseType.label));
+		types.put("pageLinkIn.csv", Arrays.asList(DatabaseType.pageLinksInNoSentences));
+		types.put("pageLinkOut.csv", Arrays.asList(DatabaseType.pageLinksOutNoSentences));
+		types.put("categoryParents.csv", Arrays.asList(DatabaseType.categoryParents));
+		types.put("articleParents.csv", Arrays.asList(DatabaseType.articleParents));
+		types.put("childCategories.csv", Arrays.asList(DatabaseType.childCategories));
+		types.put("childArticles.csv", Arrays.asList(DatabaseType.childArticles));
+		types.put("redirectTargetsBySource.csv", Arrays.asList(DatabaseType.redirectTargetBySource));
+		types.put("redirectSourcesByTarget.csv", Arrays.asList(DatabaseType.redirectSourcesByTarget));
+		types.put("translations.csv", Arrays.asList(DatabaseType.translations));
+		return types;
+	}
+
+	@Override
+	protected void afterDelta(Set<DatabaseType> updated) throws Exception {
+		File dbDirectory = new File(conf.getDbDirectory());
+		if (updated.contains(DatabaseType.label)) {
+			dbLabel.invalidateLookupLayers();
+			if (conf.getUseLabelFilter())
+				dbLabel.loadFilter(getLabelFilterFile(), true);
+			if (conf.getUseMappedLabels())
+				dbLabel.loadMappedStore(getMappedLabelStorePath(), true);
+			if (conf.getUseLabelMatcher())
+				loadLabelMatcher(dbDirectory, true);
+			else
+				new File(dbDirectory, LabelMatcher.FILE_NAME).delete();
+			// the precomputed DICE coefficients depend on the label counts, they are computed 
+			// on demand until the table is precomputed again
+			new File(dbDirectory, DiceCoefficients.FILE_NAME).delete();
+		}
+		if (updated.contains(DatabaseType.page) || updated.contains(DatabaseType.articleParents))
+			loadPageFlags(dbDirectory, true);
+	}
+
 	
 	/**
 	 * The full markup database is built separately because it is only required for training
@@ -319,6 +566,8 @@ public class KBLowerEnvironment extends KBEnvironment {
 
 		File markup = getMarkupDataFile(dataDirectory);
 		dbMarkupFull.loadFromXmlFile(markup, overwrite);
+		if (conf.getUseCompressedMarkup())
+			dbMarkupFull.compress(MarkupDatabase.DEFAULT_DICTIONARY_SAMPLE_SIZE, MarkupCodec.MAX_DICTIONARY_SIZE);
 
 		System.out.println("Full markup database built - " + dbPage.getDatabaseSize() + " pages.");
 	}
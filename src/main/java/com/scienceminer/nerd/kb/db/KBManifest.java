@@ -0,0 +1,128 @@
+package com.scienceminer.nerd.kb.db;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Properties;
+
+/**
+ * Version information of a database, saved in the directory of its LMDB environment:
+ * - the version of the snapshot the database was built from (typically the dump date),
+ * - the date of the build,
+ * - the version of the last delta applied to the database, its date and the total number
+ *   of deltas applied since the build.
+ *
+ * The manifest is read from the disk each time it is requested, so that a running service
+ * reports the deltas applied by another process to the shared LMDB environments.
+ */
+public class KBManifest {
+
+	public static final String FILE_NAME = "manifest.properties";
+
+	private String version = null;
+	private String built = null;
+	private String deltaVersion = null;
+	private String updated = null;
+	private int nbDeltas = 0;
+
+	public String getVersion() {
+		return version;
+	}
+
+	public String getBuilt() {
+		return built;
+	}
+
+	public String getDeltaVersion() {
+		return deltaVersion;
+	}
+
+	public String getUpdated() {
+		return updated;
+	}
+
+	public int getNbDeltas() {
+		return nbDeltas;
+	}
+
+	/**
+	 * @return the version currently served, i.e. the last delta if any or the snapshot
+	 */
+	public String getCurrentVersion() {
+		return (deltaVersion != null) ? deltaVersion : version;
+	}
+
+	public static KBManifest build(String version) {
+		KBManifest manifest = new KBManifest();
+		manifest.version = version;
+		manifest.built = Instant.now().toString();
+		return manifest;
+	}
+
+	public void addDelta(String deltaVersion) {
+		this.deltaVersion = deltaVersion;
+		this.updated = Instant.now().toString();
+		this.nbDeltas++;
+	}
+
+	/**
+	 * @return the manifest saved in the given directory, or null if there is none
+	 */
+	public static KBManifest load(File directory) throws IOException {
+		File file = new File(directory, FILE_NAME);
+		if (!file.exists())
+			return null;
+		Properties properties = new Properties();
+		try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		}
+		KBManifest manifest = new KBManifest();
+		manifest.version = properties.getProperty("version");
+		manifest.built = properties.getProperty("built");
+		manifest.deltaVersion = properties.getProperty("deltaVersion");
+		manifest.updated = properties.getProperty("updated");
+		manifest.nbDeltas = Integer.parseInt(properties.getProperty("deltas", "0"));
+		return manifest;
+	}
+
+	public void save(File directory) throws IOException {
+		Properties properties = new Properties();
+		if (version != null)
+			properties.setProperty("version", version);
+		if (built != null)
+			properties.setProperty("built", built);
+		if (deltaVersion != null)
+			properties.setProperty("deltaVersion", deltaVersion);
+		if (updated != null)
+			properties.setProperty("updated", updated);
+		properties.setProperty("deltas", String.valueOf(nbDeltas));
+		// written aside then renamed, readers never see a partial manifest
+		File tmp = new File(directory, FILE_NAME + ".tmp");
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+			properties.store(writer, "KB database manifest");
+		}
+		File file = new File(directory, FILE_NAME);
+		if (!tmp.renameTo(file)) {
+			file.delete();
+			if (!tmp.renameTo(file))
+				throw new IOException("Cannot write " + file.getPath());
+		}
+	}
+
+	public String toJson() {
+		StringBuilder json = new StringBuilder();
+		json.append("{ \"version\": ").append(quote(version))
+			.append(", \"built\": ").append(quote(built))
+			.append(", \"deltaVersion\": ").append(quote(deltaVersion))
+			.append(", \"updated\": ").append(quote(updated))
+			.append(", \"deltas\": ").append(nbDeltas)
+			.append(" }");
+		return json.toString();
+	}
+
+	private static String quote(String value) {
+		if (value == null)
+			return "null";
+		return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+}
@@ -3,6 +3,9 @@ package com.scienceminer.nerd.kb.db;
 import com.scienceminer.nerd.utilities.*;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.concurrent.*;
@@ -16,6 +19,7 @@ import com.scienceminer.nerd.kb.db.KBDatabase.DatabaseType;
 import com.scienceminer.nerd.kb.model.hadoop.*; 
 import com.scienceminer.nerd.kb.LowerKnowledgeBase;
 import com.scienceminer.nerd.kb.*;
+import com.scienceminer.nerd.exceptions.NerdResourceException;
 
 import org.apache.hadoop.record.*;
 
@@ -42,6 +46,9 @@ public class KBUpperEnvironment extends KBEnvironment {
 	// index for the taxon taxonomy (aka the tree of life)
 	private TaxonDatabase dbTaxonParent = null;
 
+	// transitive closure of the taxon hierarchy, derived from the taxon index
+	private TaxonClosureDatabase dbTaxonClosure = null;
+
 	// loaded only if needed, gives the statements by the tail entity
 	private StatementDatabase dbReverseStatements = null;
 
@@ -97,6 +104,13 @@ public class KBUpperEnvironment extends KBEnvironment {
 		return dbTaxonParent;
 	}
 
+	/**
+	 * Returns the {@link DatabaseType#taxonClosure} database
+	 */
+	public TaxonClosureDatabase getDbTaxonClosure() {
+		return dbTaxonClosure;
+	}
+
 	@Override
 	protected void initDatabases() {
 		//System.out.println("\ninit upper level language independent environment");
@@ -120,6 +134,9 @@ public class KBUpperEnvironment extends KBEnvironment {
 
 		dbTaxonParent = buildTaxonParentDatabase();
 		databasesByType.put(DatabaseType.taxon, dbTaxonParent);
+
+		dbTaxonClosure = buildTaxonClosureDatabase();
+		databasesByType.put(DatabaseType.taxonClosure, dbTaxonClosure);
 	}
 
 	/**
@@ -154,22 +171,58 @@ public class KBUpperEnvironment extends KBEnvironment {
 		if (!dbDirectory.exists())
 			dbDirectory.mkdirs();
 
+		// the concept database and the databases built from the Wikidata dump are independent
+		List<BuildTask> tasks = new ArrayList<>();
+
 		//System.out.println("Building Concept db");                                                     	
-		dbConcepts.loadFromFile(wikidata, overwrite);
+		tasks.add(() -> dbConcepts.loadFromFile(wikidata, overwrite));
 
-		//System.out.println("Building Properties db");
-		dbProperties.loadFromFile(wikidataStatements, overwrite);
+		//System.out.println("Building Properties and Statement db");
+		tasks.add(() -> loadWikidataDump(wikidataStatements, overwrite));
 
-		//System.out.println("Building Statement db");
-		dbStatements.loadFromFile(wikidataStatements, overwrite);
-		
-		dbBiblio.fillBiblioDb(dbConcepts, dbStatements, overwrite);
+		runBuildTasks(tasks);
+
+		// bibliographical and taxon databases, requiring the concepts and the statements
+		tasks = new ArrayList<>();
+		tasks.add(() -> dbBiblio.fillBiblioDb(dbConcepts, dbStatements, overwrite));
+		tasks.add(() -> dbTaxonParent.fillTaxonDbs(dbConcepts, dbStatements, overwrite));
+		runBuildTasks(tasks);
+
+		// closure of the taxon hierarchy, requiring the taxon database
+		dbTaxonClosure.fillTaxonClosureDb(dbTaxonParent, overwrite);
 
-		dbTaxonParent.fillTaxonDbs(dbConcepts, dbStatements, overwrite);
+		writeManifests(overwrite);
 
 		System.out.println("Environment built - " + dbConcepts.getDatabaseSize() + " concepts.");
 	}
 
+	@Override
+	protected Map<String, List<DatabaseType>> getDatabaseTypesBySource() {
+		// the bibliographical and taxon (and taxon closure) databases are derived and not
+		// updated by deltas
+		Map<String, List<DatabaseType>> types = new HashMap<>();
+		types.put("wikidataIds.csv", Arrays.asList(DatabaseType.concepts));
+		types.put("latest-all.json", Arrays.asList(DatabaseType.properties, DatabaseType.statements));
+		return types;
+	}
+
+	/**
+	 * The property and statement databases are filled with a single pass on the Wikidata 
+	 * JSON dump.
+	 */
+	private void loadWikidataDump(File wikidataStatements, boolean overwrite) throws Exception {
+		List<WikidataDumpReader.ItemConsumer> consumers = new ArrayList<>();
+		if (overwrite || !dbProperties.isLoaded())
+			consumers.add(dbProperties.createDumpConsumer());
+		if (overwrite || !dbStatements.isLoaded())
+			consumers.add(dbStatements.createDumpConsumer());
+		if (consumers.isEmpty())
+			return;
+		if (wikidataStatements == null)
+			throw new NerdResourceException("Wikidata dump file not found");
+		WikidataDumpReader.read(wikidataStatements, conf.getKbBuildParserThreads(), consumers);
+	}
+
 	/**
 	 * Loaded only if needed, gives the statements by the tail entity.
 	 * dbStatements must be already built to create the reverse one.  
@@ -200,6 +253,10 @@ public class KBUpperEnvironment extends KBEnvironment {
 
 	private TaxonDatabase buildTaxonParentDatabase() {
 		return new TaxonDatabase(this);
+	}
+
+	private TaxonClosureDatabase buildTaxonClosureDatabase() {
+		return new TaxonClosureDatabase(this);
 	}	
 
 	public Long retrieveStatistic(StatisticName sn) {
@@ -1,7 +1,15 @@
 package com.scienceminer.nerd.kb.db;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
 
 import org.apache.hadoop.record.CsvRecordInput;
 import org.apache.hadoop.record.CsvRecordOutput;
@@ -19,17 +27,217 @@ import static org.fusesource.lmdbjni.Constants.*;
 
 /**
  * A {@link KBDatabase} for associating Strings with a record. 
+ *
+ * Label lookups are dominated by misses (n-grams of the text and case variants of the 
+ * mentions which are not labels), so the database can use two optional layers in front
+ * of LMDB: a Bloom filter over all the label keys, rejecting most of the misses without
+ * any transaction, and a bounded cache of the stored records which also keeps the 
+ * negative results. The cache keeps the serialized records and a new {@link DbLabel} is 
+ * decoded for each lookup, as the labels are modified when resolving their senses.
+ *
+ * Alternatively, the labels can be read from a {@link MappedLabelStore} exported from the 
+ * database, which replaces both layers and the LMDB lookups.
  */
 public class LabelDatabase extends StringRecordDatabase<DbLabel> {
+	private static final Logger LOGGER = LoggerFactory.getLogger(LabelDatabase.class);
+
+	public static final String FILTER_FILE_NAME = "label.bloom";
+
+	// expected false positive probability of the membership filter
+	private static final double FILTER_FPP = 0.01;
+
+	// marker of a missing label in the cache
+	private static final byte[] NO_RECORD = new byte[0];
+
+	private volatile Cache<String, byte[]> cache = null;
+	private volatile BloomFilter<CharSequence> filter = null;
+	private volatile MappedLabelStore mappedStore = null;
+	private final LongAdder filterRejections = new LongAdder();
 
 	public LabelDatabase(KBEnvironment env) {
 		super(env, DatabaseType.label);
+		setCodec(KBCodecs.LABEL);
 	}
 
-	/*@Override
+	@Override
 	public DbLabel retrieve(String key) {
-		return super.retrieve(key);
-	}*/
+		MappedLabelStore currentStore = mappedStore;
+		if (currentStore != null && MappedLabelStore.isStorable(key))
+			return currentStore.retrieve(key);
+
+		BloomFilter<CharSequence> currentFilter = filter;
+		if (currentFilter != null && !currentFilter.mightContain(key)) {
+			filterRejections.increment();
+			return null;
+		}
+		Cache<String, byte[]> currentCache = cache;
+		if (currentCache == null)
+			return super.retrieve(key);
+
+		byte[] data = currentCache.getIfPresent(key);
+		if (data == null) {
+			try (Transaction tx = environment.createReadTransaction()) {
+				data = db.get(tx, KBEnvironment.serialize(key));
+			} catch(Exception e) {
+				LOGGER.error("Cannot retrieve key " + key, e);
+				return null;
+			}
+			if (data == null)
+				data = NO_RECORD;
+			currentCache.put(key, data);
+		}
+		if (data == NO_RECORD)
+			return null;
+		try {
+			return deserializeValue(data);
+		} catch(Exception e) {
+			LOGGER.error("Cannot deserialize label " + key, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Enable a bounded cache of the label records, positive and negative, keeping at most 
+	 * the given number of labels (0 to disable the cache).
+	 */
+	public void setCacheSize(long cacheSize) {
+		if (cacheSize <= 0)
+			cache = null;
+		else {
+			cache = CacheBuilder.newBuilder()
+				.maximumSize(cacheSize)
+				.recordStats()
+				.build();
+		}
+	}
+
+	/**
+	 * @return the statistics of the label cache, or null if the cache is not enabled
+	 */
+	public CacheStats getCacheStats() {
+		Cache<String, byte[]> currentCache = cache;
+		return (currentCache == null) ? null : currentCache.stats();
+	}
+
+	public long getCacheSize() {
+		Cache<String, byte[]> currentCache = cache;
+		return (currentCache == null) ? 0 : currentCache.size();
+	}
+
+	/**
+	 * @return the number of lookups rejected by the membership filter
+	 */
+	public long getFilterRejections() {
+		return filterRejections.sum();
+	}
+
+	public boolean hasFilter() {
+		return filter != null;
+	}
+
+	/**
+	 * Load the membership filter of the label keys saved in the given file, building it 
+	 * first from the label database if the file does not exist or if overwrite is true.
+	 */
+	public void loadFilter(File filterFile, boolean overwrite) throws IOException {
+		if (!isLoaded)
+			return;
+		if (overwrite || !filterFile.exists()) {
+			buildFilter(filterFile);
+			return;
+		}
+		try (InputStream in = new BufferedInputStream(new FileInputStream(filterFile))) {
+			filter = BloomFilter.readFrom(in, Funnels.stringFunnel(StandardCharsets.UTF_8));
+		}
+	}
+
+	private void buildFilter(File filterFile) throws IOException {
+		System.out.println("Building membership filter for the " + name + " database");
+		// the filter is only used once complete
+		filter = null;
+		long size = getDatabaseSize();
+		BloomFilter<CharSequence> newFilter = 
+			BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), Math.max(1000, size), FILTER_FPP);
+		KBIterator iterator = new KBIterator(this);
+		try {
+			while (iterator.hasNext()) {
+				Entry entry = iterator.next();
+				newFilter.put((String)KBEnvironment.deserialize(entry.getKey()));
+			}
+		} finally {
+			iterator.close();
+		}
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(filterFile))) {
+			newFilter.writeTo(out);
+		}
+		filter = newFilter;
+	}
+
+	public boolean hasMappedStore() {
+		return mappedStore != null;
+	}
+
+	/**
+	 * Open the mapped label store with the given base path, exporting it first from the 
+	 * label database if it does not exist, if it is invalid (e.g. after an interrupted 
+	 * export) or if overwrite is true.
+	 */
+	public void loadMappedStore(File basePath, boolean overwrite) throws IOException {
+		if (!isLoaded)
+			return;
+		boolean exported = false;
+		if (overwrite || !MappedLabelStore.exists(basePath)) {
+			// the store is only used once complete
+			closeMappedStore();
+			MappedLabelStore.export(this, basePath);
+			exported = true;
+		}
+		MappedLabelStore newStore;
+		try {
+			newStore = MappedLabelStore.open(basePath);
+		} catch(IOException e) {
+			if (exported)
+				throw e;
+			LOGGER.warn("Invalid mapped label store " + basePath.getPath() + ", it will be exported again", e);
+			closeMappedStore();
+			MappedLabelStore.export(this, basePath);
+			newStore = MappedLabelStore.open(basePath);
+		}
+		MappedLabelStore oldStore = mappedStore;
+		mappedStore = newStore;
+		if (oldStore != null)
+			oldStore.close();
+	}
+
+	private void closeMappedStore() {
+		MappedLabelStore currentStore = mappedStore;
+		mappedStore = null;
+		if (currentStore != null) {
+			try {
+				currentStore.close();
+			} catch(IOException e) {
+				LOGGER.warn("Error when closing the mapped label store", e);
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		closeMappedStore();
+		super.close();
+	}
+
+	/**
+	 * Disable the membership filter and the mapped label store, e.g. before the database 
+	 * is rebuilt, and drop the cached labels.
+	 */
+	public void invalidateLookupLayers() {
+		closeMappedStore();
+		filter = null;
+		Cache<String, byte[]> currentCache = cache;
+		if (currentCache != null)
+			currentCache.invalidateAll();
+	}
 
 	@Override
 	public KBEntry<String,DbLabel> deserialiseCsvRecord(CsvRecordInput record) throws IOException {
@@ -34,7 +34,7 @@ public class LabelIterator implements Iterator<Label> {
         byte[] valueData = entry.getValue();
         Label l = null;
         try {
-            DbLabel la = (DbLabel)KBEnvironment.deserialize(valueData);
+            DbLabel la = env.getDbLabel().deserializeValue(valueData);
             String keyId = string(keyData);
             l = toLabel(new KBEntry<String, DbLabel>(keyId, la));
         } catch(Exception e) {
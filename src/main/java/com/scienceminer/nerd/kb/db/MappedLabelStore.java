@@ -0,0 +1,429 @@
+package com.scienceminer.nerd.kb.db;
+
+import com.scienceminer.nerd.kb.model.hadoop.DbLabel;
+import com.scienceminer.nerd.kb.model.hadoop.DbSenseForLabel;
+import com.scienceminer.nerd.utilities.NerdConfig;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import it.unimi.dsi.bits.TransformationStrategies;
+import it.unimi.dsi.fastutil.io.BinIO;
+import it.unimi.dsi.io.FileLinesCollection;
+import it.unimi.dsi.sux4j.mph.MinimalPerfectHashFunction;
+
+import org.fusesource.lmdbjni.Entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Checksum;
+
+/**
+ * Read-only label vocabulary, memory-mapped and indexed by a signed minimal perfect hash
+ * function on the label strings, as an alternative to the LMDB label database: a lookup
+ * is a hash evaluation and a few reads of the mapped file, without any transaction nor
+ * deserialization. The signature of the hash function rejects the strings which are not
+ * labels, which are the large majority of the lookups when spotting mentions.
+ *
+ * The data file contains a fixed-stride record per label (the four label statistics, the
+ * position of its first sense and its number of senses), at the position given by the
+ * hash of the label, followed by the fixed-stride records of all the senses (page id,
+ * title/redirect flags and the two link counts), the senses of a label being contiguous.
+ *
+ * The store is exported from an existing label database, see export(). Both files are 
+ * written aside and then renamed over the previous ones, so that a running service keeps 
+ * reading the store it has mapped, and the data file records a checksum of the hash 
+ * function file, so that the files of two different exports are never used together.
+ *
+ * Example command for exporting the store of a built KB:
+ *
+ * mvn exec:java -Dexec.mainClass=com.scienceminer.nerd.kb.db.MappedLabelStore
+ * -Dexec.args="data/config/wikipedia-en.yaml"
+ */
+public class MappedLabelStore implements Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MappedLabelStore.class);
+
+	private static final int MAGIC = 0x4c41424c; // "LABL"
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 32;
+
+	public static final String DATA_EXTENSION = ".labels";
+	public static final String HASH_EXTENSION = ".mph";
+
+	// label record: linkOccCount, linkDocCount, textOccCount, textDocCount, first sense (longs),
+	// number of senses (int) and padding
+	private static final int LABEL_STRIDE = 48;
+	// sense record: page id, flags (ints), linkOccCount, linkDocCount (longs)
+	private static final int SENSE_STRIDE = 24;
+
+	private static final int FROM_TITLE = 1;
+	private static final int FROM_REDIRECT = 2;
+
+	// records are mapped by chunks of at most 1GB, a mapped buffer being limited to 2GB
+	private static final int CHUNK_SIZE = 1 << 30;
+	private static final int LABELS_PER_CHUNK = CHUNK_SIZE / LABEL_STRIDE;
+	private static final int SENSES_PER_CHUNK = CHUNK_SIZE / SENSE_STRIDE;
+
+	private final MinimalPerfectHashFunction<CharSequence> hash;
+	private final FileChannel channel;
+	private final ByteBuffer[] labelChunks;
+	private final ByteBuffer[] senseChunks;
+	private final long size;
+
+	private MappedLabelStore(MinimalPerfectHashFunction<CharSequence> hash, FileChannel channel,
+							ByteBuffer[] labelChunks, ByteBuffer[] senseChunks, long size) {
+		this.hash = hash;
+		this.channel = channel;
+		this.labelChunks = labelChunks;
+		this.senseChunks = senseChunks;
+		this.size = size;
+	}
+
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the label can be looked up in the store, the labels with line breaks
+	 * being left out of the store
+	 */
+	public static boolean isStorable(String label) {
+		return label.indexOf('\n') == -1 && label.indexOf('\r') == -1;
+	}
+
+	/**
+	 * @return the index of a label, or -1 if the string is not a label
+	 */
+	public long indexOf(CharSequence label) {
+		if (label == null)
+			return -1;
+		long index = hash.getLong(label);
+		if (index < 0 || index >= size)
+			return -1;
+		return index;
+	}
+
+	public boolean contains(CharSequence label) {
+		return indexOf(label) != -1;
+	}
+
+	private ByteBuffer labelChunk(long index) {
+		return labelChunks[(int)(index / LABELS_PER_CHUNK)];
+	}
+
+	private static int labelBase(long index) {
+		return (int)(index % LABELS_PER_CHUNK) * LABEL_STRIDE;
+	}
+
+	public long getLinkOccCount(long index) {
+		return labelChunk(index).getLong(labelBase(index));
+	}
+
+	public long getLinkDocCount(long index) {
+		return labelChunk(index).getLong(labelBase(index) + 8);
+	}
+
+	public long getTextOccCount(long index) {
+		return labelChunk(index).getLong(labelBase(index) + 16);
+	}
+
+	public long getTextDocCount(long index) {
+		return labelChunk(index).getLong(labelBase(index) + 24);
+	}
+
+	public int getNbSenses(long index) {
+		return labelChunk(index).getInt(labelBase(index) + 40);
+	}
+
+	/**
+	 * @return the page ids of the senses of the label at the given index, in the order of
+	 * the label database
+	 */
+	public int[] getSenseIds(long index) {
+		long first = labelChunk(index).getLong(labelBase(index) + 32);
+		int[] ids = new int[getNbSenses(index)];
+		for (int i = 0; i < ids.length; i++) {
+			long sense = first + i;
+			ids[i] = senseChunks[(int)(sense / SENSES_PER_CHUNK)].getInt((int)(sense % SENSES_PER_CHUNK) * SENSE_STRIDE);
+		}
+		return ids;
+	}
+
+	/**
+	 * @return the label record as stored in the label database, or null if the string is
+	 * not a label
+	 */
+	public DbLabel retrieve(CharSequence label) {
+		long index = indexOf(label);
+		if (index < 0)
+			return null;
+		ByteBuffer chunk = labelChunk(index);
+		int base = labelBase(index);
+		long first = chunk.getLong(base + 32);
+		int nbSenses = chunk.getInt(base + 40);
+		ArrayList<DbSenseForLabel> senses = new ArrayList<>(nbSenses);
+		for (int i = 0; i < nbSenses; i++) {
+			long sense = first + i;
+			ByteBuffer senseChunk = senseChunks[(int)(sense / SENSES_PER_CHUNK)];
+			int senseBase = (int)(sense % SENSES_PER_CHUNK) * SENSE_STRIDE;
+			int flags = senseChunk.getInt(senseBase + 4);
+			senses.add(new DbSenseForLabel(senseChunk.getInt(senseBase), senseChunk.getLong(senseBase + 8),
+				senseChunk.getLong(senseBase + 16), (flags & FROM_TITLE) != 0, (flags & FROM_REDIRECT) != 0));
+		}
+		return new DbLabel(chunk.getLong(base), chunk.getLong(base + 8), chunk.getLong(base + 16),
+			chunk.getLong(base + 24), senses);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * @return true if the files of a store with the given base path exist
+	 */
+	public static boolean exists(File basePath) {
+		return new File(basePath.getPath() + DATA_EXTENSION).exists()
+			&& new File(basePath.getPath() + HASH_EXTENSION).exists();
+	}
+
+	/**
+	 * Open the store with the given base path, the records and the hash function being in
+	 * the files with the extensions .labels and .mph.
+	 */
+	@SuppressWarnings("unchecked")
+	public static MappedLabelStore open(File basePath) throws IOException {
+		MinimalPerfectHashFunction<CharSequence> hash;
+		long hashChecksum;
+		try (CheckedInputStream input = new CheckedInputStream(new BufferedInputStream(
+				new FileInputStream(basePath.getPath() + HASH_EXTENSION)), new CRC32())) {
+			hash = (MinimalPerfectHashFunction<CharSequence>)BinIO.loadObject(input);
+			// the checksum covers the whole file
+			byte[] buffer = new byte[8192];
+			while (input.read(buffer) != -1)
+				;
+			hashChecksum = input.getChecksum().getValue();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Cannot load the hash function of " + basePath.getPath(), e);
+		}
+
+		File dataFile = new File(basePath.getPath() + DATA_EXTENSION);
+		FileChannel channel = new RandomAccessFile(dataFile, "r").getChannel();
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) {
+				if (channel.read(header, header.position()) < 0)
+					throw new IOException("Truncated label store: " + dataFile.getPath());
+			}
+			header.flip();
+			if (header.getInt() != MAGIC)
+				throw new IOException("Not a label store: " + dataFile.getPath());
+			int version = header.getInt();
+			if (version != VERSION)
+				throw new IOException("Unsupported label store version " + version + ": " + dataFile.getPath());
+			long size = header.getLong();
+			long nbSenses = header.getLong();
+			if (size != hash.size64() || header.getLong() != hashChecksum)
+				throw new IOException("Label store and hash function do not match: " + basePath.getPath());
+			if (channel.size() < HEADER_SIZE + (size * LABEL_STRIDE) + (nbSenses * SENSE_STRIDE))
+				throw new IOException("Truncated label store: " + dataFile.getPath());
+
+			ByteBuffer[] labelChunks = map(channel, FileChannel.MapMode.READ_ONLY, HEADER_SIZE, LABEL_STRIDE, size);
+			ByteBuffer[] senseChunks = map(channel, FileChannel.MapMode.READ_ONLY,
+				HEADER_SIZE + (size * LABEL_STRIDE), SENSE_STRIDE, nbSenses);
+			return new MappedLabelStore(hash, channel, labelChunks, senseChunks, size);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private static ByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long offset, int stride, long count)
+			throws IOException {
+		int recordsPerChunk = CHUNK_SIZE / stride;
+		int nbChunks = (int)((count + recordsPerChunk - 1) / recordsPerChunk);
+		ByteBuffer[] chunks = new ByteBuffer[nbChunks];
+		for (int i = 0; i < nbChunks; i++) {
+			long first = (long)i * recordsPerChunk;
+			long nbRecords = Math.min(recordsPerChunk, count - first);
+			MappedByteBuffer buffer = channel.map(mode, offset + (first * stride), nbRecords * stride);
+			chunks[i] = buffer.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		return chunks;
+	}
+
+	/**
+	 * Export the labels of a label database in a store with the given base path. The labels
+	 * are first written in a temporary file to build the minimal perfect hash function,
+	 * then each label record is written at the position given by the hash of the label,
+	 * followed by its senses.
+	 *
+	 * The files are written aside and renamed once complete, the data file first: an 
+	 * interrupted export leaves the previous store unchanged, or a new data file with the 
+	 * previous hash function which open() rejects, the store being then exported again.
+	 * A store mapped by another process is not modified, the process keeps reading the 
+	 * previous files until it opens the store again.
+	 */
+	public static void export(LabelDatabase dbLabel, File basePath) throws IOException {
+		System.out.println("Exporting mapped label store " + basePath.getPath());
+		File keysFile = File.createTempFile("label-keys", ".txt", basePath.getAbsoluteFile().getParentFile());
+		File hashTmp = new File(basePath.getPath() + HASH_EXTENSION + ".tmp");
+		File dataTmp = new File(basePath.getPath() + DATA_EXTENSION + ".tmp");
+		try {
+			// first pass: labels and number of senses
+			long nbLabels = 0;
+			long nbSenses = 0;
+			long nbSkipped = 0;
+			KBIterator iterator = new KBIterator(dbLabel);
+			try (Writer keys = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(keysFile), StandardCharsets.UTF_8))) {
+				while (iterator.hasNext()) {
+					Entry entry = iterator.next();
+					String label = (String)KBEnvironment.deserialize(entry.getKey());
+					if (!isStorable(label)) {
+						nbSkipped++;
+						continue;
+					}
+					DbLabel record = dbLabel.deserializeValue(entry.getValue());
+					keys.write(label);
+					keys.write('\n');
+					nbLabels++;
+					if (record.getSenses() != null)
+						nbSenses += record.getSenses().size();
+				}
+			} catch(IOException e) {
+				throw e;
+			} catch(Exception e) {
+				throw new IOException("Cannot read the label database", e);
+			} finally {
+				iterator.close();
+			}
+			if (nbLabels == 0)
+				throw new IOException("No labels in the " + dbLabel.getName() + " database");
+
+			MinimalPerfectHashFunction<CharSequence> hash = new MinimalPerfectHashFunction.Builder<CharSequence>()
+				.keys(new FileLinesCollection(keysFile.getPath(), "UTF-8"))
+				.transform(TransformationStrategies.utf16())
+				.signed(64)
+				.build();
+			if (hash.size64() != nbLabels)
+				throw new IOException("Duplicated labels in the " + dbLabel.getName() + " database");
+			BinIO.storeObject(hash, hashTmp);
+			long hashChecksum = checksum(hashTmp);
+
+			// second pass: label and sense records
+			dataTmp.delete();
+			try (RandomAccessFile file = new RandomAccessFile(dataTmp, "rw");
+				FileChannel channel = file.getChannel()) {
+				long sensesOffset = HEADER_SIZE + (nbLabels * LABEL_STRIDE);
+				file.setLength(sensesOffset + (nbSenses * SENSE_STRIDE));
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				header.putInt(MAGIC).putInt(VERSION).putLong(nbLabels).putLong(nbSenses).putLong(hashChecksum);
+				header.flip();
+				channel.write(header, 0);
+
+				ByteBuffer[] labelChunks = map(channel, FileChannel.MapMode.READ_WRITE, HEADER_SIZE, LABEL_STRIDE, nbLabels);
+				ByteBuffer[] senseChunks = map(channel, FileChannel.MapMode.READ_WRITE, sensesOffset, SENSE_STRIDE, nbSenses);
+				long sense = 0;
+				long nbDone = 0;
+				iterator = new KBIterator(dbLabel);
+				try {
+					while (iterator.hasNext()) {
+						Entry entry = iterator.next();
+						String label = (String)KBEnvironment.deserialize(entry.getKey());
+						if (!isStorable(label))
+							continue;
+						DbLabel record = dbLabel.deserializeValue(entry.getValue());
+						long index = hash.getLong(label);
+						ByteBuffer chunk = labelChunks[(int)(index / LABELS_PER_CHUNK)];
+						int base = (int)(index % LABELS_PER_CHUNK) * LABEL_STRIDE;
+						int count = (record.getSenses() == null) ? 0 : record.getSenses().size();
+						chunk.putLong(base, record.getLinkOccCount());
+						chunk.putLong(base + 8, record.getLinkDocCount());
+						chunk.putLong(base + 16, record.getTextOccCount());
+						chunk.putLong(base + 24, record.getTextDocCount());
+						chunk.putLong(base + 32, sense);
+						chunk.putInt(base + 40, count);
+						for (int i = 0; i < count; i++) {
+							DbSenseForLabel dbSense = record.getSenses().get(i);
+							ByteBuffer senseChunk = senseChunks[(int)(sense / SENSES_PER_CHUNK)];
+							int senseBase = (int)(sense % SENSES_PER_CHUNK) * SENSE_STRIDE;
+							int flags = (dbSense.getFromTitle() ? FROM_TITLE : 0) | (dbSense.getFromRedirect() ? FROM_REDIRECT : 0);
+							senseChunk.putInt(senseBase, dbSense.getId());
+							senseChunk.putInt(senseBase + 4, flags);
+							senseChunk.putLong(senseBase + 8, dbSense.getLinkOccCount());
+							senseChunk.putLong(senseBase + 16, dbSense.getLinkDocCount());
+							sense++;
+						}
+						nbDone++;
+						if (nbDone % 1000000 == 0)
+							System.out.println(nbDone + " / " + nbLabels + " labels written");
+					}
+				} catch(IOException e) {
+					throw e;
+				} catch(Exception e) {
+					throw new IOException("Cannot read the label database", e);
+				} finally {
+					iterator.close();
+				}
+				for (ByteBuffer chunk : labelChunks)
+					((MappedByteBuffer)chunk).force();
+				for (ByteBuffer chunk : senseChunks)
+					((MappedByteBuffer)chunk).force();
+				channel.force(true);
+			}
+			replace(dataTmp, new File(basePath.getPath() + DATA_EXTENSION));
+			replace(hashTmp, new File(basePath.getPath() + HASH_EXTENSION));
+			if (nbSkipped > 0)
+				LOGGER.warn(nbSkipped + " labels with line breaks are not in the mapped label store");
+			System.out.println("Mapped label store exported - " + nbLabels + " labels, " + nbSenses + " senses");
+		} finally {
+			keysFile.delete();
+			dataTmp.delete();
+			hashTmp.delete();
+		}
+	}
+
+	private static long checksum(File file) throws IOException {
+		Checksum checksum = new CRC32();
+		try (InputStream input = new CheckedInputStream(new BufferedInputStream(new FileInputStream(file)), checksum)) {
+			byte[] buffer = new byte[8192];
+			while (input.read(buffer) != -1)
+				;
+		}
+		return checksum.getValue();
+	}
+
+	private static void replace(File tmp, File file) throws IOException {
+		if (!tmp.renameTo(file)) {
+			file.delete();
+			if (!tmp.renameTo(file))
+				throw new IOException("Cannot write " + file.getPath());
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 1) {
+			System.err.println("usage: MappedLabelStore <wikipedia configuration file>");
+			System.exit(1);
+		}
+		ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+		NerdConfig conf = mapper.readValue(new File(args[0]), NerdConfig.class);
+		KBLowerEnvironment env = new KBLowerEnvironment(conf);
+		try {
+			env.getDbLabel().loadMappedStore(
+				new File(conf.getDbDirectory() + File.separator + KBDatabase.DatabaseType.label.name()), true);
+		} finally {
+			env.close();
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package com.scienceminer.nerd.kb.db;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import org.fusesource.lmdbjni.DirectBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed binary codec for the wiki text of the markup databases: the UTF-8 text is
+ * compressed with Deflate using a preset dictionary trained on a sample of the markup of
+ * the database, so that even the short first paragraphs are compressed efficiently.
+ *
+ * Layout: int length of the UTF-8 text (big-endian), followed by the raw Deflate stream.
+ *
+ * Decoding reuses per-thread Inflater and byte buffers, only the resulting String is
+ * allocated.
+ */
+public class MarkupCodec implements KBCodec<String> {
+
+	private static final ByteOrder ORDER = ByteOrder.BIG_ENDIAN;
+
+	// name of the dictionary file, in the directory of the database
+	public static final String DICTIONARY_FILE_NAME = "markup.dict";
+
+	// the Deflate window is 32KB, a larger dictionary would not be used
+	public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+	private final byte[] dictionary;
+
+	private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+	private final ThreadLocal<byte[][]> buffers = ThreadLocal.withInitial(() -> new byte[][] {new byte[4096], new byte[16384]});
+
+	public MarkupCodec(byte[] dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	public byte[] getDictionary() {
+		return dictionary;
+	}
+
+	@Override
+	public String getName() {
+		return "deflateMarkup";
+	}
+
+	@Override
+	public byte[] encode(String value) {
+		byte[] text = value.getBytes(StandardCharsets.UTF_8);
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+		try {
+			if (dictionary.length > 0)
+				deflater.setDictionary(dictionary);
+			deflater.setInput(text);
+			deflater.finish();
+			ByteArrayOutputStream output = new ByteArrayOutputStream(4 + (text.length / 2));
+			output.write((text.length >>> 24) & 0xff);
+			output.write((text.length >>> 16) & 0xff);
+			output.write((text.length >>> 8) & 0xff);
+			output.write(text.length & 0xff);
+			byte[] chunk = new byte[4096];
+			while (!deflater.finished()) {
+				int n = deflater.deflate(chunk);
+				output.write(chunk, 0, n);
+			}
+			return output.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	@Override
+	public String decode(DirectBuffer buffer) {
+		int length = buffer.getInt(0, ORDER);
+		int compressedLength = buffer.capacity() - 4;
+		byte[][] threadBuffers = buffers.get();
+		if (threadBuffers[0].length < compressedLength)
+			threadBuffers[0] = new byte[Math.max(compressedLength, threadBuffers[0].length * 2)];
+		if (threadBuffers[1].length < length)
+			threadBuffers[1] = new byte[Math.max(length, threadBuffers[1].length * 2)];
+		byte[] input = threadBuffers[0];
+		byte[] output = threadBuffers[1];
+		buffer.getBytes(4, input, 0, compressedLength);
+
+		Inflater inflater = inflaters.get();
+		inflater.reset();
+		// raw Deflate streams do not signal the need of the dictionary, it is set upfront
+		if (dictionary.length > 0)
+			inflater.setDictionary(dictionary);
+		inflater.setInput(input, 0, compressedLength);
+		try {
+			int pos = 0;
+			while (pos < length) {
+				int n = inflater.inflate(output, pos, length - pos);
+				if (n == 0 && (inflater.finished() || inflater.needsInput()))
+					break;
+				pos += n;
+			}
+			if (pos != length)
+				throw new IllegalStateException("Truncated markup value: " + pos + " bytes instead of " + length);
+		} catch (DataFormatException e) {
+			throw new IllegalStateException("Invalid compressed markup value", e);
+		}
+		return new String(output, 0, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Train a preset dictionary from a sample of markup texts: the most frequent word
+	 * n-grams (up to 3 words) are selected by the number of bytes they could save
+	 * (frequency x length), then concatenated with the most useful ones at the end of the
+	 * dictionary, where the back-references are the shortest.
+	 *
+	 * @param samples the sample of markup texts
+	 * @param size the maximum size of the dictionary in bytes
+	 */
+	public static byte[] trainDictionary(List<String> samples, int size) {
+		size = Math.min(size, MAX_DICTIONARY_SIZE);
+		Object2IntOpenHashMap<String> counts = new Object2IntOpenHashMap<>();
+		for (String sample : samples) {
+			String[] words = sample.split("(?<=\\s)");
+			for (int i = 0; i < words.length; i++) {
+				StringBuilder ngram = new StringBuilder();
+				for (int n = 0; n < 3 && (i + n) < words.length; n++) {
+					ngram.append(words[i + n]);
+					if (ngram.length() >= 4 && ngram.length() <= 64)
+						counts.addTo(ngram.toString(), 1);
+				}
+			}
+		}
+
+		List<Object2IntMap.Entry<String>> entries = new ArrayList<>();
+		for (Object2IntMap.Entry<String> entry : counts.object2IntEntrySet()) {
+			// a segment occurring only once in the sample is not worth the space
+			if (entry.getIntValue() > 1)
+				entries.add(entry);
+		}
+		entries.sort((a, b) -> Long.compare(
+			(long)b.getIntValue() * b.getKey().length(), (long)a.getIntValue() * a.getKey().length()));
+
+		// most useful segments first, then reversed so that they end the dictionary
+		List<byte[]> segments = new ArrayList<>();
+		int total = 0;
+		for (Object2IntMap.Entry<String> entry : entries) {
+			byte[] segment = entry.getKey().getBytes(StandardCharsets.UTF_8);
+			if (total + segment.length > size)
+				continue;
+			segments.add(segment);
+			total += segment.length;
+			if (total >= size - 4)
+				break;
+		}
+		ByteBuffer dictionary = ByteBuffer.allocate(total);
+		for (int i = segments.size() - 1; i >= 0; i--)
+			dictionary.put(segments.get(i));
+		return dictionary.array();
+	}
+
+	public void saveDictionary(File directory) throws IOException {
+		// written aside then renamed, a partial dictionary is never loaded
+		File file = new File(directory, DICTIONARY_FILE_NAME);
+		File tmp = new File(directory, DICTIONARY_FILE_NAME + ".tmp");
+		Files.write(tmp.toPath(), dictionary);
+		if (!tmp.renameTo(file)) {
+			file.delete();
+			if (!tmp.renameTo(file))
+				throw new IOException("Cannot write " + file.getPath());
+		}
+	}
+
+	/**
+	 * @return the codec using the dictionary saved in the given database directory, or null
+	 * if there is no dictionary
+	 */
+	public static MarkupCodec load(File directory) throws IOException {
+		File file = new File(directory, DICTIONARY_FILE_NAME);
+		if (!file.exists())
+			return null;
+		return new MarkupCodec(Files.readAllBytes(file.toPath()));
+	}
+}
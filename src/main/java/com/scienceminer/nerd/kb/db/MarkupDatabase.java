@@ -11,6 +11,7 @@ import org.apache.commons.compress.compressors.CompressorStreamFactory;
 import org.apache.commons.io.input.CountingInputStream;
 import org.apache.hadoop.record.CsvRecordInput;
 import org.fusesource.lmdbjni.BufferCursor;
+import org.fusesource.lmdbjni.Entry;
 import org.fusesource.lmdbjni.Transaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,6 +22,8 @@ import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.scienceminer.nerd.exceptions.NerdResourceException;
 
@@ -36,6 +39,9 @@ public class MarkupDatabase extends KBDatabase<Integer, String> {
 	// not the full markup content
 	private boolean full = false;
 
+	// default number of markup texts sampled to train the compression dictionary
+	public static final int DEFAULT_DICTIONARY_SAMPLE_SIZE = 20000;
+
 	private enum DumpTag {page, id, text, ignorable};
 
 	public MarkupDatabase(KBEnvironment env) {
@@ -50,6 +56,14 @@ public class MarkupDatabase extends KBDatabase<Integer, String> {
 		else {
 			full = false;
 		}
+		// compressed values if a preset dictionary has been trained for this database
+		try {
+			MarkupCodec markupCodec = MarkupCodec.load(new File(envFilePath));
+			if (markupCodec != null)
+				setCodec(markupCodec);
+		} catch(IOException e) {
+			LOGGER.error("Cannot load the markup dictionary of " + name, e);
+		}
 	}
 
 	@Override
@@ -65,6 +79,14 @@ public class MarkupDatabase extends KBDatabase<Integer, String> {
 	// using standard LMDB copy mode
 	@Override
 	public String retrieve(Integer key) {
+		if (codecActive) {
+			try {
+				return retrieveWithCodec(KBEnvironment.serialize(key));
+			} catch(Exception e) {
+				LOGGER.error("cannot retrieve " + key, e);
+				return null;
+			}
+		}
 		byte[] cachedData = null;
 		String theString = null;
 		try (Transaction tx = environment.createReadTransaction()) {
@@ -191,7 +213,7 @@ public class MarkupDatabase extends KBDatabase<Integer, String> {
 
 							if ((currMarkup != null) && (currMarkup.trim().length() > 5)) {
 								try {
-									db.put(tx, KBEnvironment.serialize(currId), KBEnvironment.serialize(currMarkup));
+									db.put(tx, KBEnvironment.serialize(currId), serializeValue(currMarkup));
 									nbToAdd++;
 									totalAdded++;
 								} catch(Exception e) {
@@ -221,6 +243,65 @@ public class MarkupDatabase extends KBDatabase<Integer, String> {
 		isLoaded = true;
 	}
 
+	/**
+	 * Compresses the markup values of an existing database: a preset dictionary is trained
+	 * on a sample of the stored markup, saved in the database directory, and all the values
+	 * are then rewritten with the resulting {@link MarkupCodec}. Nothing is done if the
+	 * database is already compressed.
+	 *
+	 * If the compression is interrupted, the database directory contains the dictionary 
+	 * ({@link MarkupCodec#DICTIONARY_FILE_NAME}) but no codec marker, and the database holds 
+	 * both plain and compressed values: it cannot be used until the compression is run 
+	 * again. The second run reuses the saved dictionary instead of training a new one and 
+	 * only rewrites the remaining plain values (see {@link #migrateToCodec()}). The 
+	 * dictionary must therefore never be removed from an uncompleted database, the values 
+	 * already compressed could not be decoded anymore. 
+	 *
+	 * @param sampleSize the number of markup texts used to train the dictionary
+	 * @param dictionarySize the maximum size of the dictionary in bytes
+	 */
+	public void compress(int sampleSize, int dictionarySize) throws IOException {
+		if (codecActive)
+			return;
+		if (codec == null) {
+			MarkupCodec markupCodec = trainCodec(sampleSize, dictionarySize);
+			markupCodec.saveDictionary(new File(envFilePath));
+			setCodec(markupCodec);
+		} else
+			System.out.println("Resuming compression of " + getName() + " database with the existing dictionary");
+		migrateToCodec();
+	}
+
+	private MarkupCodec trainCodec(int sampleSize, int dictionarySize) {
+		System.out.println("Training markup dictionary for " + getName() + " database");
+
+		// regular sample over the whole database
+		long size = getDatabaseSize();
+		long step = Math.max(1, size / Math.max(1, sampleSize));
+		List<String> samples = new ArrayList<>();
+		KBIterator iterator = new KBIterator(this);
+		try {
+			long position = 0;
+			while (iterator.hasNext() && samples.size() < sampleSize) {
+				Entry entry = iterator.next();
+				if ((position++ % step) != 0)
+					continue;
+				try {
+					samples.add((String)KBEnvironment.deserialize(entry.getValue()));
+				} catch(Exception e) {
+					LOGGER.warn("Cannot read a markup entry", e);
+				}
+			}
+		} finally {
+			iterator.close();
+		}
+
+		MarkupCodec markupCodec = new MarkupCodec(MarkupCodec.trainDictionary(samples, dictionarySize));
+		System.out.println(getName() + ": dictionary of " + markupCodec.getDictionary().length + 
+			" bytes trained on " + samples.size() + " markup texts");
+		return markupCodec;
+	}
+
 	private DumpTag resolveDumpTag(String tagName) {
 		try {
 			return DumpTag.valueOf(tagName);
@@ -0,0 +1,149 @@
+package com.scienceminer.nerd.kb.db;
+
+import com.scienceminer.nerd.kb.model.hadoop.DbIntList;
+import com.scienceminer.nerd.kb.model.hadoop.DbPage;
+
+import org.fusesource.lmdbjni.Entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Per-page boolean properties precomputed when building the KB and used to filter the
+ * senses of a label without loading their categories: the disambiguation pages, i.e. pages
+ * with a parent category whose title contains "disambiguation". The list pages are
+ * recognized by their title, which is needed for the senses anyway.
+ *
+ * The flags are stored as a dense bitset indexed by page id, saved in a file next to the
+ * LMDB databases.
+ */
+public class PageFlags {
+	private static final Logger LOGGER = LoggerFactory.getLogger(PageFlags.class);
+
+	private static final int MAGIC = 0x50464c47; // "PFLG"
+	private static final int VERSION = 2;
+
+	public static final String FILE_NAME = "pageFlags.bin";
+
+	private final long[] disambiguation;
+
+	PageFlags(long[] disambiguation) {
+		this.disambiguation = disambiguation;
+	}
+
+	private static boolean get(long[] bits, int id) {
+		int word = id >>> 6;
+		return id >= 0 && word < bits.length && (bits[word] & (1L << id)) != 0;
+	}
+
+	static void set(long[] bits, int id) {
+		bits[id >>> 6] |= (1L << id);
+	}
+
+	/**
+	 * @return true if the page is a disambiguation page
+	 */
+	public boolean isDisambiguation(int pageId) {
+		return get(disambiguation, pageId);
+	}
+
+	public static boolean isDisambiguationCategoryTitle(String title) {
+		return title.toLowerCase().contains("disambiguation");
+	}
+
+	/**
+	 * Compute the flags from the page and article parent databases.
+	 */
+	public static PageFlags build(KBLowerEnvironment env) {
+		System.out.println("Building page flags");
+
+		// first pass on the pages: pages usable as disambiguation category
+		int maxId = 0;
+		long[] disambiguationCategories = new long[1024];
+		KBDatabase<Integer, DbPage> dbPage = env.getDbPage();
+		KBIterator iterator = new KBIterator(dbPage);
+		try {
+			while (iterator.hasNext()) {
+				Entry entry = iterator.next();
+				try {
+					int id = (Integer)KBEnvironment.deserialize(entry.getKey());
+					DbPage page = dbPage.deserializeValue(entry.getValue());
+					String title = page.getTitle();
+					if (id < 0 || title == null)
+						continue;
+					if (id > maxId) {
+						maxId = id;
+						int nbWords = (maxId >>> 6) + 1;
+						if (nbWords > disambiguationCategories.length) {
+							int newLength = Math.max(nbWords, disambiguationCategories.length * 2);
+							disambiguationCategories = Arrays.copyOf(disambiguationCategories, newLength);
+						}
+					}
+					if (isDisambiguationCategoryTitle(title))
+						set(disambiguationCategories, id);
+				} catch(Exception e) {
+					LOGGER.warn("Cannot read a page entry", e);
+				}
+			}
+		} finally {
+			iterator.close();
+		}
+
+		// second pass on the article parents: pages in a disambiguation category
+		long[] disambiguation = new long[(maxId >>> 6) + 1];
+		IntListDatabase dbArticleParents = env.getDbArticleParents();
+		iterator = new KBIterator(dbArticleParents);
+		try {
+			while (iterator.hasNext()) {
+				Entry entry = iterator.next();
+				try {
+					int id = (Integer)KBEnvironment.deserialize(entry.getKey());
+					if (id < 0 || id > maxId)
+						continue;
+					DbIntList parents = dbArticleParents.deserializeValue(entry.getValue());
+					if (parents == null || parents.getValues() == null)
+						continue;
+					for (int parent : parents.getValues()) {
+						if (get(disambiguationCategories, parent)) {
+							set(disambiguation, id);
+							break;
+						}
+					}
+				} catch(Exception e) {
+					LOGGER.warn("Cannot read an article parents entry", e);
+				}
+			}
+		} finally {
+			iterator.close();
+		}
+		return new PageFlags(disambiguation);
+	}
+
+	public void save(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(disambiguation.length);
+			for (long bits : disambiguation)
+				out.writeLong(bits);
+		}
+	}
+
+	public static PageFlags load(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a page flags file: " + file.getPath());
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IOException("Unsupported page flags version " + version + ": " + file.getPath());
+			int nbWords = in.readInt();
+			long[] disambiguation = new long[nbWords];
+			for (int i = 0; i < nbWords; i++)
+				disambiguation[i] = in.readLong();
+			return new PageFlags(disambiguation);
+		}
+	}
+}
@@ -58,7 +58,7 @@ public class PageIterator implements Iterator<Page> {
 				byte[] valueData = entry.getValue();
 				//Page p = null;
 				try {
-					DbPage pa = (DbPage)KBEnvironment.deserialize(valueData);
+					DbPage pa = env.getDbPage().deserializeValue(valueData);
 					
 					//Integer keyId = new BigInteger(keyData).intValue();
 					Integer keyId = (Integer)KBEnvironment.deserialize(keyData);
@@ -1,6 +1,13 @@
 package com.scienceminer.nerd.kb.db;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.hadoop.record.CsvRecordInput;
 
@@ -18,6 +25,7 @@ public class PageLinkCountDatabase extends IntRecordDatabase<DbPageLinkCounts>{
 
 	public PageLinkCountDatabase(KBEnvironment env) {
 		super(env, DatabaseType.pageLinkCounts);
+		setCodec(KBCodecs.PAGE_LINK_COUNTS);
 	}
 
 	@Override
@@ -95,81 +103,116 @@ public class PageLinkCountDatabase extends IntRecordDatabase<DbPageLinkCounts>{
 		if (linksOutFile == null)
 			throw new NerdResourceException("linksOutFile file not found");
 
-		BufferedReader linksInInput = new BufferedReader(new InputStreamReader(new FileInputStream(linksInFile), "UTF-8"));
-		BufferedReader linksOutInput = new BufferedReader(new InputStreamReader(new FileInputStream(linksOutFile), "UTF-8"));
-
-		String inLinkLine = linksInInput.readLine();
-		CsvRecordInput linksInRecord = new CsvRecordInput(new ByteArrayInputStream((inLinkLine + "\n").getBytes("UTF-8")));
-		KBEntry<Integer, DbLinkLocationList> inLinkEntry = deserializePageLinkCsvRecord(linksInRecord);
-
-		String outLinkLine = linksOutInput.readLine();
-		CsvRecordInput linksOutRecord = new CsvRecordInput(new ByteArrayInputStream((outLinkLine + "\n").getBytes("UTF-8")));
-		KBEntry<Integer, DbLinkLocationList> outLinkEntry = deserializePageLinkCsvRecord(linksOutRecord);
-
-		int nbToAdd = 0;
-		Transaction tx = environment.createWriteTransaction();
-		while (inLinkEntry != null && outLinkEntry != null) {
-			if (nbToAdd == 10000) {
-				tx.commit();
-				tx.close();
-				nbToAdd = 0;
-				tx = environment.createWriteTransaction();
-			}
-			KBEntry<Integer, DbPageLinkCounts> linkCountEntry = null;
-			boolean advanceInLinks = false;
-			boolean advanceOutLinks = false;
-
-
-			if (inLinkEntry == null || (outLinkEntry.getKey() < inLinkEntry.getKey())) {
-				linkCountEntry = buildLinkSummaryEntry(null, outLinkEntry);
-				advanceOutLinks = true;
-			}
-
-			if (outLinkEntry == null || (inLinkEntry.getKey() < outLinkEntry.getKey())) {
-				linkCountEntry = buildLinkSummaryEntry(inLinkEntry, null);
-				advanceInLinks = true;
-			}
+		int nbThreads = env.getConfiguration().getKbBuildParserThreads();
+		// the two link files are parsed in the background when parser threads are available
+		ExecutorService executor = (nbThreads > 1) ? Executors.newFixedThreadPool(2) : null;
+		BatchWriter writer = new BatchWriter(getDatabaseSize() == 0);
+		try (LinkEntryReader linksInInput = new LinkEntryReader(linksInFile, executor);
+			LinkEntryReader linksOutInput = new LinkEntryReader(linksOutFile, executor)) {
+			KBEntry<Integer, DbLinkLocationList> inLinkEntry = linksInInput.next();
+			KBEntry<Integer, DbLinkLocationList> outLinkEntry = linksOutInput.next();
+
+			List<byte[][]> batch = new ArrayList<>();
+			while (inLinkEntry != null && outLinkEntry != null) {
+				if (batch.size() == 10000) {
+					writer.write(batch);
+					batch = new ArrayList<>();
+				}
+				KBEntry<Integer, DbPageLinkCounts> linkCountEntry = null;
+				boolean advanceInLinks = false;
+				boolean advanceOutLinks = false;
 
-			if (inLinkEntry.getKey().equals(outLinkEntry.getKey())) {
-				linkCountEntry = buildLinkSummaryEntry(inLinkEntry, outLinkEntry);
-				advanceInLinks = true;
-				advanceOutLinks = true;
-			}
+				if (inLinkEntry == null || (outLinkEntry.getKey() < inLinkEntry.getKey())) {
+					linkCountEntry = buildLinkSummaryEntry(null, outLinkEntry);
+					advanceOutLinks = true;
+				}
 
-			if (linkCountEntry != null) {
-				try {
-					db.put(tx, KBEnvironment.serialize(linkCountEntry.getKey()), KBEnvironment.serialize(linkCountEntry.getValue()));
-					nbToAdd++;
-				} catch(Exception e) {
-					e.printStackTrace();
+				if (outLinkEntry == null || (inLinkEntry.getKey() < outLinkEntry.getKey())) {
+					linkCountEntry = buildLinkSummaryEntry(inLinkEntry, null);
+					advanceInLinks = true;
 				}
-			}
 
-			if (advanceInLinks) {
-				inLinkLine = linksInInput.readLine();
-				if (inLinkLine != null) {
-					linksInRecord = new CsvRecordInput(new ByteArrayInputStream((inLinkLine + "\n").getBytes("UTF-8")));
-					inLinkEntry = deserializePageLinkCsvRecord(linksInRecord);
-				} else {
-					inLinkEntry = null;
+				if (inLinkEntry.getKey().equals(outLinkEntry.getKey())) {
+					linkCountEntry = buildLinkSummaryEntry(inLinkEntry, outLinkEntry);
+					advanceInLinks = true;
+					advanceOutLinks = true;
 				}
-			}
 
-			if (advanceOutLinks) {
-				outLinkLine = linksOutInput.readLine();
-				if (outLinkLine != null) {
-					linksOutRecord = new CsvRecordInput(new ByteArrayInputStream((outLinkLine + "\n").getBytes("UTF-8")));
-					outLinkEntry = deserializePageLinkCsvRecord(linksOutRecord);
-				} else {
-					outLinkEntry = null;
+				if (linkCountEntry != null) {
+					try {
+						batch.add(new byte[][] {KBEnvironment.serialize(linkCountEntry.getKey()), 
+							serializeValue(linkCountEntry.getValue())});
+					} catch(Exception e) {
+						e.printStackTrace();
+					}
 				}
+
+				if (advanceInLinks)
+					inLinkEntry = linksInInput.next();
+
+				if (advanceOutLinks)
+					outLinkEntry = linksOutInput.next();
 			}
+			writer.write(batch);
+		} finally {
+			if (executor != null)
+				executor.shutdownNow();
 		}
-		tx.commit();
-		tx.close();
-		linksInInput.close();
-		linksOutInput.close();
 		isLoaded = true;
 	}
 
+	/**
+	 * Reader of the entries of a link file, by batches of lines. With an executor, the next 
+	 * batch is parsed in the background while the current one is consumed.
+	 */
+	private class LinkEntryReader implements Closeable {
+		private final BufferedReader input;
+		private final ExecutorService executor;
+		private Future<List<KBEntry<Integer, DbLinkLocationList>>> nextBatch = null;
+		private Iterator<KBEntry<Integer, DbLinkLocationList>> current = Collections.emptyIterator();
+		private boolean finished = false;
+
+		LinkEntryReader(File file, ExecutorService executor) throws IOException {
+			this.input = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			this.executor = executor;
+			if (executor != null)
+				nextBatch = executor.submit(this::readBatch);
+		}
+
+		private List<KBEntry<Integer, DbLinkLocationList>> readBatch() throws IOException {
+			List<KBEntry<Integer, DbLinkLocationList>> entries = new ArrayList<>();
+			String line = null;
+			while (entries.size() < 10000 && (line = input.readLine()) != null) {
+				CsvRecordInput record = new CsvRecordInput(new ByteArrayInputStream((line + "\n").getBytes("UTF-8")));
+				entries.add(deserializePageLinkCsvRecord(record));
+			}
+			return entries;
+		}
+
+		/**
+		 * @return the next entry of the file, or null at the end of the file
+		 */
+		KBEntry<Integer, DbLinkLocationList> next() throws Exception {
+			while (!current.hasNext()) {
+				if (finished)
+					return null;
+				List<KBEntry<Integer, DbLinkLocationList>> batch;
+				if (executor != null) {
+					batch = nextBatch.get();
+					if (!batch.isEmpty())
+						nextBatch = executor.submit(this::readBatch);
+				} else
+					batch = readBatch();
+				if (batch.isEmpty())
+					finished = true;
+				current = batch.iterator();
+			}
+			return current.next();
+		}
+
+		@Override
+		public void close() throws IOException {
+			input.close();
+		}
+	}
 }
@@ -1,22 +1,16 @@
 package com.scienceminer.nerd.kb.db;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import com.scienceminer.nerd.kb.Property;
 import com.scienceminer.nerd.exceptions.NerdResourceException;
 
-import org.apache.commons.compress.compressors.CompressorInputStream;
-import org.apache.commons.compress.compressors.CompressorStreamFactory;
 import org.apache.hadoop.record.CsvRecordInput;
 
-import org.fusesource.lmdbjni.Transaction;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class PropertyDatabase extends StringRecordDatabase<Property> {
@@ -39,100 +33,79 @@ public class PropertyDatabase extends StringRecordDatabase<Property> {
 	public void loadFromFile(File dataFile, boolean overwrite) throws Exception {
 		if (isLoaded && !overwrite)
 			return;
-		System.out.println("Loading " + name + " database");
-
 		if (dataFile == null)
 			throw new NerdResourceException("Wikidata dump file not found");
 
-		// open file
-		BufferedInputStream bis = new BufferedInputStream(new FileInputStream(dataFile));
-		CompressorInputStream input = new CompressorStreamFactory().createCompressorInputStream(bis);
-		BufferedReader reader = new BufferedReader(new InputStreamReader(input));
-
-		String line = null;
-		ObjectMapper mapper = new ObjectMapper();
-		List<Property> properties = new ArrayList<Property>();
-		while ((line=reader.readLine()) != null) {
-			if (line.length() == 0) continue;
-			if (line.startsWith("[")) continue;
-			if (line.startsWith("]")) break;
-
-			JsonNode rootNode = mapper.readTree(line);
-
-			JsonNode typeNode = rootNode.findPath("type");
-			String type = null;
-			if ((typeNode != null) && (!typeNode.isMissingNode())) {
-				type = typeNode.textValue();
-			}
-
-			if (type == null)
-				continue;
-
-			if (!type.equals("property"))
-				continue;
-
-			JsonNode idNode = rootNode.findPath("id");
-			String itemId = null;
-			if ((idNode != null) && (!idNode.isMissingNode())) {
-				itemId = idNode.textValue();
-			}
-
-            if (itemId == null)
-            	continue;
-
-            JsonNode datatypeNode = rootNode.findPath("datatype");
-			String datatype = null;
-			Property.ValueType valueType = null;
-			if ((datatypeNode != null) && (!datatypeNode.isMissingNode())) {
-				datatype = datatypeNode.textValue();
-			}
+		WikidataDumpReader.read(dataFile, env.getConfiguration().getKbBuildParserThreads(), 
+			Collections.singletonList(createDumpConsumer()));
+	}
 
-			if (datatype == null)
-            	continue;
-            else {
+	/**
+	 * @return the consumer of the Wikidata dump items filling this database with the 
+	 * properties, see {@link WikidataDumpReader}
+	 */
+	public WikidataDumpReader.ItemConsumer createDumpConsumer() {
+		System.out.println("Loading " + name + " database");
+		final BatchWriter writer = new BatchWriter(getDatabaseSize() == 0);
+		return new WikidataDumpReader.ItemConsumer() {
+			private List<byte[][]> batch = new ArrayList<>();
+			private int nbTotalAdded = 0;
+
+			@Override
+			public void accept(WikidataDumpReader.WikidataItem item) {
+				Property property = toProperty(item);
+				if (property == null)
+					return;
 				try {
-					valueType = Property.ValueType.fromString(datatype);
+					batch.add(new byte[][] {KBEnvironment.serialize(property.getId()), serializeValue(property)});
+					nbTotalAdded++;
 				} catch(Exception e) {
-					System.out.println("Invalid datatype value: " + datatype);
+					e.printStackTrace();
 				}
-			}
-
-			if (valueType == null)
-				continue;
-
-			String name = null;
-			JsonNode namesNode = rootNode.findPath("labels");
-			if ((namesNode != null) && (!namesNode.isMissingNode())) {
-				JsonNode enNameNode = namesNode.findPath("en");
-				if ((enNameNode != null) && (!enNameNode.isMissingNode())) {
-					JsonNode nameNode = enNameNode.findPath("value");
-					name = nameNode.textValue();
+				if (batch.size() >= 10000) {
+					writer.write(batch);
+					batch = new ArrayList<>();
 				}
 			}
 
-			if (name == null)
-				continue;
+			@Override
+			public void finish() {
+				// commit
+				writer.write(batch);
+				isLoaded = true;
+				System.out.println("Total of " + nbTotalAdded + " properties indexed");
+			}
+		};
+	}
 
-			Property property = new Property(itemId, name, valueType);
-			properties.add(property);
+	/**
+	 * @return the property described by a Wikidata dump item, or null if the item is not a 
+	 * valid property
+	 */
+	private static Property toProperty(WikidataDumpReader.WikidataItem item) {
+		if (!"property".equals(item.getType()) || item.getDatatype() == null || item.getLabel() == null)
+			return null;
+
+		Property.ValueType valueType = null;
+		try {
+			valueType = Property.ValueType.fromString(item.getDatatype());
+		} catch(Exception e) {
+			System.out.println("Invalid datatype value: " + item.getDatatype());
 		}
+		if (valueType == null)
+			return null;
 
-		int nbTotalAdded = 0;
-        Transaction tx = environment.createWriteTransaction();
-        for(Property property : properties) {
-        	try {
-	        	db.put(tx, KBEnvironment.serialize(property.getId()), KBEnvironment.serialize(property));
-				nbTotalAdded++;
-			} catch(Exception e) {
-				e.printStackTrace();
-			}
-        }
-
-		// commit
-		tx.commit();
-		tx.close();
-		reader.close();
-		isLoaded = true;
-		System.out.println("Total of " + nbTotalAdded + " properties indexed");
+		return new Property(item.getId(), item.getLabel(), valueType);
+	}
+
+	/**
+	 * Delta records are Wikidata JSON entities, as in the dump
+	 */
+	@Override
+	protected KBEntry<String, Property> parseDeltaRecord(String record) throws Exception {
+		WikidataDumpReader.WikidataItem item = WikidataDumpReader.parse(record);
+		if (item.getId() == null || !item.getId().startsWith("P"))
+			return null;
+		return new KBEntry<String, Property>(item.getId(), toProperty(item));
 	}
 }
@@ -0,0 +1,276 @@
+package com.scienceminer.nerd.kb.db;
+
+import com.scienceminer.nerd.kb.model.Page.PageType;
+import com.scienceminer.nerd.kb.model.hadoop.DbPage;
+import com.scienceminer.nerd.kb.model.hadoop.DbPageLinkCounts;
+import com.scienceminer.nerd.utilities.LinkRelatedness;
+import com.scienceminer.nerd.utilities.SortedIntArrays;
+
+import org.apache.hadoop.record.CsvRecordInput;
+
+import org.fusesource.lmdbjni.BufferCursor;
+import org.fusesource.lmdbjni.DirectBuffer;
+import org.fusesource.lmdbjni.Entry;
+import org.fusesource.lmdbjni.Transaction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Associates the ids of the most linked articles (the head of the KB) with their top-K
+ * most related articles according to the Milne and Witten relatedness, precomputed
+ * offline from the link databases.
+ *
+ * Each value is stored in binary as an int number of neighbours, followed by the ids
+ * of the neighbours sorted in ascending order, followed by their relatedness scores
+ * as floats in the same order, so that a score is looked up by binary search directly
+ * in the LMDB buffer.
+ */
+public class RelatednessNeighbourDatabase extends IntRecordDatabase<RelatednessNeighbourDatabase.Neighbours> {
+	private static final Logger LOGGER = LoggerFactory.getLogger(RelatednessNeighbourDatabase.class);
+
+	private static final ByteOrder ORDER = ByteOrder.BIG_ENDIAN;
+
+	/**
+	 * The neighbours of an article with their relatedness scores, ids being sorted.
+	 */
+	public static class Neighbours {
+		private final int[] ids;
+		private final float[] scores;
+
+		public Neighbours(int[] ids, float[] scores) {
+			this.ids = ids;
+			this.scores = scores;
+		}
+
+		public int[] getIds() {
+			return ids;
+		}
+
+		public float[] getScores() {
+			return scores;
+		}
+	}
+
+	private static final KBCodec<Neighbours> NEIGHBOURS = new KBCodec<Neighbours>() {
+		@Override
+		public String getName() {
+			return "relatednessNeighbours";
+		}
+
+		@Override
+		public byte[] encode(Neighbours value) {
+			int size = value.getIds().length;
+			ByteBuffer buffer = ByteBuffer.allocate(4 + (8 * size)).order(ORDER);
+			buffer.putInt(size);
+			for (int id : value.getIds())
+				buffer.putInt(id);
+			for (float score : value.getScores())
+				buffer.putFloat(score);
+			return buffer.array();
+		}
+
+		@Override
+		public Neighbours decode(DirectBuffer buffer) {
+			int size = buffer.getInt(0, ORDER);
+			int[] ids = new int[size];
+			float[] scores = new float[size];
+			for (int i = 0; i < size; i++) {
+				ids[i] = buffer.getInt(4 + (4 * i), ORDER);
+				scores[i] = buffer.getFloat(4 + (4 * size) + (4 * i), ORDER);
+			}
+			return new Neighbours(ids, scores);
+		}
+	};
+
+	public RelatednessNeighbourDatabase(KBEnvironment env) {
+		super(env, DatabaseType.relatednessNeighbours);
+		// new database type, there is no FST serialized version of it
+		codec = NEIGHBOURS;
+		codecActive = true;
+	}
+
+	@Override
+	public KBEntry<Integer, Neighbours> deserialiseCsvRecord(CsvRecordInput record) throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void loadFromFile(File dataFile, boolean overwrite) throws Exception {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns the precomputed relatedness score of an article with one of its neighbours,
+	 * or NaN if the second article is not among the stored neighbours of the first one.
+	 */
+	public float retrieveScore(int id, int neighbourId) {
+		if (!isLoaded)
+			return Float.NaN;
+		float score = Float.NaN;
+		try (Transaction tx = environment.createReadTransaction();
+			BufferCursor cursor = db.bufferCursor(tx)) {
+			cursor.keyWriteBytes(KBEnvironment.serialize(id));
+			if (cursor.seekKey()) {
+				DirectBuffer buffer = cursor.valDirectBuffer();
+				int size = buffer.getInt(0, ORDER);
+				int low = 0;
+				int high = size - 1;
+				while (low <= high) {
+					int mid = (low + high) >>> 1;
+					int midId = buffer.getInt(4 + (4 * mid), ORDER);
+					if (midId < neighbourId)
+						low = mid + 1;
+					else if (midId > neighbourId)
+						high = mid - 1;
+					else {
+						score = buffer.getFloat(4 + (4 * size) + (4 * mid), ORDER);
+						break;
+					}
+				}
+			}
+		} catch(Exception e) {
+			LOGGER.error("Cannot retrieve key " + id, e);
+		}
+		return score;
+	}
+
+	/**
+	 * Precompute the top-K relatedness neighbours of the most linked articles. The candidate
+	 * neighbours of a head article are the other head articles it links to or is linked from,
+	 * which keeps the building time linear in the size of the head while capturing the
+	 * strongly related pairs.
+	 *
+	 * @param headSize the number of most linked articles (by distinct links in) to consider
+	 * @param maxNeighbours the number of neighbours (K) kept for each head article
+	 */
+	public void buildFromLinks(KBLowerEnvironment env, int headSize, int maxNeighbours, boolean overwrite) throws Exception {
+		// an empty database is the one created by a start with the neighbours disabled
+		if (isLoaded && !overwrite && getDatabaseSize() > 0)
+			return;
+		System.out.println("Loading " + name + " database");
+
+		int[] head = selectHead(env, headSize);
+		long articleCount = env.retrieveStatistic(KBEnvironment.StatisticName.articleCount);
+		boolean useLinkOut = env.getConfiguration().getUseLinkOut();
+		IntListDatabase dbLinksIn = env.getDbPageLinkInNoSentences();
+		IntListDatabase dbLinksOut = env.getDbPageLinkOutNoSentences();
+
+		int nbToAdd = 0;
+		int nbDone = 0;
+		Transaction tx = environment.createWriteTransaction();
+		for (int id : head) {
+			if (nbToAdd == 10000) {
+				tx.commit();
+				tx.close();
+				nbToAdd = 0;
+				tx = environment.createWriteTransaction();
+			}
+
+			int[] linksIn = dbLinksIn.retrieveIntArray(id);
+			int[] linksOut = dbLinksOut.retrieveIntArray(id);
+
+			// candidates are the head articles directly connected to the current one
+			int[] candidates = new int[linksIn.length + linksOut.length];
+			int nbCandidates = 0;
+			for (int link : linksIn) {
+				if (link != id && SortedIntArrays.contains(head, link))
+					candidates[nbCandidates++] = link;
+			}
+			for (int link : linksOut) {
+				if (link != id && SortedIntArrays.contains(head, link) && !SortedIntArrays.contains(linksIn, link))
+					candidates[nbCandidates++] = link;
+			}
+
+			float[] scores = new float[nbCandidates];
+			for (int i = 0; i < nbCandidates; i++) {
+				int candidate = candidates[i];
+				scores[i] = (float)LinkRelatedness.relatedness(id, linksIn, linksOut,
+					candidate, dbLinksIn.retrieveIntArray(candidate), dbLinksOut.retrieveIntArray(candidate),
+					articleCount, useLinkOut);
+			}
+
+			// min-heap of candidate indexes on the score to keep the top K neighbours
+			PriorityQueue<Integer> best = new PriorityQueue<>(maxNeighbours + 1, 
+				(a, b) -> Float.compare(scores[a], scores[b]));
+			for (int i = 0; i < nbCandidates; i++) {
+				if (scores[i] <= 0.0f)
+					continue;
+				best.add(i);
+				if (best.size() > maxNeighbours)
+					best.poll();
+			}
+
+			if (best.size() > 0) {
+				// store the neighbours sorted by id
+				long[] entries = new long[best.size()];
+				int j = 0;
+				for (Integer index : best)
+					entries[j++] = (((long)candidates[index]) << 32) | index;
+				Arrays.sort(entries);
+				int[] neighbourIds = new int[entries.length];
+				float[] neighbourScores = new float[entries.length];
+				for (int i = 0; i < entries.length; i++) {
+					neighbourIds[i] = (int)(entries[i] >> 32);
+					neighbourScores[i] = scores[(int)entries[i]];
+				}
+				try {
+					db.put(tx, KBEnvironment.serialize(id), codec.encode(new Neighbours(neighbourIds, neighbourScores)));
+					nbToAdd++;
+				} catch(Exception e) {
+					e.printStackTrace();
+				}
+			}
+
+			nbDone++;
+			if (nbDone % 100000 == 0)
+				System.out.println(nbDone + " / " + head.length + " head articles processed");
+		}
+		tx.commit();
+		tx.close();
+		isLoaded = true;
+	}
+
+	/**
+	 * Returns the sorted ids of the articles with the largest numbers of distinct links in.
+	 */
+	private static int[] selectHead(KBLowerEnvironment env, int headSize) {
+		// min-heap on the link count, entries being {count, id}
+		PriorityQueue<long[]> heap = new PriorityQueue<>(headSize + 1, (a, b) -> Long.compare(a[0], b[0]));
+		KBIterator iterator = new KBIterator(env.getDbPageLinkCounts());
+		try {
+			while (iterator.hasNext()) {
+				Entry entry = iterator.next();
+				DbPageLinkCounts counts = env.getDbPageLinkCounts().deserializeValue(entry.getValue());
+				int count = counts.getDistinctLinksIn();
+				if (heap.size() >= headSize && count <= heap.peek()[0])
+					continue;
+				Integer id = (Integer)KBEnvironment.deserialize(entry.getKey());
+				DbPage page = env.getDbPage().retrieve(id);
+				if (page == null || page.getType() != PageType.article.ordinal())
+					continue;
+				heap.add(new long[]{count, id});
+				if (heap.size() > headSize)
+					heap.poll();
+			}
+		} catch(Exception e) {
+			LOGGER.error("Error while selecting the most linked articles", e);
+		} finally {
+			iterator.close();
+		}
+
+		int[] head = new int[heap.size()];
+		int i = 0;
+		for (long[] entry : heap)
+			head[i++] = (int)entry[1];
+		Arrays.sort(head);
+		return head;
+	}
+}
@@ -3,6 +3,7 @@ package com.scienceminer.nerd.kb.db;
 import java.io.*;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.HashMap;
@@ -47,115 +48,63 @@ public class StatementDatabase extends StringRecordDatabase<List<Statement>> {
 
 	@Override 
 	public void loadFromFile(File dataFile, boolean overwrite) throws Exception {
-//System.out.println("input file: " + dataFile.getPath());
 		if (isLoaded && !overwrite)
 			return;
-		System.out.println("Loading " + name + " database");
-
 		if (dataFile == null)
 			throw new NerdResourceException("Wikidata dump file not found");
 
-		// open file
-		BufferedInputStream bis = new BufferedInputStream(new FileInputStream(dataFile));
-		CompressorInputStream input = new CompressorStreamFactory().createCompressorInputStream(bis);
-		BufferedReader reader = new BufferedReader(new InputStreamReader(input));
-
-		String line = null;
-		int nbToAdd = 0;
-		int nbTotalAdded = 0;
-		int currentPageId = -1;
-		ObjectMapper mapper = new ObjectMapper();
-		Transaction tx = environment.createWriteTransaction();
-		while ((line=reader.readLine()) != null) {
-			if (line.length() == 0) continue;
-			if (line.startsWith("[")) continue;
-			if (line.startsWith("]")) break;
+		WikidataDumpReader.read(dataFile, env.getConfiguration().getKbBuildParserThreads(), 
+			Collections.singletonList(createDumpConsumer()));
+	}
 
-			if (nbToAdd >= 10000) {
+	/**
+	 * @return the consumer of the Wikidata dump items filling this database with the 
+	 * statements of every item, see {@link WikidataDumpReader}
+	 */
+	public WikidataDumpReader.ItemConsumer createDumpConsumer() {
+		System.out.println("Loading " + name + " database");
+		final BatchWriter writer = new BatchWriter(getDatabaseSize() == 0);
+		return new WikidataDumpReader.ItemConsumer() {
+			private List<byte[][]> batch = new ArrayList<>();
+			private int nbTotalAdded = 0;
+
+			@Override
+			public void accept(WikidataDumpReader.WikidataItem item) {
+				if (item.getStatements().isEmpty())
+					return;
 				try {
-					tx.commit();
-					tx.close();
-					nbToAdd = 0;
-					tx = environment.createWriteTransaction();
+					batch.add(new byte[][] {KBEnvironment.serialize(item.getId()), serializeValue(item.getStatements())});
+					nbTotalAdded++;
 				} catch(Exception e) {
 					e.printStackTrace();
 				}
-			}
-
-			JsonNode rootNode = mapper.readTree(line);
-			JsonNode idNode = rootNode.findPath("id");
-			String itemId = null;
-			if ((idNode != null) && (!idNode.isMissingNode())) {
-				itemId = idNode.textValue();
-			}
-            
-            if (itemId == null)
-            	continue;
-
-            List<Statement> statements = new ArrayList<Statement>();
-			JsonNode claimsNode = rootNode.findPath("claims");
-			if ((claimsNode != null) && (!claimsNode.isMissingNode())) {
-				Iterator<JsonNode> ite = claimsNode.elements();
-	            while (ite.hasNext()) {
-	            	JsonNode propertyNode = ite.next();
-					
-	            	String propertytId = null;
-	            	String value = null;
-
-	            	Iterator<JsonNode> ite2 = propertyNode.elements();
-	            	while (ite2.hasNext()) {
-	            		JsonNode mainsnakNode = ite2.next();
-	            		JsonNode propNameNode = mainsnakNode.findPath("property");
-	            		if ((propNameNode != null) && (!propNameNode.isMissingNode())) {
-		            		propertytId = propNameNode.textValue();
-		            	}
-
-		            	JsonNode dataValueNode = mainsnakNode.findPath("datavalue");
-		            	if ((dataValueNode != null) && (!dataValueNode.isMissingNode())) {
-		            		JsonNode valueNode = dataValueNode.findPath("value");
-		            		if ((valueNode != null) && (!valueNode.isMissingNode())) {
-		            			// for "entity-type":"item", we just take the wikidata id
-		            			JsonNode entityTypeNode = valueNode.findPath("entity-type");
-		         		   		if ((entityTypeNode != null) && (!entityTypeNode.isMissingNode()) && (entityTypeNode.textValue().equals("item"))) {
-		         		   			JsonNode localIdNode = valueNode.findPath("id");
-		            				if ((localIdNode != null) && (!localIdNode.isMissingNode())) {
-		            					value = localIdNode.textValue();
-		            				}
-		         		   		} 
-		         		   		if (value == null) {
-			            			// default, store the json value
-			            			value = valueNode.toString();
-			            		}
-		            		}
-		            	}
-
-		            	if ((propertytId != null) && (value != null)) {
-							Statement statement = new Statement(itemId, propertytId, value);
-//System.out.println("Adding: " + statement.toString());
-							if (!statements.contains(statement))
-								statements.add(statement);
-						}
-					}
+				if (batch.size() >= 10000) {
+					writer.write(batch);
+					batch = new ArrayList<>();
 				}
 			}
 
-			if (statements.size() > 0) {
-				try {
-					db.put(tx, KBEnvironment.serialize(itemId), KBEnvironment.serialize(statements));
-					nbToAdd++;
-					nbTotalAdded++;
-				} catch(Exception e) {
-					e.printStackTrace();
-				}
+			@Override
+			public void finish() {
+				// last commit
+				writer.write(batch);
+				isLoaded = true;
+				System.out.println("Total of " + nbTotalAdded + " statements indexed");
 			}
-		}			
+		};
+	}
 
-		// last commit
-		tx.commit();
-		tx.close();
-		reader.close();
-		isLoaded = true;
-		System.out.println("Total of " + nbTotalAdded + " statements indexed");
+	/**
+	 * Delta records are Wikidata JSON entities, as in the dump, an entity without statement 
+	 * is removed
+	 */
+	@Override
+	protected KBEntry<String, List<Statement>> parseDeltaRecord(String record) throws Exception {
+		WikidataDumpReader.WikidataItem item = WikidataDumpReader.parse(record);
+		if (item.getId() == null)
+			return null;
+		List<Statement> statements = item.getStatements().isEmpty() ? null : item.getStatements();
+		return new KBEntry<String, List<Statement>>(item.getId(), statements);
 	}
 
 	/**
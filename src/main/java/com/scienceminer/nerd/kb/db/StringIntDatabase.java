@@ -68,33 +68,7 @@ public abstract class StringIntDatabase extends KBDatabase<String, Integer> {
 		if (dataFile == null)
 			throw new NerdResourceException("Resource file not found");
 
-		BufferedReader input = new BufferedReader(new InputStreamReader(new FileInputStream(dataFile), "UTF-8"));
-		String line = null;
-		int nbToAdd = 0;
-		Transaction tx = environment.createWriteTransaction();
-		while ((line=input.readLine()) != null) {
-			if (nbToAdd == 10000) {
-				tx.commit();
-				tx.close();
-				nbToAdd = 0;
-				tx = environment.createWriteTransaction();
-			}
-
-			CsvRecordInput cri = new CsvRecordInput(new ByteArrayInputStream((line + "\n").getBytes("UTF-8")));
-			KBEntry<String,Integer> entry = deserialiseCsvRecord(cri);
-
-			if (entry != null) {
-				try {
-					db.put(tx, KBEnvironment.serialize(entry.getKey()), KBEnvironment.serialize(entry.getValue()));
-					nbToAdd++;
-				} catch(Exception e) {
-					e.printStackTrace();
-				}
-			}
-		}
-		tx.commit();
-		tx.close();
-		input.close();
+		loadFromCsvFile(dataFile, this::deserialiseCsvRecord);
 		isLoaded = true;
 	}
 
@@ -28,6 +28,14 @@ public abstract class StringRecordDatabase<Record> extends KBDatabase<String, Re
 	public Record retrieve(String key) {
 		byte[] cachedData = null;
 		Record record = null;
+		if (codecActive) {
+			try {
+				return retrieveWithCodec(KBEnvironment.serialize(key));
+			} catch(Exception e) {
+				LOGGER.error("Cannot retrieve key " + key, e);
+				return null;
+			}
+		}
 		try (Transaction tx = environment.createReadTransaction()) {
 			cachedData = db.get(tx, KBEnvironment.serialize(key));
 			if (cachedData != null) {
@@ -63,35 +71,7 @@ public abstract class StringRecordDatabase<Record> extends KBDatabase<String, Re
         if (dataFile == null)
 			throw new NerdResourceException("Resource file not found");
 
-		BufferedReader input = new BufferedReader(new InputStreamReader(new FileInputStream(dataFile), "UTF-8"));
-		String line = null;
-		int nbToAdd = 0;
-		Transaction tx = environment.createWriteTransaction();
-		while ((line=input.readLine()) != null) {
-			if (nbToAdd == 10000) {
-				tx.commit();
-				tx.close();
-				nbToAdd = 0;
-				tx = environment.createWriteTransaction();
-			}
-
-			CsvRecordInput cri = new CsvRecordInput(new ByteArrayInputStream((line + "\n").getBytes("UTF-8")));
-			KBEntry<String,Record> entry = deserialiseCsvRecord(cri);
-			if (entry != null) {
-				try {
-					db.put(tx, KBEnvironment.serialize(entry.getKey()), KBEnvironment.serialize(entry.getValue()));
-					nbToAdd++;
-				} catch(Exception e) {
-					//System.out.println("Invalid input line: " + line);
-					//e.printStackTrace();
-					LOGGER.warn("Invalid key: " + entry.getKey());
-					LOGGER.warn("but don't worry, we skip this particular invalid (and awful) entry and continue loading...");
-				}
-			}
-		}
-		tx.commit();
-		tx.close();
-		input.close();
+		loadFromCsvFile(dataFile, this::deserialiseCsvRecord);
 		isLoaded = true;
 	}
 
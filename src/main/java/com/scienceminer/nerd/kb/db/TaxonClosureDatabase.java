@@ -0,0 +1,235 @@
+package com.scienceminer.nerd.kb.db;
+
+import com.scienceminer.nerd.kb.TaxonAncestors;
+import com.scienceminer.nerd.kb.TaxonAncestors.Kingdom;
+import com.scienceminer.nerd.exceptions.NerdResourceException;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import org.apache.hadoop.record.CsvRecordInput;
+
+import org.fusesource.lmdbjni.Transaction;
+import org.fusesource.lmdbjni.Entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Transitive closure of the taxon hierarchy: associates a taxon to all its parent taxons
+ * and to the mask of the kingdoms it belongs to, so that the full hierarchy of a taxon
+ * is given by a single lookup instead of one lookup per level in the taxon database.
+ */
+public class TaxonClosureDatabase extends StringRecordDatabase<TaxonAncestors> {
+	private static final Logger logger = LoggerFactory.getLogger(TaxonClosureDatabase.class);
+
+	public TaxonClosureDatabase(KBEnvironment env) {
+		super(env, DatabaseType.taxonClosure);
+	}
+
+	@Override
+	public KBEntry<String, TaxonAncestors> deserialiseCsvRecord(
+			CsvRecordInput record) throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Compute the closure from the immediate parents stored in the taxon database
+	 */
+	public void fillTaxonClosureDb(TaxonDatabase taxonDb, boolean overwrite) throws Exception {
+		if (isLoaded && !overwrite)
+			return;
+		System.out.println("Loading " + name + " database");
+
+		if (taxonDb == null || !taxonDb.isLoaded())
+			throw new NerdResourceException("taxon database not found");
+
+		// the taxon DAG in memory, the taxons being identified by their index
+		Object2IntOpenHashMap<String> indices = new Object2IntOpenHashMap<>();
+		indices.defaultReturnValue(-1);
+		List<String> ids = new ArrayList<>();
+		List<int[]> parents = new ArrayList<>();
+		KBIterator iter = new KBIterator(taxonDb);
+		try {
+			while(iter.hasNext()) {
+				Entry entry = iter.next();
+				String entityId = (String)KBEnvironment.deserialize(entry.getKey());
+				@SuppressWarnings("unchecked")
+				List<String> parentTaxons = (List<String>)KBEnvironment.deserialize(entry.getValue());
+				int[] parentIndices = new int[parentTaxons.size()];
+				for (int i = 0; i < parentIndices.length; i++)
+					parentIndices[i] = indexOf(parentTaxons.get(i), indices, ids, parents);
+				parents.set(indexOf(entityId, indices, ids, parents), parentIndices);
+			}
+		} finally {
+			iter.close();
+		}
+		logger.info("taxon hierarchy loaded: " + ids.size() + " taxons");
+
+		Transaction[] tx = { environment.createWriteTransaction() };
+		int[] nbToAdd = { 0 };
+		try {
+			computeClosure(ids, parents, (entityId, ancestors) -> {
+				if (nbToAdd[0] > 10000) {
+					tx[0].commit();
+					tx[0].close();
+					tx[0] = environment.createWriteTransaction();
+					nbToAdd[0] = 0;
+				}
+				db.put(tx[0], KBEnvironment.serialize(entityId), KBEnvironment.serialize(ancestors));
+				nbToAdd[0]++;
+			});
+			tx[0].commit();
+			isLoaded = true;
+		} finally {
+			tx[0].close();
+		}
+	}
+
+	private static int indexOf(String id, Object2IntOpenHashMap<String> indices, List<String> ids, List<int[]> parents) {
+		int index = indices.getInt(id);
+		if (index == -1) {
+			index = ids.size();
+			indices.put(id, index);
+			ids.add(id);
+			parents.add(new int[0]);
+		}
+		return index;
+	}
+
+	/**
+	 * Compute the ancestors of each taxon having parents, in the same order as a recursive
+	 * walk of the hierarchy: the immediate parents first, each one followed by its own
+	 * ancestors. The taxons are processed in topological order, a taxon after all its
+	 * parents, its ancestors being merged from the ones of its parents and released when
+	 * all its children are processed. The taxons in or below a cycle of the hierarchy,
+	 * which have no topological order, are walked individually.
+	 *
+	 * @param ids the taxon identifiers
+	 * @param parents the indices of the immediate parents of each taxon
+	 * @param consumer receives each taxon having parents with its ancestors
+	 */
+	static void computeClosure(List<String> ids, List<int[]> parents, BiConsumer<String, TaxonAncestors> consumer) {
+		int n = ids.size();
+		int[] nbParentsLeft = new int[n];
+		int[] nbChildrenLeft = new int[n];
+		for (int i = 0; i < n; i++) {
+			nbParentsLeft[i] = parents.get(i).length;
+			for (int p : parents.get(i))
+				nbChildrenLeft[p]++;
+		}
+		int[][] children = new int[n][];
+		for (int i = 0; i < n; i++)
+			children[i] = new int[nbChildrenLeft[i]];
+		int[] nbChildren = new int[n];
+		for (int i = 0; i < n; i++) {
+			for (int p : parents.get(i))
+				children[p][nbChildren[p]++] = i;
+		}
+
+		int[][] ancestors = new int[n][];
+		int[] kingdoms = new int[n];
+		int[] kingdomMasks = new int[n];
+		for (int i = 0; i < n; i++)
+			kingdomMasks[i] = Kingdom.maskOf(ids.get(i));
+		boolean[] done = new boolean[n];
+
+		// marks[a] == stamp when a is already an ancestor of the current taxon
+		int[] marks = new int[n];
+		int stamp = 0;
+		int[] buffer = new int[16];
+
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		for (int i = 0; i < n; i++) {
+			if (nbParentsLeft[i] == 0)
+				queue.add(i);
+		}
+		while (!queue.isEmpty()) {
+			int i = queue.poll();
+			int[] parentIndices = parents.get(i);
+			stamp++;
+			marks[i] = stamp;
+			int size = 0;
+			int mask = 0;
+			for (int p : parentIndices) {
+				if (marks[p] != stamp) {
+					marks[p] = stamp;
+					buffer = ensureCapacity(buffer, size + 1);
+					buffer[size++] = p;
+				}
+				for (int a : ancestors[p]) {
+					if (marks[a] != stamp) {
+						marks[a] = stamp;
+						buffer = ensureCapacity(buffer, size + 1);
+						buffer[size++] = a;
+					}
+				}
+				mask |= kingdomMasks[p] | kingdoms[p];
+			}
+			ancestors[i] = Arrays.copyOf(buffer, size);
+			kingdoms[i] = mask;
+			done[i] = true;
+			if (parentIndices.length > 0)
+				consumer.accept(ids.get(i), toAncestors(ancestors[i], mask, ids));
+
+			for (int p : parentIndices) {
+				if (--nbChildrenLeft[p] == 0)
+					ancestors[p] = null;
+			}
+			if (children[i].length == 0)
+				ancestors[i] = null;
+			for (int c : children[i]) {
+				if (--nbParentsLeft[c] == 0)
+					queue.add(c);
+			}
+		}
+
+		int nbInCycles = 0;
+		for (int i = 0; i < n; i++) {
+			if (done[i])
+				continue;
+			stamp++;
+			marks[i] = stamp;
+			List<Integer> walked = new ArrayList<>();
+			walk(i, parents, marks, stamp, walked);
+			int[] result = new int[walked.size()];
+			int mask = 0;
+			for (int k = 0; k < result.length; k++) {
+				result[k] = walked.get(k);
+				mask |= kingdomMasks[result[k]];
+			}
+			consumer.accept(ids.get(i), toAncestors(result, mask, ids));
+			nbInCycles++;
+		}
+		if (nbInCycles > 0)
+			logger.warn(nbInCycles + " taxons in or below a cycle of the taxon hierarchy");
+	}
+
+	// recursive walk, each ancestor being visited once
+	private static void walk(int i, List<int[]> parents, int[] marks, int stamp, List<Integer> walked) {
+		for (int p : parents.get(i)) {
+			if (marks[p] != stamp) {
+				marks[p] = stamp;
+				walked.add(p);
+				walk(p, parents, marks, stamp, walked);
+			}
+		}
+	}
+
+	private static int[] ensureCapacity(int[] buffer, int capacity) {
+		return (capacity <= buffer.length) ? buffer : Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+	}
+
+	private static TaxonAncestors toAncestors(int[] indices, int mask, List<String> ids) {
+		String[] result = new String[indices.length];
+		for (int k = 0; k < indices.length; k++)
+			result[k] = ids.get(indices[k]);
+		return new TaxonAncestors(result, mask);
+	}
+}
@@ -0,0 +1,320 @@
+package com.scienceminer.nerd.kb.db;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.scienceminer.nerd.kb.Statement;
+
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Single pass reader of the Wikidata JSON dump (one entity per line), feeding all the
+ * databases built from the dump.
+ *
+ * The dump is decompressed in a dedicated thread, the lines are parsed by batches in a pool
+ * of threads with the Jackson streaming parser, only extracting the fields used by the KB,
+ * and the parsed items are passed to the consumers in the order of the dump by the calling
+ * thread, which is therefore the single writer of the databases.
+ *
+ * The dump can be compressed (bz2, gz) or already decompressed (.json), for instance
+ * piped from a parallel bzip2 decompressor.
+ */
+public class WikidataDumpReader {
+	private static final Logger LOGGER = LoggerFactory.getLogger(WikidataDumpReader.class);
+
+	// number of lines parsed together
+	private static final int BATCH_SIZE = 1000;
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final JsonFactory JSON_FACTORY = MAPPER.getFactory();
+
+	private static final List<String> END_OF_DUMP = new ArrayList<>();
+
+	/**
+	 * Receiver of the items of the dump, always called from the same thread and in the
+	 * order of the dump.
+	 */
+	public interface ItemConsumer {
+		void accept(WikidataItem item) throws Exception;
+
+		/**
+		 * Called once all the items of the dump have been passed.
+		 */
+		void finish() throws Exception;
+	}
+
+	/**
+	 * The fields of a Wikidata entity used by the KB.
+	 */
+	public static class WikidataItem {
+		private String id = null;
+		private String type = null;
+		// value type of a property
+		private String datatype = null;
+		// English label
+		private String label = null;
+		private List<Statement> statements = new ArrayList<>();
+
+		public String getId() {
+			return id;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public String getDatatype() {
+			return datatype;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+
+		public List<Statement> getStatements() {
+			return statements;
+		}
+	}
+
+	/**
+	 * Reads the dump once and passes every item to all the consumers.
+	 *
+	 * @param dumpFile the Wikidata JSON dump
+	 * @param nbThreads number of parser threads, 0 or 1 for parsing in the calling thread
+	 * @param consumers the receivers of the items
+	 */
+	public static void read(File dumpFile, int nbThreads, List<ItemConsumer> consumers) throws Exception {
+		BlockingQueue<List<String>> batches = new ArrayBlockingQueue<>(Math.max(2, nbThreads * 2));
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, nbThreads) + 1);
+		try {
+			// decompression and line splitting
+			Future<Void> reading = executor.submit(() -> {
+				try (BufferedReader reader = openDump(dumpFile)) {
+					List<String> batch = new ArrayList<>(BATCH_SIZE);
+					String line = null;
+					while ((line = reader.readLine()) != null) {
+						if (line.length() == 0) continue;
+						if (line.startsWith("[")) continue;
+						if (line.startsWith("]")) break;
+						batch.add(line);
+						if (batch.size() == BATCH_SIZE) {
+							batches.put(batch);
+							batch = new ArrayList<>(BATCH_SIZE);
+						}
+					}
+					if (!batch.isEmpty())
+						batches.put(batch);
+				} finally {
+					batches.put(END_OF_DUMP);
+				}
+				return null;
+			});
+
+			// parsing, the results being consumed in the order of the dump
+			Deque<Future<List<WikidataItem>>> pending = new ArrayDeque<>();
+			long nbItems = 0;
+			long nbBatches = 0;
+			List<String> batch;
+			while ((batch = batches.take()) != END_OF_DUMP) {
+				final List<String> lines = batch;
+				if (nbThreads <= 1) {
+					nbItems += consume(parseLines(lines), consumers);
+				} else {
+					pending.add(executor.submit(() -> parseLines(lines)));
+					if (pending.size() >= nbThreads * 2)
+						nbItems += consume(pending.poll().get(), consumers);
+				}
+				if (++nbBatches % 1000 == 0)
+					System.out.println((nbBatches * BATCH_SIZE) + " Wikidata dump lines read");
+			}
+			while (!pending.isEmpty())
+				nbItems += consume(pending.poll().get(), consumers);
+			// rethrow a reading error
+			reading.get();
+
+			for (ItemConsumer consumer : consumers)
+				consumer.finish();
+			System.out.println("Total of " + nbItems + " Wikidata items read");
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static BufferedReader openDump(File dumpFile) throws Exception {
+		InputStream input = new BufferedInputStream(new FileInputStream(dumpFile), 1024 * 1024);
+		if (!dumpFile.getName().endsWith(".json"))
+			input = new CompressorStreamFactory().createCompressorInputStream(input);
+		return new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 1024 * 1024);
+	}
+
+	private static int consume(List<WikidataItem> items, List<ItemConsumer> consumers) throws Exception {
+		for (WikidataItem item : items) {
+			for (ItemConsumer consumer : consumers)
+				consumer.accept(item);
+		}
+		return items.size();
+	}
+
+	private static List<WikidataItem> parseLines(List<String> lines) {
+		List<WikidataItem> items = new ArrayList<>(lines.size());
+		for (String line : lines) {
+			try {
+				WikidataItem item = parse(line);
+				if (item.id != null)
+					items.add(item);
+			} catch(Exception e) {
+				LOGGER.warn("Cannot parse Wikidata dump line: " +
+					((line.length() > 100) ? line.substring(0, 100) + "..." : line), e);
+			}
+		}
+		return items;
+	}
+
+	/**
+	 * Parses an entity of the dump, only reading the top-level id, type, datatype, English
+	 * label and the main snak of the claims, the other fields being skipped.
+	 */
+	static WikidataItem parse(String line) throws IOException {
+		WikidataItem item = new WikidataItem();
+		try (JsonParser parser = JSON_FACTORY.createParser(line)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT)
+				return item;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				JsonToken token = parser.nextToken();
+				switch (field) {
+					case "id":
+						item.id = parser.getValueAsString();
+						break;
+					case "type":
+						item.type = parser.getValueAsString();
+						break;
+					case "datatype":
+						item.datatype = parser.getValueAsString();
+						break;
+					case "labels":
+						if (token == JsonToken.START_OBJECT)
+							item.label = parseEnglishLabel(parser);
+						else
+							parser.skipChildren();
+						break;
+					case "claims":
+						if (token == JsonToken.START_OBJECT)
+							parseClaims(parser, item);
+						else
+							parser.skipChildren();
+						break;
+					default:
+						parser.skipChildren();
+				}
+			}
+		}
+		// the claims can come before the id
+		if (item.id != null) {
+			for (Statement statement : item.statements)
+				statement.setConceptId(item.id);
+		}
+		return item;
+	}
+
+	// labels: {"en":{"language":"en","value":"..."}, ...}
+	private static String parseEnglishLabel(JsonParser parser) throws IOException {
+		String label = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String language = parser.getCurrentName();
+			parser.nextToken();
+			if (language.equals("en") && parser.getCurrentToken() == JsonToken.START_OBJECT) {
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String field = parser.getCurrentName();
+					parser.nextToken();
+					if (field.equals("value"))
+						label = parser.getValueAsString();
+					else
+						parser.skipChildren();
+				}
+			} else
+				parser.skipChildren();
+		}
+		return label;
+	}
+
+	// claims: {"P31":[{"mainsnak":{...}, "qualifiers":..., "references":...}, ...], ...}
+	private static void parseClaims(JsonParser parser, WikidataItem item) throws IOException {
+		// distinct (property, value) pairs of the item
+		Set<String> seen = new HashSet<>();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			if (parser.nextToken() != JsonToken.START_ARRAY) {
+				parser.skipChildren();
+				continue;
+			}
+			while (parser.nextToken() != JsonToken.END_ARRAY) {
+				if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+					parser.skipChildren();
+					continue;
+				}
+				String[] snak = null;
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String field = parser.getCurrentName();
+					if (parser.nextToken() == JsonToken.START_OBJECT && field.equals("mainsnak"))
+						snak = parseMainSnak(parser);
+					else
+						parser.skipChildren();
+				}
+				if (snak != null && snak[0] != null && snak[1] != null && seen.add(snak[0] + '\t' + snak[1]))
+					item.statements.add(new Statement(null, snak[0], snak[1]));
+			}
+		}
+	}
+
+	/**
+	 * @return the property and the value of a main snak, the value being the entity id for
+	 * an item and the JSON value otherwise
+	 */
+	private static String[] parseMainSnak(JsonParser parser) throws IOException {
+		String[] snak = new String[2];
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			if (field.equals("property")) {
+				snak[0] = parser.getValueAsString();
+			} else if (field.equals("datavalue") && token == JsonToken.START_OBJECT) {
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String dataField = parser.getCurrentName();
+					parser.nextToken();
+					if (dataField.equals("value")) {
+						// values are small, they are read as a tree
+						JsonNode valueNode = MAPPER.readTree(parser);
+						// for "entity-type":"item", we just take the wikidata id
+						if ("item".equals(valueNode.path("entity-type").textValue()) && valueNode.path("id").isTextual())
+							snak[1] = valueNode.path("id").textValue();
+						else
+							snak[1] = valueNode.toString();
+					} else
+						parser.skipChildren();
+				}
+			} else
+				parser.skipChildren();
+		}
+		return snak;
+	}
+}
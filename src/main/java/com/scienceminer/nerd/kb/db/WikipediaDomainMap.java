@@ -37,9 +37,12 @@ public class WikipediaDomainMap {
     protected Env environment;
     protected Database db;
     protected String envFilePath = null;
-    protected boolean isLoaded = false;
+    protected volatile boolean isLoaded = false;
     private String database_name = "domains";
 
+    // file written in the database directory once all the mappings have been committed
+    public static final String COMPLETE_MARKER = "complete";
+
     // an in-memory cache - map a Wikipedia page id to a list of domain IDs
     //private ConcurrentMap<Integer, int[]> domainsCache = null;
 
@@ -70,8 +73,9 @@ public class WikipediaDomainMap {
             isLoaded = false;
             LOGGER.info("domains "+ lang + " / isLoaded: " + isLoaded);
         } else {
-            // we assume that if the DB files exist, it has been already loaded
-            isLoaded = true;
+            // the mappings are committed by batches, without the marker the creation has 
+            // been interrupted and the database is partial
+            isLoaded = new File(thePath, COMPLETE_MARKER).exists();
             LOGGER.info("domains "+ lang + " / isLoaded: " + isLoaded);
         }
         this.environment.open(this.envFilePath, Constants.NOTLS);
@@ -87,6 +91,13 @@ public class WikipediaDomainMap {
         }
     }
 
+    /**
+     * @return true if the mapping of the articles to their domains has been completely created
+     */
+    public boolean isLoaded() {
+        return isLoaded;
+    }
+
     public void setLang(String lang) {
         this.lang = lang;
     }
@@ -171,7 +182,13 @@ System.out.print("\n");*/
         }
     }
 
-    public void createAllMappings() {
+    /**
+     * Create the mapping of all the articles to their domains. The mappings are committed by 
+     * batches of 10000 and the complete marker is written after the last commit, so a creation 
+     * interrupted before is restarted from the beginning by the next call (the existing 
+     * mappings being simply rewritten).
+     */
+    public void createAllMappings() throws IOException {
         if (isLoaded)
             return;
         // for each page id in wikipedia we get the list of domain id
@@ -212,6 +229,7 @@ System.out.print("\n");*/
         tx.close();
         iterator.close();
 
+        new FileOutputStream(new File(envFilePath, COMPLETE_MARKER)).close();
         isLoaded = true;
     }
 
@@ -277,8 +295,10 @@ System.out.print("\n");*/
         LineIterator.closeQuietly(domainIterator);
     }
 
-    // standard LMDB retrieval
+    // standard LMDB retrieval, no domains are returned while the mapping is being created
     public List<String> getDomains(int pageId) {
+        if (!isLoaded)
+            return null;
         int[] list = null;
         /*if (domainsCache != null)
             domainsCache.get(new Integer(pageId));
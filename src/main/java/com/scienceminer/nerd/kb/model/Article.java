@@ -58,33 +58,22 @@ public class Article extends Page {
 		return parentCategories;	
 	}
 
-	public Article[] getLinksIn() {			
-		DbIntList tmpLinks = env.getDbPageLinkInNoSentences().retrieve(id);
-		if (tmpLinks == null || tmpLinks.getValues() == null) 
-			return new Article[0];
+	public Article[] getLinksIn() {
+		int[] tmpLinks = env.getDbPageLinkInNoSentences().retrieveIntArray(id);
 
-		Article[] links = new Article[tmpLinks.getValues().size()];
-
-		int index = 0;
-		for (Integer id : tmpLinks.getValues()) {
-			links[index] = new Article(env, id.intValue());
-			index++;
-		}
+		Article[] links = new Article[tmpLinks.length];
+		for (int i = 0; i < tmpLinks.length; i++)
+			links[i] = new Article(env, tmpLinks[i]);
 
 		return links;	
 	}
 
-	public Article[] getLinksOut()  {
-		DbIntList tmpLinks = env.getDbPageLinkOutNoSentences().retrieve(id);
-		if (tmpLinks == null || tmpLinks.getValues() == null) 
-			return new Article[0];
+	public Article[] getLinksOut() {
+		int[] tmpLinks = env.getDbPageLinkOutNoSentences().retrieveIntArray(id);
 
-		Article[] links = new Article[tmpLinks.getValues().size()];
-		int index = 0;
-		for (Integer id : tmpLinks.getValues()) {
-			links[index] = new Article(env, id.intValue());
-			index++;
-		}
+		Article[] links = new Article[tmpLinks.length];
+		for (int i = 0; i < tmpLinks.length; i++)
+			links[i] = new Article(env, tmpLinks[i]);
 
 		return links;	
 	}
@@ -0,0 +1,188 @@
+package com.scienceminer.nerd.mention;
+
+import com.scienceminer.nerd.kb.LowerKnowledgeBase;
+import com.scienceminer.nerd.kb.db.LabelIterator;
+import com.scienceminer.nerd.kb.model.Label;
+import com.scienceminer.nerd.utilities.NerdConfig;
+import com.scienceminer.nerd.utilities.Utilities;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Memoized generalized DICE coefficients of the terms of one language (see
+ * ProcessText.getDICECoefficient()), which only depend on the label vocabulary.
+ *
+ * The coefficients are first looked up in an optional precomputed table of the most
+ * frequent labels, saved with the databases, then in a bounded concurrent cache. The
+ * occurrence counts of the components of the terms, shared by many terms, are cached
+ * separately. A missing value is computed only once, concurrent requests for the same
+ * term waiting for the result of the first computation.
+ *
+ * Example command for precomputing the table of the 1M most linked labels:
+ *
+ * mvn exec:java -Dexec.mainClass=com.scienceminer.nerd.mention.DiceCoefficients
+ * -Dexec.args="data/config/wikipedia-en.yaml 1000000"
+ */
+public class DiceCoefficients {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiceCoefficients.class);
+
+    public static final String FILE_NAME = "dice.table";
+
+    private final Object2DoubleOpenHashMap<String> table;
+    private final Cache<String, Double> coefficients;
+    private final Cache<String, Long> occCounts;
+
+    /**
+     * @param cacheSize the maximum number of coefficients and of occurrence counts kept in
+     * the caches
+     * @param table the precomputed coefficients, possibly empty
+     */
+    public DiceCoefficients(long cacheSize, Object2DoubleOpenHashMap<String> table) {
+        this.table = table;
+        this.table.defaultReturnValue(Double.NaN);
+        coefficients = CacheBuilder.newBuilder()
+            .maximumSize(cacheSize)
+            .recordStats()
+            .build();
+        occCounts = CacheBuilder.newBuilder()
+            .maximumSize(cacheSize)
+            .build();
+    }
+
+    /**
+     * Returns the coefficient of the term, computing it with the given function if absent.
+     */
+    public double get(String term, ToDoubleFunction<String> compute) {
+        double coefficient = table.getDouble(term);
+        if (!Double.isNaN(coefficient))
+            return coefficient;
+        try {
+            return coefficients.get(term, () -> compute.applyAsDouble(term));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cannot compute the DICE coefficient of " + term, e.getCause());
+        }
+    }
+
+    /**
+     * Returns the occurrence count of the best label of the term, computing it with the
+     * given function if absent.
+     */
+    public long getOccCount(String term, ToLongFunction<String> compute) {
+        try {
+            return occCounts.get(term, () -> compute.applyAsLong(term));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cannot compute the occurrence count of " + term, e.getCause());
+        }
+    }
+
+    public CacheStats getCacheStats() {
+        return coefficients.stats();
+    }
+
+    public int getTableSize() {
+        return table.size();
+    }
+
+    /**
+     * @return the precomputed coefficients saved in the given file, or an empty table if
+     * there is no such file
+     */
+    public static Object2DoubleOpenHashMap<String> loadTable(File file) {
+        Object2DoubleOpenHashMap<String> table = new Object2DoubleOpenHashMap<>();
+        if (!file.exists())
+            return table;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                int ind = line.lastIndexOf('\t');
+                if (ind == -1)
+                    continue;
+                table.put(line.substring(0, ind), Double.parseDouble(line.substring(ind + 1)));
+            }
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.warn("Cannot load the DICE coefficient table " + file.getPath() + ", coefficients will be computed", e);
+            table.clear();
+        }
+        return table;
+    }
+
+    /**
+     * Precompute the coefficients of the labels with the highest link occurrence counts and
+     * save them in the given file, one label and its coefficient per line.
+     */
+    public static void buildTable(LowerKnowledgeBase wikipedia, int nbLabels, File file) throws IOException {
+        String lang = wikipedia.getConfig().getLangCode();
+        System.out.println("Selecting the " + nbLabels + " most linked labels for language " + lang);
+        // label text and link occurrence count, the least linked label first
+        PriorityQueue<Map.Entry<String, Long>> mostLinked = new PriorityQueue<>(nbLabels + 1,
+            (a, b) -> Long.compare(a.getValue(), b.getValue()));
+        LabelIterator iterator = wikipedia.getLabelIterator();
+        try {
+            while (iterator.hasNext()) {
+                Label label = iterator.next();
+                if (label == null || label.getText().indexOf('\n') != -1 || label.getText().indexOf('\t') != -1)
+                    continue;
+                if (mostLinked.size() < nbLabels)
+                    mostLinked.add(new AbstractMap.SimpleImmutableEntry<>(label.getText(), label.getLinkOccCount()));
+                else if (label.getLinkOccCount() > mostLinked.peek().getValue()) {
+                    mostLinked.poll();
+                    mostLinked.add(new AbstractMap.SimpleImmutableEntry<>(label.getText(), label.getLinkOccCount()));
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        int nbDone = 0;
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, Long> label : mostLinked) {
+                writer.println(label.getKey() + "\t" + ProcessText.computeDICECoefficient(label.getKey(), wikipedia, null));
+                nbDone++;
+                if (nbDone % 100000 == 0)
+                    System.out.println(nbDone + " / " + mostLinked.size() + " DICE coefficients computed");
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file))
+                throw new IOException("Cannot write " + file.getPath());
+        }
+        System.out.println("DICE coefficient table saved - " + nbDone + " labels");
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("usage: DiceCoefficients <wikipedia configuration file> <number of labels>");
+            System.exit(1);
+        }
+        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        NerdConfig conf = mapper.readValue(new File(args[0]), NerdConfig.class);
+        Utilities.initGrobid();
+        LowerKnowledgeBase wikipedia = new LowerKnowledgeBase(conf);
+        try {
+            buildTable(wikipedia, Integer.parseInt(args[1]), new File(conf.getDbDirectory() + File.separator + FILE_NAME));
+        } finally {
+            wikipedia.close();
+        }
+    }
+}
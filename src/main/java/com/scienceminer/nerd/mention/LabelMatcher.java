@@ -0,0 +1,271 @@
+package com.scienceminer.nerd.mention;
+
+import com.scienceminer.nerd.kb.db.KBEnvironment;
+import com.scienceminer.nerd.kb.db.KBIterator;
+import com.scienceminer.nerd.kb.db.LabelDatabase;
+import com.scienceminer.nerd.kb.model.hadoop.DbLabel;
+import com.scienceminer.nerd.utilities.StringPos;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.fusesource.lmdbjni.Entry;
+import org.grobid.core.analyzers.GrobidAnalyzer;
+import org.grobid.core.layout.LayoutToken;
+import org.grobid.core.utilities.LayoutTokensUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Token-level trie over the label vocabulary of a Wikipedia, used to spot the mentions
+ * matching a label in a single scan of the token sequence instead of enumerating all the
+ * n-grams of the text and looking them up one by one in the label database.
+ *
+ * Labels are tokenized with the same analyzer as the texts, whitespace tokens are ignored
+ * and the other tokens are lower-cased, so that a span is matched if any case variant of
+ * its text is a label, which is what NerdEngine.bestLabel() and bestLabels() try. The
+ * matched spans are then filtered exactly as the n-grams (stop words, delimiters).
+ *
+ * The trie is stored in primitive hash maps: token strings are mapped to int ids, and the
+ * transitions are indexed by (state, token id) packed in a long.
+ */
+public class LabelMatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LabelMatcher.class);
+
+    private static final int MAGIC = 0x4c42544d; // "LBTM"
+    private static final int VERSION = 1;
+
+    public static final String FILE_NAME = "label.matcher";
+
+    private final Object2IntOpenHashMap<String> tokenIds;
+    private final Long2IntOpenHashMap transitions;
+    private final BitSet finalStates;
+    private int nbStates;
+    private final double minLinkProbability;
+
+    LabelMatcher(double minLinkProbability) {
+        this.minLinkProbability = minLinkProbability;
+        tokenIds = new Object2IntOpenHashMap<>();
+        tokenIds.defaultReturnValue(-1);
+        transitions = new Long2IntOpenHashMap();
+        transitions.defaultReturnValue(-1);
+        finalStates = new BitSet();
+        // state 0 is the root
+        nbStates = 1;
+    }
+
+    public double getMinLinkProbability() {
+        return minLinkProbability;
+    }
+
+    public int getNbStates() {
+        return nbStates;
+    }
+
+    private static long transitionKey(int state, int tokenId) {
+        return (((long)state) << 32) | (tokenId & 0xffffffffL);
+    }
+
+    private static boolean isIgnored(String token) {
+        return StringUtils.isBlank(token);
+    }
+
+    /**
+     * Add a label to the trie, given its tokens.
+     */
+    void add(List<String> tokens) {
+        int state = 0;
+        boolean empty = true;
+        for (String token : tokens) {
+            if (isIgnored(token))
+                continue;
+            empty = false;
+            String key = token.toLowerCase();
+            int tokenId = tokenIds.getInt(key);
+            if (tokenId == -1) {
+                tokenId = tokenIds.size();
+                tokenIds.put(key, tokenId);
+            }
+            long transition = transitionKey(state, tokenId);
+            int next = transitions.get(transition);
+            if (next == -1) {
+                next = nbStates++;
+                transitions.put(transition, next);
+            }
+            state = next;
+        }
+        if (!empty)
+            finalStates.set(state);
+    }
+
+    /**
+     * Returns the token sequences matching a label, starting with a non empty token and
+     * spanning at most (ngram * 2) - 1 tokens (separators included), as the n-grams
+     * produced by ProcessText.ngrams().
+     */
+    public List<StringPos> match(List<LayoutToken> layoutTokens, int ngram) {
+        List<StringPos> matches = new ArrayList<>();
+        if (layoutTokens == null || layoutTokens.isEmpty())
+            return matches;
+
+        int actualNgram = (ngram * 2) - 1; // for taking into account separators
+
+        // -2 for ignored tokens, -1 for tokens absent from the labels
+        int[] ids = new int[layoutTokens.size()];
+        for (int i = 0; i < ids.length; i++) {
+            String text = layoutTokens.get(i).getText();
+            ids[i] = isIgnored(text) ? -2 : tokenIds.getInt(text.toLowerCase());
+        }
+
+        for (int i = 0; i < ids.length; i++) {
+            if (StringUtils.isEmpty(layoutTokens.get(i).getText()) || ids[i] == -1)
+                continue;
+            int state = 0;
+            int end = Math.min(ids.length, i + actualNgram);
+            for (int j = i; j < end; j++) {
+                if (ids[j] == -2)
+                    continue;
+                if (ids[j] == -1)
+                    break;
+                state = transitions.get(transitionKey(state, ids[j]));
+                if (state == -1)
+                    break;
+                if (finalStates.get(state)) {
+                    List<LayoutToken> tokens = layoutTokens.subList(i, j + 1);
+                    matches.add(new StringPos(LayoutTokensUtil.toText(tokens), tokens.get(0).getOffset(), tokens));
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Add a label of the label database to the trie if it has senses and a link probability
+     * greater or equal to the threshold.
+     *
+     * @return true if the label was added
+     */
+    boolean addLabel(String text, DbLabel label, GrobidAnalyzer analyzer) {
+        if (label.getSenses() == null || label.getSenses().isEmpty())
+            return false;
+        double linkProbability = 0.0;
+        if (label.getTextDocCount() != 0)
+            linkProbability = Math.min(1.0, (double)label.getLinkDocCount() / label.getTextDocCount());
+        if (linkProbability < minLinkProbability)
+            return false;
+        add(analyzer.tokenize(text));
+        return true;
+    }
+
+    /**
+     * Build the trie from the labels of the label database having a link probability
+     * greater or equal to the given threshold.
+     */
+    public static LabelMatcher build(LabelDatabase labels, double minLinkProbability) {
+        System.out.println("Building label matcher (min link probability " + minLinkProbability + ")");
+        LabelMatcher matcher = new LabelMatcher(minLinkProbability);
+        GrobidAnalyzer analyzer = GrobidAnalyzer.getInstance();
+        long nbLabels = 0;
+        KBIterator iterator = new KBIterator(labels);
+        try {
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                try {
+                    DbLabel label = labels.deserializeValue(entry.getValue());
+                    String text = (String)KBEnvironment.deserialize(entry.getKey());
+                    if (!matcher.addLabel(text, label, analyzer))
+                        continue;
+                    nbLabels++;
+                    if (nbLabels % 1000000 == 0)
+                        System.out.println(nbLabels + " labels added");
+                } catch(Exception e) {
+                    LOGGER.warn("Cannot add a label to the label matcher", e);
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+        System.out.println("Label matcher built - " + nbLabels + " labels, " + matcher.nbStates + " states");
+        return matcher;
+    }
+
+    public void save(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeDouble(minLinkProbability);
+            String[] tokens = new String[tokenIds.size()];
+            for (Object2IntMap.Entry<String> entry : tokenIds.object2IntEntrySet())
+                tokens[entry.getIntValue()] = entry.getKey();
+            out.writeInt(tokens.length);
+            for (String token : tokens)
+                out.writeUTF(token);
+            out.writeInt(nbStates);
+            long[] finals = finalStates.toLongArray();
+            out.writeInt(finals.length);
+            for (long bits : finals)
+                out.writeLong(bits);
+            out.writeInt(transitions.size());
+            for (Long2IntMap.Entry entry : transitions.long2IntEntrySet()) {
+                out.writeLong(entry.getLongKey());
+                out.writeInt(entry.getIntValue());
+            }
+        }
+    }
+
+    public static LabelMatcher load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not a label matcher: " + file.getPath());
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported label matcher version " + version + ": " + file.getPath());
+            LabelMatcher matcher = new LabelMatcher(in.readDouble());
+            int nbTokens = in.readInt();
+            for (int i = 0; i < nbTokens; i++)
+                matcher.tokenIds.put(in.readUTF(), i);
+            matcher.nbStates = in.readInt();
+            long[] finals = new long[in.readInt()];
+            for (int i = 0; i < finals.length; i++)
+                finals[i] = in.readLong();
+            matcher.finalStates.or(BitSet.valueOf(finals));
+            int nbTransitions = in.readInt();
+            for (int i = 0; i < nbTransitions; i++) {
+                long key = in.readLong();
+                matcher.transitions.put(key, in.readInt());
+            }
+            return matcher;
+        }
+    }
+
+    /**
+     * Load the label matcher saved in the given file if it was built with the same link
+     * probability threshold, otherwise build it from the label database and save it.
+     */
+    public static LabelMatcher loadOrBuild(File file, LabelDatabase labels, double minLinkProbability) {
+        if (file.exists()) {
+            try {
+                LabelMatcher matcher = load(file);
+                if (matcher.getMinLinkProbability() == minLinkProbability)
+                    return matcher;
+            } catch (IOException e) {
+                LOGGER.warn("Cannot load the label matcher " + file.getPath() + ", it will be rebuilt", e);
+            }
+        }
+        LabelMatcher matcher = build(labels, minLinkProbability);
+        try {
+            matcher.save(file);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot save the label matcher " + file.getPath(), e);
+        }
+        return matcher;
+    }
+}
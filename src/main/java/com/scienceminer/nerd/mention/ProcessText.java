@@ -383,7 +383,12 @@ public class ProcessText {
     }
 
     protected List<Mention> extractMentionsWikipedia(List<LayoutToken> tokens, Language lang) {
-        List<StringPos> pool = ngrams(tokens, NGRAM_LENGTH);
+        // only the n-grams matching a label if a label matcher is available
+        LabelMatcher matcher = null;
+        LowerKnowledgeBase wikipedia = UpperKnowledgeBase.getInstance().getWikipediaConf(lang.getLang());
+        if (wikipedia != null)
+            matcher = wikipedia.getLabelMatcher();
+        List<StringPos> pool = (matcher != null) ? matcher.match(tokens, NGRAM_LENGTH) : ngrams(tokens, NGRAM_LENGTH);
         List<Mention> results = new ArrayList<>();
 
         // candidates which start and end with a stop word are removed.
@@ -1195,15 +1200,35 @@ public class ProcessText {
      * in order to capture lexical cohesion of the term.
      * see [Park and al., 2002] for formula of Generalized DICE coefficients,
      * http://aclweb.org/anthology/C02-1142
+     *
+     * The coefficients are memoized per language, see {@link DiceCoefficients}.
      */
     public static double getDICECoefficient(String term, String lang) {
-        // term frequency
         LowerKnowledgeBase wikipedia = UpperKnowledgeBase.getInstance().getWikipediaConf(lang);
+        DiceCoefficients cache = wikipedia.getDiceCoefficients();
+        if (cache == null)
+            return computeDICECoefficient(term, wikipedia, null);
+        return cache.get(term, t -> computeDICECoefficient(t, wikipedia, cache));
+    }
+
+    // occurrence count of the best label of a term, 0 if there is none
+    private static long getBestLabelOccCount(String term, LowerKnowledgeBase wikipedia) {
         Label label = NerdEngine.bestLabel(term, wikipedia);
+        return (label == null) ? 0 : label.getOccCount();
+    }
+
+    /**
+     * Compute the DICE coefficient of a term, the occurrence counts of the components of
+     * the term being taken from the given cache if not null.
+     */
+    static double computeDICECoefficient(String term, LowerKnowledgeBase wikipedia, DiceCoefficients cache) {
+        String lang = wikipedia.getConfig().getLangCode();
+        // term frequency
+        long termOccCount = getBestLabelOccCount(term, wikipedia);
 
         double avFreqTerm = 0.0;
-        if (label.getOccCount() != 0)
-            avFreqTerm = (double) label.getOccCount();
+        if (termOccCount != 0)
+            avFreqTerm = (double) termOccCount;
 
         // tokenise according to language and remove punctuations/delimeters
         List<String> tokens = GrobidAnalyzer.getInstance().tokenize(term, new Language(lang, 1.0));
@@ -1226,16 +1251,17 @@ public class ProcessText {
         // equals full term frequency) which mean normally a very high lexical cohesion for the term.
 
         for (String component : tokens) {
-            Label labelComponent = NerdEngine.bestLabel(component, wikipedia);
-            if (labelComponent.getOccCount() < avFreqTerm) {
-                //avFreqComponent += (double)labelComponent.getOccCount() + avFreqTerm;
-                avFreqComponent = Math.min(avFreqComponent, (double) labelComponent.getOccCount() + avFreqTerm);
+            long componentOccCount = (cache == null) ? getBestLabelOccCount(component, wikipedia) :
+                cache.getOccCount(component, c -> getBestLabelOccCount(c, wikipedia));
+            if (componentOccCount < avFreqTerm) {
+                //avFreqComponent += (double)componentOccCount + avFreqTerm;
+                avFreqComponent = Math.min(avFreqComponent, (double) componentOccCount + avFreqTerm);
             } else {
-                //avFreqComponent += (double)labelComponent.getOccCount();
-                avFreqComponent = Math.min(avFreqComponent, (double) labelComponent.getOccCount());
+                //avFreqComponent += (double)componentOccCount;
+                avFreqComponent = Math.min(avFreqComponent, (double) componentOccCount);
             }
 
-//System.out.println(component + " - labelComponent.getOccCount(): " + labelComponent.getOccCount() );
+//System.out.println(component + " - componentOccCount: " + componentOccCount );
         }
 
         // compute generalized DICE coef.
@@ -1256,7 +1282,7 @@ public class ProcessText {
             dice = dice / avFreqTerm;
         }
 
-//System.out.println("label.getOccCount(): " + label.getOccCount());
+//System.out.println("termOccCount: " + termOccCount);
 //System.out.println("avFreqTerm: " + avFreqTerm);
 //System.out.println("avFreqComponent: " + avFreqComponent);
 //System.out.println("termLength: " + termLength);
@@ -15,6 +15,16 @@ public interface NerdPaths {
 	 * path extension for is alive request
 	 */
 	String IS_ALIVE = "isalive";
+
+	/**
+	 * path extension for readiness request (initialisation state of the KB languages)
+	 */
+	String IS_READY = "isready";
+
+	/**
+	 * path extension for runtime statistics (caches)
+	 */
+	String STATS = "stats";
 	
 	/**
 	 * Language identification entry point
@@ -55,6 +65,11 @@ public interface NerdPaths {
 	String CONCEPT = "concept";
 	String KB = "kb";
 
+	/**
+	 * Versions of the KB databases (manifests)
+	 */
+	String VERSION = "version";
+
 
 	/**
 	 * Term lookup
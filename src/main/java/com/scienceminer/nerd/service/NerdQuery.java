@@ -3,6 +3,7 @@ package com.scienceminer.nerd.service;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.io.JsonStringEncoder;
 import com.fasterxml.jackson.databind.DeserializationFeature;
@@ -54,6 +55,15 @@ public class NerdQuery {
     public static final String QUERY_TYPE_LAYOUT_TOKENS = "layoutToken";
     public static final String QUERY_TYPE_INVALID = "invalid";
 
+    // optional KB fields of the output entities, which can be projected with "fields" or "profile"
+    public static final String FIELD_DEFINITIONS = "definitions";
+    public static final String FIELD_STATEMENTS = "statements";
+    public static final String FIELD_CATEGORIES = "categories";
+    public static final String FIELD_DOMAINS = "domains";
+
+    // profile without any of the optional KB fields: offsets, identifiers and scores only
+    public static final String PROFILE_LITE = "lite";
+
     // main text component
     private String text = null;
 
@@ -131,6 +141,12 @@ public class NerdQuery {
     // a complete document 
     private String structure = null;
 
+    // projection of the optional KB fields of the output entities, all of them when null
+    private List<String> fields = null;
+
+    // named set of output fields, "lite" for none of the optional KB fields
+    private String profile = null;
+
     public NerdQuery() {
     }
 
@@ -161,6 +177,9 @@ public class NerdQuery {
         this.filter = query.getFilter();
         this.context = query.getContext();
 
+        this.fields = query.getFields();
+        this.profile = query.getProfile();
+
         this.minSelectorScore = query.getMinSelectorScore();
         this.minRankerScore = query.getMinRankerScore();
 
@@ -448,6 +467,36 @@ public class NerdQuery {
         this.structure = structure;
     }
 
+    public List<String> getFields() {
+        return this.fields;
+    }
+
+    public void setFields(List<String> fields) {
+        this.fields = fields;
+    }
+
+    public String getProfile() {
+        return this.profile;
+    }
+
+    public void setProfile(String profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Indicate if an optional KB field of the output entities (definitions, statements,
+     * categories, domains) has to be fetched. An explicit field projection has priority
+     * over the profile, and all the fields are fetched by default. The statements are
+     * always needed when a filter is set, because the filter is applied on them.
+     */
+    public boolean isFieldRequested(String field) {
+        if (FIELD_STATEMENTS.equals(field) && filter != null)
+            return true;
+        if (fields != null)
+            return fields.contains(field);
+        return !PROFILE_LITE.equals(profile);
+    }
+
     public String toJSON() {
         ObjectMapper mapper = new ObjectMapper();
         mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
@@ -678,16 +727,8 @@ public class NerdQuery {
             for (NerdEntity entity : entities) {
                 //if (KBUtilities.isPlant(entity.getWikidataId()))
                 //    continue;
-                if (filter != null) {
-                    List<Statement> statements = entity.getStatements();
-                    if ((statements == null) &&
-                            ((filter.getValueMustNotMatch() == null) || (filter.getValueMustMatch() != null)))
-                        continue;
-                    if (statements != null) {
-                        if (!filter.valid(statements))
-                            continue;
-                    }
-                }
+                if (!isValidForFilter(entity))
+                    continue;
 
                 if (first)
                     first = false;
@@ -727,6 +768,114 @@ public class NerdQuery {
         return buffer.toString();
     }
 
+    /**
+     * Streaming version of toJSONClean(Document): the same JSON object is written directly
+     * with the given generator, typically bound to the output stream of the response, so
+     * that the serialised result is never materialised as a whole in memory.
+     */
+    public void writeJSONClean(JsonGenerator generator, Document doc) throws IOException {
+        generator.writeStartObject();
+
+        // server runtime is always present (even at 0.0)
+        generator.writeNumberField("runtime", runtime);
+
+        // parameters
+        generator.writeBooleanField("nbest", nbest);
+
+        if (ArrayUtils.isNotEmpty(processSentence)) {
+            generator.writeArrayFieldStart("processSentence");
+            for (Integer index : processSentence)
+                generator.writeNumber(index.intValue());
+            generator.writeEndArray();
+        }
+
+        // surface form
+        if (text != null) {
+            generator.writeStringField("text", text);
+            if (CollectionUtils.isNotEmpty(sentences)) {
+                generator.writeArrayFieldStart("sentences");
+                for (Sentence sentence : sentences)
+                    generator.writeRawValue(sentence.toJSON());
+                generator.writeEndArray();
+            }
+        }
+
+        if (shortText != null)
+            generator.writeStringField("shortText", shortText);
+
+        if (CollectionUtils.isNotEmpty(termVector)) {
+            generator.writeArrayFieldStart("termVector");
+            for (WeightedTerm term : termVector)
+                term.writeJson(generator);
+            generator.writeEndArray();
+        }
+
+        String lang = "en"; // default language
+        if (language != null) {
+            generator.writeFieldName("language");
+            generator.writeRawValue(language.toJSON());
+            lang = language.getLang();
+        }
+
+        // if available, document level distribution of categories
+        if (CollectionUtils.isNotEmpty(globalCategories)) {
+            generator.writeArrayFieldStart("global_categories");
+            for (com.scienceminer.nerd.kb.Category category : globalCategories) {
+                generator.writeStartObject();
+                generator.writeNumberField("weight", category.getWeight());
+                generator.writeStringField("source", "wikipedia-" + lang);
+                generator.writeStringField("category", category.getName());
+                generator.writeNumberField("page_id", category.getWikiPageID());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+
+        if (CollectionUtils.isNotEmpty(entities)) {
+            if (this.full) {
+                //TODO: remove after release
+                LOGGER.warn("The full json is a deprecated option and will be removed next release. ");
+            }
+            generator.writeArrayFieldStart("entities");
+            for (NerdEntity entity : entities) {
+                if (!isValidForFilter(entity))
+                    continue;
+                if (this.full)
+                    entity.writeJsonFull(generator);
+                else
+                    entity.writeJsonCompact(generator);
+            }
+            generator.writeEndArray();
+        }
+
+        // possible page information
+        // page height and width
+        if (doc != null && doc.getPages() != null) {
+            generator.writeArrayFieldStart("pages");
+            for (Page page : doc.getPages()) {
+                generator.writeStartObject();
+                generator.writeNumberField("page_height", page.getHeight());
+                generator.writeNumberField("page_width", page.getWidth());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+
+        generator.writeEndObject();
+    }
+
+    /**
+     * Check the statements of an entity against the filter of the query, if any.
+     */
+    private boolean isValidForFilter(NerdEntity entity) {
+        if (filter == null)
+            return true;
+        List<Statement> statements = entity.getStatements();
+        if (statements == null)
+            return (filter.getValueMustNotMatch() != null) && (filter.getValueMustMatch() == null);
+        return filter.valid(statements);
+    }
+
     @Override
     public String toString() {
         return "Query [text=" + text + ", shortText=" + shortText + ", terms=" + "]";
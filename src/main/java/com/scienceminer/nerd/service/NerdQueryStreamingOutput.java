@@ -0,0 +1,67 @@
+package com.scienceminer.nerd.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.grobid.core.document.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Response entity serialising a processed query as JSON directly in the response output
+ * stream, with the same schema as NerdQuery.toJSONClean().
+ */
+public class NerdQueryStreamingOutput implements StreamingOutput {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NerdQueryStreamingOutput.class);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final NerdQuery nerdQuery;
+
+    // the PDF document when the query was processed with a file, for the page information
+    private final Document doc;
+
+    public NerdQueryStreamingOutput(NerdQuery nerdQuery, Document doc) {
+        this.nerdQuery = nerdQuery;
+        this.doc = doc;
+    }
+
+    public NerdQuery getNerdQuery() {
+        return nerdQuery;
+    }
+
+    public Document getDocument() {
+        return doc;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException, WebApplicationException {
+        JsonGenerator generator = JSON_FACTORY.createGenerator(output, JsonEncoding.UTF8);
+        // the output stream is managed by the container, and an interrupted output must not
+        // be closed as if it was complete
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        try {
+            nerdQuery.writeJSONClean(generator, doc);
+        } catch (IOException | RuntimeException e) {
+            // the status has already been sent at this stage, the response will be truncated
+            LOGGER.error("Error when writing the JSON response", e);
+            throw e;
+        } finally {
+            generator.close();
+        }
+    }
+
+    /**
+     * @return the complete JSON serialisation as a String, as NerdQuery.toJSONClean()
+     */
+    public String toJSONClean() {
+        return nerdQuery.toJSONClean(doc);
+    }
+}
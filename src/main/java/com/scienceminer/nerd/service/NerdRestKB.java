@@ -5,6 +5,7 @@ import com.scienceminer.nerd.disambiguation.NerdEntity;
 import com.scienceminer.nerd.exceptions.QueryException;
 import com.scienceminer.nerd.exceptions.ResourceNotFound;
 import com.scienceminer.nerd.kb.*;
+import com.scienceminer.nerd.kb.db.PageFlags;
 import com.scienceminer.nerd.kb.db.WikipediaDomainMap;
 import com.scienceminer.nerd.kb.model.Article;
 import com.scienceminer.nerd.kb.model.Label;
@@ -99,7 +100,8 @@ public class NerdRestKB {
 
         // translations
         //Map<String, Wikipedia> wikipedias = Lexicon.getInstance().getWikipediaConfs();
-        Map<String, LowerKnowledgeBase> wikipedias = UpperKnowledgeBase.getInstance().getWikipediaConfs();
+        // only the languages already loaded, a translation does not load its language
+        Map<String, LowerKnowledgeBase> wikipedias = UpperKnowledgeBase.getInstance().getLoadedWikipediaConfs();
         //Map<String, WikipediaDomainMap> wikipediaDomainMaps = Lexicon.getInstance().getWikipediaDomainMaps();
         Map<String, WikipediaDomainMap> wikipediaDomainMaps =
                 UpperKnowledgeBase.getInstance().getWikipediaDomainMaps();
@@ -184,7 +186,7 @@ public class NerdRestKB {
 
                     // translations
                     Map<String, LowerKnowledgeBase> wikipedias =
-                            UpperKnowledgeBase.getInstance().getWikipediaConfs();
+                            UpperKnowledgeBase.getInstance().getLoadedWikipediaConfs();
 
                     Map<String, WikipediaDomainMap> wikipediaDomainMaps =
                             UpperKnowledgeBase.getInstance().getWikipediaDomainMaps();
@@ -244,6 +246,7 @@ public class NerdRestKB {
         StringBuilder jsonBuilder = new StringBuilder();
         jsonBuilder.append("{ \"term\": \"" + term + "\", \"lang\": \"" + lang + "\", \"senses\" : [");
 
+        PageFlags pageFlags = wikipedia.getEnvironment().getPageFlags();
         Label lbl = new Label(wikipedia.getEnvironment(), term.trim());
         if (lbl.exists()) {
             Label.Sense[] senses = lbl.getSenses();
@@ -267,7 +270,12 @@ public class NerdRestKB {
                     boolean invalid = false;
 
                     //System.out.println("check categories for " + sense.getId());
-                    com.scienceminer.nerd.kb.model.Category[] parentCategories = sense.getParentCategories();
+                    com.scienceminer.nerd.kb.model.Category[] parentCategories = null;
+                    if (pageFlags != null) {
+                        // precomputed, no need to load the categories
+                        invalid = pageFlags.isDisambiguation(sense.getId());
+                    } else
+                        parentCategories = sense.getParentCategories();
 
                     if (ArrayUtils.isNotEmpty(parentCategories)) {
                         for (com.scienceminer.nerd.kb.model.Category theCategory : parentCategories) {
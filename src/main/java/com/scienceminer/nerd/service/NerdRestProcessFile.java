@@ -56,6 +56,14 @@ public class NerdRestProcessFile {
      * the enriched and disambiguated query.
      */
     public String processQueryAndPdfFile(String theQuery, final InputStream inputStream) {
+        return processQueryAndPdfFileStreaming(theQuery, inputStream).toJSONClean();
+    }
+
+    /**
+     * Same as processQueryAndPdfFile(String, InputStream), but the result is returned as a
+     * response entity serialising the processed query directly in the response output stream.
+     */
+    public NerdQueryStreamingOutput processQueryAndPdfFileStreaming(String theQuery, final InputStream inputStream) {
         LOGGER.debug(methodLogIn());
         File originFile = null;
         Engine engine = null;
@@ -446,7 +454,7 @@ public class NerdRestProcessFile {
 
         LOGGER.debug(methodLogOut());
         // TODO: output in the resulting json also page info from the doc object as in GROBID
-        return nerdQuery.toJSONClean(doc);
+        return new NerdQueryStreamingOutput(nerdQuery, doc);
     }
 
 
@@ -1,11 +1,24 @@
 package com.scienceminer.nerd.service;
 
+import com.scienceminer.nerd.disambiguation.Relatedness;
+import com.scienceminer.nerd.disambiguation.RelatednessCache;
+import com.scienceminer.nerd.kb.LowerKnowledgeBase;
+import com.scienceminer.nerd.kb.UpperKnowledgeBase;
+import com.scienceminer.nerd.kb.db.KBManifest;
+import com.scienceminer.nerd.kb.db.LabelDatabase;
+import com.google.common.cache.CacheStats;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
+import java.util.List;
+import java.util.Map;
+
 public class NerdRestProcessGeneric {
 	
 	private static final Logger LOGGER = LoggerFactory.getLogger(NerdRestProcessGeneric.class);
@@ -36,4 +49,164 @@ public class NerdRestProcessGeneric {
 		return response;
 	}
 
+	/**
+	 * Returns the initialisation state of the KB as JSON: the state of each language (the 
+	 * active ones being initialised at startup, the other ones at their first use) and of 
+	 * the domain map. The status is 200 when the active languages are ready, 503 otherwise.
+	 * The call does not wait for the initialisation of the KB, which is started in the 
+	 * background if not started yet.
+	 */
+	public static Response isReady() {
+		Response response = null;
+		try {
+			// never wait for the initialisation of the KB, only start it if needed
+			UpperKnowledgeBase upperKnowledgeBase = UpperKnowledgeBase.peekInstance();
+			if (upperKnowledgeBase == null)
+				UpperKnowledgeBase.startInstance();
+			boolean ready = (upperKnowledgeBase != null) && upperKnowledgeBase.isReady();
+			StringBuilder json = new StringBuilder();
+			json.append("{ \"ready\": " + ready)
+				.append(", \"started\": " + (upperKnowledgeBase != null));
+			if (upperKnowledgeBase != null) {
+				json.append(", \"languages\": {");
+				boolean first = true;
+				List<String> activeLanguages = upperKnowledgeBase.getActiveLanguages();
+				for (Map.Entry<String, UpperKnowledgeBase.LanguageState> entry : upperKnowledgeBase.getLanguageStates().entrySet()) {
+					if (first)
+						first = false;
+					else
+						json.append(", ");
+					json.append("\"" + entry.getKey() + "\": { ")
+						.append("\"state\": \"" + entry.getValue().name().toLowerCase() + "\"")
+						.append(", \"active\": " + activeLanguages.contains(entry.getKey()))
+						.append(" }");
+				}
+				json.append("}, \"domains\": \"" + upperKnowledgeBase.getDomainMapState().name().toLowerCase() + "\"");
+			}
+			json.append(" }");
+
+			response = Response
+					.status(ready ? Status.OK : Status.SERVICE_UNAVAILABLE)
+					.entity(json.toString())
+					.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON + "; charset=UTF-8")
+					.build();
+		} catch (Exception e) {
+			LOGGER.error("Exception occurred while checking if the service is ready. ", e);
+			response = Response.status(Status.INTERNAL_SERVER_ERROR).build();
+		}
+		return response;
+	}
+
+	/**
+	 * Returns runtime statistics of the service as JSON, currently the state of the
+	 * relatedness cache of each language.
+	 */
+	public static Response getStatistics() {
+		Response response = null;
+		try {
+			StringBuilder json = new StringBuilder();
+			json.append("{ \"relatedness\": {");
+			boolean first = true;
+			for (Map.Entry<String, RelatednessCache> entry : Relatedness.getInstance().getCaches().entrySet()) {
+				RelatednessCache cache = entry.getValue();
+				if (first)
+					first = false;
+				else
+					json.append(", ");
+				json.append("\"" + entry.getKey() + "\": { ")
+					.append("\"size\": " + cache.size())
+					.append(", \"capacity\": " + cache.getCapacity())
+					.append(", \"hits\": " + cache.getHits())
+					.append(", \"misses\": " + cache.getMisses())
+					.append(", \"evictions\": " + cache.getEvictions())
+					.append(", \"hitRatio\": " + cache.getHitRatio())
+					.append(" }");
+			}
+			json.append("}, \"labels\": {");
+			first = true;
+			for (Map.Entry<String, LowerKnowledgeBase> entry : UpperKnowledgeBase.getInstance().getWikipediaConfs().entrySet()) {
+				LabelDatabase labels = entry.getValue().getEnvironment().getDbLabel();
+				if (first)
+					first = false;
+				else
+					json.append(", ");
+				json.append("\"" + entry.getKey() + "\": { ")
+					.append("\"filter\": " + labels.hasFilter())
+					.append(", \"filterRejections\": " + labels.getFilterRejections())
+					.append(", \"mappedStore\": " + labels.hasMappedStore());
+				CacheStats stats = labels.getCacheStats();
+				if (stats != null) {
+					json.append(", \"cacheSize\": " + labels.getCacheSize())
+						.append(", \"hits\": " + stats.hitCount())
+						.append(", \"misses\": " + stats.missCount())
+						.append(", \"evictions\": " + stats.evictionCount())
+						.append(", \"hitRatio\": " + stats.hitRate());
+				}
+				json.append(" }");
+			}
+			json.append("} }");
+
+			response = Response
+					.status(Status.OK)
+					.entity(json.toString())
+					.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON + "; charset=UTF-8")
+					.header("Access-Control-Allow-Origin", "*")
+					.header("Access-Control-Allow-Methods", "GET, POST, DELETE, PUT")
+					.build();
+		} catch (Exception e) {
+			LOGGER.error("Exception occurred while collecting the service statistics. ", e);
+			response = Response.status(Status.INTERNAL_SERVER_ERROR).build();
+		}
+		return response;
+	}
+
+	/**
+	 * Returns the manifests of the KB databases, i.e. the snapshot version each database 
+	 * was built from and the deltas applied since, for the upper KB and each language.
+	 */
+	public static Response getKBVersion() {
+		Response response = null;
+		try {
+			StringBuilder json = new StringBuilder();
+			json.append("{ \"kb\": ");
+			appendManifests(json, UpperKnowledgeBase.getInstance().getEnvironment().getManifests());
+			json.append(", \"wikipedia\": {");
+			boolean first = true;
+			for (Map.Entry<String, LowerKnowledgeBase> entry : UpperKnowledgeBase.getInstance().getWikipediaConfs().entrySet()) {
+				if (first)
+					first = false;
+				else
+					json.append(", ");
+				json.append("\"" + entry.getKey() + "\": ");
+				appendManifests(json, entry.getValue().getEnvironment().getManifests());
+			}
+			json.append("} }");
+
+			response = Response
+					.status(Status.OK)
+					.entity(json.toString())
+					.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON + "; charset=UTF-8")
+					.header("Access-Control-Allow-Origin", "*")
+					.header("Access-Control-Allow-Methods", "GET, POST, DELETE, PUT")
+					.build();
+		} catch (Exception e) {
+			LOGGER.error("Exception occurred while reading the KB manifests. ", e);
+			response = Response.status(Status.INTERNAL_SERVER_ERROR).build();
+		}
+		return response;
+	}
+
+	private static void appendManifests(StringBuilder json, Map<String, KBManifest> manifests) {
+		json.append("{");
+		boolean first = true;
+		for (Map.Entry<String, KBManifest> entry : manifests.entrySet()) {
+			if (first)
+				first = false;
+			else
+				json.append(", ");
+			json.append("\"" + entry.getKey() + "\": " + entry.getValue().toJson());
+		}
+		json.append("}");
+	}
+
 }
@@ -3,6 +3,7 @@ package com.scienceminer.nerd.service;
 import com.scienceminer.nerd.disambiguation.*;
 import com.scienceminer.nerd.kb.Customisations;
 import com.scienceminer.nerd.mention.*;
+import com.scienceminer.nerd.exceptions.CustomisationException;
 import com.scienceminer.nerd.exceptions.QueryException;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -34,6 +35,15 @@ public class NerdRestProcessQuery {
      * the enriched and disambiguated query.
      */
     public String processQuery(String theQuery) {
+        NerdQueryStreamingOutput output = processQueryStreaming(theQuery);
+        return (output == null) ? null : output.toJSONClean();
+    }
+
+    /**
+     * Same as processQuery(String), but the result is returned as a response entity
+     * serialising the processed query directly in the response output stream.
+     */
+    public NerdQueryStreamingOutput processQueryStreaming(String theQuery) {
         LOGGER.debug(methodLogIn());
         LOGGER.debug(">> received query to process: " + theQuery);
         NerdQuery nerdQuery = NerdQuery.fromJson(theQuery);
@@ -47,7 +57,7 @@ public class NerdRestProcessQuery {
         //checking customisation
         processCustomisation(nerdQuery);
 
-        String output = null;
+        NerdQuery output = null;
 
         switch (nerdQuery.getQueryType()) {
             case NerdQuery.QUERY_TYPE_TEXT:
@@ -68,7 +78,7 @@ public class NerdRestProcessQuery {
         }
 
         LOGGER.debug(methodLogOut());
-        return output;
+        return (output == null) ? null : new NerdQueryStreamingOutput(output, null);
     }
 
     /**
@@ -98,26 +108,28 @@ public class NerdRestProcessQuery {
         }
 
         Customisations customisations = Customisations.getInstance();
-        final String customisationData = customisations.getCustomisation(customisation);
+        final CompiledCustomisation compiledCustomisation;
+        try {
+            compiledCustomisation = customisations.getCompiledCustomisation(customisation);
+        } catch (CustomisationException ce) {
+            throw new QueryException("The selected customisation cannot be applied.");
+        }
 
-        if (customisationData == null) {
+        if (compiledCustomisation == null) {
             throw new QueryException("The specified customisation in the query " + customisation + " doesn't exists");
         }
 
-        NerdCustomisation customisationObj = new NerdCustomisation();
-        customisationObj.createNerdCustomisation(customisationData);
-
-        nerdQuery.setContext(customisationObj);
+        // the compiled customisation is shared, the query gets its own context
+        nerdQuery.setContext(compiledCustomisation.newContext());
     }
 
     /**
      * Parse a structured query and return the corresponding normalized enriched and disambiguated query object.
      *
      * @param nerdQuery POJO query object
-     * @return a response query object containing the structured representation of
-     * the enriched and disambiguated query.
+     * @return the query object enriched with the disambiguated entities.
      */
-    public String processQueryText(NerdQuery nerdQuery) {
+    public NerdQuery processQueryText(NerdQuery nerdQuery) {
         LOGGER.debug(methodLogIn());
         long start = System.currentTimeMillis();
 
@@ -172,7 +184,7 @@ public class NerdRestProcessQuery {
 
         Collections.sort(nerdQuery.getEntities());
         LOGGER.debug(methodLogOut());
-        return nerdQuery.toJSONClean();
+        return nerdQuery;
     }
 
     /**
@@ -273,9 +285,9 @@ public class NerdRestProcessQuery {
      * with the corresponding normalized and disambiguated terms.
      *
      * @param nerdQuery query object with the weighted term vector to be processed
-     * @return a response JSON object containing the weighted term vector with the resolved entities.
+     * @return the query object containing the weighted term vector with the resolved entities.
      */
-    public String processQueryTermVector(NerdQuery nerdQuery) {
+    public NerdQuery processQueryTermVector(NerdQuery nerdQuery) {
         LOGGER.debug(methodLogIn());
         long start = System.currentTimeMillis();
 
@@ -305,7 +317,7 @@ public class NerdRestProcessQuery {
 
         //Collections.sort(nerdQuery.getEntities());
         LOGGER.debug(methodLogOut());
-        return nerdQuery.toJSONClean();
+        return nerdQuery;
 
     }
 
@@ -313,9 +325,9 @@ public class NerdRestProcessQuery {
      * Disambiguation of the terms of a seach query.
      *
      * @param nerdQuery POJO query object with the search query and additional optional contextual information
-     * @return a response JSON object containing the search terms with the resolved entities.
+     * @return the query object containing the search terms with the resolved entities.
      */
-    public String processSearchQuery(NerdQuery nerdQuery) {
+    public NerdQuery processSearchQuery(NerdQuery nerdQuery) {
         long start = System.currentTimeMillis();
 
         //nerdQuery.setShortText(true);
@@ -363,7 +375,7 @@ public class NerdRestProcessQuery {
 
         if (nerdQuery.getEntities() != null)
             Collections.sort(nerdQuery.getEntities());
-        return nerdQuery.toJSONClean(null);
+        return nerdQuery;
     }
 
 
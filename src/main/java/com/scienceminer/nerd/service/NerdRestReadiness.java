@@ -0,0 +1,27 @@
+package com.scienceminer.nerd.service;
+
+import com.sun.jersey.spi.resource.Singleton;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * RESTFul readiness probe, separated from {@link NerdRestService} whose construction waits 
+ * for the initialisation of the KB, so that the probe can answer while the KB is loading.
+ */
+@Singleton
+@Path(NerdPaths.ROOT + NerdPaths.IS_READY)
+public class NerdRestReadiness {
+
+    /**
+     * @see com.scienceminer.nerd.service.NerdRestProcessGeneric#isReady()
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response isReady() {
+        return NerdRestProcessGeneric.isReady();
+    }
+}
@@ -83,6 +83,26 @@ public class NerdRestService implements NerdPaths {
         return NerdRestProcessGeneric.isAlive();
     }
 
+    /**
+     * @see com.scienceminer.nerd.service.NerdRestProcessGeneric#getStatistics()
+     */
+    @GET
+    @Path(NerdPaths.STATS)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getStatistics() {
+        return NerdRestProcessGeneric.getStatistics();
+    }
+
+    /**
+     * @see com.scienceminer.nerd.service.NerdRestProcessGeneric#getKBVersion()
+     */
+    @GET
+    @Path(KB + "/" + VERSION)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getKBVersion() {
+        return NerdRestProcessGeneric.getKBVersion();
+    }
+
     /**
      * Sentence Segmentation
      **/
@@ -131,14 +151,14 @@ public class NerdRestService implements NerdPaths {
     @Produces(MediaType.APPLICATION_JSON)
     public Response processQueryJson(@FormDataParam(QUERY) String query,
                                      @FormDataParam(FILE) InputStream inputStream) {
-        String json = null;
+        NerdQueryStreamingOutput json = null;
         Response response = null;
 
         try {
             if (inputStream != null) {
-                json = nerdProcessFile.processQueryAndPdfFile(query, inputStream);
+                json = nerdProcessFile.processQueryAndPdfFileStreaming(query, inputStream);
             } else {
-                json = nerdProcessQuery.processQuery(query);
+                json = nerdProcessQuery.processQueryStreaming(query);
             }
 
             if (json == null) {
@@ -179,11 +199,11 @@ public class NerdRestService implements NerdPaths {
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public Response processQueryJsonNoMultipart(String query) {
-        String output = null;
+        NerdQueryStreamingOutput output = null;
         Response response = null;
 
         try {
-            output = nerdProcessQuery.processQuery(query);
+            output = nerdProcessQuery.processQueryStreaming(query);
 
             if (output == null) {
                 response = Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
@@ -0,0 +1,95 @@
+package com.scienceminer.nerd.utilities;
+
+/**
+ * The Milne and Witten relatedness measure between two articles, computed from their
+ * sorted lists of links (as ids of articles). This is shared by the live relatedness
+ * computation and the offline precomputation of the relatedness neighbours, so that
+ * both produce exactly the same scores.
+ */
+public class LinkRelatedness {
+
+	/**
+	 * Returns the number of links shared by the two articles, counting in addition the
+	 * direct links between the two articles (mutual links).
+	 */
+	public static int intersection(int idA, int[] linksA, int idB, int[] linksB) {
+		return SortedIntArrays.intersectionSize(linksA, linksB) + mutualLinks(idA, linksA, idB, linksB);
+	}
+
+	/**
+	 * Returns the number of direct links between the two articles which are not already 
+	 * counted as common links (0, 1 or 2).
+	 */
+	public static int mutualLinks(int idA, int[] linksA, int idB, int[] linksB) {
+		int mutual = 0;
+		if (SortedIntArrays.contains(linksA, idB) && !SortedIntArrays.contains(linksB, idB))
+			mutual++;
+		if (SortedIntArrays.contains(linksB, idA) && !SortedIntArrays.contains(linksA, idA))
+			mutual++;
+		return mutual;
+	}
+
+	/**
+	 * Returns the normalized Milne and Witten measure, between 0 (unrelated) and 1,
+	 * given the number of links of each article and their intersection.
+	 */
+	public static double milneWittenMeasure(int sizeA, int sizeB, int intersection, long articleCount) {
+		// this is the famous Milne & Witten relatedness measure
+		double milneWittenMeasure = 1.0;
+		if (intersection == 0) {
+			milneWittenMeasure = 1.0;
+		} else {
+			double a = Math.log(sizeA);
+			double b = Math.log(sizeB);
+			double ab = Math.log(intersection);
+
+			double m = Math.log(articleCount);
+
+			milneWittenMeasure = (Math.max(a, b) - ab) / (m - Math.min(a, b));
+		}
+
+		// normalization
+		if (milneWittenMeasure >= 1)
+			milneWittenMeasure = 0.0;
+		else
+			milneWittenMeasure = 1 - milneWittenMeasure;
+
+		return milneWittenMeasure;
+	}
+
+	/**
+	 * Returns the relatedness of two distinct articles, as the average of the Milne and
+	 * Witten measures on links in and, optionally, on links out.
+	 */
+	public static double relatedness(int idA, int[] linksInA, int[] linksOutA,
+									int idB, int[] linksInB, int[] linksOutB,
+									long articleCount, boolean useLinkOut) {
+		boolean inSet = (linksInA.length > 0) && (linksInB.length > 0);
+		boolean outSet = useLinkOut && (linksOutA.length > 0) && (linksOutB.length > 0);
+		if (!inSet && !outSet)
+			return 0.0;
+
+		int inIntersection = 0;
+		double inMeasure = 0.0;
+		if (inSet) {
+			inIntersection = intersection(idA, linksInA, idB, linksInB);
+			inMeasure = milneWittenMeasure(linksInA.length, linksInB.length, inIntersection, articleCount);
+		}
+
+		int outIntersection = 0;
+		double outMeasure = 0.0;
+		if (outSet) {
+			outIntersection = intersection(idA, linksOutA, idB, linksOutB);
+			outMeasure = milneWittenMeasure(linksOutA.length, linksOutB.length, outIntersection, articleCount);
+		}
+
+		// no shared link at all
+		if (inIntersection == 0 && outIntersection == 0)
+			return 0.0;
+
+		if (useLinkOut)
+			return (inMeasure + outMeasure) / 2;
+		else
+			return inMeasure;
+	}
+}
@@ -1,5 +1,7 @@
 package com.scienceminer.nerd.utilities;
 
+import java.util.List;
+
 /**
  * This class is a bean for the YAML configuation data associated to a 
  * language specific NERD.  
@@ -51,6 +53,74 @@ public class NerdConfig {
 	// will be pruned
 	private double minRankerScore = 0.1; 
 
+	// maximum number of relatedness scores between article pairs kept in cache
+	private long relatednessCacheSize = 4000000;
+
+	// number of most linked articles for which the top relatedness neighbours are 
+	// precomputed when building the KB, 0 to disable
+	private int relatednessNeighbourHeadSize = 0;
+
+	// number of precomputed relatedness neighbours kept for each of these articles
+	private int relatednessNeighbourSize = 100;
+
+	// if true, newly built LMDB databases store their hot record types (pages, labels, 
+	// link lists, link counts, embeddings) with hand-written binary codecs instead of FST
+	private boolean useBinaryCodec = false;
+
+	// if true, word and entity embeddings are read from memory-mapped vector files indexed 
+	// by a minimal perfect hash (built with the KB) instead of the LMDB embedding databases
+	private boolean useMappedEmbeddings = false;
+
+	// maximum number of label lookups (found or not) kept in memory, 0 to disable the cache
+	private long labelCacheSize = 200000;
+
+	// if true, a Bloom filter over all the labels rejects most unknown labels without 
+	// accessing the label database
+	private boolean useLabelFilter = true;
+
+	// if true, labels are read from a memory-mapped store indexed by a minimal perfect hash, 
+	// exported from the label database, instead of the label database
+	private boolean useMappedLabels = false;
+
+	// maximum number of DICE coefficients of terms (and of occurrence counts of their 
+	// components) kept in memory, 0 to disable the memoization
+	private long diceCacheSize = 100000;
+
+	// if true, mentions are spotted with a token trie over the labels instead of 
+	// enumerating all the n-grams of the text
+	private boolean useLabelMatcher = false;
+
+	// minimum link probability of the labels included in the label matcher
+	private double labelMatcherMinLinkProbability = 0.0;
+
+	// number of threads used to generate the candidates of the mentions of a request in 
+	// parallel, 0 or 1 for a sequential generation
+	private int candidateGenerationThreads = 0;
+
+	// if true, the markup databases are compressed with Deflate and a preset dictionary 
+	// trained on a sample of the markup, after being built
+	private boolean useCompressedMarkup = false;
+
+	// number of databases loaded concurrently when building the LMDB environment, 0 or 1 
+	// for loading them one after the other
+	private int kbBuildThreads = 0;
+
+	// number of threads parsing the CSV data files of a database while building the LMDB 
+	// environment, the entries being written by a single thread, 0 or 1 for no parser thread
+	private int kbBuildParserThreads = 0;
+
+	// version of the data the KB is built from (e.g. the dump date), recorded in the database 
+	// manifests, by default the name of the data directory
+	private String kbVersion = null;
+
+	// languages whose lower KB is initialised at startup (upper KB configuration only), null 
+	// for all the supported languages, the other languages being initialised at their first use
+	private List<String> activeLanguages = null;
+
+	// number of lower KBs initialised concurrently at startup (upper KB configuration only), 
+	// 0 or 1 for initialising them one after the other
+	private int kbStartupThreads = 0;
+
 	// path to grobid-home
 	private String grobidHome = null;
 
@@ -145,6 +215,150 @@ public class NerdConfig {
 		this.useLinkOut = useLinkOut;
 	}
 
+	public long getRelatednessCacheSize() {
+		return relatednessCacheSize;
+	}
+
+	public void setRelatednessCacheSize(long relatednessCacheSize) {
+		this.relatednessCacheSize = relatednessCacheSize;
+	}
+
+	public int getRelatednessNeighbourHeadSize() {
+		return relatednessNeighbourHeadSize;
+	}
+
+	public void setRelatednessNeighbourHeadSize(int relatednessNeighbourHeadSize) {
+		this.relatednessNeighbourHeadSize = relatednessNeighbourHeadSize;
+	}
+
+	public int getRelatednessNeighbourSize() {
+		return relatednessNeighbourSize;
+	}
+
+	public void setRelatednessNeighbourSize(int relatednessNeighbourSize) {
+		this.relatednessNeighbourSize = relatednessNeighbourSize;
+	}
+
+	public boolean getUseBinaryCodec() {
+		return useBinaryCodec;
+	}
+
+	public void setUseBinaryCodec(boolean useBinaryCodec) {
+		this.useBinaryCodec = useBinaryCodec;
+	}
+
+	public boolean getUseMappedEmbeddings() {
+		return useMappedEmbeddings;
+	}
+
+	public void setUseMappedEmbeddings(boolean useMappedEmbeddings) {
+		this.useMappedEmbeddings = useMappedEmbeddings;
+	}
+
+	public long getLabelCacheSize() {
+		return labelCacheSize;
+	}
+
+	public void setLabelCacheSize(long labelCacheSize) {
+		this.labelCacheSize = labelCacheSize;
+	}
+
+	public boolean getUseLabelFilter() {
+		return useLabelFilter;
+	}
+
+	public void setUseLabelFilter(boolean useLabelFilter) {
+		this.useLabelFilter = useLabelFilter;
+	}
+
+	public boolean getUseMappedLabels() {
+		return useMappedLabels;
+	}
+
+	public void setUseMappedLabels(boolean useMappedLabels) {
+		this.useMappedLabels = useMappedLabels;
+	}
+
+	public long getDiceCacheSize() {
+		return diceCacheSize;
+	}
+
+	public void setDiceCacheSize(long diceCacheSize) {
+		this.diceCacheSize = diceCacheSize;
+	}
+
+	public boolean getUseLabelMatcher() {
+		return useLabelMatcher;
+	}
+
+	public void setUseLabelMatcher(boolean useLabelMatcher) {
+		this.useLabelMatcher = useLabelMatcher;
+	}
+
+	public double getLabelMatcherMinLinkProbability() {
+		return labelMatcherMinLinkProbability;
+	}
+
+	public void setLabelMatcherMinLinkProbability(double labelMatcherMinLinkProbability) {
+		this.labelMatcherMinLinkProbability = labelMatcherMinLinkProbability;
+	}
+
+	public int getCandidateGenerationThreads() {
+		return candidateGenerationThreads;
+	}
+
+	public void setCandidateGenerationThreads(int candidateGenerationThreads) {
+		this.candidateGenerationThreads = candidateGenerationThreads;
+	}
+
+	public boolean getUseCompressedMarkup() {
+		return useCompressedMarkup;
+	}
+
+	public void setUseCompressedMarkup(boolean useCompressedMarkup) {
+		this.useCompressedMarkup = useCompressedMarkup;
+	}
+
+	public int getKbBuildThreads() {
+		return kbBuildThreads;
+	}
+
+	public void setKbBuildThreads(int kbBuildThreads) {
+		this.kbBuildThreads = kbBuildThreads;
+	}
+
+	public int getKbBuildParserThreads() {
+		return kbBuildParserThreads;
+	}
+
+	public void setKbBuildParserThreads(int kbBuildParserThreads) {
+		this.kbBuildParserThreads = kbBuildParserThreads;
+	}
+
+	public String getKbVersion() {
+		return kbVersion;
+	}
+
+	public void setKbVersion(String kbVersion) {
+		this.kbVersion = kbVersion;
+	}
+
+	public List<String> getActiveLanguages() {
+		return activeLanguages;
+	}
+
+	public void setActiveLanguages(List<String> activeLanguages) {
+		this.activeLanguages = activeLanguages;
+	}
+
+	public int getKbStartupThreads() {
+		return kbStartupThreads;
+	}
+
+	public void setKbStartupThreads(int kbStartupThreads) {
+		this.kbStartupThreads = kbStartupThreads;
+	}
+
 	public String getGrobidHome() {
 		return grobidHome;
 	}
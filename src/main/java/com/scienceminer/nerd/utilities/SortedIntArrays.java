@@ -0,0 +1,109 @@
+package com.scienceminer.nerd.utilities;
+
+/**
+ * Operations on sorted arrays of distinct primitive integers, typically lists of
+ * page ids as stored in the KB.
+ */
+public class SortedIntArrays {
+
+	// when one array is this many times larger than the other, a galloping search in the
+	// large array is used instead of a linear merge
+	private static final int GALLOPING_RATIO = 32;
+
+	/**
+	 * Returns the number of values common to the two sorted arrays.
+	 */
+	public static int intersectionSize(int[] a, int[] b) {
+		if (a.length == 0 || b.length == 0)
+			return 0;
+		// no overlap of the ranges
+		if (a[a.length-1] < b[0] || b[b.length-1] < a[0])
+			return 0;
+
+		if (a.length > b.length) {
+			int[] tmp = a;
+			a = b;
+			b = tmp;
+		}
+		if (b.length / a.length >= GALLOPING_RATIO)
+			return gallopingIntersectionSize(a, b);
+		else
+			return mergeIntersectionSize(a, b);
+	}
+
+	private static int mergeIntersectionSize(int[] a, int[] b) {
+		int count = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length && j < b.length) {
+			int valA = a[i];
+			int valB = b[j];
+			if (valA < valB) {
+				i++;
+			} else if (valA > valB) {
+				j++;
+			} else {
+				count++;
+				i++;
+				j++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Intersection where each value of the small array is searched in the large array
+	 * with an exponential search from the last position, so the cost is logarithmic in
+	 * the size of the large array for each small array value.
+	 */
+	private static int gallopingIntersectionSize(int[] small, int[] large) {
+		int count = 0;
+		int low = 0;
+		for (int i = 0; i < small.length && low < large.length; i++) {
+			int value = small[i];
+			// exponential search for an upper bound
+			int step = 1;
+			int high = low;
+			while (high < large.length && large[high] < value) {
+				low = high + 1;
+				high += step;
+				step <<= 1;
+			}
+			if (high >= large.length)
+				high = large.length - 1;
+			// binary search in [low, high]
+			int pos = binarySearch(large, low, high, value);
+			if (pos >= 0) {
+				count++;
+				low = pos + 1;
+			} else {
+				low = -(pos + 1);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns true if the sorted array contains the given value.
+	 */
+	public static boolean contains(int[] a, int value) {
+		if (a.length == 0)
+			return false;
+		return binarySearch(a, 0, a.length-1, value) >= 0;
+	}
+
+	// binary search between inclusive bounds, returning (-(insertion point) - 1) when not found
+	private static int binarySearch(int[] a, int low, int high, int value) {
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midVal = a[mid];
+			if (midVal < value)
+				low = mid + 1;
+			else if (midVal > value)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -(low + 1);
+	}
+}
@@ -0,0 +1,184 @@
+package com.scienceminer.nerd.utilities;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Occurrence counts of terms in a document, answering the same counts as
+ * {@link Utilities#getOccCount(String, String)} (non-overlapping occurrences of the term
+ * as a substring of the text) without scanning the whole text for each term.
+ *
+ * A suffix array of the text is built at the first query, in O(n log n) by prefix
+ * doubling, then a term is counted by two binary searches in O(m log n). The counts
+ * are memoized, as the same labels are typically counted for many candidates. An index
+ * is meant to be used by a single thread, for the processing of one document.
+ */
+public class TermOccurrenceIndex {
+
+	private final String text;
+	private int[] suffixes = null;
+	private final Map<String, Integer> counts = new HashMap<>();
+
+	public TermOccurrenceIndex(String text) {
+		this.text = (text == null) ? "" : text;
+	}
+
+	/**
+	 * @return the number of non-overlapping occurrences of the term in the text
+	 */
+	public double getOccCount(String term) {
+		if (term == null || term.length() == 0 || text.length() == 0)
+			return 0.0;
+		Integer count = counts.get(term);
+		if (count == null) {
+			count = count(term);
+			counts.put(term, count);
+		}
+		return count;
+	}
+
+	private int count(String term) {
+		if (suffixes == null)
+			suffixes = buildSuffixArray(text);
+		int from = lowerBound(term);
+		int to = upperBound(term, from);
+		int nbOccurrences = to - from;
+		if (nbOccurrences <= 1 || !hasBorder(term))
+			return nbOccurrences;
+
+		// the occurrences of a term with a border can overlap, they are counted from left to
+		// right as with StringUtils.countMatches()
+		int[] positions = Arrays.copyOfRange(suffixes, from, to);
+		Arrays.sort(positions);
+		int count = 0;
+		int next = 0;
+		for (int position : positions) {
+			if (position >= next) {
+				count++;
+				next = position + term.length();
+			}
+		}
+		return count;
+	}
+
+	// true if a proper prefix of the term is also a suffix of it, i.e. if two occurrences
+	// of the term can overlap
+	private static boolean hasBorder(String term) {
+		int m = term.length();
+		int[] failure = new int[m];
+		int k = 0;
+		for (int i = 1; i < m; i++) {
+			while (k > 0 && term.charAt(i) != term.charAt(k))
+				k = failure[k - 1];
+			if (term.charAt(i) == term.charAt(k))
+				k++;
+			failure[i] = k;
+		}
+		return failure[m - 1] > 0;
+	}
+
+	// compares the suffix at the given position, truncated to the length of the term, with the term
+	private int compare(int position, String term) {
+		int length = Math.min(term.length(), text.length() - position);
+		for (int i = 0; i < length; i++) {
+			char c1 = text.charAt(position + i);
+			char c2 = term.charAt(i);
+			if (c1 != c2)
+				return c1 - c2;
+		}
+		return (length < term.length()) ? -1 : 0;
+	}
+
+	// first suffix not smaller than the term
+	private int lowerBound(String term) {
+		int low = 0;
+		int high = suffixes.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compare(suffixes[mid], term) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	// first suffix after the ones starting with the term
+	private int upperBound(String term, int from) {
+		int low = from;
+		int high = suffixes.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compare(suffixes[mid], term) <= 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Suffix array by prefix doubling, each round sorting the suffixes by the ranks of their
+	 * first 2k characters with two stable counting sorts.
+	 */
+	static int[] buildSuffixArray(String text) {
+		int n = text.length();
+		int[] suffixes = new int[n];
+		int[] rank = new int[n];
+		int[] tmp = new int[n];
+		if (n == 0)
+			return suffixes;
+
+		// first round, by character
+		int alphabet = Character.MAX_VALUE + 1;
+		int[] buckets = new int[Math.max(alphabet, n) + 1];
+		for (int i = 0; i < n; i++)
+			buckets[text.charAt(i) + 1]++;
+		for (int c = 1; c < buckets.length; c++)
+			buckets[c] += buckets[c - 1];
+		for (int i = 0; i < n; i++)
+			suffixes[buckets[text.charAt(i)]++] = i;
+		rank[suffixes[0]] = 0;
+		for (int i = 1; i < n; i++) {
+			rank[suffixes[i]] = rank[suffixes[i - 1]] +
+				((text.charAt(suffixes[i]) != text.charAt(suffixes[i - 1])) ? 1 : 0);
+		}
+
+		for (int k = 1; rank[suffixes[n - 1]] < n - 1; k <<= 1) {
+			// order by the second half: the suffixes shorter than k first, then the others
+			// in the order of the suffix starting k characters later
+			int p = 0;
+			for (int i = n - k; i < n; i++)
+				tmp[p++] = i;
+			for (int i = 0; i < n; i++) {
+				if (suffixes[i] >= k)
+					tmp[p++] = suffixes[i] - k;
+			}
+
+			// stable counting sort by the first half
+			int nbRanks = rank[suffixes[n - 1]] + 1;
+			Arrays.fill(buckets, 0, nbRanks + 1, 0);
+			for (int i = 0; i < n; i++)
+				buckets[rank[i] + 1]++;
+			for (int r = 1; r <= nbRanks; r++)
+				buckets[r] += buckets[r - 1];
+			for (int i = 0; i < n; i++)
+				suffixes[buckets[rank[tmp[i]]]++] = tmp[i];
+
+			// new ranks, tmp being reused
+			tmp[suffixes[0]] = 0;
+			for (int i = 1; i < n; i++) {
+				int current = suffixes[i];
+				int previous = suffixes[i - 1];
+				boolean same = rank[current] == rank[previous] &&
+					((current + k < n) ? rank[current + k] : -1) == ((previous + k < n) ? rank[previous + k] : -1);
+				tmp[current] = tmp[previous] + (same ? 0 : 1);
+			}
+			int[] swap = rank;
+			rank = tmp;
+			tmp = swap;
+		}
+		return suffixes;
+	}
+}
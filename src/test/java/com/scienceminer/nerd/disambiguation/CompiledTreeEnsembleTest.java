@@ -0,0 +1,82 @@
+package com.scienceminer.nerd.disambiguation;
+
+import com.thoughtworks.xstream.XStream;
+import org.junit.Before;
+import org.junit.Test;
+import smile.data.*;
+import smile.data.parser.ArffParser;
+import smile.regression.GradientTreeBoost;
+import smile.regression.RandomForest;
+import smile.regression.Regression;
+import smile.regression.RegressionTree;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CompiledTreeEnsembleTest {
+
+    private AttributeDataset dataset;
+    private double[][] heldOut;
+
+    @Before
+    public void setUp() throws Exception {
+        ArffParser arffParser = new ArffParser();
+        arffParser.setResponseIndex(5);
+        InputStream arff = this.getClass().getResourceAsStream("ranker-heldout.arff");
+        dataset = arffParser.parse(arff);
+        heldOut = dataset.toArray(new double[dataset.size()][]);
+    }
+
+    @Test
+    public void testCompiledRankerModel_shouldGiveIdenticalScores() throws Exception {
+        XStream xstream = new XStream();
+        XStream.setupDefaultSecurity(xstream);
+        xstream.allowTypes(new Class[] {
+            GradientTreeBoost.class, RandomForest.class,
+            RegressionTree.class, NumericAttribute.class,
+            NominalAttribute.class, Attribute.class});
+        Regression<double[]> model = (GradientTreeBoost)xstream.fromXML(new FileInputStream("data/models/ranker-long-en.model"));
+
+        assertIdenticalScores(model, CompiledTreeEnsemble.compile(model));
+    }
+
+    @Test
+    public void testCompiledRandomForest_shouldGiveIdenticalScores() throws Exception {
+        // the instances are used for training here, only the identity of the scores is tested
+        double[][] x = heldOut;
+        double[] y = dataset.toArray(new double[dataset.size()]);
+        smile.math.Math.setSeed(7);
+        Regression<double[]> model = new RandomForest(dataset.attributes(), x, y, 20);
+
+        assertIdenticalScores(model, CompiledTreeEnsemble.compile(model));
+    }
+
+    @Test
+    public void testSaveLoad_shouldGiveIdenticalScores() throws Exception {
+        // the instances are used for training here, only the identity of the scores is tested
+        double[][] x = heldOut;
+        double[] y = dataset.toArray(new double[dataset.size()]);
+        smile.math.Math.setSeed(7);
+        Regression<double[]> model = new GradientTreeBoost(dataset.attributes(), x, y,
+            GradientTreeBoost.Loss.LeastAbsoluteDeviation, 50, 6, 0.05, 0.5);
+
+        File file = File.createTempFile("ranker", CompiledTreeEnsemble.FILE_EXTENSION);
+        file.deleteOnExit();
+        CompiledTreeEnsemble.compile(model).save(file);
+
+        assertIdenticalScores(model, CompiledTreeEnsemble.load(file));
+    }
+
+    private void assertIdenticalScores(Regression<double[]> model, CompiledTreeEnsemble compiled) {
+        double[] batch = compiled.predict(heldOut);
+        for (int i = 0; i < heldOut.length; i++) {
+            double expected = model.predict(heldOut[i]);
+            assertThat(compiled.predict(heldOut[i]), is(expected));
+            assertThat(batch[i], is(expected));
+        }
+    }
+}
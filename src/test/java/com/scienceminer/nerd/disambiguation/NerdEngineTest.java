@@ -0,0 +1,116 @@
+package com.scienceminer.nerd.disambiguation;
+
+import com.scienceminer.nerd.exceptions.NerdException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.*;
+
+public class NerdEngineTest {
+
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private static List<NerdEntity> entities(int nb) {
+        List<NerdEntity> entities = new ArrayList<>();
+        for (int i = 0; i < nb; i++) {
+            NerdEntity entity = new NerdEntity("mention" + i, i * 10, (i * 10) + 8);
+            entity.setNormalisedName("mention" + i);
+            entities.add(entity);
+        }
+        return entities;
+    }
+
+    // candidates depending only on the mention, generated after a random delay so that the
+    // parallel generations complete out of order; null (user mention) and empty lists included
+    private static List<NerdCandidate> generate(NerdEntity entity) {
+        int index = entity.getOffsetStart() / 10;
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (index % 7 == 3)
+            return null;
+        List<NerdCandidate> candidates = new ArrayList<>();
+        for (int i = 0; i < index % 5; i++) {
+            NerdCandidate candidate = new NerdCandidate(entity);
+            candidate.setWikipediaExternalRef((index * 10) + i);
+            candidates.add(candidate);
+        }
+        return candidates;
+    }
+
+    private static void assertSameCandidates(List<List<NerdCandidate>> actual, List<List<NerdCandidate>> expected,
+                                             List<NerdEntity> entities) {
+        assertThat(actual.size(), is(expected.size()));
+        for (int i = 0; i < expected.size(); i++) {
+            if (expected.get(i) == null) {
+                assertThat(actual.get(i), is(nullValue()));
+                continue;
+            }
+            assertThat(actual.get(i).size(), is(expected.get(i).size()));
+            for (int j = 0; j < expected.get(i).size(); j++) {
+                NerdCandidate candidate = actual.get(i).get(j);
+                assertThat(candidate.getWikipediaExternalRef(), is(expected.get(i).get(j).getWikipediaExternalRef()));
+                assertThat(candidate.getEntity(), is(sameInstance(entities.get(i))));
+            }
+        }
+    }
+
+    @Test
+    public void testGenerateCandidatesPerEntity_parallel_shouldMatchSequential() throws Exception {
+        List<NerdEntity> entities = entities(200);
+
+        List<List<NerdCandidate>> sequential = NerdEngine.generateCandidatesPerEntity(entities, null,
+            NerdEngineTest::generate);
+        for (int run = 0; run < 5; run++) {
+            List<List<NerdCandidate>> parallel = NerdEngine.generateCandidatesPerEntity(entities, pool,
+                NerdEngineTest::generate);
+            assertSameCandidates(parallel, sequential, entities);
+        }
+    }
+
+    @Test
+    public void testGenerateCandidatesPerEntity_singleMention_shouldMatchSequential() throws Exception {
+        List<NerdEntity> entities = entities(2).subList(1, 2);
+
+        List<List<NerdCandidate>> sequential = NerdEngine.generateCandidatesPerEntity(entities, null,
+            NerdEngineTest::generate);
+        List<List<NerdCandidate>> parallel = NerdEngine.generateCandidatesPerEntity(entities, pool,
+            NerdEngineTest::generate);
+
+        assertSameCandidates(parallel, sequential, entities);
+    }
+
+    @Test(expected = NerdException.class)
+    public void testGenerateCandidatesPerEntity_parallel_shouldPropagateException() throws Exception {
+        List<NerdEntity> entities = entities(20);
+
+        NerdEngine.generateCandidatesPerEntity(entities, pool, entity -> {
+            if (entity.getOffsetStart() == 50)
+                throw new NerdException("failure for mention 5");
+            return generate(entity);
+        });
+    }
+}
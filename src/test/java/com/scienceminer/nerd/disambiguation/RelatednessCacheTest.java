@@ -0,0 +1,54 @@
+package com.scienceminer.nerd.disambiguation;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class RelatednessCacheTest {
+
+    @Test
+    public void testComputeOnce() {
+        RelatednessCache cache = new RelatednessCache(1000);
+        AtomicInteger computations = new AtomicInteger();
+        for (int i = 0; i < 5; i++) {
+            double value = cache.get(42L, key -> {
+                computations.incrementAndGet();
+                return 0.5;
+            });
+            assertThat(value, is(0.5));
+        }
+        assertThat(computations.get(), is(1));
+        assertThat(cache.getMisses(), is(1L));
+        assertThat(cache.getHits(), is(4L));
+    }
+
+    @Test
+    public void testBoundedSize() {
+        RelatednessCache cache = new RelatednessCache(2048);
+        for (long key = 0; key < 100000; key++) {
+            final long k = key;
+            assertThat(cache.get(key, x -> (k % 100) / 100.0), is((double)(float)((k % 100) / 100.0)));
+        }
+        assertThat(cache.size(), lessThanOrEqualTo(cache.getCapacity()));
+        assertThat(cache.getEvictions(), is(100000L - cache.size()));
+    }
+
+    @Test
+    public void testFrequentEntriesSurvive() {
+        RelatednessCache cache = new RelatednessCache(2048);
+        AtomicInteger computations = new AtomicInteger();
+        for (long key = 0; key < 50000; key++) {
+            // key 7 is requested all along, and must not be recomputed
+            cache.get(7L, x -> {
+                computations.incrementAndGet();
+                return 0.1;
+            });
+            cache.get(key + 1000, x -> 0.2);
+        }
+        assertThat(computations.get(), is(1));
+    }
+}
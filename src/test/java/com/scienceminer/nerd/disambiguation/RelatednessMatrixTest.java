@@ -0,0 +1,39 @@
+package com.scienceminer.nerd.disambiguation;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class RelatednessMatrixTest {
+
+    // symmetric score of two article ids
+    private static float score(int id1, int id2) {
+        return (id1 + id2) * 100 + (id1 * id2);
+    }
+
+    private static void checkScores(int[] rowIds, int[] columnRows) {
+        float[] scores = RelatednessMatrix.computeScores(rowIds.length, columnRows,
+            (row1, row2) -> score(rowIds[row1], rowIds[row2]));
+        for (int i = 0; i < rowIds.length; i++) {
+            for (int j = 0; j < columnRows.length; j++) {
+                assertThat("row " + i + ", column " + j, scores[(i * columnRows.length) + j],
+                    is(score(rowIds[i], rowIds[columnRows[j]])));
+            }
+        }
+    }
+
+    @Test
+    public void testDistinctContextArticles() {
+        // context [1, 2, 3], candidates 4 and 5
+        checkScores(new int[] {1, 2, 3, 4, 5}, new int[] {0, 1, 2});
+    }
+
+    @Test
+    public void testDuplicateContextArticles() {
+        // context [1, 2, 1] with one row per distinct article, candidate 7
+        checkScores(new int[] {1, 2, 7}, new int[] {0, 1, 0});
+        // context [1, 2, 2, 3, 1], candidates 8 and 9
+        checkScores(new int[] {1, 2, 3, 8, 9}, new int[] {0, 1, 1, 2, 0});
+    }
+}
@@ -0,0 +1,89 @@
+package com.scienceminer.nerd.embeddings;
+
+import com.scienceminer.nerd.utilities.Utilities;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class MappedEmbeddingStoreTest {
+
+    private static final int DIMENSION = 8;
+    private static final int NB_VECTORS = 500;
+
+    private File directory;
+    private short[][] vectors;
+    private MappedEmbeddingStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("embeddings").toFile();
+        File embeddingsFile = new File(directory, "word.embeddings.quantized.gz");
+        Random random = new Random(7);
+        vectors = new short[NB_VECTORS][DIMENSION];
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(embeddingsFile)), StandardCharsets.UTF_8)) {
+            writer.write(NB_VECTORS + " " + DIMENSION + "\n");
+            for (int i = 0; i < NB_VECTORS; i++) {
+                writer.write("word" + i);
+                for (int j = 0; j < DIMENSION; j++) {
+                    vectors[i][j] = (short)(random.nextInt(65536) - 32768);
+                    writer.write(" " + vectors[i][j]);
+                }
+                writer.write("\n");
+            }
+        }
+        File basePath = new File(directory, "wordEmbeddings");
+        MappedEmbeddingStore.build(embeddingsFile, basePath);
+        store = MappedEmbeddingStore.open(basePath);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+        for (File file : directory.listFiles())
+            file.delete();
+        directory.delete();
+    }
+
+    @Test
+    public void testGet_shouldReturnTheVectorOfTheKey() {
+        assertThat(store.size(), is((long)NB_VECTORS));
+        assertThat(store.getDimension(), is(DIMENSION));
+        for (int i = 0; i < NB_VECTORS; i++) {
+            assertThat(store.get("word" + i), is(vectors[i]));
+        }
+    }
+
+    @Test
+    public void testGet_unknownKey_shouldReturnNull() {
+        assertThat(store.get("unknown"), is(nullValue()));
+        assertThat(store.indexOf("unknown"), is(-1L));
+    }
+
+    @Test
+    public void testDot_shouldBeIdenticalToInner() {
+        float[] query = new float[DIMENSION];
+        Random random = new Random(11);
+        for (int j = 0; j < DIMENSION; j++)
+            query[j] = random.nextFloat() * 1000;
+        for (int i = 0; i < NB_VECTORS; i++) {
+            float[] vector = new float[DIMENSION];
+            for (int j = 0; j < DIMENSION; j++)
+                vector[j] = vectors[i][j];
+            float expected = Utilities.inner(DIMENSION, vector, 0, query, 0);
+            assertThat(store.dot(store.indexOf("word" + i), query), is(expected));
+        }
+    }
+}
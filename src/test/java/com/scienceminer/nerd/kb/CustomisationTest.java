@@ -4,6 +4,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -14,6 +16,7 @@ import static org.junit.Assert.assertThat;
 public class CustomisationTest {
 
     Customisations target;
+    File customisationFile;
 
     @Before
     public void setUp() throws Exception {
@@ -22,6 +25,7 @@ public class CustomisationTest {
         final File tempFile = File.createTempFile("customisation", "output");
         tempFile.deleteOnExit();
         target.setCustomisationFile(tempFile);
+        customisationFile = tempFile;
     }
 
     @Test
@@ -84,4 +88,39 @@ public class CustomisationTest {
         target.deleteCustomisation("test");
         assertThat(target.getCustomisations(), hasSize(0));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testReopen_shouldReplayTheChanges() {
+        target.createCustomisation("a", "{\"wikipedia\" : [], \"language\" : {\"lang\":\"en\"}}");
+        target.createCustomisation("b", "{\"wikipedia\" : [], \"language\" : {\"lang\":\"en\"}}");
+        target.updateCustomisation("a", "{\"wikipedia\" : [], \"language\" : {\"lang\":\"en\"}, \"aaa\": \"bbb\"}");
+        target.deleteCustomisation("b");
+
+        Customisations reopened = new Customisations();
+        reopened.setCustomisationFile(customisationFile);
+
+        assertThat(reopened.getCustomisations(), hasSize(1));
+        assertThat(reopened.getCustomisation("a"), is("{\"wikipedia\" : [], \"language\" : {\"lang\":\"en\"}, \"aaa\": \"bbb\"}"));
+        assertThat(reopened.getCustomisation("b"), is(nullValue()));
+    }
+
+    @Test
+    public void testReopen_incompleteLastRecord_shouldBeDroppedBeforeAppending() throws Exception {
+        target.createCustomisation("a", "{\"wikipedia\" : [], \"language\" : {\"lang\":\"en\"}}");
+        // server stopped while appending the next record
+        try (FileOutputStream out = new FileOutputStream(customisationFile, true)) {
+            out.write("{\"op\":\"put\",\"name\":\"b\",\"vers".getBytes(StandardCharsets.UTF_8));
+        }
+
+        Customisations reopened = new Customisations();
+        reopened.setCustomisationFile(customisationFile);
+        assertThat(reopened.getCustomisations(), hasSize(1));
+        reopened.createCustomisation("c", "{\"wikipedia\" : [], \"language\" : {\"lang\":\"en\"}}");
+
+        Customisations reopenedAgain = new Customisations();
+        reopenedAgain.setCustomisationFile(customisationFile);
+        assertThat(reopenedAgain.getCustomisations(), hasSize(2));
+        assertThat(reopenedAgain.getCustomisation("a"), is("{\"wikipedia\" : [], \"language\" : {\"lang\":\"en\"}}"));
+        assertThat(reopenedAgain.getCustomisation("c"), is("{\"wikipedia\" : [], \"language\" : {\"lang\":\"en\"}}"));
+    }
+}
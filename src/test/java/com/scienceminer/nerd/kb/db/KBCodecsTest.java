@@ -0,0 +1,92 @@
+package com.scienceminer.nerd.kb.db;
+
+import com.scienceminer.nerd.kb.model.hadoop.DbIntList;
+import com.scienceminer.nerd.kb.model.hadoop.DbLabel;
+import com.scienceminer.nerd.kb.model.hadoop.DbPage;
+import com.scienceminer.nerd.kb.model.hadoop.DbPageLinkCounts;
+import com.scienceminer.nerd.kb.model.hadoop.DbSenseForLabel;
+import org.fusesource.lmdbjni.DirectBuffer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+public class KBCodecsTest {
+
+    private static <V> V roundTrip(KBCodec<V> codec, V value) {
+        return codec.decode(new DirectBuffer(codec.encode(value)));
+    }
+
+    @Test
+    public void testIntList() {
+        DbIntList list = new DbIntList(new ArrayList<>(Arrays.asList(3, 17, 42, Integer.MAX_VALUE)));
+        DbIntList result = roundTrip(KBCodecs.INT_LIST, list);
+        assertThat(result.getValues(), is(list.getValues()));
+
+        result = roundTrip(KBCodecs.INT_LIST, new DbIntList(new ArrayList<>()));
+        assertThat(result.getValues().size(), is(0));
+    }
+
+    @Test
+    public void testLabel() {
+        ArrayList<DbSenseForLabel> senses = new ArrayList<>();
+        senses.add(new DbSenseForLabel(12, 100L, 80L, true, false));
+        senses.add(new DbSenseForLabel(7, 3L, 2L, false, true));
+        DbLabel label = new DbLabel(103L, 82L, 5000L, 1200L, senses);
+
+        DbLabel result = roundTrip(KBCodecs.LABEL, label);
+        assertThat(result.getLinkOccCount(), is(103L));
+        assertThat(result.getLinkDocCount(), is(82L));
+        assertThat(result.getTextOccCount(), is(5000L));
+        assertThat(result.getTextDocCount(), is(1200L));
+        assertThat(result.getSenses().size(), is(2));
+        assertThat(result.getSenses().get(0).getId(), is(12));
+        assertThat(result.getSenses().get(0).getLinkOccCount(), is(100L));
+        assertThat(result.getSenses().get(0).getFromTitle(), is(true));
+        assertThat(result.getSenses().get(1).getFromRedirect(), is(true));
+        assertThat(result.getSenses().get(1).getLinkDocCount(), is(2L));
+    }
+
+    @Test
+    public void testPage() {
+        DbPage result = roundTrip(KBCodecs.PAGE, new DbPage("Zürich", 1, 4));
+        assertThat(result.getTitle(), is("Zürich"));
+        assertThat(result.getType(), is(1));
+        assertThat(result.getDepth(), is(4));
+    }
+
+    @Test
+    public void testPageLinkCounts() {
+        DbPageLinkCounts result = roundTrip(KBCodecs.PAGE_LINK_COUNTS, new DbPageLinkCounts(10, 8, 5, 4));
+        assertThat(result.getTotalLinksIn(), is(10));
+        assertThat(result.getDistinctLinksIn(), is(8));
+        assertThat(result.getTotalLinksOut(), is(5));
+        assertThat(result.getDistinctLinksOut(), is(4));
+    }
+
+    @Test
+    public void testShortVector() {
+        short[] vector = new short[] {-32768, -1, 0, 1, 32767};
+        assertArrayEquals(vector, roundTrip(KBCodecs.SHORT_VECTOR, vector));
+    }
+
+    @Test
+    public void testMarkup() {
+        String first = "'''Zürich''' is the largest city in [[Switzerland]] and the capital of the [[canton of Zürich]].";
+        String second = "'''Geneva''' is the second-most populous city in [[Switzerland]] after [[Zürich]].";
+        byte[] dictionary = MarkupCodec.trainDictionary(Arrays.asList(first, second, first), 1024);
+        MarkupCodec codec = new MarkupCodec(dictionary);
+        assertThat(roundTrip(codec, first), is(first));
+        assertThat(roundTrip(codec, second), is(second));
+        // the buffers of the codec are reused for a longer value
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 2000; i++)
+            builder.append(second).append(' ').append(i).append('\n');
+        assertThat(roundTrip(codec, builder.toString()), is(builder.toString()));
+        assertThat(roundTrip(new MarkupCodec(new byte[0]), first), is(first));
+    }
+}
@@ -0,0 +1,117 @@
+package com.scienceminer.nerd.kb.db;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class KBDeltaTest {
+
+    @Test
+    public void testParseLine() throws Exception {
+        assertThat(KBDelta.parseLine(""), is(nullValue()));
+        assertThat(KBDelta.parseLine("# comment"), is(nullValue()));
+        String[] operation = KBDelta.parseLine("+\tlabel.csv\t\"Paris\",m{...}");
+        assertThat(operation[0], is(KBDelta.ADD));
+        assertThat(operation[1], is("label.csv"));
+        assertThat(operation[2], is("\"Paris\",m{...}"));
+    }
+
+    @Test
+    public void testDiff() throws Exception {
+        File oldFile = File.createTempFile("old", ".csv");
+        File newFile = File.createTempFile("new", ".csv");
+        try {
+            FileUtils.writeStringToFile(oldFile, "1,a\n2,b\n3,c\n", StandardCharsets.UTF_8);
+            FileUtils.writeStringToFile(newFile, "1,a\n2,bb\n4,d\n", StandardCharsets.UTF_8);
+
+            StringWriter delta = new StringWriter();
+            try (PrintWriter output = new PrintWriter(delta)) {
+                assertThat(KBDelta.diff(oldFile, newFile, "page.csv", output), is(4L));
+            }
+            // changed and removed records first, then the changed and added ones
+            String[] lines = delta.toString().split("\\r?\\n");
+            assertThat(lines.length, is(4));
+            assertThat(lines[0], is("-\tpage.csv\t2,b"));
+            assertThat(lines[1], is("-\tpage.csv\t3,c"));
+            assertThat(lines[2], is("+\tpage.csv\t2,bb"));
+            assertThat(lines[3], is("+\tpage.csv\t4,d"));
+        } finally {
+            oldFile.delete();
+            newFile.delete();
+        }
+    }
+
+    @Test
+    public void testDiffWikidataDump() throws Exception {
+        File oldFile = File.createTempFile("old", ".json");
+        File newFile = File.createTempFile("new", ".json");
+        try {
+            // one entity per line, in an array, the id not being the first field
+            FileUtils.writeStringToFile(oldFile, "[\n" +
+                "{\"type\":\"item\",\"id\":\"Q1\",\"claims\":{}},\n" +
+                "{\"type\":\"item\",\"id\":\"Q2\",\"claims\":{}},\n" +
+                "{\"type\":\"item\",\"id\":\"Q3\",\"claims\":{}}\n" +
+                "]\n", StandardCharsets.UTF_8);
+            FileUtils.writeStringToFile(newFile, "[\n" +
+                "{\"type\":\"item\",\"id\":\"Q1\",\"claims\":{}},\n" +
+                "{\"type\":\"item\",\"id\":\"Q3\",\"claims\":{}},\n" +
+                "{\"type\":\"item\",\"id\":\"Q2\",\"claims\":{\"P31\":[]}}\n" +
+                "]\n", StandardCharsets.UTF_8);
+
+            StringWriter delta = new StringWriter();
+            try (PrintWriter output = new PrintWriter(delta)) {
+                assertThat(KBDelta.diff(oldFile, newFile, "latest-all.json", output), is(2L));
+            }
+            // the trailing comma of the last entity of the new dump is not a change
+            String[] lines = delta.toString().split("\\r?\\n");
+            assertThat(lines.length, is(2));
+            assertThat(lines[0], is("-\tlatest-all.json\t{\"type\":\"item\",\"id\":\"Q2\",\"claims\":{}}"));
+            assertThat(lines[1], is("+\tlatest-all.json\t{\"type\":\"item\",\"id\":\"Q2\",\"claims\":{\"P31\":[]}}"));
+        } finally {
+            oldFile.delete();
+            newFile.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testDiffUnsupportedSource() throws Exception {
+        File oldFile = File.createTempFile("old", ".bz2");
+        File newFile = File.createTempFile("new", ".bz2");
+        try {
+            KBDelta.diff(oldFile, newFile, "latest-all.json.bz2", new PrintWriter(new StringWriter()));
+        } finally {
+            oldFile.delete();
+            newFile.delete();
+        }
+    }
+
+    @Test
+    public void testManifest() throws Exception {
+        File directory = Files.createTempDirectory("manifest").toFile();
+        try {
+            assertThat(KBManifest.load(directory), is(nullValue()));
+
+            KBManifest manifest = KBManifest.build("20180401");
+            manifest.addDelta("20180501");
+            manifest.save(directory);
+
+            KBManifest loaded = KBManifest.load(directory);
+            assertThat(loaded.getVersion(), is("20180401"));
+            assertThat(loaded.getDeltaVersion(), is("20180501"));
+            assertThat(loaded.getCurrentVersion(), is("20180501"));
+            assertThat(loaded.getNbDeltas(), is(1));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+}
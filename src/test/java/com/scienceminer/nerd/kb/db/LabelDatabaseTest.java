@@ -0,0 +1,118 @@
+package com.scienceminer.nerd.kb.db;
+
+import com.scienceminer.nerd.kb.model.hadoop.DbLabel;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertThat;
+
+public class LabelDatabaseTest {
+
+    private static final int NB_LABELS = 200;
+
+    private File directory;
+    private TestKBEnvironment env;
+    private LabelDatabase dbLabel;
+    private Map<String, DbLabel> labels;
+    private File filterFile;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("labels").toFile();
+        env = new TestKBEnvironment(directory);
+        labels = new LinkedHashMap<>();
+        for (int i = 0; i < NB_LABELS; i++)
+            labels.put("label " + i, TestKBEnvironment.label(10 + i, 20 + i, 100 + i));
+        dbLabel = env.createLabelDatabase(labels);
+        filterFile = new File(directory, LabelDatabase.FILTER_FILE_NAME);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        env.close();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    // labels added in LMDB after the lookup layers were set up, a layer answering for them
+    // did not read LMDB
+    private Map<String, DbLabel> ghosts() {
+        Map<String, DbLabel> ghosts = new LinkedHashMap<>();
+        for (int i = 0; i < 100; i++)
+            ghosts.put("ghost " + i, TestKBEnvironment.label(1, 2, 1000 + i));
+        TestKBEnvironment.put(dbLabel, ghosts);
+        return ghosts;
+    }
+
+    @Test
+    public void testRetrieve_withFilter_rejectedKeyShouldNotReadLmdb() throws Exception {
+        dbLabel.loadFilter(filterFile, false);
+        assertThat(dbLabel.hasFilter(), is(true));
+        for (Map.Entry<String, DbLabel> label : labels.entrySet())
+            assertThat(dbLabel.retrieve(label.getKey()), is(label.getValue()));
+        assertThat(dbLabel.getFilterRejections(), is(0L));
+
+        Map<String, DbLabel> ghosts = ghosts();
+        for (Map.Entry<String, DbLabel> ghost : ghosts.entrySet()) {
+            long rejections = dbLabel.getFilterRejections();
+            DbLabel label = dbLabel.retrieve(ghost.getKey());
+            // null exactly when rejected, a false positive being read from LMDB
+            if (dbLabel.getFilterRejections() > rejections)
+                assertThat(label, is(nullValue()));
+            else
+                assertThat(label, is(ghost.getValue()));
+        }
+        assertThat(dbLabel.getFilterRejections(), is(greaterThan(90L)));
+    }
+
+    @Test
+    public void testRetrieve_withCache_missShouldStayCached() throws Exception {
+        dbLabel.setCacheSize(1000);
+        assertThat(dbLabel.retrieve("label 1"), is(labels.get("label 1")));
+        assertThat(dbLabel.retrieve("ghost 0"), is(nullValue()));
+        assertThat(dbLabel.getCacheSize(), is(2L));
+
+        ghosts();
+        assertThat(dbLabel.retrieve("ghost 0"), is(nullValue()));
+        assertThat(dbLabel.retrieve("label 1"), is(labels.get("label 1")));
+        assertThat(dbLabel.getCacheStats().hitCount(), is(2L));
+        // not cached yet, read from LMDB
+        assertThat(dbLabel.retrieve("ghost 1"), is(TestKBEnvironment.label(1, 2, 1001)));
+    }
+
+    @Test
+    public void testInvalidateLookupLayers_shouldClearFilterAndCache() throws Exception {
+        dbLabel.setCacheSize(1000);
+        assertThat(dbLabel.retrieve("ghost 0"), is(nullValue()));
+        dbLabel.loadFilter(filterFile, false);
+        Map<String, DbLabel> ghosts = ghosts();
+        assertThat(dbLabel.hasFilter(), is(true));
+        assertThat(dbLabel.getCacheSize(), is(1L));
+
+        dbLabel.invalidateLookupLayers();
+        assertThat(dbLabel.hasFilter(), is(false));
+        assertThat(dbLabel.getCacheSize(), is(0L));
+        for (Map.Entry<String, DbLabel> ghost : ghosts.entrySet())
+            assertThat(dbLabel.retrieve(ghost.getKey()), is(ghost.getValue()));
+        assertThat(dbLabel.getCacheSize(), is((long)ghosts.size()));
+
+        // the rebuilt filter knows the new labels
+        dbLabel.invalidateLookupLayers();
+        dbLabel.loadFilter(filterFile, true);
+        long rejections = dbLabel.getFilterRejections();
+        for (Map.Entry<String, DbLabel> ghost : ghosts.entrySet())
+            assertThat(dbLabel.retrieve(ghost.getKey()), is(ghost.getValue()));
+        for (Map.Entry<String, DbLabel> label : labels.entrySet())
+            assertThat(dbLabel.retrieve(label.getKey()), is(label.getValue()));
+        assertThat(dbLabel.getFilterRejections(), is(rejections));
+    }
+}
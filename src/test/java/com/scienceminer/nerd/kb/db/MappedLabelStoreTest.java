@@ -0,0 +1,124 @@
+package com.scienceminer.nerd.kb.db;
+
+import com.scienceminer.nerd.kb.model.hadoop.DbLabel;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MappedLabelStoreTest {
+
+    private static final int NB_LABELS = 300;
+
+    private File directory;
+    private TestKBEnvironment env;
+    private LabelDatabase dbLabel;
+    private Map<String, DbLabel> labels;
+    private File basePath;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("labels").toFile();
+        env = new TestKBEnvironment(directory);
+        labels = new LinkedHashMap<>();
+        for (int i = 0; i < NB_LABELS; i++)
+            labels.put("label " + i, TestKBEnvironment.label(10 + i, 20 + i, 100 + i, 200 + i, 300 + i));
+        // no sense
+        labels.put("Paris", new DbLabel(1, 1, 5, 5, new java.util.ArrayList<>()));
+        // left out of the mapped store
+        labels.put("New\nYork", TestKBEnvironment.label(3, 4, 42));
+        dbLabel = env.createLabelDatabase(labels);
+        basePath = new File(directory, "label");
+    }
+
+    // the label database of a new version of the KB, in a new environment
+    private LabelDatabase newLabelDatabase() {
+        env.close();
+        env = new TestKBEnvironment(new File(directory, "next"));
+        return env.createLabelDatabase(labels);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        env.close();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testRetrieve_shouldBeIdenticalToTheLabelDatabase() throws Exception {
+        MappedLabelStore.export(dbLabel, basePath);
+        try (MappedLabelStore store = MappedLabelStore.open(basePath)) {
+            assertThat(store.size(), is((long)labels.size() - 1));
+            for (String label : labels.keySet()) {
+                if (MappedLabelStore.isStorable(label))
+                    assertThat(store.retrieve(label), is(dbLabel.retrieve(label)));
+            }
+            assertThat(store.retrieve("label " + NB_LABELS), is(nullValue()));
+            assertThat(store.retrieve("unknown"), is(nullValue()));
+            assertThat(store.retrieve("New\nYork"), is(nullValue()));
+        }
+    }
+
+    @Test
+    public void testLabelDatabase_withMappedStore_shouldFallBackToLmdbForLineBreaks() throws Exception {
+        dbLabel.loadMappedStore(basePath, false);
+        assertThat(dbLabel.hasMappedStore(), is(true));
+
+        for (Map.Entry<String, DbLabel> label : labels.entrySet())
+            assertThat(dbLabel.retrieve(label.getKey()), is(label.getValue()));
+        assertThat(dbLabel.retrieve("New\nYork"), is(notNullValue()));
+        assertThat(dbLabel.retrieve("unknown"), is(nullValue()));
+    }
+
+    @Test
+    public void testOpen_filesOfDifferentExports_shouldBeRejected() throws Exception {
+        MappedLabelStore.export(dbLabel, basePath);
+        File hashFile = new File(basePath.getPath() + MappedLabelStore.HASH_EXTENSION);
+        File previousHash = new File(directory, "previous.mph");
+        FileUtils.copyFile(hashFile, previousHash);
+
+        // a new export interrupted after the data file is renamed, before the hash function
+        labels.put("label " + NB_LABELS, TestKBEnvironment.label(1, 2, 3));
+        dbLabel = newLabelDatabase();
+        MappedLabelStore.export(dbLabel, basePath);
+        FileUtils.copyFile(previousHash, hashFile);
+
+        try (MappedLabelStore store = MappedLabelStore.open(basePath)) {
+            fail("the store should be rejected");
+        } catch (java.io.IOException e) {
+            // expected
+        }
+
+        // exported again when loaded
+        dbLabel.loadMappedStore(basePath, false);
+        assertThat(dbLabel.retrieve("label " + NB_LABELS), is(labels.get("label " + NB_LABELS)));
+    }
+
+    @Test
+    public void testExport_shouldNotModifyAnOpenedStore() throws Exception {
+        MappedLabelStore.export(dbLabel, basePath);
+        try (MappedLabelStore store = MappedLabelStore.open(basePath)) {
+            labels.remove("label 0");
+            dbLabel = newLabelDatabase();
+            MappedLabelStore.export(dbLabel, basePath);
+
+            // the opened store still reads the files of the previous export
+            assertThat(store.retrieve("label 0"), is(notNullValue()));
+            assertThat(store.retrieve("label 1"), is(dbLabel.retrieve("label 1")));
+        }
+        try (MappedLabelStore store = MappedLabelStore.open(basePath)) {
+            assertThat(store.retrieve("label 0"), is(nullValue()));
+        }
+    }
+}
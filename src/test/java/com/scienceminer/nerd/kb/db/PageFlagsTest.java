@@ -0,0 +1,56 @@
+package com.scienceminer.nerd.kb.db;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PageFlagsTest {
+
+    private static final int[] DISAMBIGUATION_PAGES = {0, 1, 63, 64, 1000, 4095};
+
+    private static PageFlags flags() {
+        long[] disambiguation = new long[64];
+        for (int id : DISAMBIGUATION_PAGES)
+            PageFlags.set(disambiguation, id);
+        return new PageFlags(disambiguation);
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        File file = File.createTempFile("pageFlags", ".bin");
+        try {
+            flags().save(file);
+            PageFlags loaded = PageFlags.load(file);
+
+            for (int id : DISAMBIGUATION_PAGES)
+                assertThat(loaded.isDisambiguation(id), is(true));
+            assertThat(loaded.isDisambiguation(2), is(false));
+            assertThat(loaded.isDisambiguation(62), is(false));
+            assertThat(loaded.isDisambiguation(65), is(false));
+            assertThat(loaded.isDisambiguation(999), is(false));
+            // out of the bitset
+            assertThat(loaded.isDisambiguation(4096), is(false));
+            assertThat(loaded.isDisambiguation(Integer.MAX_VALUE), is(false));
+            assertThat(loaded.isDisambiguation(-1), is(false));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testLoad_notPageFlags_shouldFail() throws Exception {
+        File file = File.createTempFile("pageFlags", ".bin");
+        try {
+            FileUtils.writeStringToFile(file, "not page flags", StandardCharsets.UTF_8);
+            PageFlags.load(file);
+        } finally {
+            file.delete();
+        }
+    }
+}
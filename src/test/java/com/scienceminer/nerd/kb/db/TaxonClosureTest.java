@@ -0,0 +1,72 @@
+package com.scienceminer.nerd.kb.db;
+
+import com.scienceminer.nerd.kb.TaxonAncestors;
+import com.scienceminer.nerd.kb.TaxonAncestors.Kingdom;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TaxonClosureTest {
+
+    private static Map<String, TaxonAncestors> computeClosure(String... edges) {
+        // edges "child>parent"
+        List<String> ids = new ArrayList<>();
+        Map<String, List<String>> parentIds = new LinkedHashMap<>();
+        for (String edge : edges) {
+            String[] pieces = edge.split(">");
+            for (String id : pieces) {
+                if (!ids.contains(id))
+                    ids.add(id);
+            }
+            parentIds.computeIfAbsent(pieces[0], k -> new ArrayList<>()).add(pieces[1]);
+        }
+        List<int[]> parents = new ArrayList<>();
+        for (String id : ids) {
+            List<String> p = parentIds.getOrDefault(id, Collections.emptyList());
+            parents.add(p.stream().mapToInt(ids::indexOf).toArray());
+        }
+        Map<String, TaxonAncestors> result = new HashMap<>();
+        TaxonClosureDatabase.computeClosure(ids, parents, result::put);
+        return result;
+    }
+
+    @Test
+    public void testClosure() {
+        // Q729 is Animalia, Q756 is Plantae
+        Map<String, TaxonAncestors> closure = computeClosure(
+            "cat>felis", "felis>felidae", "felidae>Q729", "Q729>life",
+            "oak>quercus", "quercus>Q756", "Q756>life");
+
+        assertThat(closure.get("cat").getAncestors(), is(Arrays.asList("felis", "felidae", "Q729", "life")));
+        assertThat(closure.get("cat").isIn(Kingdom.ANIMALIA), is(true));
+        assertThat(closure.get("cat").isIn(Kingdom.PLANTAE), is(false));
+        assertThat(closure.get("oak").getKingdoms(), is(Kingdom.PLANTAE.getMask()));
+        // a kingdom is not part of itself
+        assertThat(closure.get("Q729").getKingdoms(), is(0));
+        // no entry for the taxons without parents
+        assertThat(closure.containsKey("life"), is(false));
+    }
+
+    @Test
+    public void testMultipleParents() {
+        // same order as a recursive walk, each ancestor once
+        Map<String, TaxonAncestors> closure = computeClosure(
+            "a>b", "a>c", "b>d", "c>d", "c>e", "d>f");
+
+        assertThat(closure.get("a").getAncestors(), is(Arrays.asList("b", "d", "f", "c", "e")));
+        assertThat(closure.get("c").getAncestors(), is(Arrays.asList("d", "f", "e")));
+    }
+
+    @Test
+    public void testCycle() {
+        Map<String, TaxonAncestors> closure = computeClosure(
+            "a>b", "b>c", "c>b", "c>Q764");
+
+        assertThat(closure.get("a").getAncestors(), is(Arrays.asList("b", "c", "Q764")));
+        assertThat(closure.get("a").isIn(Kingdom.FUNGI), is(true));
+        assertThat(closure.get("b").getAncestors(), is(Arrays.asList("c", "Q764")));
+    }
+}
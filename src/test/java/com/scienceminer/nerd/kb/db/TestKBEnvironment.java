@@ -0,0 +1,79 @@
+package com.scienceminer.nerd.kb.db;
+
+import com.scienceminer.nerd.kb.model.hadoop.DbLabel;
+import com.scienceminer.nerd.kb.model.hadoop.DbSenseForLabel;
+import com.scienceminer.nerd.utilities.NerdConfig;
+import org.fusesource.lmdbjni.Transaction;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal environment in a temporary directory for testing single databases, which are 
+ * created by the tests themselves.
+ */
+class TestKBEnvironment extends KBEnvironment {
+
+    TestKBEnvironment(File dbDirectory) {
+        super(config(dbDirectory));
+        databasesByType = new HashMap<>();
+    }
+
+    private static NerdConfig config(File dbDirectory) {
+        NerdConfig conf = new NerdConfig();
+        conf.setLangCode("en");
+        conf.setDbDirectory(dbDirectory.getPath());
+        return conf;
+    }
+
+    @Override
+    protected void initDatabases() {
+    }
+
+    @Override
+    protected Map<String, List<DatabaseType>> getDatabaseTypesBySource() {
+        return new HashMap<>();
+    }
+
+    @Override
+    public Long retrieveStatistic(StatisticName sn) {
+        return null;
+    }
+
+    @Override
+    public void buildEnvironment(NerdConfig conf, boolean overwrite) throws Exception {
+    }
+
+    /**
+     * @return a label database in the environment with the given labels, considered as 
+     * already loaded as an existing database
+     */
+    LabelDatabase createLabelDatabase(Map<String, DbLabel> labels) {
+        new File(conf.getDbDirectory(), DatabaseType.label.name()).mkdirs();
+        LabelDatabase dbLabel = new LabelDatabase(this);
+        databasesByType.put(DatabaseType.label, dbLabel);
+        put(dbLabel, labels);
+        return dbLabel;
+    }
+
+    /**
+     * Writes labels directly in LMDB, bypassing the lookup layers of the label database.
+     */
+    static void put(LabelDatabase dbLabel, Map<String, DbLabel> labels) {
+        try (Transaction tx = dbLabel.getEnvironment().createWriteTransaction()) {
+            for (Map.Entry<String, DbLabel> label : labels.entrySet())
+                dbLabel.getDatabase().put(tx, KBEnvironment.serialize(label.getKey()), dbLabel.serializeValue(label.getValue()));
+            tx.commit();
+        }
+    }
+
+    static DbLabel label(long linkDocCount, long textDocCount, int... senseIds) {
+        ArrayList<DbSenseForLabel> senses = new ArrayList<>();
+        for (int i = 0; i < senseIds.length; i++)
+            senses.add(new DbSenseForLabel(senseIds[i], linkDocCount - i, linkDocCount - i, i == 0, i % 2 == 1));
+        return new DbLabel(linkDocCount * 2, linkDocCount, textDocCount * 2, textDocCount, senses);
+    }
+}
@@ -0,0 +1,54 @@
+package com.scienceminer.nerd.kb.db;
+
+import com.scienceminer.nerd.kb.Statement;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class WikidataDumpReaderTest {
+
+    @Test
+    public void testParseItem() throws Exception {
+        String line = "{\"type\":\"item\",\"id\":\"Q42\","
+            + "\"labels\":{\"fr\":{\"language\":\"fr\",\"value\":\"Douglas Adams (fr)\"},\"en\":{\"language\":\"en\",\"value\":\"Douglas Adams\"}},"
+            + "\"claims\":{"
+            + "\"P31\":[{\"mainsnak\":{\"snaktype\":\"value\",\"property\":\"P31\",\"datavalue\":{\"value\":{\"entity-type\":\"item\",\"numeric-id\":5,\"id\":\"Q5\"},\"type\":\"wikibase-entityid\"}},"
+            + "\"type\":\"statement\",\"id\":\"Q42$1\",\"references\":[{\"snaks\":{\"P248\":[{\"property\":\"P248\",\"datavalue\":{\"value\":{\"entity-type\":\"item\",\"id\":\"Q36578\"}}}]}}]}],"
+            + "\"P1477\":[{\"mainsnak\":{\"snaktype\":\"value\",\"property\":\"P1477\",\"datavalue\":{\"value\":{\"text\":\"Douglas Noël Adams\",\"language\":\"en\"},\"type\":\"monolingualtext\"}}},"
+            + "{\"mainsnak\":{\"snaktype\":\"value\",\"property\":\"P1477\",\"datavalue\":{\"value\":{\"text\":\"Douglas Noël Adams\",\"language\":\"en\"},\"type\":\"monolingualtext\"}}}],"
+            + "\"P20\":[{\"mainsnak\":{\"snaktype\":\"novalue\",\"property\":\"P20\"},\"qualifiers\":{\"P585\":[{\"property\":\"P585\",\"datavalue\":{\"value\":\"x\"}}]}}]"
+            + "}},";
+
+        WikidataDumpReader.WikidataItem item = WikidataDumpReader.parse(line);
+        assertThat(item.getId(), is("Q42"));
+        assertThat(item.getType(), is("item"));
+        assertThat(item.getLabel(), is("Douglas Adams"));
+
+        // the references and qualifiers are ignored, duplicated statements are removed
+        List<Statement> statements = item.getStatements();
+        assertThat(statements.size(), is(2));
+        assertThat(statements.get(0).getConceptId(), is("Q42"));
+        assertThat(statements.get(0).getPropertyId(), is("P31"));
+        assertThat(statements.get(0).getValue(), is("Q5"));
+        assertThat(statements.get(1).getPropertyId(), is("P1477"));
+        assertThat(statements.get(1).getValue(), is("{\"text\":\"Douglas Noël Adams\",\"language\":\"en\"}"));
+    }
+
+    @Test
+    public void testParseProperty() throws Exception {
+        String line = "{\"type\":\"property\",\"datatype\":\"wikibase-item\",\"id\":\"P31\","
+            + "\"labels\":{\"en\":{\"language\":\"en\",\"value\":\"instance of\"}},\"claims\":{}}";
+
+        WikidataDumpReader.WikidataItem item = WikidataDumpReader.parse(line);
+        assertThat(item.getId(), is("P31"));
+        assertThat(item.getType(), is("property"));
+        assertThat(item.getDatatype(), is("wikibase-item"));
+        assertThat(item.getLabel(), is("instance of"));
+        assertThat(item.getStatements().size(), is(0));
+        assertThat(WikidataDumpReader.parse("{\"type\":\"item\"}").getId(), nullValue());
+    }
+}
@@ -0,0 +1,33 @@
+package com.scienceminer.nerd.mention;
+
+import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DiceCoefficientsTest {
+
+    @Test
+    public void testMemoization() {
+        Object2DoubleOpenHashMap<String> table = new Object2DoubleOpenHashMap<>();
+        table.put("Paris", 0.25);
+        DiceCoefficients coefficients = new DiceCoefficients(100, table);
+
+        AtomicInteger nbComputations = new AtomicInteger();
+        // precomputed coefficient
+        assertThat(coefficients.get("Paris", term -> { nbComputations.incrementAndGet(); return 0.5; }), is(0.25));
+        assertThat(nbComputations.get(), is(0));
+
+        // computed once, then cached
+        assertThat(coefficients.get("New York", term -> { nbComputations.incrementAndGet(); return 0.5; }), is(0.5));
+        assertThat(coefficients.get("New York", term -> { nbComputations.incrementAndGet(); return 0.75; }), is(0.5));
+        assertThat(nbComputations.get(), is(1));
+
+        assertThat(coefficients.getOccCount("York", term -> { nbComputations.incrementAndGet(); return 42L; }), is(42L));
+        assertThat(coefficients.getOccCount("York", term -> { nbComputations.incrementAndGet(); return 0L; }), is(42L));
+        assertThat(nbComputations.get(), is(2));
+    }
+}
@@ -0,0 +1,153 @@
+package com.scienceminer.nerd.mention;
+
+import com.scienceminer.nerd.kb.model.hadoop.DbLabel;
+import com.scienceminer.nerd.kb.model.hadoop.DbSenseForLabel;
+import com.scienceminer.nerd.utilities.StringPos;
+import org.apache.commons.lang3.StringUtils;
+import org.grobid.core.analyzers.GrobidAnalyzer;
+import org.grobid.core.layout.LayoutToken;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.*;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class LabelMatcherTest {
+    private GrobidAnalyzer analyzer = null;
+
+    static final String testText = "Other factors were also at play, said Felix Boni, head of research at " +
+            "James Capel in Mexico City, such as positive technicals and economic uncertainty in Argentina, " +
+            "which has put it and neighbouring Brazil's markets at risk.";
+
+    @Before
+    public void setUp() throws Exception {
+        analyzer = GrobidAnalyzer.getInstance();
+    }
+
+    private static DbLabel label(long linkDocCount, long textDocCount) {
+        ArrayList<DbSenseForLabel> senses = new ArrayList<>();
+        senses.add(new DbSenseForLabel(1, linkDocCount, linkDocCount, false, false));
+        return new DbLabel(linkDocCount, linkDocCount, textDocCount, textDocCount, senses);
+    }
+
+    private LabelMatcher matcher(String... labels) {
+        LabelMatcher matcher = new LabelMatcher(0.0);
+        for (String text : labels)
+            assertTrue(matcher.addLabel(text, label(1, 1), analyzer));
+        return matcher;
+    }
+
+    // as the n-grams, the spans starting with a separator are matched too, they are dropped
+    // afterwards by extractMentionsWikipedia()
+    private static List<StringPos> withoutLeadingSeparator(List<StringPos> matches) {
+        List<StringPos> result = new ArrayList<>();
+        for (StringPos match : matches) {
+            if (!StringUtils.isBlank(match.getLayoutTokens().get(0).getText()))
+                result.add(match);
+        }
+        return result;
+    }
+
+    private static List<String> strings(List<StringPos> matches) {
+        List<String> result = new ArrayList<>();
+        for (StringPos match : withoutLeadingSeparator(matches))
+            result.add(match.getString());
+        return result;
+    }
+
+    // the key a span is matched with: its non blank tokens, lower-cased
+    private static List<String> key(List<String> tokens) {
+        List<String> key = new ArrayList<>();
+        for (String token : tokens) {
+            if (!StringUtils.isBlank(token))
+                key.add(token.toLowerCase());
+        }
+        return key;
+    }
+
+    @Test
+    public void testMatchMultiTokenAndOverlappingLabels() {
+        LabelMatcher matcher = matcher("Mexico", "Mexico City", "City", "new mexico");
+        String text = "He lives in Mexico City, not in New Mexico.";
+        List<LayoutToken> tokens = analyzer.tokenizeWithLayoutToken(text);
+
+        List<StringPos> matches = withoutLeadingSeparator(matcher.match(tokens, ProcessText.NGRAM_LENGTH));
+
+        assertThat(strings(matches), is(Arrays.asList("Mexico", "Mexico City", "City", "New Mexico", "Mexico")));
+        assertThat(matches.get(1).getOffsetStart(), is(text.indexOf("Mexico City")));
+        assertThat(matches.get(3).getOffsetStart(), is(text.indexOf("New Mexico")));
+        assertThat(matches.get(4).getOffsetStart(), is(text.lastIndexOf("Mexico")));
+        assertThat(matches.get(1).getLayoutTokens().size(), is(3));
+    }
+
+    @Test
+    public void testMatchTokenWindow() {
+        // 4 words, 7 tokens with the separators
+        LabelMatcher matcher = matcher("United States of America");
+        List<LayoutToken> tokens = analyzer.tokenizeWithLayoutToken("the United States of America");
+
+        assertThat(strings(matcher.match(tokens, 4)), is(Arrays.asList("United States of America")));
+        assertThat(matcher.match(tokens, 3).size(), is(0));
+    }
+
+    @Test
+    public void testBuildLinkProbabilityThreshold() {
+        LabelMatcher matcher = new LabelMatcher(0.5);
+        assertFalse(matcher.addLabel("Mexico", new DbLabel(1, 1, 1, 1, new ArrayList<>()), analyzer));
+        assertFalse(matcher.addLabel("City", label(1, 10), analyzer));
+        assertTrue(matcher.addLabel("Mexico City", label(5, 10), analyzer));
+
+        List<LayoutToken> tokens = analyzer.tokenizeWithLayoutToken("in Mexico City");
+        assertThat(strings(matcher.match(tokens, ProcessText.NGRAM_LENGTH)), is(Arrays.asList("Mexico City")));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        LabelMatcher matcher = matcher("Felix Boni", "James Capel", "Mexico", "Mexico City", "Argentina", "Brazil");
+        List<LayoutToken> tokens = analyzer.tokenizeWithLayoutToken(testText);
+
+        File file = File.createTempFile("label", ".matcher");
+        file.deleteOnExit();
+        matcher.save(file);
+
+        LabelMatcher loaded = LabelMatcher.load(file);
+        assertThat(loaded.getMinLinkProbability(), is(matcher.getMinLinkProbability()));
+        assertThat(loaded.getNbStates(), is(matcher.getNbStates()));
+        assertThat(loaded.match(tokens, ProcessText.NGRAM_LENGTH), is(matcher.match(tokens, ProcessText.NGRAM_LENGTH)));
+
+        // same threshold, the saved matcher is loaded without accessing the label database
+        LabelMatcher reloaded = LabelMatcher.loadOrBuild(file, null, 0.0);
+        assertThat(reloaded.match(tokens, ProcessText.NGRAM_LENGTH), is(matcher.match(tokens, ProcessText.NGRAM_LENGTH)));
+    }
+
+    @Test
+    public void testSameMentionsAsNgrams() throws Exception {
+        String[] labels = {"play", "Felix Boni", "Boni", "head of research", "research", "James Capel",
+            "Mexico", "Mexico City", "City", "positive technicals", "economic uncertainty", "Argentina",
+            "Brazil", "Brazil's markets", "markets at risk", "risk", "at"};
+        LabelMatcher matcher = matcher(labels);
+        Set<List<String>> keys = new HashSet<>();
+        for (String label : labels)
+            keys.add(key(analyzer.tokenize(label)));
+
+        List<LayoutToken> tokens = analyzer.tokenizeWithLayoutToken(testText);
+        List<StringPos> expected = new ArrayList<>();
+        for (StringPos ngram : new ProcessText(true).ngrams(tokens, ProcessText.NGRAM_LENGTH)) {
+            List<String> ngramTokens = new ArrayList<>();
+            for (LayoutToken token : ngram.getLayoutTokens())
+                ngramTokens.add(token.getText());
+            // n-grams ending with a separator are dropped by extractMentionsWikipedia() anyway
+            if (StringUtils.isBlank(ngramTokens.get(ngramTokens.size() - 1)))
+                continue;
+            if (keys.contains(key(ngramTokens)))
+                expected.add(ngram);
+        }
+
+        List<StringPos> matches = matcher.match(tokens, ProcessText.NGRAM_LENGTH);
+        assertTrue(expected.size() > labels.length);
+        assertThat(matches, is(expected));
+    }
+}
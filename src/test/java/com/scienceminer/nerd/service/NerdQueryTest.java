@@ -2,6 +2,7 @@ package com.scienceminer.nerd.service;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scienceminer.nerd.disambiguation.NerdEntity;
 import com.scienceminer.nerd.exceptions.QueryException;
 import org.apache.commons.io.IOUtils;
 import org.grobid.core.lang.Language;
@@ -12,7 +13,9 @@ import org.json.simple.parser.JSONParser;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.util.Arrays;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.CoreMatchers.is;
@@ -214,4 +217,50 @@ public class NerdQueryTest {
         nerdQuery = target.fromJson("{'minRankerScore': 0.0123}");
         assertThat(nerdQuery.getMinRankerScore(), is(0.0123));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testIsFieldRequested_default_allFields() throws Exception {
+        assertThat(target.isFieldRequested(NerdQuery.FIELD_DEFINITIONS), is(true));
+        assertThat(target.isFieldRequested(NerdQuery.FIELD_STATEMENTS), is(true));
+        assertThat(target.isFieldRequested(NerdQuery.FIELD_CATEGORIES), is(true));
+        assertThat(target.isFieldRequested(NerdQuery.FIELD_DOMAINS), is(true));
+    }
+
+    @Test
+    public void testIsFieldRequested_liteProfile_noField() throws Exception {
+        NerdQuery nerdQuery = target.fromJson("{'profile': 'lite'}");
+        assertThat(nerdQuery.isFieldRequested(NerdQuery.FIELD_DEFINITIONS), is(false));
+        assertThat(nerdQuery.isFieldRequested(NerdQuery.FIELD_STATEMENTS), is(false));
+        assertThat(nerdQuery.isFieldRequested(NerdQuery.FIELD_CATEGORIES), is(false));
+        assertThat(nerdQuery.isFieldRequested(NerdQuery.FIELD_DOMAINS), is(false));
+    }
+
+    @Test
+    public void testIsFieldRequested_fieldsOverrideProfile() throws Exception {
+        NerdQuery nerdQuery = target.fromJson("{'profile': 'lite', 'fields': ['domains']}");
+        assertThat(nerdQuery.isFieldRequested(NerdQuery.FIELD_DOMAINS), is(true));
+        assertThat(nerdQuery.isFieldRequested(NerdQuery.FIELD_DEFINITIONS), is(false));
+        assertThat(nerdQuery.isFieldRequested(NerdQuery.FIELD_STATEMENTS), is(false));
+    }
+
+    @Test
+    public void testStreamingOutput_shouldGiveSameJsonAsToJSONClean() throws Exception {
+        target.setText("this is a \"test\" of a query");
+        target.setLanguage(new Language(Language.EN, 1.0));
+        NerdEntity entity = new NerdEntity();
+        entity.setRawName("test");
+        entity.setOffsetStart(11);
+        entity.setOffsetEnd(15);
+        entity.setNerdScore(0.5);
+        entity.setWikidataId("Q1");
+        entity.setDomains(Arrays.asList("Computer_Science"));
+        target.setEntities(Arrays.asList(entity));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new NerdQueryStreamingOutput(target, null).write(output);
+
+        JSONParser parser = new JSONParser();
+        final Object streamed = parser.parse(new String(output.toByteArray(), UTF_8));
+        assertThat(streamed, is(parser.parse(target.toJSONClean())));
+    }
+}
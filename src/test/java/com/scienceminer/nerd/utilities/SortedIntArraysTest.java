@@ -0,0 +1,58 @@
+package com.scienceminer.nerd.utilities;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SortedIntArraysTest {
+
+    @Test
+    public void testIntersectionSize() {
+        assertThat(SortedIntArrays.intersectionSize(new int[] {1, 3, 5, 7}, new int[] {2, 3, 4, 7, 9}), is(2));
+        assertThat(SortedIntArrays.intersectionSize(new int[] {1, 2}, new int[] {3, 4}), is(0));
+        assertThat(SortedIntArrays.intersectionSize(new int[0], new int[] {3, 4}), is(0));
+        assertThat(SortedIntArrays.intersectionSize(new int[] {4}, new int[] {4}), is(1));
+    }
+
+    @Test
+    public void testGallopingIntersectionSize() {
+        // large array of even numbers, small array with a few even and odd values
+        int[] large = new int[10000];
+        for (int i = 0; i < large.length; i++)
+            large[i] = 2 * i;
+        int[] small = new int[] {-5, 0, 3, 1000, 1001, 19998, 19999, 30000};
+        assertThat(SortedIntArrays.intersectionSize(small, large), is(3));
+        assertThat(SortedIntArrays.intersectionSize(large, small), is(3));
+    }
+
+    @Test
+    public void testIntersectionSizeRandom() {
+        Random random = new Random(7);
+        for (int n = 0; n < 50; n++) {
+            TreeSet<Integer> setA = new TreeSet<>();
+            TreeSet<Integer> setB = new TreeSet<>();
+            int sizeA = 1 + random.nextInt(20);
+            int sizeB = 1 + random.nextInt(3000);
+            while (setA.size() < sizeA)
+                setA.add(random.nextInt(5000));
+            while (setB.size() < sizeB)
+                setB.add(random.nextInt(5000));
+            int[] a = setA.stream().mapToInt(Integer::intValue).toArray();
+            int[] b = setB.stream().mapToInt(Integer::intValue).toArray();
+            setA.retainAll(setB);
+            assertThat(SortedIntArrays.intersectionSize(a, b), is(setA.size()));
+        }
+    }
+
+    @Test
+    public void testContains() {
+        int[] a = new int[] {2, 5, 9};
+        assertThat(SortedIntArrays.contains(a, 5), is(true));
+        assertThat(SortedIntArrays.contains(a, 6), is(false));
+        assertThat(SortedIntArrays.contains(new int[0], 6), is(false));
+    }
+}
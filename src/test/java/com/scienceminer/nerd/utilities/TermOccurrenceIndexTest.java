@@ -0,0 +1,49 @@
+package com.scienceminer.nerd.utilities;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TermOccurrenceIndexTest {
+
+    @Test
+    public void testOccCount() {
+        TermOccurrenceIndex index = new TermOccurrenceIndex("The cat sat on the mat with another cat.");
+        assertThat(index.getOccCount("cat"), is(2.0));
+        assertThat(index.getOccCount("at"), is(4.0));
+        assertThat(index.getOccCount("dog"), is(0.0));
+        assertThat(index.getOccCount(""), is(0.0));
+        assertThat(new TermOccurrenceIndex(null).getOccCount("cat"), is(0.0));
+    }
+
+    @Test
+    public void testOverlappingOccurrences() {
+        // non-overlapping occurrences, as StringUtils.countMatches()
+        assertThat(new TermOccurrenceIndex("aaaaa").getOccCount("aa"), is(2.0));
+        assertThat(new TermOccurrenceIndex("abababa").getOccCount("aba"), is(2.0));
+    }
+
+    @Test
+    public void testSameCountsAsGetOccCount() {
+        Random random = new Random(42);
+        String alphabet = "abc é";
+        for (int i = 0; i < 200; i++) {
+            String text = randomString(random, alphabet, random.nextInt(200));
+            TermOccurrenceIndex index = new TermOccurrenceIndex(text);
+            for (int j = 0; j < 20; j++) {
+                String term = randomString(random, alphabet, 1 + random.nextInt(5));
+                assertThat(text + " / " + term, index.getOccCount(term), is(Utilities.getOccCount(term, text)));
+            }
+        }
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++)
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        return builder.toString();
+    }
+}